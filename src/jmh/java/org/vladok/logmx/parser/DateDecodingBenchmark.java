@@ -0,0 +1,98 @@
+package org.vladok.logmx.parser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Конкурентное декодирование меток времени: прежний SimpleDateFormat под общим мьютексом
+ * против {@link EntryDateDecoder}. Сравнение одного потока и всех ядер показывает масштабируемость.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 12:40
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DateDecodingBenchmark {
+
+    private static final int TIMESTAMPS = 4096;
+
+    /** Метки времени соседних записей одного дня, как при сортировке или построении графика */
+    private final String[] timestamps = new String[TIMESTAMPS];
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yy HH:mm:ss.SSS");
+    private final Object mutex = new Object();
+    private final EntryDateDecoder decoder = new EntryDateDecoder();
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < TIMESTAMPS; i++) {
+            int seconds = 12 * 3600 + i * 7;
+            timestamps[i] = String.format("22-09-16 %02d:%02d:%02d.%03d",
+                    seconds / 3600, seconds / 60 % 60, seconds % 60, i % 1000);
+        }
+    }
+
+    /**
+     * Курсор по меткам времени, свой у каждого потока
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index;
+
+        int next() {
+            index = (index + 1) & (TIMESTAMPS - 1);
+            return index;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long mutexSingleThread(Cursor cursor) throws ParseException {
+        return parseWithMutex(timestamps[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long mutexAllCores(Cursor cursor) throws ParseException {
+        return parseWithMutex(timestamps[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long decoderSingleThread(Cursor cursor) throws ParseException {
+        return decoder.decode(timestamps[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long decoderAllCores(Cursor cursor) throws ParseException {
+        return decoder.decode(timestamps[cursor.next()]);
+    }
+
+    /**
+     * Прежняя реализация getAbsoluteEntryDate
+     */
+    private long parseWithMutex(String timestamp) throws ParseException {
+        synchronized (mutex) {
+            return dateFormat.parse(timestamp).getTime();
+        }
+    }
+}
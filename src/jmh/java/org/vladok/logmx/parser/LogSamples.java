@@ -0,0 +1,113 @@
+package org.vladok.logmx.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Генератор синтетических строк application.log и UData для бенчмарков
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 16:00
+ */
+public final class LogSamples {
+
+    private static final String[] THREADS = {"main", "pool-1-thread-3", "http-nio-8080-exec-12", "Timer-0"};
+    private static final String[] LEVELS = {"INFO", "DEBUG", "WARN", "ERROR"};
+
+    private LogSamples() {
+    }
+
+    /**
+     * @return метка времени i-й записи (записи идут с шагом в 37 мс)
+     */
+    public static String timestamp(int i) {
+        long millis = 12 * 3600 * 1000L + i * 37L;
+        return String.format("22-09-16 %02d:%02d:%02d.%03d",
+                millis / 3600000 % 24, millis / 60000 % 60, millis / 1000 % 60, millis % 1000);
+    }
+
+    /**
+     * @return строка заголовка i-й записи
+     */
+    public static String header(int i, String message) {
+        return timestamp(i) + " [" + THREADS[i % THREADS.length] + "] " + LEVELS[i % LEVELS.length] + " - " + message;
+    }
+
+    /**
+     * @return строка стектрейса
+     */
+    public static String continuation(int i) {
+        return "\tat org.vladok.rainbow.service.DocumentService.process(DocumentService.java:" + (100 + i % 900) + ")";
+    }
+
+    /**
+     * @return небольшое сообщение с UData, как в большинстве записей
+     */
+    public static String smallUData(int i) {
+        return "Вызов сервиса: 'Сервис сохранения данных в системе iBank 2'. Данные запроса: " +
+                "[ TYPE: 'IBANK_DOC_STATUS'; DATA: '{DOC_ID=" + (28672 + i) + ", DOC_TYPE=person_info, " +
+                "DESCRIPTION=Документ успешно исполнен, STATE=5, UNLOAD_RESULT=PROCESSED_SUCCEEDED, DOC_DATE=22.09.16}' ]";
+    }
+
+    /**
+     * @param depth глубина вложенности бизнес-объектов и массивов
+     * @return UData с глубокой вложенностью
+     */
+    public static String nestedUData(int depth) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            result.append("[ TYPE: 'LEVEL_").append(i).append("'; DATA: '{ID=").append(i).append(", CHILDREN=[");
+        }
+        result.append("[ TYPE: 'EMPTY_DATA'; DATA: '{}' ]");
+        for (int i = depth - 1; i >= 0; i--) {
+            result.append("], NAME=Уровень ").append(i).append("}' ]");
+        }
+        return result.toString();
+    }
+
+    /**
+     * @param length примерная длина в символах
+     * @return пакет документов заданного размера
+     */
+    public static String largeUData(int length) {
+        StringBuilder result = new StringBuilder(length + 1024);
+        result.append("Пакет документов: [ TYPE: 'DOCUMENT_BATCH'; DATA: '{DOCUMENTS=[");
+        for (int i = 0; result.length() < length; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append("[ TYPE: 'IBANK_DOCUMENT'; DATA: '{DOC_ID=").append(i)
+                    .append(", CLIENT_NAME=ООО \"Пример ").append(i).append("\", INN=7714698320, STATUS=2, ")
+                    .append("COMMENT=Оплата по счету, договор №").append(i).append(", от 22.09.2016, ")
+                    .append("SIGNER_LIST=[[ TYPE: 'IBANK_DOCUMENT_SIGN'; DATA: '{SIGN_TYPE=SIGN, KEY_ID=")
+                    .append(14277244422914L + i).append(", OWNER_NAME=Иванов Иван Иванович}' ]], ATTACHMENTS=[]}' ]");
+        }
+        result.append("], COUNT=").append(length).append("}' ]");
+        return result.toString();
+    }
+
+    /**
+     * Синтетический лог: большинство записей однострочные, каждая пятая с UData, каждая десятая со стектрейсом
+     *
+     * @param entries количество записей
+     * @return строки лога
+     */
+    public static List<String> logLines(int entries) {
+        List<String> lines = new ArrayList<String>(entries * 2);
+        for (int i = 0; i < entries; i++) {
+            if (i % 5 == 0) {
+                lines.add(header(i, smallUData(i)));
+            } else if (i % 10 == 3) {
+                lines.add(header(i, "Ошибка при обработке документа " + i));
+                lines.add("java.lang.IllegalStateException: Документ " + i + " не найден");
+                for (int j = 0; j < 12; j++) {
+                    lines.add(continuation(i + j));
+                }
+            } else {
+                lines.add(header(i, "Документ " + i + " успешно обработан за " + (i % 97) + " мс"));
+            }
+        }
+        return lines;
+    }
+}
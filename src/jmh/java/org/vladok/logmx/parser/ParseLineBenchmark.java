@@ -0,0 +1,198 @@
+package org.vladok.logmx.parser;
+
+import com.lightysoft.logmx.business.ParsedEntry;
+import com.lightysoft.logmx.mgr.LogFileParserHarness;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор строк {@link ApplicationLogParser} через {@link LogFileParserHarness}, без GUI LogMX,
+ * и получение даты записи из нескольких потоков.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 16:20
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseLineBenchmark {
+
+    /** Через сколько операций сбрасывать накопленные записи и текст */
+    private static final int BATCH = 1024;
+
+    private static final int LOG_ENTRIES = 10000;
+
+    /**
+     * Парсер и строки, свои у каждого потока, как у LogMX
+     */
+    @State(Scope.Thread)
+    public static class Parser {
+        LogFileParserHarness harness;
+        /** Парсер, который оставляет только ошибки */
+        LogFileParserHarness errors;
+        /** Парсер, который хранит стектрейсы вне кучи */
+        LogFileParserHarness stored;
+        String[] headers;
+        String[] continuations;
+        String[] log;
+        int index;
+
+        @Setup
+        public void setUp() throws Exception {
+            harness = new LogFileParserHarness(new ApplicationLogParser());
+            errors = new LogFileParserHarness(new ApplicationLogParser(
+                    new ParserSettings(properties(ParserSettings.FILTER_LEVELS, "ERROR"))));
+            stored = new LogFileParserHarness(new ApplicationLogParser(
+                    new ParserSettings(properties(ParserSettings.STORE_MESSAGES, "true"))));
+            headers = new String[BATCH];
+            continuations = new String[BATCH];
+            for (int i = 0; i < BATCH; i++) {
+                headers[i] = LogSamples.header(i, "Документ " + i + " успешно обработан");
+                continuations[i] = LogSamples.continuation(i);
+            }
+            List<String> lines = LogSamples.logLines(LOG_ENTRIES);
+            log = lines.toArray(new String[lines.size()]);
+            harness.parseLine(headers[0]);
+        }
+
+        int next() {
+            index = (index + 1) & (BATCH - 1);
+            return index;
+        }
+    }
+
+    /**
+     * Записи для получения даты, общие для всех потоков
+     */
+    @State(Scope.Benchmark)
+    public static class Entries {
+        ApplicationLogParser parser;
+        ParsedEntry[] entries;
+
+        @Setup
+        public void setUp() {
+            parser = new ApplicationLogParser();
+            LogFileParserHarness harness = new LogFileParserHarness(parser);
+            entries = new ParsedEntry[BATCH];
+            for (int i = 0; i < BATCH; i++) {
+                entries[i] = harness.createEntry();
+                entries[i].setDate(LogSamples.timestamp(i));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index;
+
+        int next() {
+            index = (index + 1) & (BATCH - 1);
+            return index;
+        }
+    }
+
+    /**
+     * Строка заголовка: новая запись и передача предыдущей в LogMX
+     */
+    @Benchmark
+    public void headerLine(Parser parser) throws Exception {
+        int i = parser.next();
+        parser.harness.parseLine(parser.headers[i]);
+        if (i == 0) {
+            parser.harness.clearEntries();
+        }
+    }
+
+    /**
+     * Строка-продолжение (стектрейс, многострочная UData)
+     */
+    @Benchmark
+    public void continuationLine(Parser parser) throws Exception {
+        int i = parser.next();
+        if (i == 0) {
+            // Новая запись, чтобы текст не рос бесконечно
+            parser.harness.parseLine(parser.headers[0]);
+            parser.harness.clearEntries();
+        } else {
+            parser.harness.parseLine(parser.continuations[i]);
+        }
+    }
+
+    /**
+     * Синтетический лог целиком, время на одну запись
+     */
+    @Benchmark
+    @OperationsPerInvocation(LOG_ENTRIES)
+    public void logFile(Parser parser) throws Exception {
+        for (String line : parser.log) {
+            parser.harness.parseLine(line);
+        }
+        parser.harness.parseLine(null);
+        parser.harness.clearEntries();
+    }
+
+    /**
+     * Тот же лог с фильтром по уровню ERROR: отброшенные записи не копируются, время на одну запись лога
+     */
+    @Benchmark
+    @OperationsPerInvocation(LOG_ENTRIES)
+    public void logFileErrorsOnly(Parser parser) throws Exception {
+        for (String line : parser.log) {
+            parser.errors.parseLine(line);
+        }
+        parser.errors.parseLine(null);
+        parser.errors.clearEntries();
+    }
+
+    /**
+     * Тот же лог с текстами стектрейсов вне кучи, время на одну запись
+     */
+    @Benchmark
+    @OperationsPerInvocation(LOG_ENTRIES)
+    public void logFileStoredMessages(Parser parser) throws Exception {
+        for (String line : parser.log) {
+            parser.stored.parseLine(line);
+        }
+        parser.stored.parseLine(null);
+        parser.stored.clearEntries();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Date absoluteEntryDateSingleThread(Entries entries, Cursor cursor) throws Exception {
+        return entries.parser.getAbsoluteEntryDate(entries.entries[cursor.next()]);
+    }
+
+    /**
+     * Количество потоков можно переопределить ключом -t
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Date absoluteEntryDateAllCores(Entries entries, Cursor cursor) throws Exception {
+        return entries.parser.getAbsoluteEntryDate(entries.entries[cursor.next()]);
+    }
+
+    private static Properties properties(String key, String value) {
+        Properties properties = new Properties();
+        properties.setProperty(key, value);
+        return properties;
+    }
+}
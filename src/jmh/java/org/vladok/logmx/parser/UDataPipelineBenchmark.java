@@ -0,0 +1,79 @@
+package org.vladok.logmx.parser;
+
+import com.lightysoft.logmx.business.ParsedEntry;
+import com.lightysoft.logmx.mgr.LogFileParserHarness;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка лога с большой UData до состояния, когда все отформатированные сообщения готовы:
+ * без потоков UData форматируется после чтения (как при просмотре записей в LogMX),
+ * с потоками - в пуле, одновременно с чтением. Кеш форматирования не помогает: вся UData уникальна.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 14:50
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class UDataPipelineBenchmark {
+
+    private static final int ENTRIES = 20000;
+
+    /** Размер UData каждой пятой записи */
+    private static final int UDATA_LENGTH = 4 * 1024;
+
+    @Param({"0", "1", "2", "4"})
+    public int threads;
+
+    private List<String> lines;
+
+    private ParserSettings settings;
+
+    @Setup
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty(ParserSettings.UDATA_THREADS, Integer.toString(threads));
+        settings = new ParserSettings(properties);
+        String udata = LogSamples.largeUData(UDATA_LENGTH);
+        lines = new ArrayList<String>(ENTRIES * 2);
+        for (int i = 0; i < ENTRIES; i++) {
+            if (i % 5 == 0) {
+                lines.add(LogSamples.header(i, udata.replace("DOC_ID=", "DOC_ID=" + i)));
+            } else {
+                lines.add(LogSamples.header(i, "Документ " + i + " успешно обработан за " + (i % 97) + " мс"));
+                lines.add(LogSamples.continuation(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public void loadAndFormat(Blackhole blackhole) throws Exception {
+        List<ParsedEntry> entries = new LogFileParserHarness(new ApplicationLogParser(settings)).parse(lines);
+        for (ParsedEntry entry : entries) {
+            Object formatted = entry.getUserDefinedFields().get("Formatted");
+            if (formatted != null) {
+                blackhole.consume(formatted.toString());
+            }
+        }
+    }
+}
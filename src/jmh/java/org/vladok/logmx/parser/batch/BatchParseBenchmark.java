@@ -0,0 +1,94 @@
+package org.vladok.logmx.parser.batch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vladok.logmx.parser.LogSamples;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакетный разбор синтетического лога размером size мегабайт при разном количестве потоков.
+ * Ускорение считается как отношение времени при parallelism=1 к времени при parallelism=N.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 20:05
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class BatchParseBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"256"})
+    public int size;
+
+    private File file;
+
+    private BatchLogParser parser;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("application", ".log");
+        List<String> lines = LogSamples.logLines(10000);
+        long limit = size * 1024L * 1024L;
+        long written = 0;
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        try {
+            while (written < limit) {
+                for (String line : lines) {
+                    byte[] bytes = (line + '\n').getBytes(UTF_8);
+                    out.write(bytes);
+                    written += bytes.length;
+                }
+            }
+        } finally {
+            out.close();
+        }
+        parser = new BatchLogParser(UTF_8, parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        parser.close();
+        if ( ! file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public long parse() throws Exception {
+        final long[] count = new long[1];
+        parser.parse(file, new EntryHandler() {
+            @Override
+            public void entry(LogEntry entry) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+}
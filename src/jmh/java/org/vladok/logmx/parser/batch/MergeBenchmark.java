@@ -0,0 +1,110 @@
+package org.vladok.logmx.parser.batch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vladok.logmx.parser.EntryHeaderScanner;
+import org.vladok.logmx.parser.LogSamples;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Объединение size мегабайт записей, разложенных по files файлам по очереди.
+ * При files=1 измеряется чтение без слияния, разница с files=N - стоимость кучи и переключения файлов.
+ * Память ограничена -Xmx64m: она не должна зависеть от размера файлов.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 18:45
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx64m")
+@State(Scope.Benchmark)
+public class MergeBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"1", "4", "16"})
+    public int files;
+
+    @Param({"128"})
+    public int size;
+
+    private List<File> logs;
+
+    @Setup
+    public void setUp() throws IOException {
+        logs = new ArrayList<File>();
+        List<OutputStream> outs = new ArrayList<OutputStream>();
+        try {
+            for (int i = 0; i < files; i++) {
+                File log = File.createTempFile("application", ".log");
+                logs.add(log);
+                outs.add(new BufferedOutputStream(new FileOutputStream(log), 1 << 16));
+            }
+            long limit = size * 1024L * 1024L;
+            long written = 0;
+            int entry = -1;
+            for (int base = 0; written < limit; base += 10000) {
+                for (String line : LogSamples.logLines(10000)) {
+                    if (EntryHeaderScanner.scan(line) != EntryHeaderScanner.NO_MATCH) {
+                        ++entry;
+                        // Время продолжает расти от пачки к пачке
+                        line = LogSamples.timestamp(base + entry % 10000)
+                                + line.substring(EntryHeaderScanner.TIMESTAMP_LENGTH);
+                    }
+                    byte[] bytes = (line + '\n').getBytes(UTF_8);
+                    outs.get(entry % files).write(bytes);
+                    written += bytes.length;
+                }
+            }
+        } finally {
+            for (OutputStream out : outs) {
+                out.close();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File log : logs) {
+            if ( ! log.delete()) {
+                log.deleteOnExit();
+            }
+        }
+    }
+
+    @Benchmark
+    public long merge() throws IOException {
+        MergedLogReader reader = new MergedLogReader(logs, UTF_8, false);
+        long count = 0;
+        try {
+            while (reader.next() != null) {
+                count++;
+            }
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+}
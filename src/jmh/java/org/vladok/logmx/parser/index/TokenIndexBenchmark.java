@@ -0,0 +1,87 @@
+package org.vladok.logmx.parser.index;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vladok.logmx.parser.LogSamples;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цена индекса слов: построение по сообщениям лога (добавляется к разбору) и поиск номера документа
+ * по индексу против поиска подстроки во всех сообщениях
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 22:10
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class TokenIndexBenchmark {
+
+    @Param({"100000"})
+    public int entries;
+
+    private List<String> messages;
+
+    private TokenIndex index;
+
+    private String docId;
+
+    @Setup
+    public void setUp() {
+        messages = new ArrayList<String>(entries);
+        for (int i = 0; i < entries; i++) {
+            if (i % 5 == 0) {
+                messages.add(LogSamples.smallUData(i));
+            } else if (i % 10 == 3) {
+                messages.add("Ошибка при обработке документа " + i + "\njava.lang.IllegalStateException: Документ "
+                        + i + " не найден\n" + LogSamples.continuation(i));
+            } else {
+                messages.add("Документ " + i + " успешно обработан за " + (i % 97) + " мс");
+            }
+        }
+        index = build();
+        docId = String.valueOf(28672 + entries / 2);
+    }
+
+    @Benchmark
+    public TokenIndex build() {
+        TokenIndexBuilder builder = new TokenIndexBuilder();
+        for (String message : messages) {
+            builder.add(message);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public int[] indexed() {
+        return index.find("DOC_ID", docId);
+    }
+
+    @Benchmark
+    public int scan() {
+        String pattern = "DOC_ID=" + docId;
+        int found = 0;
+        for (String message : messages) {
+            if (message.contains(pattern)) {
+                ++found;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,114 @@
+package org.vladok.logmx.parser.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vladok.logmx.parser.EntryDateDecoder;
+import org.vladok.logmx.parser.LogSamples;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Повторное открытие лога: разбор по байтам с декодированием дат, потока, уровня и поиском UData
+ * против чтения тех же полей из кеша {@link EntryCache}
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 20:30
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class EntryCacheBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"128"})
+    public int size;
+
+    private File file;
+
+    private final EntryDateDecoder decoder = new EntryDateDecoder();
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("application", ".log");
+        List<String> lines = LogSamples.logLines(10000);
+        long limit = size * 1024L * 1024L;
+        long written = 0;
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        try {
+            while (written < limit) {
+                for (String line : lines) {
+                    byte[] bytes = (line + '\n').getBytes(UTF_8);
+                    out.write(bytes);
+                    written += bytes.length;
+                }
+            }
+        } finally {
+            out.close();
+        }
+        // Кеш строится один раз, как при первом открытии
+        EntryCache.open(file, UTF_8).close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File sidecar : EntryCache.sidecarsFor(file)) {
+            sidecar.delete();
+        }
+        if ( ! file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public long parsed() throws IOException, ParseException {
+        long count = 0;
+        MappedLogReader reader = new MappedLogReader(file, UTF_8);
+        try {
+            for (MappedLogEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                count += decoder.decode(entry.getDate()) + entry.getThread().length() + entry.getLevel().length()
+                        + (entry.containsUData() ? 1 : 0);
+            }
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long cached() throws IOException {
+        long count = 0;
+        CachedLogReader reader = EntryCache.open(file, UTF_8);
+        try {
+            for (MappedLogEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                count += reader.getTime() + entry.getThread().length() + entry.getLevel().length()
+                        + (reader.hasUData() ? 1 : 0);
+            }
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,142 @@
+package org.vladok.logmx.parser.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vladok.logmx.parser.EntryHeaderScanner;
+import org.vladok.logmx.parser.LogSamples;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение синтетического лога: построчное декодирование, как это делает LogMX, против поиска
+ * заголовков по байтам с декодированием только нужных полей
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 22:20
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class MappedReadBenchmark {
+
+    @Param({"UTF-8", "windows-1251"})
+    public String encoding;
+
+    @Param({"128"})
+    public int size;
+
+    private Charset charset;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        charset = Charset.forName(encoding);
+        file = File.createTempFile("application", ".log");
+        List<String> lines = LogSamples.logLines(10000);
+        long limit = size * 1024L * 1024L;
+        long written = 0;
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        try {
+            while (written < limit) {
+                for (String line : lines) {
+                    byte[] bytes = (line + '\n').getBytes(charset);
+                    out.write(bytes);
+                    written += bytes.length;
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if ( ! file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Каждая строка декодируется и проверяется, продолжения копируются в сообщение
+     */
+    @Benchmark
+    public long decodedLines() throws IOException {
+        long count = 0;
+        StringBuilder message = new StringBuilder(256);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), charset), 1 << 16);
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                long header = EntryHeaderScanner.scan(line);
+                if (header != EntryHeaderScanner.NO_MATCH) {
+                    count += message.length();
+                    message.setLength(0);
+                    message.append(line, EntryHeaderScanner.messageStart(header), line.length());
+                } else {
+                    message.append('\n').append(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return count + message.length();
+    }
+
+    /**
+     * Только границы записей и уровень, сообщения не декодируются
+     */
+    @Benchmark
+    public long mappedLevels() throws IOException {
+        long count = 0;
+        MappedLogReader reader = new MappedLogReader(file, charset);
+        try {
+            for (MappedLogEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                count += entry.getLevel().length() + entry.getMessageLength();
+            }
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+
+    /**
+     * Декодирование всех сообщений
+     */
+    @Benchmark
+    public long mappedMessages() throws IOException {
+        long count = 0;
+        MappedLogReader reader = new MappedLogReader(file, charset);
+        try {
+            for (MappedLogEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                count += entry.getMessage().length();
+            }
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,88 @@
+package org.vladok.logmx.parser.stats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vladok.logmx.parser.FieldDictionary;
+import org.vladok.logmx.parser.FormattedUData;
+import org.vladok.logmx.parser.LogSamples;
+import org.vladok.logmx.parser.udata.UDataCache;
+import org.vladok.logmx.parser.udata.UDataFormatter;
+import org.vladok.logmx.parser.udata.UDataFormatterException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цена статистики на строку и на форматирование по сравнению с самой работой.
+ * Разбор строки со статистикой целиком - {@code ParseLineBenchmark.logFile}:
+ * счет строки должен быть на порядки дешевле разбора строки, замер времени - дешевле форматирования.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 17:50
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StatsOverheadBenchmark {
+
+    private ParseCounters counters;
+
+    private LatencyHistogram histogram;
+
+    private String message;
+
+    private int line;
+
+    @Setup
+    public void setUp() {
+        counters = new ParseCounters(new ParserStats(new FieldDictionary(16), new FieldDictionary(16), new UDataCache(0)));
+        histogram = new LatencyHistogram();
+        message = LogSamples.smallUData(1);
+    }
+
+    /**
+     * Счет строки в потоке чтения
+     */
+    @Benchmark
+    public ParseCounters countLine() {
+        counters.line((++line & 7) == 0);
+        return counters;
+    }
+
+    /**
+     * Замер времени и запись в гистограмму
+     */
+    @Benchmark
+    public LatencyHistogram recordTime() {
+        long start = System.nanoTime();
+        histogram.record(System.nanoTime() - start);
+        return histogram;
+    }
+
+    /**
+     * Форматирование без статистики
+     */
+    @Benchmark
+    public String format() throws UDataFormatterException {
+        return UDataFormatter.format(message);
+    }
+
+    /**
+     * Форматирование значения поля Formatted: со статистикой
+     */
+    @Benchmark
+    public String formatWithStats() {
+        return FormattedUData.format(message, null);
+    }
+}
@@ -0,0 +1,52 @@
+package org.vladok.logmx.parser.udata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Форматирование сгенерированных неудобных строк {@link AdversarialUData} разной длины.
+ * При линейной сложности время на символ не зависит от size; сама граница проверяется
+ * детерминированно в TestUDataFormatterLinearity.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 18:10
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Thread)
+public class AdversarialUDataBenchmark {
+
+    @Param({"COMMA_SEPARATED_VALUE", "LONG_KEY_RUNS", "UNTERMINATED", "REPEATED_MARKERS", "DEEP_NESTING",
+            "OPEN_BRACKETS", "NESTED_ARRAYS"})
+    public String kind;
+
+    @Param({"65536", "1048576"})
+    public int size;
+
+    private String source;
+
+    @Setup
+    public void setUp() {
+        source = AdversarialUData.valueOf(kind).generate(size);
+    }
+
+    @Benchmark
+    public String format() throws UDataFormatterException {
+        return UDataFormatter.format(source);
+    }
+}
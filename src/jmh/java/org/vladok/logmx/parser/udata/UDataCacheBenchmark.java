@@ -0,0 +1,89 @@
+package org.vladok.logmx.parser.udata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.vladok.logmx.parser.LogSamples;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Форматирование всех сообщений лога с кешем {@link UDataCache} и без него.
+ * Сообщения как в реальном логе: справочники и настройки повторяются (с разным текстом перед UData),
+ * пустые объекты повторяются, документы уникальны. Доля повторяющихся сообщений задается параметром.
+ * Кеш создается на каждый проход, как при открытии файла.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 13:20
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Thread)
+public class UDataCacheBenchmark {
+
+    private static final int MESSAGES = 20000;
+
+    /** Различных повторяющихся объектов */
+    private static final int DISTINCT = 300;
+
+    @Param({"0", "50", "80"})
+    public int repeatedPercent;
+
+    private String[] messages;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(2016);
+        messages = new String[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            if (random.nextInt(100) < repeatedPercent) {
+                int id = random.nextInt(DISTINCT);
+                messages[i] = id % 10 == 0
+                        ? "Ответ сервиса " + i + ": [ TYPE: 'EMPTY_DATA'; DATA: '{}' ]"
+                        : "Справочник загружен за " + random.nextInt(100) + " мс: " + reference(id);
+            } else {
+                messages[i] = LogSamples.smallUData(i);
+            }
+        }
+    }
+
+    /**
+     * @return повторяющийся объект: клиент со счетами и настройками
+     */
+    private static String reference(int id) {
+        return "[ TYPE: 'CLIENT_INFO'; DATA: '{CLIENT_ID=" + id + ", CLIENT_NAME=ООО \"Пример " + id + "\", " +
+                "INN=7714698320, ACCOUNTS=[40702978909044002" + (100 + id) + ", 40702810909044002" + (100 + id) + "], " +
+                "SETTINGS=[ TYPE: 'CLIENT_SETTINGS'; DATA: '{SIGN_LEVEL=2, SMS_NOTIFY=true, LIMIT=1000000.00, " +
+                "BRANCH=[ TYPE: 'BRANCH'; DATA: '{BRANCH_ID=101, NAME=Головной офис, BIC=044525311}' ]}' ]}' ]";
+    }
+
+    @Benchmark
+    public void withoutCache(Blackhole blackhole) throws UDataFormatterException {
+        for (String message : messages) {
+            blackhole.consume(UDataFormatter.format(message));
+        }
+    }
+
+    @Benchmark
+    public UDataCache withCache(Blackhole blackhole) throws UDataFormatterException {
+        UDataCache cache = new UDataCache(4L * 1024 * 1024);
+        for (String message : messages) {
+            blackhole.consume(cache.format(message));
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,117 @@
+package org.vladok.logmx.parser.udata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vladok.logmx.parser.LogSamples;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Форматирование UData: небольшое сообщение, глубокая вложенность и пакет в несколько мегабайт.
+ * Отдельно разбор в дерево и выборка значений по пути без печати
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 16:45
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Thread)
+public class UDataFormatBenchmark {
+
+    @Param({"SMALL", "NESTED", "LARGE", "AFTER_STACK_TRACE"})
+    public String payload;
+
+    private String source;
+
+    /** Начало первого бизнес-объекта, как его находит парсер при чтении строк */
+    private int firstObject;
+
+    private final Writer nullWriter = new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+        }
+
+        @Override
+        public void write(int ch) throws IOException {
+        }
+
+        @Override
+        public void write(String str) throws IOException {
+        }
+
+        @Override
+        public void flush() throws IOException {
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        if ("SMALL".equals(payload)) {
+            source = LogSamples.smallUData(1);
+        } else if ("NESTED".equals(payload)) {
+            source = LogSamples.nestedUData(64);
+        } else if ("LARGE".equals(payload)) {
+            source = LogSamples.largeUData(4 * 1024 * 1024);
+        } else {
+            StringBuilder message = new StringBuilder("Ошибка при сохранении документа\n");
+            for (int i = 0; i < 40; i++) {
+                message.append(LogSamples.continuation(i)).append('\n');
+            }
+            source = message.append(LogSamples.smallUData(1)).toString();
+        }
+        firstObject = source.indexOf(UDataFormatter.BUSINESS_OBJ_BEGINNING);
+    }
+
+    @Benchmark
+    public String formatToString() throws UDataFormatterException {
+        return UDataFormatter.format(source);
+    }
+
+    /**
+     * Начало первого бизнес-объекта известно: текст перед ним не просматривается
+     */
+    @Benchmark
+    public String formatKnownStart() throws UDataFormatterException {
+        return UDataFormatter.format(source, firstObject);
+    }
+
+    /**
+     * Потоковый вариант без накопления результата
+     */
+    @Benchmark
+    public void formatStreaming() throws UDataFormatterException {
+        UDataFormatter.format(source, nullWriter);
+    }
+
+    @Benchmark
+    public UDataTree parseTree() {
+        return UDataTree.parse(source);
+    }
+
+    /**
+     * Разбор и выборка ключей всех подписей документов
+     */
+    @Benchmark
+    public int[] selectKeyPath() {
+        return UDataTree.parse(source).select("IBANK_DOCUMENT/DATA/SIGNER_LIST/IBANK_DOCUMENT_SIGN/DATA/KEY_ID");
+    }
+}
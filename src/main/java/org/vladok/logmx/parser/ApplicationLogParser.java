@@ -2,15 +2,28 @@ package org.vladok.logmx.parser;
 
 import com.lightysoft.logmx.business.ParsedEntry;
 import com.lightysoft.logmx.mgr.LogFileParser;
+import org.vladok.logmx.parser.index.TokenIndex;
+import org.vladok.logmx.parser.index.TokenIndexBuilder;
+import org.vladok.logmx.parser.spill.MessageBuffer;
+import org.vladok.logmx.parser.spill.MessageStore;
+import org.vladok.logmx.parser.spill.SpillFiles;
+import org.vladok.logmx.parser.spill.StoredMessage;
+import org.vladok.logmx.parser.stats.ParseCounters;
+import org.vladok.logmx.parser.stats.ParserStats;
+import org.vladok.logmx.parser.spill.SpilledText;
+import org.vladok.logmx.parser.udata.UDataCache;
+import org.vladok.logmx.parser.udata.UDataFieldExtractor;
 import org.vladok.logmx.parser.udata.UDataFormatter;
 
-import java.text.SimpleDateFormat;
-import java.util.Arrays;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * @author Vladislav Okulich-Kazarin
@@ -22,43 +35,184 @@ public class ApplicationLogParser extends LogFileParser {
     /** Current parsed log entry */
     private ParsedEntry entry = null;
 
-    /** Entry date format */
-    private static SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yy HH:mm:ss.SSS");
+    /** Entry date decoder (thread-safe, no locking) */
+    private static final EntryDateDecoder DATE_DECODER = new EntryDateDecoder();
 
-    /** Mutex to avoid that multiple threads use the same Date formatter at the same time */
-    private final Object DATE_FORMATTER_MUTEX = new Object();
+    /** Canonical thread names, shared by all entries (thread-safe, no locking) */
+    static final FieldDictionary THREADS = new FieldDictionary(1024);
 
-    /** Pattern for entry begin */
-    // 22-09-16 12:46:13.412 [main] INFO - Инициализация модулей...
-    private final static Pattern ENTRY_BEGIN_PATTERN = Pattern
-            .compile("^(?<timestamp>\\d{2}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}\\.\\d{3}) " +
-                    "\\[(?<thred>[^]]+)\\] " +
-                    "(?<level>[A-Z]+) - (?<message>.*)$");
+    /** Canonical levels */
+    static final FieldDictionary LEVELS = new FieldDictionary(16);
 
-    /** Buffer for Entry message (improves performance for multi-lines entries)  */
-    private StringBuilder entryMsgBuffer = null;
+    /** Buffer for Entry message (improves performance for multi-lines entries), spills giant entries to disk */
+    private MessageBuffer entryMsgBuffer = null;
 
     /** Key of user-defined field "formatted" */
     private static final String EXTRA_FORMATTED_FIELD_KEY = "Formatted";
 
-    /** User-defined fields names (here, only one) */
-    private static final List<String> EXTRA_FIELDS_KEYS = Arrays.asList(EXTRA_FORMATTED_FIELD_KEY);
+    /** Key of user-defined field with the repeat count and first-seen time of a folded message */
+    private static final String EXTRA_REPEATS_FIELD_KEY = "Repeats";
+
+    /** Key of user-defined field with the whole text of an entry kept in the message store */
+    private static final String EXTRA_BODY_FIELD_KEY = "Body";
+
+    /** Settings from system properties rainbow.parser.* */
+    static final ParserSettings SETTINGS = ParserSettings.fromSystemProperties();
+
+    /** Extracts business object TYPE and configured UData keys (immutable, thread-safe) */
+    private static final UDataFieldExtractor UDATA_FIELDS = new UDataFieldExtractor(SETTINGS.getUDataKeys());
+
+    /** Formatted UData shared by entries with the same payload (thread-safe) */
+    static final UDataCache UDATA_CACHE = new UDataCache(SETTINGS.getUDataCacheChars());
+
+    /** Parsing and formatting statistics of all parsers, exposed through JMX (thread-safe) */
+    static final ParserStats STATS = new ParserStats(THREADS, LEVELS, UDATA_CACHE);
+    static {
+        STATS.register();
+    }
+
+    /** User-defined fields names: formatted UData, business object TYPE and configured UData keys */
+    private static final List<String> EXTRA_FIELDS_KEYS = extraFieldsKeys();
+
+    /** User-defined fields names of this parser: shared ones and optionally the repeats and body fields */
+    private final List<String> extraFieldsKeys;
+
+    /** Initial capacity of the user-defined fields map, all fields fit without rehashing */
+    private final int extraFieldsCapacity;
+
+    /** UData worker threads, 0 - UData is processed by the reading thread and formatted lazily */
+    private final int udataThreads;
+
+    /** Entry message chars kept on heap, longer messages are spilled to a temporary file; 0 - no limit */
+    private final long entryMaxChars;
+
+    /** File the statistics are written to at end of parse, or null */
+    private final File statsFile;
+
+    /** Header predicates; rejected entries are skipped with their continuation lines. null - all entries */
+    private final EntryFilter filter;
+
+    /** Distinct multi-line messages remembered for folding, 0 - no folding */
+    private final int foldMessages;
+
+    /** Show the repeats field of folded messages */
+    private final boolean foldField;
+
+    /** Shares one message instance between entries with the same multi-line text, per parsed file */
+    private MessageFolder folder = null;
+
+    /** Keep multi-line bodies off-heap */
+    private final boolean storeMessages;
+
+    /** Off-heap bodies of the current parse, they stay readable until the next parse deletes them */
+    private MessageStore store = null;
+
+    /** Build the token index while parsing */
+    private final boolean indexTokens;
+
+    /** Token index of the current parse, by entry ordinal */
+    private TokenIndexBuilder tokens = null;
+
+    /** Token index of the last parsed file */
+    private TokenIndex tokenIndex = null;
+
+    /** Temporary files of the current or last parse, deleted when the next parse starts */
+    private SpillFiles spillFiles = null;
+
+    /** Line and entry counters of the current parse, added to STATS in batches */
+    private ParseCounters counters = null;
+
+    /** Entries handed to UData workers, created per parsed file (pipelined mode only) */
+    private EntryPipeline pipeline = null;
+
+    public ApplicationLogParser() {
+        this(SETTINGS);
+    }
+
+    /**
+     * @param settings настройки чтения записей; ключи UData и кеш форматирования общие
+     *                 и всегда берутся из системных свойств
+     */
+    ApplicationLogParser(ParserSettings settings) {
+        this.udataThreads = settings.getUDataThreads();
+        this.entryMaxChars = settings.getEntryMaxChars();
+        this.statsFile = settings.getStatsFile();
+        this.indexTokens = settings.isTokenIndex();
+        this.filter = settings.getEntryFilter();
+        this.foldMessages = settings.getFoldMessages();
+        this.foldField = foldMessages > 0 && settings.isFoldField();
+        this.storeMessages = settings.isStoreMessages();
+        if (foldField || storeMessages) {
+            List<String> keys = new ArrayList<String>(EXTRA_FIELDS_KEYS);
+            if (foldField) {
+                keys.add(EXTRA_REPEATS_FIELD_KEY);
+            }
+            if (storeMessages) {
+                keys.add(EXTRA_BODY_FIELD_KEY);
+            }
+            this.extraFieldsKeys = Collections.unmodifiableList(keys);
+        } else {
+            this.extraFieldsKeys = EXTRA_FIELDS_KEYS;
+        }
+        this.extraFieldsCapacity = extraFieldsKeys.size() * 4 / 3 + 1;
+    }
 
     protected void parseLine(String line) throws Exception {
+        if (counters == null) {
+            counters = new ParseCounters(STATS);
+            replaceSpillFiles();
+            if (indexTokens) {
+                tokens = new TokenIndexBuilder();
+            }
+            if (storeMessages) {
+                store = new MessageStore();
+                spillFiles.add(store);
+            }
+            if (foldMessages > 0) {
+                folder = new MessageFolder(foldMessages, store);
+            }
+        }
         // If end of file, records last entry if necessary, and exits
         if (line == null) {
             recordPreviousEntryIfExists();
+            if (pipeline != null) {
+                addProcessedEntries(0);
+                pipeline = null;
+            }
+            counters.finish();
+            counters = null;
+            folder = null;
+            if (store != null) {
+                store.close();
+                store = null;
+            }
+            dumpStats();
+            if (tokens != null) {
+                tokenIndex = tokens.build();
+                tokens = null;
+                storeTokenIndex();
+            }
             return;
         }
 
-        Matcher matcher = ENTRY_BEGIN_PATTERN.matcher(line);
-        if (matcher.matches()) {
+        // 22-09-16 12:46:13.412 [main] INFO - Инициализация модулей...
+        long header = EntryHeaderScanner.scan(line);
+        counters.line(header != EntryHeaderScanner.NO_MATCH);
+        if (header != EntryHeaderScanner.NO_MATCH) {
+            if (filter != null && ! filter.accept(line, header)) {
+                // Rejected entry: its lines are neither copied nor searched for UData
+                recordPreviousEntryIfExists();
+                entry = null;
+                entryMsgBuffer = null;
+                counters.filtered();
+                return;
+            }
             // Record previous found entry if exists, then create a new one
             prepareNewEntry();
-            entry.setDate(matcher.group("timestamp"));
-            entry.setLevel(matcher.group("level"));
-            entry.setThread(matcher.group("thred"));
-            entryMsgBuffer.append(matcher.group("message"));
+            entry.setDate(line.substring(0, EntryHeaderScanner.TIMESTAMP_LENGTH));
+            entry.setLevel(LEVELS.intern(line, EntryHeaderScanner.levelStart(header), EntryHeaderScanner.levelEnd(header)));
+            entry.setThread(THREADS.intern(line, EntryHeaderScanner.THREAD_START, EntryHeaderScanner.threadEnd(header)));
+            entryMsgBuffer.append(line, EntryHeaderScanner.messageStart(header), line.length());
         } else if (entry != null) {
             entryMsgBuffer.append('\n').append(line); // appends this line to previous entry's text
         }
@@ -72,7 +226,7 @@ public class ApplicationLogParser extends LogFileParser {
 
     @Override
     public List<String> getUserDefinedFields() {
-        return EXTRA_FIELDS_KEYS;
+        return extraFieldsKeys;
     }
 
     public Date getRelativeEntryDate(ParsedEntry parsedEntry) throws Exception {
@@ -80,9 +234,7 @@ public class ApplicationLogParser extends LogFileParser {
     }
 
     public Date getAbsoluteEntryDate(ParsedEntry parsedEntry) throws Exception {
-        synchronized (DATE_FORMATTER_MUTEX) { // Java date formatter is not thread-safe
-            return dateFormat.parse(parsedEntry.getDate());
-        }
+        return DATE_DECODER.parse(parsedEntry.getDate());
     }
 
     public String getParserName() {
@@ -93,23 +245,118 @@ public class ApplicationLogParser extends LogFileParser {
         return "*.log";
     }
 
+    private static List<String> extraFieldsKeys() {
+        List<String> keys = new ArrayList<String>();
+        keys.add(EXTRA_FORMATTED_FIELD_KEY);
+        keys.add(UDataFieldExtractor.TYPE_FIELD);
+        keys.addAll(SETTINGS.getUDataKeys());
+        return Collections.unmodifiableList(keys);
+    }
+
     /**
-     * Пытаемся сформатировать UData, если UData не найдена, возвращаем null
+     * Извлекаем тип и настроенные ключи UData в отдельные поля. Начало UData найдено при чтении строк,
+     * записи без UData не просматриваются.
+     * Для записи во временном файле поля ищутся в начале текста, а UData форматируется потоком из файла
      *
-     * @param message сообщение
-     * @return форматированное сообщение или null
+     * @param message    сообщение
+     * @param udataStart смещение первого бизнес-объекта или -1
+     * @param spilled    полный текст во временном файле или null
+     * @param files      временные файлы разбора, куда попадет отформатированный текст записи из файла
+     * @param fields     пользовательские поля записи
+     * @param extracted  тип и ключи уже извлечены вместе с парами для индекса слов
+     * @param format     форматировать сразу; иначе форматирование откладывается до первого обращения к полю
      */
-    private String formatUData(String message) {
-        if (message == null)
-            return null;
-        // Не содержит UData
-        if ( ! message.contains("[ TYPE: '")) {
-            return null;
+    private static void extractUData(String message, long udataStart, SpilledText spilled, SpillFiles files,
+                                     Map<String, Object> fields, boolean extracted, boolean format) {
+        if (udataStart < 0) {
+            return;
         }
-        try {
-            return UDataFormatter.format(message);
-        } catch (Exception e) {
-            return "<UDataFormatterException>";
+        STATS.udataEntry();
+        if (spilled != null) {
+            if ( ! extracted) {
+                UDATA_FIELDS.extract(message, fields);
+            }
+            fields.put(EXTRA_FORMATTED_FIELD_KEY, new SpilledUData(spilled, files));
+        } else {
+            if ( ! extracted) {
+                UDATA_FIELDS.extract(message, (int) udataStart, fields);
+            }
+            FormattedUData formatted = new FormattedUData(message, (int) udataStart, UDATA_CACHE);
+            if (format) {
+                formatted.toString();
+            }
+            fields.put(EXTRA_FORMATTED_FIELD_KEY, formatted);
+        }
+    }
+
+    /**
+     * Delete temporary files of the previous parse of this parser: LogMX reloads a log with the parser of its view
+     * and has discarded the previous entries. Another view of the same log has its own parser and keeps its files
+     */
+    private void replaceSpillFiles() {
+        SpillFiles previous = spillFiles;
+        spillFiles = new SpillFiles();
+        if (previous != null) {
+            previous.delete();
+        }
+    }
+
+    /**
+     * Write the statistics to the configured file
+     */
+    private void dumpStats() {
+        if (statsFile != null) {
+            try {
+                STATS.dump(statsFile);
+            } catch (IOException e) {
+                // Статистика не должна мешать открытию лога
+            }
+        }
+    }
+
+    /**
+     * Write the token index next to the parsed file, keyed by every indexed file and the entry filter
+     */
+    private void storeTokenIndex() {
+        String fileName = getParsedFileName();
+        if (fileName != null) {
+            try {
+                tokenIndex.store(TokenIndex.sidecarFor(new File(fileName)), getIndexedFiles(),
+                        filter == null ? TokenIndex.NO_FILTER : filter.signature());
+            } catch (IOException e) {
+                // Каталог лога может быть только для чтения - индекс остается в памяти
+            }
+        }
+    }
+
+    /**
+     * @return files the entries of the last parse were read from; the index is valid while none of them changes
+     */
+    List<File> getIndexedFiles() {
+        String fileName = getParsedFileName();
+        return fileName == null ? Collections.<File>emptyList() : Collections.singletonList(new File(fileName));
+    }
+
+    /**
+     * Индекс слов строится при {@link ParserSettings#TOKEN_INDEX}. Номер записи в индексе - ее порядковый номер
+     * среди записей, переданных в LogMX при последнем разборе, начиная с 0. Индекс заменяется в конце
+     * каждого разбора, во время разбора возвращается индекс предыдущего.
+     *
+     * @return индекс слов последнего разобранного файла или null, если он не строится
+     */
+    public TokenIndex getTokenIndex() {
+        return tokenIndex;
+    }
+
+    /**
+     * Send to LogMX entries processed by UData workers, in the order they were read
+     *
+     * @param limit how many entries may stay in progress
+     * @throws Exception
+     */
+    private void addProcessedEntries(int limit) throws Exception {
+        for (ParsedEntry processed = pipeline.next(limit); processed != null; processed = pipeline.next(limit)) {
+            addEntry(processed);
         }
     }
 
@@ -120,11 +367,58 @@ public class ApplicationLogParser extends LogFileParser {
      */
     private void recordPreviousEntryIfExists() throws Exception {
         if (entry != null) {
-            entry.setMessage(entryMsgBuffer.toString());
-            String formattedUdata = formatUData(entry.getMessage());
-            if (formattedUdata != null)
-                entry.getUserDefinedFields().put(EXTRA_FORMATTED_FIELD_KEY, formattedUdata);
-            addEntry(entry);
+            // Whole text of the entry, the message may hold only its first line
+            CharSequence text;
+            RepeatedMessage repeated = folder != null ? folder.fold(entryMsgBuffer, entry.getDate()) : null;
+            if (repeated != null) {
+                // Same multi-line text as an earlier entry: the message is shared, not copied
+                entry.setMessage(repeated.getMessage());
+                text = repeated.getText();
+                if (repeated.getBody() != null) {
+                    entry.getUserDefinedFields().put(EXTRA_BODY_FIELD_KEY, repeated.getBody());
+                }
+                if (repeated.getCount() > 1) {
+                    counters.folded();
+                }
+                if (foldField) {
+                    entry.getUserDefinedFields().put(EXTRA_REPEATS_FIELD_KEY, repeated);
+                }
+            } else if (store != null && store.accepts(entryMsgBuffer)) {
+                // The body goes off-heap, only its first line stays in the message
+                StoredMessage body = store.add(entryMsgBuffer);
+                entry.setMessage(entryMsgBuffer.firstLine());
+                entry.getUserDefinedFields().put(EXTRA_BODY_FIELD_KEY, body);
+                text = body;
+            } else {
+                entry.setMessage(entryMsgBuffer.toMessage());
+                text = entry.getMessage();
+            }
+            counters.entry(entryMsgBuffer.length(), entryMsgBuffer.isSpilled());
+            if (entryMsgBuffer.isSpilled()) {
+                spillFiles.add(entryMsgBuffer.getSpilled());
+            }
+            boolean extracted = false;
+            if (tokens != null) {
+                tokens.addWords(text);
+                if (entryMsgBuffer.getUDataStart() >= 0) {
+                    // UData fields and index pairs come from one pass; only the preview of a spilled entry is indexed
+                    String message = entry.getMessage();
+                    UDATA_FIELDS.extract(message, entryMsgBuffer.isSpilled()
+                            ? message.indexOf(UDataFormatter.BUSINESS_OBJ_BEGINNING)
+                            : (int) entryMsgBuffer.getUDataStart(), entry.getUserDefinedFields(), tokens.pairs());
+                    extracted = true;
+                }
+            }
+            if (pipeline != null) {
+                // Wait for the oldest entry if too many are in progress (back-pressure)
+                addProcessedEntries(pipeline.getMaxInFlight() - 1);
+                pipeline.submit(new UDataTask(entry, entryMsgBuffer.getUDataStart(), entryMsgBuffer.getSpilled(),
+                        spillFiles, extracted));
+            } else {
+                extractUData(entry.getMessage(), entryMsgBuffer.getUDataStart(), entryMsgBuffer.getSpilled(),
+                        spillFiles, entry.getUserDefinedFields(), extracted, false);
+                addEntry(entry);
+            }
         }
     }
 
@@ -134,8 +428,43 @@ public class ApplicationLogParser extends LogFileParser {
      */
     private void prepareNewEntry() throws Exception {
         recordPreviousEntryIfExists();
+        if (pipeline == null && udataThreads > 0) {
+            pipeline = new EntryPipeline(udataThreads);
+        }
         entry = createNewEntry();
-        entryMsgBuffer = new StringBuilder(80);
-        entry.setUserDefinedFields(new HashMap<String, Object>(1)); // Create an empty Map with only one element allocated
+        entryMsgBuffer = new MessageBuffer(entryMaxChars);
+        entry.setUserDefinedFields(new HashMap<String, Object>(extraFieldsCapacity));
+    }
+
+    /**
+     * Обработка UData записи в потоке пула: поля и отформатированное сообщение готовы
+     * к моменту передачи записи в LogMX
+     */
+    private static final class UDataTask implements Callable<ParsedEntry> {
+
+        private final ParsedEntry entry;
+
+        private final long udataStart;
+
+        private final SpilledText spilled;
+
+        private final SpillFiles files;
+
+        private final boolean extracted;
+
+        UDataTask(ParsedEntry entry, long udataStart, SpilledText spilled, SpillFiles files, boolean extracted) {
+            this.entry = entry;
+            this.udataStart = udataStart;
+            this.spilled = spilled;
+            this.files = files;
+            this.extracted = extracted;
+        }
+
+        @Override
+        public ParsedEntry call() {
+            extractUData(entry.getMessage(), udataStart, spilled, files, entry.getUserDefinedFields(), extracted,
+                    true);
+            return entry;
+        }
     }
 }
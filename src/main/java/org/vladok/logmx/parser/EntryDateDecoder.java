@@ -0,0 +1,170 @@
+package org.vladok.logmx.parser;
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Потокобезопасный декодер метки времени записи фиксированного формата dd-MM-yy HH:mm:ss.SSS.
+ * Результат совпадает с {@code new SimpleDateFormat("dd-MM-yy HH:mm:ss.SSS").parse(...)},
+ * включая снисходительный (lenient) разбор и окно двузначного года.
+ * <p>
+ * Начало текущего дня кэшируется в неизменяемом объекте, поэтому для соседних записей
+ * вычисление сводится к нескольким арифметическим операциям без блокировок.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 11:20
+ */
+public final class EntryDateDecoder {
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    private final TimeZone timeZone;
+    private final Locale locale;
+    /** Начало окна двузначного года (как в SimpleDateFormat: 80 лет назад от момента создания) */
+    private final long defaultCenturyStart;
+    private final int defaultCenturyStartYear;
+
+    /** Последний использованный день */
+    private volatile Day lastDay;
+
+    public EntryDateDecoder() {
+        this(TimeZone.getDefault(), Locale.getDefault());
+    }
+
+    public EntryDateDecoder(TimeZone timeZone, Locale locale) {
+        this.timeZone = (TimeZone) timeZone.clone();
+        this.locale = locale;
+        Calendar calendar = newCalendar();
+        calendar.setTimeInMillis(System.currentTimeMillis());
+        calendar.add(Calendar.YEAR, -80);
+        this.defaultCenturyStart = calendar.getTimeInMillis();
+        this.defaultCenturyStartYear = calendar.get(Calendar.YEAR);
+    }
+
+    /**
+     * @param timestamp метка времени в формате dd-MM-yy HH:mm:ss.SSS
+     * @return дата
+     * @throws ParseException если строка не соответствует формату
+     */
+    public Date parse(CharSequence timestamp) throws ParseException {
+        return new Date(decode(timestamp));
+    }
+
+    /**
+     * @param timestamp метка времени в формате dd-MM-yy HH:mm:ss.SSS
+     * @return количество миллисекунд с начала эпохи
+     * @throws ParseException если строка не соответствует формату
+     */
+    public long decode(CharSequence timestamp) throws ParseException {
+        if (timestamp.length() < EntryHeaderScanner.TIMESTAMP_LENGTH) {
+            throw new ParseException("Unparseable date: \"" + timestamp + "\"", timestamp.length());
+        }
+        int day = twoDigits(timestamp, 0);
+        int month = twoDigits(timestamp, 3);
+        int year = twoDigits(timestamp, 6);
+        int hour = twoDigits(timestamp, 9);
+        int minute = twoDigits(timestamp, 12);
+        int second = twoDigits(timestamp, 15);
+        int millisHigh = twoDigits(timestamp, 18);
+        int millisLow = digit(timestamp, 20);
+        if (day < 0 || month < 0 || year < 0 || hour < 0 || minute < 0 || second < 0 || millisHigh < 0 || millisLow < 0
+                || timestamp.charAt(2) != '-' || timestamp.charAt(5) != '-' || timestamp.charAt(8) != ' '
+                || timestamp.charAt(11) != ':' || timestamp.charAt(14) != ':' || timestamp.charAt(17) != '.') {
+            throw new ParseException("Unparseable date: \"" + timestamp + "\"", 0);
+        }
+        int millis = millisHigh * 10 + millisLow;
+        int dayKey = (year * 100 + month) * 100 + day;
+        long timeOfDay = hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE + second * MILLIS_PER_SECOND + millis;
+        Day cached = lastDay;
+        if (cached != null && cached.key == dayKey && cached.uniform && hour < 24 && minute < 60 && second < 60) {
+            return cached.start + timeOfDay;
+        }
+        return decodeSlow(dayKey, year, month, day, hour, minute, second, millis);
+    }
+
+    /**
+     * Вычисление через Calendar: при смене дня, при переходе на летнее/зимнее время
+     * и при значениях полей вне допустимых диапазонов (lenient)
+     */
+    private long decodeSlow(int dayKey, int year, int month, int day, int hour, int minute, int second, int millis) {
+        int fullYear = fullYear(year);
+        long result = compute(fullYear, month, day, hour, minute, second, millis);
+        if (year == defaultCenturyStartYear % 100) {
+            // Неоднозначный год: век зависит от момента внутри дня, такие дни не кэшируем
+            if (result < defaultCenturyStart) {
+                result = compute(fullYear + 100, month, day, hour, minute, second, millis);
+            }
+            return result;
+        }
+        Day cached = lastDay;
+        if (cached == null || cached.key != dayKey) {
+            long start = compute(fullYear, month, day, 0, 0, 0, 0);
+            long next = compute(fullYear, month, day + 1, 0, 0, 0, 0);
+            boolean uniform = next - start == MILLIS_PER_DAY
+                    && timeZone.getOffset(start) == timeZone.getOffset(next - 1);
+            lastDay = new Day(dayKey, start, uniform);
+        }
+        return result;
+    }
+
+    /**
+     * Двузначный год в полный по правилам SimpleDateFormat
+     */
+    private int fullYear(int year) {
+        int ambiguousTwoDigitYear = defaultCenturyStartYear % 100;
+        return year + (defaultCenturyStartYear / 100) * 100 + (year < ambiguousTwoDigitYear ? 100 : 0);
+    }
+
+    private long compute(int year, int month, int day, int hour, int minute, int second, int millis) {
+        Calendar calendar = newCalendar();
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        calendar.set(Calendar.MILLISECOND, millis);
+        return calendar.getTimeInMillis();
+    }
+
+    private Calendar newCalendar() {
+        Calendar calendar = Calendar.getInstance(timeZone, locale);
+        calendar.setLenient(true);
+        return calendar;
+    }
+
+    /**
+     * @return значение двух цифр начиная с pos или -1
+     */
+    private static int twoDigits(CharSequence s, int pos) {
+        int high = digit(s, pos);
+        int low = digit(s, pos + 1);
+        return (high < 0 || low < 0) ? -1 : high * 10 + low;
+    }
+
+    private static int digit(CharSequence s, int pos) {
+        char ch = s.charAt(pos);
+        return (ch >= '0' && ch <= '9') ? ch - '0' : -1;
+    }
+
+    /**
+     * Кэшированное начало дня
+     */
+    private static final class Day {
+        /** yyMMdd */
+        final int key;
+        /** Начало дня */
+        final long start;
+        /** В течение дня не меняется смещение часового пояса */
+        final boolean uniform;
+
+        Day(int key, long start, boolean uniform) {
+            this.key = key;
+            this.start = start;
+            this.uniform = uniform;
+        }
+    }
+}
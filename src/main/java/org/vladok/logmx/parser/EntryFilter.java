@@ -0,0 +1,145 @@
+package org.vladok.logmx.parser;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Фильтр записей по полям заголовка: уровню, потоку и интервалу времени. Проверяется сразу после
+ * распознавания строки заголовка, по границам полей в самой строке, без создания строк.
+ * Отброшенная запись не копируется в буфер сообщения, ее строки-продолжения пропускаются,
+ * UData не ищется и не форматируется, поэтому время открытия и память зависят только от подходящих записей.
+ * <p>
+ * Неизменяем и потокобезопасен.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 22:40
+ */
+public final class EntryFilter {
+
+    /** Дополнение неполного начала интервала: 22-09-16 12:40 - с 12:40:00.000 */
+    private static final String FROM_TEMPLATE = "01-01-70 00:00:00.000";
+
+    /** Дополнение неполного конца интервала: 22-09-16 12:49 - по 12:49:59.999 включительно */
+    private static final String TO_TEMPLATE = "31-12-99 23:59:59.999";
+
+    /** Допустимые длины границы интервала: dd-MM-yy, HH, HH:mm, HH:mm:ss и полная метка времени */
+    private static final int[] BOUND_LENGTHS = {8, 11, 14, 17, 21};
+
+    private static final EntryDateDecoder DATE_DECODER = new EntryDateDecoder();
+
+    /** Уровни без учета регистра или null - любой уровень */
+    private final String[] levels;
+
+    /** Потоки или null - любой поток */
+    private final String[] threads;
+
+    private final long from;
+
+    private final long to;
+
+    /**
+     * @param levels  допустимые уровни, пустой - любой
+     * @param threads допустимые потоки, пустой - любой
+     * @param from    начало интервала в миллисекундах, включительно; {@link Long#MIN_VALUE} - без начала
+     * @param to      конец интервала в миллисекундах, включительно; {@link Long#MAX_VALUE} - без конца
+     */
+    public EntryFilter(Collection<String> levels, Collection<String> threads, long from, long to) {
+        this.levels = levels.isEmpty() ? null : levels.toArray(new String[levels.size()]);
+        this.threads = threads.isEmpty() ? null : threads.toArray(new String[threads.size()]);
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @return true, если фильтр пропускает все записи
+     */
+    public boolean isEmpty() {
+        return levels == null && threads == null && from == Long.MIN_VALUE && to == Long.MAX_VALUE;
+    }
+
+    /**
+     * @param line   строка заголовка записи
+     * @param header границы полей заголовка из {@link EntryHeaderScanner#scan(CharSequence)}
+     * @return true, если запись подходит
+     */
+    public boolean accept(String line, long header) {
+        if (levels != null && ! matches(levels, true, line,
+                EntryHeaderScanner.levelStart(header), EntryHeaderScanner.levelEnd(header))) {
+            return false;
+        }
+        if (threads != null && ! matches(threads, false, line,
+                EntryHeaderScanner.THREAD_START, EntryHeaderScanner.threadEnd(header))) {
+            return false;
+        }
+        if (from != Long.MIN_VALUE || to != Long.MAX_VALUE) {
+            long time;
+            try {
+                time = DATE_DECODER.decode(line);
+            } catch (ParseException e) {
+                return false;
+            }
+            return time >= from && time <= to;
+        }
+        return true;
+    }
+
+    /**
+     * Граница интервала в формате записей dd-MM-yy HH:mm:ss.SSS, недостающая часть времени дополняется.
+     * Граница обрывается только на конце поля: часть поля ("22-09-16 1") дополнилась бы цифрами
+     * шаблона и дала бы другой час
+     *
+     * @param value дата, дата с часом, минутой, секундой или полная метка времени
+     * @param end   true для конца интервала: дополняется концом минуты, часа или дня
+     * @return миллисекунды
+     * @throws ParseException если граница не в формате записей
+     */
+    static long parseBound(String value, boolean end) throws ParseException {
+        String template = end ? TO_TEMPLATE : FROM_TEMPLATE;
+        if (Arrays.binarySearch(BOUND_LENGTHS, value.length()) < 0) {
+            throw new ParseException("Unparseable date: \"" + value + "\"", 0);
+        }
+        return DATE_DECODER.decode(value + template.substring(value.length()));
+    }
+
+    /**
+     * Признак фильтра для сохраненных результатов разбора (индекса слов): у фильтров, пропускающих
+     * одни и те же записи при одинаковых настройках, признак одинаков независимо от порядка уровней и потоков
+     *
+     * @return уровни, потоки и интервал в каноническом виде
+     */
+    public String signature() {
+        return "levels=" + canonical(levels, true) + ";threads=" + canonical(threads, false)
+                + ";from=" + from + ";to=" + to;
+    }
+
+    private static String canonical(String[] values, boolean ignoreCase) {
+        if (values == null) {
+            return "*";
+        }
+        String[] sorted = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            sorted[i] = ignoreCase ? values[i].toUpperCase(Locale.ROOT) : values[i];
+        }
+        Arrays.sort(sorted);
+        return Arrays.toString(sorted);
+    }
+
+    private static boolean matches(String[] values, boolean ignoreCase, String line, int start, int end) {
+        for (String value : values) {
+            if (value.length() == end - start && line.regionMatches(ignoreCase, start, value, 0, value.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "EntryFilter{levels=" + (levels == null ? "*" : Arrays.toString(levels))
+                + ", threads=" + (threads == null ? "*" : Arrays.toString(threads))
+                + ", from=" + from + ", to=" + to + "}";
+    }
+}
@@ -0,0 +1,121 @@
+package org.vladok.logmx.parser;
+
+/**
+ * Распознает строку заголовка записи лога фиксированного формата:
+ * <pre>22-09-16 12:46:13.412 [main] INFO - Инициализация модулей...</pre>
+ * Заменяет регулярное выражение вида
+ * <pre>^(\d{2}-\d{2}-\d{2} \d{2}:\d{2}:\d{2}\.\d{3}) \[([^]]+)\] ([A-Z]+) - (.*)$</pre>
+ * и принимает/отклоняет ровно те же строки.
+ * Строки-продолжения (стектрейсы, многострочные UData) отсекаются после проверки нескольких фиксированных позиций.
+ * <p>
+ * Границы полей возвращаются упакованными в long, поэтому сканер не хранит состояния и ничего не аллоцирует.
+ * Парсер LogMX клонирует поверхностно, и общее изменяемое состояние здесь было бы ошибкой.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 10:05
+ */
+public final class EntryHeaderScanner {
+
+    /** Длина метки времени: dd-MM-yy HH:mm:ss.SSS */
+    public static final int TIMESTAMP_LENGTH = 21;
+
+    /** Начало имени потока: метка времени, пробел и [ */
+    public static final int THREAD_START = TIMESTAMP_LENGTH + 2;
+
+    /** Минимальная длина заголовка: "dd-MM-yy HH:mm:ss.SSS [t] L - " */
+    private static final int MIN_HEADER_LENGTH = THREAD_START + 1 + 2 + 1 + 3;
+
+    /** Результат для строки, не являющейся заголовком */
+    public static final long NO_MATCH = -1L;
+
+    private EntryHeaderScanner() {
+    }
+
+    /**
+     * Проверяет, является ли строка заголовком записи
+     *
+     * @param line строка лога
+     * @return упакованные границы полей или {@link #NO_MATCH}, если строка не является заголовком
+     */
+    public static long scan(CharSequence line) {
+        int length = line.length();
+        if (length < MIN_HEADER_LENGTH) {
+            return NO_MATCH;
+        }
+        // Сначала фиксированные разделители - на них отсекается большинство строк-продолжений
+        if (line.charAt(2) != '-' || line.charAt(5) != '-' || line.charAt(8) != ' '
+                || line.charAt(11) != ':' || line.charAt(14) != ':' || line.charAt(17) != '.'
+                || line.charAt(TIMESTAMP_LENGTH) != ' ' || line.charAt(TIMESTAMP_LENGTH + 1) != '[') {
+            return NO_MATCH;
+        }
+        if ( ! isDigits(line, 0, 2) || ! isDigits(line, 3, 5) || ! isDigits(line, 6, 8) || ! isDigits(line, 9, 11)
+                || ! isDigits(line, 12, 14) || ! isDigits(line, 15, 17) || ! isDigits(line, 18, TIMESTAMP_LENGTH)) {
+            return NO_MATCH;
+        }
+        // [^]]+ - имя потока до первой ], не пустое
+        int i = THREAD_START;
+        while (i < length && line.charAt(i) != ']') {
+            ++i;
+        }
+        if (i == THREAD_START || i + 1 >= length || line.charAt(i + 1) != ' ') {
+            return NO_MATCH;
+        }
+        int threadEnd = i;
+        // [A-Z]+ - уровень, за которым идет " - "
+        i += 2;
+        int levelStart = i;
+        while (i < length && line.charAt(i) >= 'A' && line.charAt(i) <= 'Z') {
+            ++i;
+        }
+        if (i == levelStart || i + 3 > length
+                || line.charAt(i) != ' ' || line.charAt(i + 1) != '-' || line.charAt(i + 2) != ' ') {
+            return NO_MATCH;
+        }
+        int levelEnd = i;
+        // .* - сообщение не может содержать разделителей строк
+        for (i += 3; i < length; i++) {
+            if (isLineTerminator(line.charAt(i))) {
+                return NO_MATCH;
+            }
+        }
+        return ((long) threadEnd << 32) | levelEnd;
+    }
+
+    /** @return конец имени потока (не включительно) */
+    public static int threadEnd(long bounds) {
+        return (int) (bounds >>> 32);
+    }
+
+    /** @return начало уровня */
+    public static int levelStart(long bounds) {
+        return threadEnd(bounds) + 2;
+    }
+
+    /** @return конец уровня (не включительно) */
+    public static int levelEnd(long bounds) {
+        return (int) bounds;
+    }
+
+    /** @return начало сообщения */
+    public static int messageStart(long bounds) {
+        return levelEnd(bounds) + 3;
+    }
+
+    private static boolean isDigits(CharSequence line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char ch = line.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Символы, которые не совпадают с '.' в регулярных выражениях Java без флагов DOTALL и UNIX_LINES
+     */
+    private static boolean isLineTerminator(char ch) {
+        return ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
+    }
+}
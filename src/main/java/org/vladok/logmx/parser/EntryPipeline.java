@@ -0,0 +1,144 @@
+package org.vladok.logmx.parser;
+
+import com.lightysoft.logmx.business.ParsedEntry;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Конвейер обработки записей: поток чтения отдает готовую запись пулу потоков
+ * (поиск UData, извлечение полей, форматирование), а записи возвращаются строго в порядке отдачи.
+ * <p>
+ * В работе одновременно не больше {@link #getMaxInFlight()} записей: когда очередь заполнена,
+ * {@link #next(int)} ждет самую старую запись, и поток чтения не уходит вперед обработки,
+ * поэтому память ограничена независимо от размера файла.
+ * <p>
+ * Пулы потоков общие для всех парсеров с одинаковым числом потоков, потоки - демоны,
+ * чтобы не мешать завершению LogMX. Сам конвейер не потокобезопасен: им пользуется только поток чтения.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 14:10
+ */
+final class EntryPipeline {
+
+    /** Записей в работе на каждый поток пула */
+    static final int IN_FLIGHT_PER_THREAD = 64;
+
+    /** Общие пулы по числу потоков */
+    private static final Map<Integer, ExecutorService> WORKERS = new HashMap<Integer, ExecutorService>();
+
+    private final ExecutorService workers;
+
+    private final int maxInFlight;
+
+    /** Отданные пулу записи в порядке отдачи */
+    private final ArrayDeque<Future<ParsedEntry>> inFlight;
+
+    /**
+     * @param threads потоков обработки, больше 0
+     */
+    EntryPipeline(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Число потоков должно быть больше 0: " + threads);
+        }
+        this.workers = workers(threads);
+        this.maxInFlight = threads * IN_FLIGHT_PER_THREAD;
+        this.inFlight = new ArrayDeque<Future<ParsedEntry>>(maxInFlight);
+    }
+
+    /**
+     * Отдает запись в обработку
+     *
+     * @param task обработка, возвращает обработанную запись
+     */
+    void submit(Callable<ParsedEntry> task) {
+        inFlight.add(workers.submit(task));
+    }
+
+    /**
+     * Следующая по порядку обработанная запись. Если в работе больше limit записей,
+     * ждет самую старую, иначе возвращает ее, только если она уже готова
+     *
+     * @param limit сколько записей может остаться в работе
+     * @return обработанная запись или null
+     * @throws Exception ошибка обработки записи
+     */
+    ParsedEntry next(int limit) throws Exception {
+        Future<ParsedEntry> head = inFlight.peek();
+        if (head == null || (inFlight.size() <= limit && ! head.isDone())) {
+            return null;
+        }
+        inFlight.poll();
+        try {
+            return head.get();
+        } catch (ExecutionException e) {
+            cancel();
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Отменяет записи, которые еще в работе
+     */
+    void cancel() {
+        for (Future<ParsedEntry> future : inFlight) {
+            future.cancel(false);
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * @return сколько записей может быть в работе одновременно
+     */
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @return сколько записей сейчас в работе
+     */
+    int size() {
+        return inFlight.size();
+    }
+
+    private static synchronized ExecutorService workers(int threads) {
+        ExecutorService pool = WORKERS.get(threads);
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(threads, new WorkerFactory());
+            WORKERS.put(threads, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Потоки-демоны с понятными в дампе потоков именами
+     */
+    private static final class WorkerFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOLS = new AtomicInteger();
+
+        private final String prefix = "rainbow-udata-" + POOLS.incrementAndGet() + "-";
+
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.vladok.logmx.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ограниченный словарь повторяющихся значений полей (имя потока, уровень): все записи ссылаются
+ * на один экземпляр строки вместо своей подстроки. В логе миллионы записей, но лишь сотни
+ * различных потоков и пять уровней.
+ * <p>
+ * Поиск идет прямо по участку строки лога, подстрока создается только при промахе.
+ * Таблица с открытой адресацией фиксированного размера: при заполнении окрестности слота
+ * значение вытесняет старое, поэтому память ограничена, а словарь подстраивается под текущие значения.
+ * Потокобезопасен без блокировок - экземпляры парсера, созданные LogMX клонированием, делят один словарь.
+ * <p>
+ * Найденное значение только читается из таблицы: промахи считаются при вставке, а количество поисков
+ * вызывающий добавляет пачками через {@link #addLookups(long)}, поэтому потоки не пишут в общий счетчик
+ * на каждой записи.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 09:20
+ */
+public final class FieldDictionary {
+
+    /** Сколько соседних слотов проверяется при поиске */
+    private static final int PROBES = 4;
+
+    private final AtomicReferenceArray<String> table;
+
+    private final int mask;
+
+    /** Поиски, учтенные вызывающими */
+    private final AtomicLong lookups = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param capacity максимальное количество значений, округляется вверх до степени двойки
+     */
+    public FieldDictionary(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер словаря должен быть положительным: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        table = new AtomicReferenceArray<String>(Math.max(size, PROBES));
+        mask = table.length() - 1;
+    }
+
+    /**
+     * @return канонический экземпляр строки, равной source[from, to)
+     */
+    public String intern(CharSequence source, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        // Хеш совпадает с String.hashCode(), который строка кеширует у себя
+        int start = spread(hash) & mask;
+        for (int probe = 0; probe < PROBES; probe++) {
+            int slot = (start + probe) & mask;
+            String value = table.get(slot);
+            if (value == null) {
+                return add(slot, source, from, to);
+            }
+            if (value.hashCode() == hash && equals(value, source, from, to)) {
+                return value;
+            }
+        }
+        // Окрестность занята - вытесняем значение из первого слота
+        return add(start, source, from, to);
+    }
+
+    private String add(int slot, CharSequence source, int from, int to) {
+        misses.incrementAndGet();
+        String value = source.subSequence(from, to).toString();
+        table.set(slot, value);
+        return value;
+    }
+
+    /**
+     * Учитывает поиски, сделанные вызывающим с прошлого раза
+     *
+     * @param count количество вызовов {@link #intern(CharSequence, int, int)}
+     */
+    public void addLookups(long count) {
+        lookups.addAndGet(count);
+    }
+
+    /**
+     * @return количество значений, найденных в словаре, из учтенных поисков
+     */
+    public long getHits() {
+        return Math.max(lookups.get() - misses.get(), 0);
+    }
+
+    /**
+     * @return количество значений, которых не было в словаре
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return доля найденных значений от 0 до 1
+     */
+    public double getHitRate() {
+        long total = lookups.get();
+        return total == 0 ? 0 : (double) getHits() / total;
+    }
+
+    /**
+     * @return количество значений в словаре
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < table.length(); i++) {
+            if (table.get(i) != null) {
+                ++size;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "FieldDictionary{size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + "}";
+    }
+
+    private static boolean equals(String value, CharSequence source, int from, int to) {
+        if (value.length() != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (value.charAt(i - from) != source.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,130 @@
+package org.vladok.logmx.parser;
+
+import org.vladok.logmx.parser.stats.FormatCounters;
+import org.vladok.logmx.parser.udata.UDataCache;
+import org.vladok.logmx.parser.udata.UDataFormatter;
+
+import java.lang.ref.SoftReference;
+
+/**
+ * Значение поля "Formatted": UData форматируется при первом обращении к {@link #toString()},
+ * результат хранится по мягкой ссылке и при нехватке памяти будет вычислен заново.
+ * LogMX отображает значения пользовательских полей через toString().
+ * Повторяющаяся UData берется из общего {@link UDataCache}. Время форматирования и ошибки
+ * учитываются в статистике парсера.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 13:15
+ */
+public final class FormattedUData {
+
+    /** Значение, которое показывается если форматирование не удалось */
+    public static final String FORMATTER_ERROR = "<UDataFormatterException>";
+
+    /** Исходное сообщение, оно и так хранится в записи */
+    private final String message;
+
+    /** Кеш отформатированной UData или null */
+    private final UDataCache cache;
+
+    /** Смещение первого бизнес-объекта в сообщении или -1 */
+    private final int udataStart;
+
+    /** Отформатированное сообщение */
+    private volatile SoftReference<String> formatted;
+
+    public FormattedUData(String message) {
+        this(message, null);
+    }
+
+    /**
+     * @param message сообщение с UData
+     * @param cache   кеш отформатированной UData, общий для записей, или null
+     */
+    public FormattedUData(String message, UDataCache cache) {
+        this(message, message.indexOf(UDataFormatter.BUSINESS_OBJ_BEGINNING), cache);
+    }
+
+    /**
+     * @param message    сообщение с UData
+     * @param udataStart смещение первого бизнес-объекта, найденное при чтении записи
+     * @param cache      кеш отформатированной UData, общий для записей, или null
+     */
+    public FormattedUData(String message, int udataStart, UDataCache cache) {
+        this.message = message;
+        this.udataStart = udataStart;
+        this.cache = cache;
+    }
+
+    /**
+     * @return true, если отформатированное сообщение сейчас в памяти
+     */
+    boolean isFormatted() {
+        SoftReference<String> ref = formatted;
+        return ref != null && ref.get() != null;
+    }
+
+    @Override
+    public String toString() {
+        SoftReference<String> ref = formatted;
+        String result = ref != null ? ref.get() : null;
+        if (result == null) {
+            result = format(message, udataStart, cache);
+            formatted = new SoftReference<String>(result);
+        }
+        return result;
+    }
+
+    /**
+     * @return отформатированное сообщение или {@link #FORMATTER_ERROR}
+     */
+    public static String format(String message, UDataCache cache) {
+        return format(message, message.indexOf(UDataFormatter.BUSINESS_OBJ_BEGINNING), cache);
+    }
+
+    /**
+     * @param udataStart смещение первого бизнес-объекта или -1
+     * @return отформатированное сообщение или {@link #FORMATTER_ERROR}
+     */
+    public static String format(String message, int udataStart, UDataCache cache) {
+        return format(message, udataStart, cache, null);
+    }
+
+    /**
+     * @param udataStart смещение первого бизнес-объекта или -1
+     * @param cache      кеш отформатированной UData или null
+     * @param counters   счетчики форматирования потока пакетного разбора ({@link #newCounters()})
+     *                   или null - время и ошибки сразу учитываются в статистике парсера
+     * @return отформатированное сообщение или {@link #FORMATTER_ERROR}
+     */
+    public static String format(String message, int udataStart, UDataCache cache, FormatCounters counters) {
+        if (udataStart < 0) {
+            return message;
+        }
+        long start = System.nanoTime();
+        try {
+            return cache != null ? cache.format(message, udataStart) : UDataFormatter.format(message, udataStart);
+        } catch (Exception e) {
+            if (counters != null) {
+                counters.formatError();
+            } else {
+                ApplicationLogParser.STATS.formatError();
+            }
+            return FORMATTER_ERROR;
+        } finally {
+            if (counters != null) {
+                counters.formatted(System.nanoTime() - start);
+            } else {
+                ApplicationLogParser.STATS.formatted(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * @return счетчики форматирования для одного потока, добавляются в статистику парсера
+     */
+    public static FormatCounters newCounters() {
+        return new FormatCounters(ApplicationLogParser.STATS);
+    }
+}
@@ -0,0 +1,163 @@
+package org.vladok.logmx.parser;
+
+import org.vladok.logmx.parser.batch.LogEntry;
+import org.vladok.logmx.parser.batch.MergedLogReader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Парсер для LogMX, показывающий несколько логов как один, с записями по времени:
+ * ротированные application.log.N и логи разных узлов.
+ * <p>
+ * LogMX открывает файл-описание (*.merge), в каждой строке которого - путь к логу относительно
+ * каталога описания. В имени файла (но не в каталогах) можно использовать шаблон, например
+ * {@code node1/application.log{,.[0-9]*}}, найденные по шаблону файлы идут от старых к новым.
+ * Пустые строки и строки, начинающиеся с '#', пропускаются.
+ * <p>
+ * Логи объединяются {@link MergedLogReader} в конце описания, строки каждой записи передаются
+ * разбору {@link ApplicationLogParser} в исходном виде, поэтому колонки, UData и настройки те же.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 17:55
+ */
+public class MergedApplicationLogParser extends ApplicationLogParser {
+
+    /** Charset of the merged logs */
+    private final Charset charset;
+
+    /** Merge descriptor lines, created per parsed file */
+    private List<String> patterns = null;
+
+    /** Logs of the current merge descriptor, in descriptor order */
+    private List<File> mergedFiles = Collections.emptyList();
+
+    public MergedApplicationLogParser() {
+        this(SETTINGS);
+    }
+
+    MergedApplicationLogParser(ParserSettings settings) {
+        super(settings);
+        this.charset = settings.getMergeCharset();
+    }
+
+    @Override
+    protected void parseLine(String line) throws Exception {
+        if (patterns == null) {
+            patterns = new ArrayList<String>();
+        }
+        if (line != null) {
+            patterns.add(line);
+            return;
+        }
+        List<File> files = resolve(patterns, descriptorDirectory());
+        patterns = null;
+        mergedFiles = files;
+        MergedLogReader reader = new MergedLogReader(files, charset, false);
+        try {
+            StringBuilder header = new StringBuilder(256);
+            for (LogEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                // Исходные строки записи: заголовок с первой строкой сообщения, затем продолжения
+                String message = entry.getMessage();
+                int end = message.indexOf('\n');
+                header.setLength(0);
+                header.append(entry.getDate()).append(" [").append(entry.getThread()).append("] ")
+                        .append(entry.getLevel()).append(" - ").append(message, 0, end < 0 ? message.length() : end);
+                super.parseLine(header.toString());
+                while (end >= 0) {
+                    int start = end + 1;
+                    end = message.indexOf('\n', start);
+                    super.parseLine(message.substring(start, end < 0 ? message.length() : end));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        super.parseLine(null);
+    }
+
+    @Override
+    public String getParserName() {
+        return "Rainbow Application.log Merged Parser";
+    }
+
+    @Override
+    public String getSupportedFileType() {
+        return "*.merge";
+    }
+
+    /**
+     * Индекс слов зависит и от описания, и от каждого объединенного лога
+     */
+    @Override
+    List<File> getIndexedFiles() {
+        List<File> files = new ArrayList<File>(super.getIndexedFiles());
+        files.addAll(mergedFiles);
+        return files;
+    }
+
+    /**
+     * @param patterns  строки описания: пути или шаблоны имен файлов, пустые строки и комментарии
+     * @param directory каталог для относительных путей или null для текущего
+     * @return файлы без повторов в порядке строк описания
+     * @throws FileNotFoundException если файла без шаблона нет
+     */
+    static List<File> resolve(List<String> patterns, File directory) throws IOException {
+        Set<File> files = new LinkedHashSet<File>();
+        for (String line : patterns) {
+            String pattern = line.trim();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                continue;
+            }
+            File path = new File(pattern);
+            if ( ! path.isAbsolute() && directory != null) {
+                path = new File(directory, pattern);
+            }
+            path = path.getAbsoluteFile();
+            String name = path.getName();
+            if (name.indexOf('*') < 0 && name.indexOf('?') < 0 && name.indexOf('{') < 0 && name.indexOf('[') < 0) {
+                if ( ! path.isFile()) {
+                    throw new FileNotFoundException("Лог не найден: " + path);
+                }
+                files.add(path);
+                continue;
+            }
+            List<File> matched = new ArrayList<File>();
+            File parent = path.getParentFile();
+            if (parent.isDirectory()) {
+                DirectoryStream<Path> stream = Files.newDirectoryStream(parent.toPath(), name);
+                try {
+                    for (Path found : stream) {
+                        if (Files.isRegularFile(found)) {
+                            matched.add(found.toFile());
+                        }
+                    }
+                } finally {
+                    stream.close();
+                }
+            }
+            Collections.sort(matched, MergedLogReader.ROTATION_ORDER);
+            files.addAll(matched);
+        }
+        return new ArrayList<File>(files);
+    }
+
+    /**
+     * @return каталог файла-описания или null, если LogMX не передал имя файла
+     */
+    private File descriptorDirectory() {
+        String descriptor = getParsedFileName();
+        return descriptor == null ? null : new File(descriptor).getAbsoluteFile().getParentFile();
+    }
+}
@@ -0,0 +1,100 @@
+package org.vladok.logmx.parser;
+
+import org.vladok.logmx.parser.spill.MessageBuffer;
+import org.vladok.logmx.parser.spill.MessageStore;
+import org.vladok.logmx.parser.spill.StoredMessage;
+
+import java.io.IOException;
+
+/**
+ * Свертка повторяющихся многострочных сообщений: во время сбоев один и тот же стектрейс пишется
+ * тысячи раз, и каждая копия хранилась в LogMX отдельной строкой. Записи с одинаковым текстом
+ * получают один экземпляр сообщения {@link RepeatedMessage}, каждая запись при этом остается в списке.
+ * <p>
+ * Поиск идет по отпечатку, который {@link MessageBuffer} считает по мере добавления строк; при совпадении
+ * отпечатка текст сравнивается целиком, строка для повтора не создается. Таблица с открытой адресацией
+ * фиксированного размера, как в {@link FieldDictionary}: при заполнении окрестности слота новое сообщение
+ * вытесняет старое, и следующий его повтор начинает новую группу. Сами сообщения хранятся в записях,
+ * таблица лишь ссылается на них, поэтому памяти сверх записей не требует.
+ * <p>
+ * С хранилищем {@link MessageStore} текст новой группы переносится в него, а повторы сравниваются
+ * с текстом в хранилище.
+ * <p>
+ * Однострочные сообщения и сообщения во временном файле не сворачиваются.
+ * Не потокобезопасен, создается на каждый разбираемый файл.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 23:00
+ */
+public final class MessageFolder {
+
+    /** Сколько соседних слотов проверяется при поиске */
+    private static final int PROBES = 4;
+
+    private final RepeatedMessage[] table;
+
+    private final int mask;
+
+    /** Хранилище текстов вне кучи или null */
+    private final MessageStore store;
+
+    public MessageFolder(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity сколько различных сообщений помнить, округляется вверх до степени двойки
+     * @param store    хранилище текстов вне кучи или null
+     */
+    public MessageFolder(int capacity, MessageStore store) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер таблицы должен быть положительным: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        table = new RepeatedMessage[Math.max(size, PROBES)];
+        mask = table.length - 1;
+        this.store = store;
+    }
+
+    /**
+     * @param buffer текст записи
+     * @param date   метка времени записи
+     * @return общее сообщение записи или null, если сообщение не сворачивается
+     */
+    public RepeatedMessage fold(MessageBuffer buffer, String date) throws IOException {
+        if (buffer.isSpilled() || buffer.getLineCount() < 2) {
+            return null;
+        }
+        long fingerprint = buffer.getFingerprint();
+        int start = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        for (int probe = 0; probe < PROBES; probe++) {
+            int slot = (start + probe) & mask;
+            RepeatedMessage repeated = table[slot];
+            if (repeated == null) {
+                return add(slot, buffer, date);
+            }
+            if (repeated.getFingerprint() == fingerprint && buffer.contentEquals(repeated.getText())) {
+                repeated.repeat();
+                return repeated;
+            }
+        }
+        // Окрестность занята - вытесняем сообщение из первого слота
+        return add(start, buffer, date);
+    }
+
+    private RepeatedMessage add(int slot, MessageBuffer buffer, String date) throws IOException {
+        RepeatedMessage repeated;
+        if (store != null && store.accepts(buffer)) {
+            StoredMessage body = store.add(buffer);
+            repeated = new RepeatedMessage(buffer.firstLine(), body, buffer.getFingerprint(), date);
+        } else {
+            repeated = new RepeatedMessage(buffer.toMessage(), null, buffer.getFingerprint(), date);
+        }
+        table[slot] = repeated;
+        return repeated;
+    }
+}
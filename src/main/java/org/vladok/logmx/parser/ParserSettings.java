@@ -0,0 +1,344 @@
+package org.vladok.logmx.parser;
+
+import org.vladok.logmx.parser.udata.UDataFieldExtractor;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Настройки парсера. LogMX создает парсер сам и не передает ему параметры,
+ * поэтому настройки читаются из системных свойств с префиксом {@value #PREFIX},
+ * например -Drainbow.parser.udata.keys=DOC_ID,CLIENT_ID в LogMX.ini или в командной строке.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 11:20
+ */
+public final class ParserSettings {
+
+    public static final String PREFIX = "rainbow.parser.";
+
+    /**
+     * Ключи UData через запятую, значения которых показываются отдельными колонками.
+     * Тип бизнес-объекта показывается всегда
+     */
+    public static final String UDATA_KEYS = PREFIX + "udata.keys";
+
+    /**
+     * Размер кеша отформатированной UData в символах исходных и отформатированных строк, 0 - без кеша
+     */
+    public static final String UDATA_CACHE_CHARS = PREFIX + "udata.cache.chars";
+
+    /**
+     * Потоков поиска и форматирования UData, 0 - UData обрабатывается в потоке чтения
+     * и форматируется при первом просмотре записи
+     */
+    public static final String UDATA_THREADS = PREFIX + "udata.threads";
+
+    /**
+     * Сколько символов текста одной записи держать в памяти. Более длинная запись переносится
+     * во временный файл, в сообщении остаются начало и конец; 0 - без ограничения
+     */
+    public static final String ENTRY_MAX_CHARS = PREFIX + "entry.max.chars";
+
+    /** 8 млн символов - около 16 МБ на запись */
+    static final long DEFAULT_ENTRY_MAX_CHARS = 8L * 1024 * 1024;
+
+    /**
+     * Файл, в который после разбора каждого лога записывается статистика парсера (та же, что в JMX)
+     */
+    public static final String STATS_FILE = PREFIX + "stats.file";
+
+    /**
+     * true - строить при разборе индекс слов и пар UData и сохранять его рядом с логом (.tokidx)
+     */
+    public static final String TOKEN_INDEX = PREFIX + "token.index";
+
+    /**
+     * Уровни через запятую, например ERROR,WARN: записи других уровней отбрасываются при чтении
+     * и в LogMX не попадают
+     */
+    public static final String FILTER_LEVELS = PREFIX + "filter.levels";
+
+    /**
+     * Потоки через запятую: записи других потоков отбрасываются при чтении
+     */
+    public static final String FILTER_THREADS = PREFIX + "filter.threads";
+
+    /**
+     * Начало интервала времени в формате записей, например 22-09-16 12:40 (включительно);
+     * более ранние записи отбрасываются при чтении
+     */
+    public static final String FILTER_FROM = PREFIX + "filter.from";
+
+    /**
+     * Конец интервала времени в формате записей, например 22-09-16 12:49 - по 12:49:59.999 включительно.
+     * Граница - дата, дата с HH, HH:mm, HH:mm:ss или полная метка времени, иначе не задается
+     */
+    public static final String FILTER_TO = PREFIX + "filter.to";
+
+    /**
+     * Сколько различных многострочных сообщений помнить при свертке повторов, 0 - не сворачивать.
+     * Записи с одинаковым текстом (стектрейсы во время сбоя) хранят один экземпляр сообщения
+     */
+    public static final String FOLD_MESSAGES = PREFIX + "fold.messages";
+
+    /**
+     * true - показывать колонку Repeats: сколько раз встретилось сообщение записи и время первой записи
+     */
+    public static final String FOLD_FIELD = PREFIX + "fold.field";
+
+    /**
+     * true - многострочные тексты записей без UData (стектрейсы) хранить вне кучи, во временном файле,
+     * отображенном в память. В сообщении остается первая строка, весь текст - в колонке Body.
+     * <p>
+     * Поиск и подсветка LogMX по сообщению видят только первую строку: строки стектрейса в сообщении
+     * больше не находятся. Искать по ним можно в колонке Body или по индексу слов ({@link #TOKEN_INDEX}),
+     * он строится по всему тексту. Поэтому по умолчанию выключено
+     */
+    public static final String STORE_MESSAGES = PREFIX + "store.messages";
+
+    static final int DEFAULT_FOLD_MESSAGES = 1024;
+
+    /** Больше различных сообщений подряд в логе не повторяется */
+    static final int MAX_FOLD_MESSAGES = 1 << 20;
+
+    /**
+     * Кодировка логов, объединяемых {@link MergedApplicationLogParser}, по умолчанию кодировка системы
+     */
+    public static final String MERGE_CHARSET = PREFIX + "merge.charset";
+
+    /** Больше потоков не дает выигрыша: чтение файла все равно идет в одном потоке */
+    static final int MAX_UDATA_THREADS = 64;
+
+    static final String DEFAULT_UDATA_KEYS = "DOC_ID";
+
+    /** 4 млн символов - около 8 МБ строк */
+    static final long DEFAULT_UDATA_CACHE_CHARS = 4L * 1024 * 1024;
+
+    private final List<String> udataKeys;
+
+    private final long udataCacheChars;
+
+    private final int udataThreads;
+
+    private final long entryMaxChars;
+
+    private final File statsFile;
+
+    private final Charset mergeCharset;
+
+    private final boolean tokenIndex;
+
+    private final EntryFilter entryFilter;
+
+    private final int foldMessages;
+
+    private final boolean foldField;
+
+    private final boolean storeMessages;
+
+    public ParserSettings(Properties properties) {
+        this.udataKeys = parseKeys(properties.getProperty(UDATA_KEYS, DEFAULT_UDATA_KEYS));
+        this.udataCacheChars = parseSize(properties.getProperty(UDATA_CACHE_CHARS), DEFAULT_UDATA_CACHE_CHARS);
+        this.udataThreads = (int) Math.min(parseSize(properties.getProperty(UDATA_THREADS), 0), MAX_UDATA_THREADS);
+        this.entryMaxChars = parseSize(properties.getProperty(ENTRY_MAX_CHARS), DEFAULT_ENTRY_MAX_CHARS);
+        String stats = properties.getProperty(STATS_FILE, "").trim();
+        this.statsFile = stats.isEmpty() ? null : new File(stats);
+        this.mergeCharset = parseCharset(properties.getProperty(MERGE_CHARSET));
+        this.tokenIndex = Boolean.parseBoolean(properties.getProperty(TOKEN_INDEX, "false").trim());
+        EntryFilter filter = new EntryFilter(parseList(properties.getProperty(FILTER_LEVELS, "")),
+                parseList(properties.getProperty(FILTER_THREADS, "")),
+                parseBound(properties.getProperty(FILTER_FROM), false, Long.MIN_VALUE),
+                parseBound(properties.getProperty(FILTER_TO), true, Long.MAX_VALUE));
+        this.entryFilter = filter.isEmpty() ? null : filter;
+        this.foldMessages = (int) Math.min(parseSize(properties.getProperty(FOLD_MESSAGES), DEFAULT_FOLD_MESSAGES),
+                MAX_FOLD_MESSAGES);
+        this.foldField = Boolean.parseBoolean(properties.getProperty(FOLD_FIELD, "false").trim());
+        this.storeMessages = Boolean.parseBoolean(properties.getProperty(STORE_MESSAGES, "false").trim());
+    }
+
+    /**
+     * @return настройки из системных свойств
+     */
+    public static ParserSettings fromSystemProperties() {
+        return new ParserSettings(System.getProperties());
+    }
+
+    /**
+     * @return ключи UData для отдельных колонок, без повторов и без {@link UDataFieldExtractor#TYPE_FIELD}
+     */
+    public List<String> getUDataKeys() {
+        return udataKeys;
+    }
+
+    /**
+     * @return размер кеша отформатированной UData в символах
+     */
+    public long getUDataCacheChars() {
+        return udataCacheChars;
+    }
+
+    /**
+     * @return потоков обработки UData, 0 - обработка в потоке чтения
+     */
+    public int getUDataThreads() {
+        return udataThreads;
+    }
+
+    /**
+     * @return сколько символов записи держать в памяти, 0 - без ограничения
+     */
+    public long getEntryMaxChars() {
+        return entryMaxChars;
+    }
+
+    /**
+     * @return файл статистики или null, если статистика в файл не записывается
+     */
+    public File getStatsFile() {
+        return statsFile;
+    }
+
+    /**
+     * @return кодировка объединяемых логов
+     */
+    public Charset getMergeCharset() {
+        return mergeCharset;
+    }
+
+    /**
+     * @return строить ли индекс слов
+     */
+    public boolean isTokenIndex() {
+        return tokenIndex;
+    }
+
+    /**
+     * @return фильтр записей по заголовку или null, если фильтр не задан
+     */
+    public EntryFilter getEntryFilter() {
+        return entryFilter;
+    }
+
+    /**
+     * @return сколько различных сообщений помнить при свертке, 0 - не сворачивать
+     */
+    public int getFoldMessages() {
+        return foldMessages;
+    }
+
+    /**
+     * @return показывать ли колонку повторов сообщения
+     */
+    public boolean isFoldField() {
+        return foldField;
+    }
+
+    /**
+     * @return хранить ли многострочные тексты вне кучи
+     */
+    public boolean isStoreMessages() {
+        return storeMessages;
+    }
+
+    /**
+     * Некорректное или неизвестное имя заменяется кодировкой системы
+     */
+    private static Charset parseCharset(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Charset.defaultCharset();
+        }
+        try {
+            return Charset.forName(value.trim());
+        } catch (IllegalArgumentException e) {
+            return Charset.defaultCharset();
+        }
+    }
+
+    /**
+     * Некорректное или отрицательное значение заменяется значением по умолчанию
+     */
+    private static long parseSize(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long size = Long.parseLong(value.trim());
+            return size >= 0 ? size : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Некорректная граница интервала не ограничивает записи
+     */
+    private static long parseBound(String value, boolean end, long defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return EntryFilter.parseBound(value.trim(), end);
+        } catch (ParseException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Значения через запятую без пустых и повторов
+     */
+    private static List<String> parseList(String value) {
+        List<String> values = new ArrayList<String>();
+        for (String item : value.split(",")) {
+            item = item.trim();
+            if ( ! item.isEmpty() && ! values.contains(item)) {
+                values.add(item);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Ключи с недопустимыми символами пропускаются: такой ключ в UData все равно не встретится
+     */
+    private static List<String> parseKeys(String value) {
+        List<String> keys = new ArrayList<String>();
+        for (String key : value.split(",")) {
+            key = key.trim();
+            if (isKey(key) && ! keys.contains(key) && ! UDataFieldExtractor.TYPE_FIELD.equals(key)
+                    && keys.size() < UDataFieldExtractor.MAX_KEYS) {
+                keys.add(key);
+            }
+        }
+        return Collections.unmodifiableList(keys);
+    }
+
+    private static boolean isKey(String key) {
+        if (key.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char ch = key.charAt(i);
+            if ( ! ((ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "ParserSettings{" + UDATA_KEYS + "=" + udataKeys + ", " + UDATA_CACHE_CHARS + "=" + udataCacheChars
+                + ", " + UDATA_THREADS + "=" + udataThreads + ", " + ENTRY_MAX_CHARS + "=" + entryMaxChars
+                + ", " + STATS_FILE + "=" + statsFile + ", " + MERGE_CHARSET + "=" + mergeCharset
+                + ", " + TOKEN_INDEX + "=" + tokenIndex + ", filter=" + entryFilter
+                + ", " + FOLD_MESSAGES + "=" + foldMessages + ", " + FOLD_FIELD + "=" + foldField
+                + ", " + STORE_MESSAGES + "=" + storeMessages + "}";
+    }
+}
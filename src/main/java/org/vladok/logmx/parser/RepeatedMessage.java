@@ -0,0 +1,87 @@
+package org.vladok.logmx.parser;
+
+import org.vladok.logmx.parser.spill.MessageStore;
+import org.vladok.logmx.parser.spill.StoredMessage;
+
+/**
+ * Сообщение, общее для записей с одинаковым многострочным текстом, и значение поля "Repeats":
+ * сколько раз оно встретилось и время первой записи. LogMX отображает значение через toString(),
+ * поэтому у всех записей группы видно текущее число повторов.
+ * <p>
+ * Если текст перенесен в {@link MessageStore}, сообщение записи - его первая строка, а весь текст - {@link #getBody()}.
+ * <p>
+ * Счетчик увеличивает только поток чтения, отображение может идти из другого потока.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 23:10
+ */
+public final class RepeatedMessage {
+
+    private final String message;
+
+    /** Весь текст в хранилище или null, если он целиком в сообщении */
+    private final StoredMessage body;
+
+    private final long fingerprint;
+
+    /** Метка времени первой записи */
+    private final String firstDate;
+
+    private volatile int count = 1;
+
+    RepeatedMessage(String message, StoredMessage body, long fingerprint, String firstDate) {
+        this.message = message;
+        this.body = body;
+        this.fingerprint = fingerprint;
+        this.firstDate = firstDate;
+    }
+
+    /**
+     * @return общий для записей экземпляр сообщения
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return весь текст в хранилище или null, если он целиком в сообщении
+     */
+    public StoredMessage getBody() {
+        return body;
+    }
+
+    /**
+     * @return весь текст записи
+     */
+    CharSequence getText() {
+        return body != null ? body : message;
+    }
+
+    /**
+     * @return сколько записей с этим сообщением прочитано
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return метка времени первой записи с этим сообщением
+     */
+    public String getFirstDate() {
+        return firstDate;
+    }
+
+    long getFingerprint() {
+        return fingerprint;
+    }
+
+    void repeat() {
+        ++count;
+    }
+
+    @Override
+    public String toString() {
+        return count + " с " + firstDate;
+    }
+}
@@ -0,0 +1,89 @@
+package org.vladok.logmx.parser;
+
+import org.vladok.logmx.parser.spill.MappedChars;
+import org.vladok.logmx.parser.spill.MessageBuffer;
+import org.vladok.logmx.parser.spill.SpillFiles;
+import org.vladok.logmx.parser.spill.SpillWriter;
+import org.vladok.logmx.parser.spill.SpilledText;
+import org.vladok.logmx.parser.udata.UDataStreamFormatter;
+
+/**
+ * Значение поля "Formatted" для записи, текст которой перенесен во временный файл.
+ * При первом обращении к {@link #toString()} UData форматируется потоком из отображенного в память файла
+ * в другой временный файл ({@link UDataStreamFormatter}), показываются начало и конец результата.
+ * Память не зависит от размера записи. Файл с результатом удаляется вместе с остальными файлами разбора.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 16:05
+ */
+public final class SpilledUData {
+
+    /** Префикс временных файлов с отформатированной UData */
+    private static final String FILE_PREFIX = "rainbow-udata-";
+
+    private final SpilledText source;
+
+    /** Временные файлы разбора, к ним добавляется файл с результатом */
+    private final SpillFiles files;
+
+    /** Отформатированный текст во временном файле, после первого форматирования */
+    private SpilledText formatted;
+
+    /** Начало и конец отформатированного текста или {@link FormattedUData#FORMATTER_ERROR} */
+    private String preview;
+
+    /**
+     * @param source текст записи во временном файле
+     * @param files  временные файлы разбора, которому принадлежит запись
+     */
+    public SpilledUData(SpilledText source, SpillFiles files) {
+        this.source = source;
+        this.files = files;
+    }
+
+    /**
+     * @return отформатированный текст во временном файле или null, если форматирования еще не было
+     */
+    public synchronized SpilledText getFormatted() {
+        return formatted;
+    }
+
+    synchronized boolean isFormatted() {
+        return preview != null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (preview == null) {
+            preview = format();
+        }
+        return preview;
+    }
+
+    private String format() {
+        long start = System.nanoTime();
+        SpillWriter out = null;
+        MappedChars chars = null;
+        try {
+            out = new SpillWriter(FILE_PREFIX, MessageBuffer.HEAD_CHARS, MessageBuffer.TAIL_CHARS);
+            chars = source.chars();
+            UDataStreamFormatter.format(chars, out);
+            formatted = out.finish();
+            files.add(formatted);
+            return formatted.preview();
+        } catch (Exception e) {
+            if (out != null) {
+                out.discard();
+            }
+            ApplicationLogParser.STATS.formatError();
+            return FormattedUData.FORMATTER_ERROR;
+        } finally {
+            if (chars != null) {
+                // Отображенный файл записи иначе не удалить в Windows до сборки мусора
+                chars.close();
+            }
+            ApplicationLogParser.STATS.formatted(System.nanoTime() - start);
+        }
+    }
+}
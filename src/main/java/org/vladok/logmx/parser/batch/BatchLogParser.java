@@ -0,0 +1,287 @@
+package org.vladok.logmx.parser.batch;
+
+import org.vladok.logmx.parser.EntryHeaderScanner;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Пакетный разбор большого application.log на всех ядрах, без LogMX.
+ * <p>
+ * Файл делится на куски примерно по {@link #setChunkSize(int)} байт, начало каждого куска сдвигается
+ * вперед до ближайшей строки заголовка, так что многострочная запись целиком попадает в один кусок.
+ * Куски разбираются и форматируются в {@link ForkJoinPool}, а записи передаются обработчику
+ * в исходном порядке. Одновременно в работе не больше двух кусков на поток пула, поэтому память
+ * не зависит от размера файла. Куски не делят изменяемых структур: словари, кеш UData и счетчики
+ * форматирования у каждого куска свои, время форматирования добавляется в статистику парсера по окончании куска.
+ * <p>
+ * Заголовок распознается {@link EntryHeaderScanner}, UData форматируется
+ * {@link org.vladok.logmx.parser.udata.UDataFormatter} - результат совпадает с парсером для LogMX.
+ * Кодировка должна быть совместима с ASCII (UTF-8, windows-1251 и т.п.): границы строк ищутся по байту '\n'.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 19:30
+ */
+public class BatchLogParser implements Closeable {
+
+    /** Размер куска по умолчанию */
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /** Сколько кусков держать в работе на один поток пула */
+    private static final int CHUNKS_PER_THREAD = 2;
+
+    /** Максимальный размер куска, который можно прочитать в массив */
+    private static final long MAX_CHUNK_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final Charset charset;
+
+    private final ForkJoinPool pool;
+
+    /** Пул создан здесь и закрывается в {@link #close()} */
+    private final boolean ownPool;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private boolean formatUData = true;
+
+    /**
+     * @param charset     кодировка файла
+     * @param parallelism количество потоков разбора
+     */
+    public BatchLogParser(Charset charset, int parallelism) {
+        this(charset, new ForkJoinPool(parallelism), true);
+    }
+
+    /**
+     * @param charset кодировка файла
+     * @param pool    пул, в котором разбираются куски; не закрывается в {@link #close()}
+     */
+    public BatchLogParser(Charset charset, ForkJoinPool pool) {
+        this(charset, pool, false);
+    }
+
+    private BatchLogParser(Charset charset, ForkJoinPool pool, boolean ownPool) {
+        this.charset = charset;
+        this.pool = pool;
+        this.ownPool = ownPool;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize примерный размер куска в байтах
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Размер куска должен быть положительным: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public boolean isFormatUData() {
+        return formatUData;
+    }
+
+    /**
+     * @param formatUData форматировать ли UData при разборе (по умолчанию да)
+     */
+    public void setFormatUData(boolean formatUData) {
+        this.formatUData = formatUData;
+    }
+
+    /**
+     * Разбирает файл и передает записи обработчику в порядке следования в файле
+     *
+     * @param file    файл лога
+     * @param handler обработчик, вызывается в текущем потоке
+     * @throws Exception ошибка чтения файла или исключение обработчика
+     */
+    public void parse(File file, EntryHandler handler) throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            parse(raf.getChannel(), handler);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void parse(FileChannel channel, EntryHandler handler) throws Exception {
+        long size = channel.size();
+        int window = pool.getParallelism() * CHUNKS_PER_THREAD;
+        // Кеш UData у каждого куска свой, вместе они не больше настроенного
+        long cacheChars = EntryAssembler.UDATA_CACHE_CHARS / window;
+        Deque<ForkJoinTask<List<LogEntry>>> inFlight = new ArrayDeque<ForkJoinTask<List<LogEntry>>>(window);
+        ChannelBytes bytes = new ChannelBytes(channel, size);
+        long start = 0;
+        try {
+            while (start < size || ! inFlight.isEmpty()) {
+                while (start < size && inFlight.size() < window) {
+                    long end = start + chunkSize < size ? alignToEntry(bytes, start + chunkSize) : size;
+                    if (end - start > MAX_CHUNK_LENGTH) {
+                        throw new IOException("Запись со смещения " + start + " слишком велика для разбора");
+                    }
+                    inFlight.addLast(pool.submit(new ChunkTask(channel, charset, start, end, formatUData, cacheChars)));
+                    start = end;
+                }
+                for (LogEntry entry : join(inFlight.removeFirst())) {
+                    handler.entry(entry);
+                }
+            }
+        } finally {
+            for (ForkJoinTask<List<LogEntry>> task : inFlight) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private static List<LogEntry> join(ForkJoinTask<List<LogEntry>> task) throws Exception {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Ищет начало первой строки заголовка, начинающейся не раньше position
+     *
+     * @return смещение строки заголовка или размер файла, если заголовков дальше нет
+     */
+    private long alignToEntry(ChannelBytes bytes, long position) throws IOException {
+        long lineStart = position;
+        if (bytes.get(lineStart - 1) != '\n') {
+            lineStart = bytes.indexOf('\n', lineStart) + 1;
+        }
+        while (lineStart > 0 && lineStart < bytes.size) {
+            long lineEnd = bytes.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = bytes.size;
+            }
+            if (isHeader(bytes, lineStart, lineEnd)) {
+                return lineStart;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return bytes.size;
+    }
+
+    /**
+     * Сначала проверяет разделители метки времени по байтам (в ASCII-совместимой кодировке позиции
+     * совпадают с символьными), и только похожую строку декодирует и проверяет полностью
+     */
+    private boolean isHeader(ChannelBytes bytes, long lineStart, long lineEnd) throws IOException {
+        if (lineEnd - lineStart <= EntryHeaderScanner.THREAD_START
+                || bytes.get(lineStart + 2) != '-' || bytes.get(lineStart + 5) != '-'
+                || bytes.get(lineStart + 8) != ' ' || bytes.get(lineStart + 11) != ':'
+                || bytes.get(lineStart + 14) != ':' || bytes.get(lineStart + 17) != '.'
+                || bytes.get(lineStart + EntryHeaderScanner.TIMESTAMP_LENGTH) != ' '
+                || bytes.get(lineStart + EntryHeaderScanner.TIMESTAMP_LENGTH + 1) != '[') {
+            return false;
+        }
+        if (lineEnd - lineStart > MAX_CHUNK_LENGTH) {
+            return false;
+        }
+        byte[] line = bytes.read(lineStart, (int) (lineEnd - lineStart));
+        int length = line.length;
+        if (length > 0 && line[length - 1] == '\r') {
+            --length;
+        }
+        return EntryHeaderScanner.scan(new String(line, 0, length, charset)) != EntryHeaderScanner.NO_MATCH;
+    }
+
+    @Override
+    public void close() {
+        if (ownPool) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Побайтовое чтение файла через буфер, для поиска границ кусков
+     */
+    private static final class ChannelBytes {
+
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final FileChannel channel;
+
+        private final long size;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /** Смещение начала буфера в файле */
+        private long bufferStart;
+
+        private ChannelBytes(FileChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+            buffer.limit(0);
+        }
+
+        /**
+         * @return байт по смещению или -1 за пределами файла
+         */
+        int get(long position) throws IOException {
+            if (position < 0 || position >= size) {
+                return -1;
+            }
+            if (position < bufferStart || position >= bufferStart + buffer.limit()) {
+                fill(position);
+            }
+            return buffer.get((int) (position - bufferStart));
+        }
+
+        /**
+         * @return смещение первого байта value не раньше from или -1
+         */
+        long indexOf(char value, long from) throws IOException {
+            for (long i = from; i < size; i++) {
+                if (get(i) == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        byte[] read(long position, int length) throws IOException {
+            byte[] result = new byte[length];
+            ByteBuffer target = ByteBuffer.wrap(result);
+            while (target.hasRemaining()) {
+                if (channel.read(target, position + target.position()) < 0) {
+                    break;
+                }
+            }
+            return result;
+        }
+
+        private void fill(long position) throws IOException {
+            buffer.clear();
+            bufferStart = position;
+            while (buffer.hasRemaining() && channel.read(buffer, bufferStart + buffer.position()) > 0) {
+                // читаем, пока буфер не заполнится или не кончится файл
+            }
+            buffer.flip();
+            if (buffer.limit() == 0) {
+                throw new IOException("Файл укоротился во время разбора: " + position);
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.vladok.logmx.parser.batch;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Контрольная точка инкрементального разбора: до какого байта файл разобран, незавершенная
+ * последняя запись и признаки, по которым определяется, что это все еще тот же файл.
+ * Хранится в файле properties; запись атомарная, через временный файл.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 22:50
+ */
+public final class Checkpoint {
+
+    private static final String VERSION = "1";
+
+    /** Смещение начала первой неразобранной строки */
+    private final long offset;
+
+    private final FileIdentity identity;
+
+    /** Последняя запись, к которой еще могут дописываться строки, или null */
+    private final PendingEntry pending;
+
+    /** Разбор в этом запуске начат с начала файла, хотя контрольная точка была */
+    private final boolean reset;
+
+    Checkpoint(long offset, FileIdentity identity, PendingEntry pending) {
+        this(offset, identity, pending, false);
+    }
+
+    private Checkpoint(long offset, FileIdentity identity, PendingEntry pending, boolean reset) {
+        this.offset = offset;
+        this.identity = identity;
+        this.pending = pending;
+        this.reset = reset;
+    }
+
+    Checkpoint withReset() {
+        return new Checkpoint(offset, identity, pending, true);
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    FileIdentity getIdentity() {
+        return identity;
+    }
+
+    PendingEntry getPending() {
+        return pending;
+    }
+
+    /**
+     * @return true, если прошлая контрольная точка не подошла (файл ротирован или усечен)
+     * и записи переданы обработчику заново с начала файла; не сохраняется
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    /**
+     * @return контрольная точка или null, если файла нет или он другой версии
+     */
+    public static Checkpoint load(File file) throws IOException {
+        if ( ! file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        if ( ! VERSION.equals(properties.getProperty("version"))) {
+            return null;
+        }
+        try {
+            FileIdentity identity = new FileIdentity(properties.getProperty("file.key"),
+                    Integer.parseInt(properties.getProperty("head.length")),
+                    Long.parseLong(properties.getProperty("head.crc")));
+            PendingEntry pending = null;
+            if (properties.getProperty("entry.offset") != null) {
+                pending = new PendingEntry(Long.parseLong(properties.getProperty("entry.offset")),
+                        properties.getProperty("entry.date"), properties.getProperty("entry.thread"),
+                        properties.getProperty("entry.level"), properties.getProperty("entry.message"));
+                if (pending.date == null || pending.thread == null || pending.level == null || pending.message == null) {
+                    return null;
+                }
+            }
+            return new Checkpoint(Long.parseLong(properties.getProperty("offset")), identity, pending);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public void store(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("version", VERSION);
+        properties.setProperty("offset", Long.toString(offset));
+        if (identity.fileKey != null) {
+            properties.setProperty("file.key", identity.fileKey);
+        }
+        properties.setProperty("head.length", Integer.toString(identity.headLength));
+        properties.setProperty("head.crc", Long.toString(identity.headCrc));
+        if (pending != null) {
+            properties.setProperty("entry.offset", Long.toString(pending.offset));
+            properties.setProperty("entry.date", pending.date);
+            properties.setProperty("entry.thread", pending.thread);
+            properties.setProperty("entry.level", pending.level);
+            properties.setProperty("entry.message", pending.message);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            properties.store(out, "rainbow application.log checkpoint");
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Признаки файла: ключ файловой системы (inode, если доступен) и CRC32 первых байтов
+     */
+    static final class FileIdentity {
+
+        final String fileKey;
+
+        final int headLength;
+
+        final long headCrc;
+
+        FileIdentity(String fileKey, int headLength, long headCrc) {
+            this.fileKey = fileKey;
+            this.headLength = headLength;
+            this.headCrc = headCrc;
+        }
+    }
+
+    /**
+     * Незавершенная запись: заголовок и накопленное сообщение
+     */
+    static final class PendingEntry {
+
+        final long offset;
+
+        final String date;
+
+        final String thread;
+
+        final String level;
+
+        final String message;
+
+        PendingEntry(long offset, String date, String thread, String level, String message) {
+            this.offset = offset;
+            this.date = date;
+            this.thread = thread;
+            this.level = level;
+            this.message = message;
+        }
+    }
+}
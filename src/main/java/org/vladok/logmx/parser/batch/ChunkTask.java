@@ -0,0 +1,90 @@
+package org.vladok.logmx.parser.batch;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Разбор одного куска файла. Кусок начинается со строки заголовка (или с начала файла)
+ * и заканчивается перед следующей строкой заголовка, поэтому записи не пересекают границы кусков.
+ * Позиционное чтение из FileChannel потокобезопасно, канал общий для всех кусков.
+ * Словари, кеш UData и счетчики форматирования у каждого куска свои.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 19:20
+ */
+final class ChunkTask implements Callable<List<LogEntry>> {
+
+    private final FileChannel channel;
+
+    private final Charset charset;
+
+    private final long start;
+
+    private final long end;
+
+    private final boolean formatUData;
+
+    private final long udataCacheChars;
+
+    ChunkTask(FileChannel channel, Charset charset, long start, long end, boolean formatUData, long udataCacheChars) {
+        this.channel = channel;
+        this.charset = charset;
+        this.start = start;
+        this.end = end;
+        this.formatUData = formatUData;
+        this.udataCacheChars = udataCacheChars;
+    }
+
+    @Override
+    public List<LogEntry> call() throws IOException {
+        byte[] bytes = read();
+        List<LogEntry> entries = new ArrayList<LogEntry>();
+        EntryAssembler assembler = new EntryAssembler(entries, formatUData, udataCacheChars);
+        int lineStart = 0;
+        while (lineStart < bytes.length) {
+            int lineEnd = indexOf(bytes, (byte) '\n', lineStart);
+            int next = lineEnd + 1;
+            if (lineEnd < 0) {
+                // Последняя строка файла без перевода строки
+                lineEnd = bytes.length;
+                next = bytes.length;
+            }
+            int length = lineEnd - lineStart;
+            if (length > 0 && bytes[lineEnd - 1] == '\r') {
+                --length;
+            }
+            assembler.line(new String(bytes, lineStart, length, charset), start + lineStart);
+            lineStart = next;
+        }
+        assembler.finish();
+        assembler.flushStats();
+        return entries;
+    }
+
+    private byte[] read() throws IOException {
+        byte[] bytes = new byte[(int) (end - start)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new EOFException("Файл укоротился во время разбора: " + (start + buffer.position()));
+            }
+        }
+        return bytes;
+    }
+
+    static int indexOf(byte[] bytes, byte value, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
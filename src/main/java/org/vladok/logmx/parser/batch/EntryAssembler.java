@@ -0,0 +1,161 @@
+package org.vladok.logmx.parser.batch;
+
+import org.vladok.logmx.parser.EntryHeaderScanner;
+import org.vladok.logmx.parser.FieldDictionary;
+import org.vladok.logmx.parser.FormattedUData;
+import org.vladok.logmx.parser.ParserSettings;
+import org.vladok.logmx.parser.stats.FormatCounters;
+import org.vladok.logmx.parser.udata.UDataCache;
+import org.vladok.logmx.parser.udata.UDataFormatter;
+
+import java.util.List;
+
+/**
+ * Собирает записи из строк так же, как {@link org.vladok.logmx.parser.ApplicationLogParser}:
+ * строка заголовка начинает новую запись, остальные строки дописываются к сообщению текущей,
+ * строки до первого заголовка пропускаются.
+ * <p>
+ * Словари, кеш UData и счетчики форматирования свои у каждого сборщика: сборщик работает в одном потоке
+ * (кусок пакетного разбора, файл слияния), поэтому потоки пула не делят ни таблиц, ни счетчиков.
+ * Время форматирования добавляется в статистику парсера пачками и в {@link #flushStats()}.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 19:12
+ */
+final class EntryAssembler {
+
+    /** Размер кеша UData из настроек парсера */
+    static final long UDATA_CACHE_CHARS = ParserSettings.fromSystemProperties().getUDataCacheChars();
+
+    private final FieldDictionary threads = new FieldDictionary(1024);
+
+    private final FieldDictionary levels = new FieldDictionary(16);
+
+    private final List<LogEntry> entries;
+
+    private final boolean formatUData;
+
+    private final long udataCacheChars;
+
+    /** Создаются при первой UData */
+    private UDataCache udataCache;
+
+    private FormatCounters formatCounters;
+
+    private final StringBuilder message = new StringBuilder(256);
+
+    /** Есть ли текущая запись */
+    private boolean started;
+
+    private long offset;
+
+    private String date;
+
+    private String thread;
+
+    private String level;
+
+    /**
+     * @param entries     куда складывать собранные записи
+     * @param formatUData форматировать ли UData сразу
+     */
+    EntryAssembler(List<LogEntry> entries, boolean formatUData) {
+        this(entries, formatUData, UDATA_CACHE_CHARS);
+    }
+
+    /**
+     * @param entries         куда складывать собранные записи
+     * @param formatUData     форматировать ли UData сразу
+     * @param udataCacheChars размер кеша UData этого сборщика
+     */
+    EntryAssembler(List<LogEntry> entries, boolean formatUData, long udataCacheChars) {
+        this.entries = entries;
+        this.formatUData = formatUData;
+        this.udataCacheChars = udataCacheChars;
+    }
+
+    /**
+     * @param line       строка без перевода строки
+     * @param lineOffset смещение строки в файле, в байтах
+     */
+    void line(String line, long lineOffset) {
+        long header = EntryHeaderScanner.scan(line);
+        if (header != EntryHeaderScanner.NO_MATCH) {
+            finish();
+            started = true;
+            offset = lineOffset;
+            date = line.substring(0, EntryHeaderScanner.TIMESTAMP_LENGTH);
+            thread = threads.intern(line, EntryHeaderScanner.THREAD_START, EntryHeaderScanner.threadEnd(header));
+            level = levels.intern(line, EntryHeaderScanner.levelStart(header), EntryHeaderScanner.levelEnd(header));
+            message.append(line, EntryHeaderScanner.messageStart(header), line.length());
+        } else if (started) {
+            message.append('\n').append(line);
+        }
+    }
+
+    /**
+     * @return есть ли незавершенная запись
+     */
+    boolean hasEntry() {
+        return started;
+    }
+
+    /**
+     * @return незавершенная запись в виде контрольной точки, с указанным смещением продолжения
+     */
+    Checkpoint checkpoint(long resumeOffset, Checkpoint.FileIdentity identity) {
+        if ( ! started) {
+            return new Checkpoint(resumeOffset, identity, null);
+        }
+        return new Checkpoint(resumeOffset, identity,
+                new Checkpoint.PendingEntry(offset, date, thread, level, message.toString()));
+    }
+
+    /**
+     * Восстанавливает незавершенную запись, сохраненную в контрольной точке
+     */
+    void restore(Checkpoint.PendingEntry pending) {
+        finish();
+        started = true;
+        offset = pending.offset;
+        date = pending.date;
+        thread = pending.thread;
+        level = pending.level;
+        message.append(pending.message);
+    }
+
+    /**
+     * Завершает текущую запись, если она есть
+     */
+    void finish() {
+        if ( ! started) {
+            return;
+        }
+        String text = message.toString();
+        entries.add(new LogEntry(offset, date, thread, level, text, formatUData ? format(text) : null));
+        message.setLength(0);
+        started = false;
+    }
+
+    /**
+     * Добавляет накопленное время форматирования в статистику парсера
+     */
+    void flushStats() {
+        if (formatCounters != null) {
+            formatCounters.flush();
+        }
+    }
+
+    private String format(String message) {
+        int udataStart = message.indexOf(UDataFormatter.BUSINESS_OBJ_BEGINNING);
+        if (udataStart < 0) {
+            return null;
+        }
+        if (formatCounters == null) {
+            udataCache = new UDataCache(udataCacheChars);
+            formatCounters = FormattedUData.newCounters();
+        }
+        return FormattedUData.format(message, udataStart, udataCache, formatCounters);
+    }
+}
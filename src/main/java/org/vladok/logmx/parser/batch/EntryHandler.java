@@ -0,0 +1,18 @@
+package org.vladok.logmx.parser.batch;
+
+/**
+ * Получатель разобранных записей. Записи передаются по одной, в порядке следования в файле,
+ * всегда из потока, вызвавшего разбор.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 19:08
+ */
+public interface EntryHandler {
+
+    /**
+     * @param entry очередная запись
+     * @throws Exception прерывает разбор, исключение пробрасывается вызывающему
+     */
+    void entry(LogEntry entry) throws Exception;
+}
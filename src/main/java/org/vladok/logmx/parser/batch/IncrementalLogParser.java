@@ -0,0 +1,210 @@
+package org.vladok.logmx.parser.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Инкрементальный разбор растущего application.log: каждый запуск продолжает с контрольной точки
+ * предыдущего и читает только дописанные байты, поэтому время обновления зависит от объема
+ * новых данных, а не от размера файла.
+ * <p>
+ * Обработчику передаются только завершенные записи - за которыми уже есть следующий заголовок.
+ * Последняя запись и недописанная строка (без '\n') остаются в контрольной точке и будут
+ * продолжены в следующий раз; получить последнюю запись как есть можно через {@link #pendingEntry(Checkpoint)}.
+ * <p>
+ * Если файл укоротился, сменился его ключ в файловой системе (ротация с переименованием)
+ * или изменились первые байты (ротация с копированием и усечением), разбор начинается с начала файла,
+ * а у новой контрольной точки выставлен {@link Checkpoint#isReset()}.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 23:10
+ */
+public class IncrementalLogParser {
+
+    /** Сколько первых байтов файла участвуют в проверке, что файл тот же */
+    static final int HEAD_LENGTH = 4096;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Charset charset;
+
+    private boolean formatUData = true;
+
+    /**
+     * @param charset кодировка файла, совместимая с ASCII
+     */
+    public IncrementalLogParser(Charset charset) {
+        this.charset = charset;
+    }
+
+    public boolean isFormatUData() {
+        return formatUData;
+    }
+
+    public void setFormatUData(boolean formatUData) {
+        this.formatUData = formatUData;
+    }
+
+    /**
+     * Разбирает дописанную часть файла, загружая и сохраняя контрольную точку в checkpointFile
+     *
+     * @return новая контрольная точка
+     */
+    public Checkpoint parse(File file, File checkpointFile, EntryHandler handler) throws Exception {
+        Checkpoint checkpoint = parse(file, Checkpoint.load(checkpointFile), handler);
+        checkpoint.store(checkpointFile);
+        return checkpoint;
+    }
+
+    /**
+     * @param checkpoint контрольная точка предыдущего запуска или null для разбора с начала
+     * @return новая контрольная точка
+     */
+    public Checkpoint parse(File file, Checkpoint checkpoint, EntryHandler handler) throws Exception {
+        String fileKey = fileKey(file);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            List<LogEntry> entries = new ArrayList<LogEntry>();
+            EntryAssembler assembler = new EntryAssembler(entries, formatUData);
+            long start = 0;
+            boolean reset = false;
+            if (checkpoint != null) {
+                if (isSameFile(channel, size, fileKey, checkpoint)) {
+                    start = checkpoint.getOffset();
+                    if (checkpoint.getPending() != null) {
+                        assembler.restore(checkpoint.getPending());
+                    }
+                } else {
+                    reset = true;
+                }
+            }
+            long resume = readLines(channel, start, size, assembler, entries, handler);
+            assembler.flushStats();
+            Checkpoint result = assembler.checkpoint(resume, identity(channel, size, fileKey));
+            return reset ? result.withReset() : result;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * @return последняя, возможно еще не завершенная запись из контрольной точки или null
+     */
+    public LogEntry pendingEntry(Checkpoint checkpoint) {
+        if (checkpoint.getPending() == null) {
+            return null;
+        }
+        List<LogEntry> entries = new ArrayList<LogEntry>(1);
+        EntryAssembler assembler = new EntryAssembler(entries, formatUData);
+        assembler.restore(checkpoint.getPending());
+        assembler.finish();
+        assembler.flushStats();
+        return entries.get(0);
+    }
+
+    /**
+     * Читает полные строки с позиции start и передает завершенные записи обработчику
+     *
+     * @return начало первой непрочитанной строки
+     */
+    private long readLines(FileChannel channel, long start, long size, EntryAssembler assembler,
+                           List<LogEntry> entries, EntryHandler handler) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] data = buffer.array();
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        long lineStart = start;
+        long position = start;
+        while (position < size) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, size - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            int from = 0;
+            for (int i = 0; i < read; i++) {
+                if (data[i] != '\n') {
+                    continue;
+                }
+                line = append(line, lineLength, data, from, i - from);
+                lineLength += i - from;
+                assembler.line(decode(line, lineLength), lineStart);
+                for (LogEntry entry : entries) {
+                    handler.entry(entry);
+                }
+                entries.clear();
+                lineLength = 0;
+                from = i + 1;
+                lineStart = position + from;
+            }
+            line = append(line, lineLength, data, from, read - from);
+            lineLength += read - from;
+            position += read;
+        }
+        return lineStart;
+    }
+
+    private String decode(byte[] line, int length) {
+        if (length > 0 && line[length - 1] == '\r') {
+            --length;
+        }
+        return new String(line, 0, length, charset);
+    }
+
+    private static byte[] append(byte[] line, int lineLength, byte[] data, int from, int length) {
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(data, from, line, lineLength, length);
+        return line;
+    }
+
+    private static boolean isSameFile(FileChannel channel, long size, String fileKey, Checkpoint checkpoint)
+            throws IOException {
+        Checkpoint.FileIdentity expected = checkpoint.getIdentity();
+        if (size < checkpoint.getOffset() || size < expected.headLength) {
+            return false;
+        }
+        if (fileKey != null && expected.fileKey != null && ! fileKey.equals(expected.fileKey)) {
+            return false;
+        }
+        return crc(channel, expected.headLength) == expected.headCrc;
+    }
+
+    private static Checkpoint.FileIdentity identity(FileChannel channel, long size, String fileKey) throws IOException {
+        int headLength = (int) Math.min(size, HEAD_LENGTH);
+        return new Checkpoint.FileIdentity(fileKey, headLength, crc(channel, headLength));
+    }
+
+    private static long crc(FileChannel channel, int length) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(length);
+        while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+            // читаем начало файла целиком
+        }
+        CRC32 crc = new CRC32();
+        crc.update(head.array(), 0, head.position());
+        return crc.getValue();
+    }
+
+    /**
+     * @return ключ файла в файловой системе (на Unix - устройство и inode) или null, если он недоступен
+     */
+    private static String fileKey(File file) throws IOException {
+        Object key = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        return key != null ? key.toString() : null;
+    }
+}
@@ -0,0 +1,66 @@
+package org.vladok.logmx.parser.batch;
+
+/**
+ * Запись application.log, разобранная вне LogMX
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 19:05
+ */
+public class LogEntry {
+
+    /** Смещение строки заголовка в файле, в байтах */
+    private final long offset;
+
+    private final String date;
+
+    private final String thread;
+
+    private final String level;
+
+    private final String message;
+
+    /** Отформатированная UData или null, если ее нет в сообщении или форматирование выключено */
+    private final String formatted;
+
+    public LogEntry(long offset, String date, String thread, String level, String message, String formatted) {
+        this.offset = offset;
+        this.date = date;
+        this.thread = thread;
+        this.level = level;
+        this.message = message;
+        this.formatted = formatted;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return метка времени в формате dd-MM-yy HH:mm:ss.SSS
+     */
+    public String getDate() {
+        return date;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public String getLevel() {
+        return level;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getFormatted() {
+        return formatted;
+    }
+
+    @Override
+    public String toString() {
+        return date + " [" + thread + "] " + level + " - " + message;
+    }
+}
@@ -0,0 +1,318 @@
+package org.vladok.logmx.parser.batch;
+
+import org.vladok.logmx.parser.EntryDateDecoder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Чтение нескольких логов как одного: ротированных application.log.N и логов отдельных узлов.
+ * Записи объединяются по времени слиянием k потоков через кучу: из каждого файла прочитана
+ * только одна следующая запись, куча выбирает самую раннюю из них, после чего из ее файла читается следующая.
+ * <p>
+ * Каждый файл читается своим буферизованным потоком, в памяти на файл - буфер {@value #BUFFER_CHARS} символов
+ * и одна запись, поэтому память не зависит от размера файлов. Записи с одинаковым временем идут в порядке
+ * файлов в списке, внутри файла порядок записей сохраняется всегда, даже если время в нем идет назад.
+ * <p>
+ * Смещение записей в объединенном потоке не известно, у всех записей оно равно -1.
+ * Не потокобезопасен.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 17:20
+ */
+public class MergedLogReader implements Closeable {
+
+    /** Символов в буфере чтения каждого файла */
+    static final int BUFFER_CHARS = 64 * 1024;
+
+    /**
+     * Порядок ротированных файлов от старого к новому: application.log.2, application.log.1, application.log.
+     * Файлы с разными именами без номера ротации сравниваются по имени
+     */
+    public static final Comparator<File> ROTATION_ORDER = new Comparator<File>() {
+        @Override
+        public int compare(File first, File second) {
+            String firstName = first.getName();
+            String secondName = second.getName();
+            int firstSuffix = rotationSuffix(firstName);
+            int secondSuffix = rotationSuffix(secondName);
+            int byBase = baseName(firstName, firstSuffix).compareTo(baseName(secondName, secondSuffix));
+            if (byBase != 0) {
+                return byBase;
+            }
+            long firstNumber = rotationNumber(firstName, firstSuffix);
+            long secondNumber = rotationNumber(secondName, secondSuffix);
+            if (firstNumber != secondNumber) {
+                return firstNumber > secondNumber ? -1 : 1;
+            }
+            return first.getPath().compareTo(second.getPath());
+        }
+    };
+
+    private static final Comparator<Source> EARLIEST_FIRST = new Comparator<Source>() {
+        @Override
+        public int compare(Source first, Source second) {
+            if (first.time != second.time) {
+                return first.time < second.time ? -1 : 1;
+            }
+            return first.index < second.index ? -1 : (first.index == second.index ? 0 : 1);
+        }
+    };
+
+    private final EntryDateDecoder dateDecoder = new EntryDateDecoder();
+
+    private final List<Source> sources;
+
+    private final PriorityQueue<Source> queue;
+
+    /** Файл последней выданной записи */
+    private File file;
+
+    /**
+     * @param files       логи, порядок задает очередность записей с одинаковым временем
+     * @param charset     кодировка файлов, совместимая с ASCII
+     * @param formatUData форматировать ли UData сразу
+     */
+    public MergedLogReader(List<File> files, Charset charset, boolean formatUData) throws IOException {
+        this.sources = new ArrayList<Source>(files.size());
+        this.queue = new PriorityQueue<Source>(Math.max(files.size(), 1), EARLIEST_FIRST);
+        try {
+            for (File log : files) {
+                Source source = new Source(log, sources.size(), charset, formatUData);
+                sources.add(source);
+                if (source.advance(dateDecoder)) {
+                    queue.add(source);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return следующая по времени запись или null, если записей больше нет
+     */
+    public LogEntry next() throws IOException {
+        Source source = queue.poll();
+        if (source == null) {
+            file = null;
+            return null;
+        }
+        LogEntry entry = source.entry;
+        file = source.file;
+        if (source.advance(dateDecoder)) {
+            queue.add(source);
+        } else {
+            source.close();
+        }
+        return entry;
+    }
+
+    /**
+     * @return файл записи, которую последней вернул {@link #next()}, или null
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return сколько файлов объединяется
+     */
+    public int getSourceCount() {
+        return sources.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (Source source : sources) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        queue.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Находит лог и его ротированные копии (log.1, log.2, ...) в каталоге лога
+     *
+     * @return файлы от старого к новому, пустой список, если их нет
+     */
+    public static List<File> rotated(File log) {
+        File directory = log.getAbsoluteFile().getParentFile();
+        final String name = log.getName();
+        File[] found = directory.listFiles();
+        if (found == null) {
+            return Collections.emptyList();
+        }
+        List<File> files = new ArrayList<File>();
+        for (File candidate : found) {
+            String candidateName = candidate.getName();
+            if (candidate.isFile() && candidateName.startsWith(name)
+                    && (candidateName.length() == name.length() || rotationSuffix(candidateName) == name.length())) {
+                files.add(candidate);
+            }
+        }
+        Collections.sort(files, ROTATION_ORDER);
+        return files;
+    }
+
+    /**
+     * @return индекс точки перед номером ротации в конце имени или -1, если номера нет
+     */
+    static int rotationSuffix(String name) {
+        int i = name.length();
+        while (i > 0 && Character.isDigit(name.charAt(i - 1))) {
+            --i;
+        }
+        if (i == name.length() || i < 2 || name.charAt(i - 1) != '.' || name.length() - i > 9) {
+            return -1;
+        }
+        return i - 1;
+    }
+
+    private static String baseName(String name, int suffix) {
+        return suffix < 0 ? name : name.substring(0, suffix);
+    }
+
+    /**
+     * @return номер ротации, у текущего файла без номера -1
+     */
+    private static long rotationNumber(String name, int suffix) {
+        return suffix < 0 ? -1 : Long.parseLong(name.substring(suffix + 1));
+    }
+
+    /**
+     * Один файл: поток чтения, сборка записей и следующая запись с ее временем
+     */
+    private static final class Source implements Closeable {
+
+        private final File file;
+
+        /** Номер файла в списке, для порядка записей с одинаковым временем */
+        private final int index;
+
+        private final Reader reader;
+
+        private final char[] buffer = new char[BUFFER_CHARS];
+
+        private int position;
+
+        private int limit;
+
+        /** Начало строки, не поместившейся в буфер */
+        private final StringBuilder line = new StringBuilder(256);
+
+        /** Собранные записи, не больше одной */
+        private final List<LogEntry> assembled = new ArrayList<LogEntry>(1);
+
+        private final EntryAssembler assembler;
+
+        private boolean closed;
+
+        /** Следующая запись файла или null */
+        private LogEntry entry;
+
+        /** Время следующей записи, у записи с некорректной датой - время предыдущей */
+        private long time = Long.MIN_VALUE;
+
+        Source(File file, int index, Charset charset, boolean formatUData) throws IOException {
+            this.file = file;
+            this.index = index;
+            this.reader = new InputStreamReader(new FileInputStream(file), charset);
+            this.assembler = new EntryAssembler(assembled, formatUData);
+        }
+
+        /**
+         * Читает следующую запись
+         *
+         * @return false, если записей в файле больше нет
+         */
+        boolean advance(EntryDateDecoder dateDecoder) throws IOException {
+            entry = null;
+            while (assembled.isEmpty()) {
+                String text = readLine();
+                if (text == null) {
+                    assembler.finish();
+                    assembler.flushStats();
+                    break;
+                }
+                assembler.line(text, -1);
+            }
+            if (assembled.isEmpty()) {
+                return false;
+            }
+            entry = assembled.remove(0);
+            try {
+                time = dateDecoder.decode(entry.getDate());
+            } catch (ParseException ignored) {
+                // запись остается на своем месте в файле
+            }
+            return true;
+        }
+
+        /**
+         * Строки разделяются '\n', '\r' в конце строки отбрасывается, как при разборе в LogMX
+         *
+         * @return строка или null в конце файла
+         */
+        private String readLine() throws IOException {
+            line.setLength(0);
+            while (true) {
+                if (position == limit) {
+                    int read = closed ? -1 : reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    limit = Math.max(read, 0);
+                    if (read < 0) {
+                        return line.length() > 0 ? withoutCarriageReturn(line.toString()) : null;
+                    }
+                }
+                for (int i = position; i < limit; i++) {
+                    if (buffer[i] == '\n') {
+                        String text;
+                        if (line.length() == 0) {
+                            text = new String(buffer, position, i - position);
+                        } else {
+                            text = line.append(buffer, position, i - position).toString();
+                        }
+                        position = i + 1;
+                        return withoutCarriageReturn(text);
+                    }
+                }
+                line.append(buffer, position, limit - position);
+                position = limit;
+            }
+        }
+
+        private static String withoutCarriageReturn(String text) {
+            int length = text.length();
+            return length > 0 && text.charAt(length - 1) == '\r' ? text.substring(0, length - 1) : text;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if ( ! closed) {
+                closed = true;
+                reader.close();
+            }
+        }
+    }
+}
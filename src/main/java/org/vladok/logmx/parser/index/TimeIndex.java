@@ -0,0 +1,259 @@
+package org.vladok.logmx.parser.index;
+
+import org.vladok.logmx.parser.EntryDateDecoder;
+import org.vladok.logmx.parser.io.MappedLogEntry;
+import org.vladok.logmx.parser.io.MappedLogReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * Разреженный индекс времени: для каждой корзины в bucketMillis миллисекунд - смещение первой записи,
+ * с которой время лога достигло этой корзины. Позволяет открыть лог с нужного момента, не разбирая
+ * все записи до него.
+ * <p>
+ * Время в логе растет, но записи разных потоков могут немного перемешиваться, поэтому корзины считаются
+ * по максимальному времени на данный момент: все записи до смещения корзины гарантированно раньше ее начала.
+ * <p>
+ * Индекс хранится рядом с логом в файле .tidx (смещения и корзины - разности в varint) и действителен,
+ * пока у лога тот же размер и время изменения; иначе строится заново.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 23:45
+ */
+public final class TimeIndex {
+
+    /** Корзины по минуте */
+    public static final long DEFAULT_BUCKET_MILLIS = 60 * 1000L;
+
+    /** "RLIX" */
+    private static final int MAGIC = 0x524C4958;
+
+    private static final int VERSION = 1;
+
+    private static final String SIDECAR_SUFFIX = ".tidx";
+
+    private final long fileSize;
+
+    private final long lastModified;
+
+    private final long bucketMillis;
+
+    /** Номера корзин (время / bucketMillis), строго возрастают */
+    private final long[] buckets;
+
+    /** Смещения первой записи каждой корзины */
+    private final long[] offsets;
+
+    private TimeIndex(long fileSize, long lastModified, long bucketMillis, long[] buckets, long[] offsets) {
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+        this.offsets = offsets;
+    }
+
+    public static TimeIndex open(File log, Charset charset) throws IOException {
+        return open(log, charset, DEFAULT_BUCKET_MILLIS);
+    }
+
+    /**
+     * Загружает индекс из файла рядом с логом или строит его и сохраняет
+     *
+     * @param log          файл лога
+     * @param charset      кодировка лога
+     * @param bucketMillis размер корзины в миллисекундах
+     */
+    public static TimeIndex open(File log, Charset charset, long bucketMillis) throws IOException {
+        File sidecar = sidecarFor(log);
+        TimeIndex index = load(sidecar, log);
+        if (index != null && index.bucketMillis == bucketMillis) {
+            return index;
+        }
+        index = build(log, charset, bucketMillis);
+        try {
+            index.store(sidecar);
+        } catch (IOException e) {
+            // Каталог лога может быть только для чтения - тогда индекс живет только в памяти
+        }
+        return index;
+    }
+
+    static File sidecarFor(File log) {
+        return new File(log.getPath() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Проходит по всем записям лога
+     */
+    static TimeIndex build(File log, Charset charset, long bucketMillis) throws IOException {
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("Размер корзины должен быть положительным: " + bucketMillis);
+        }
+        long lastModified = log.lastModified();
+        EntryDateDecoder decoder = new EntryDateDecoder();
+        long[] buckets = new long[64];
+        long[] offsets = new long[64];
+        int size = 0;
+        MappedLogReader reader = new MappedLogReader(log, charset);
+        try {
+            for (MappedLogEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                long bucket;
+                try {
+                    bucket = floorDiv(decoder.decode(entry.getDate()), bucketMillis);
+                } catch (ParseException e) {
+                    continue;
+                }
+                if (size == 0 || bucket > buckets[size - 1]) {
+                    if (size == buckets.length) {
+                        buckets = Arrays.copyOf(buckets, size * 2);
+                        offsets = Arrays.copyOf(offsets, size * 2);
+                    }
+                    buckets[size] = bucket;
+                    offsets[size] = entry.getOffset();
+                    ++size;
+                }
+            }
+            return new TimeIndex(reader.size(), lastModified, bucketMillis,
+                    Arrays.copyOf(buckets, size), Arrays.copyOf(offsets, size));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return индекс или null, если файла нет, он поврежден или лог с тех пор изменился;
+     * индекс, который не удалось прочитать, проще построить заново
+     */
+    static TimeIndex load(File sidecar, File log) throws IOException {
+        if ( ! sidecar.isFile()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long fileSize = in.readLong();
+            long lastModified = in.readLong();
+            if (fileSize != log.length() || lastModified != log.lastModified()) {
+                return null;
+            }
+            long bucketMillis = in.readLong();
+            int size = in.readInt();
+            if (bucketMillis <= 0 || size < 0 || size > sidecar.length()) {
+                return null;
+            }
+            long[] buckets = new long[size];
+            long[] offsets = new long[size];
+            long bucket = 0;
+            long offset = 0;
+            for (int i = 0; i < size; i++) {
+                bucket += readVarLong(in);
+                offset += readVarLong(in);
+                buckets[i] = bucket;
+                offsets[i] = offset;
+            }
+            return new TimeIndex(fileSize, lastModified, bucketMillis, buckets, offsets);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+    void store(File sidecar) throws IOException {
+        File temp = new File(sidecar.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fileSize);
+            out.writeLong(lastModified);
+            out.writeLong(bucketMillis);
+            out.writeInt(buckets.length);
+            long bucket = 0;
+            long offset = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                writeVarLong(out, buckets[i] - bucket);
+                writeVarLong(out, offsets[i] - offset);
+                bucket = buckets[i];
+                offset = offsets[i];
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param time время в миллисекундах
+     * @return смещение, до которого нет записей со временем не меньше time
+     */
+    public long offsetOf(long time) {
+        int i = Arrays.binarySearch(buckets, floorDiv(time, bucketMillis));
+        if (i < 0) {
+            // Последняя корзина до нужной
+            i = -i - 2;
+        }
+        return i < 0 ? 0 : offsets[i];
+    }
+
+    /**
+     * @return количество корзин
+     */
+    public int size() {
+        return buckets.length;
+    }
+
+    /**
+     * @return размер лога, по которому построен индекс
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    private static long floorDiv(long value, long divisor) {
+        long result = value / divisor;
+        return value % divisor < 0 ? result - 1 : result;
+    }
+
+    /**
+     * Беззнаковое число по 7 бит в байте; разности в индексе всегда неотрицательны
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Поврежденный индекс: слишком длинное число");
+    }
+}
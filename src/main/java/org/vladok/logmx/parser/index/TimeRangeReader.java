@@ -0,0 +1,89 @@
+package org.vladok.logmx.parser.index;
+
+import org.vladok.logmx.parser.EntryDateDecoder;
+import org.vladok.logmx.parser.io.MappedLogEntry;
+import org.vladok.logmx.parser.io.MappedLogReader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+
+/**
+ * Чтение записей за интервал времени [from, to]: переход по {@link TimeIndex} к первой корзине интервала
+ * и разбор только до первой записи позже to.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 23:55
+ */
+public class TimeRangeReader implements Closeable {
+
+    private final MappedLogReader reader;
+
+    private final EntryDateDecoder decoder = new EntryDateDecoder();
+
+    private final long from;
+
+    private final long to;
+
+    /** Время последней прочитанной записи */
+    private long time;
+
+    private boolean finished;
+
+    /**
+     * @param log     файл лога; может быть длиннее, чем при построении индекса
+     * @param charset кодировка лога
+     * @param index   индекс этого лога
+     * @param from    начало интервала в миллисекундах, включительно
+     * @param to      конец интервала в миллисекундах, включительно
+     */
+    public TimeRangeReader(File log, Charset charset, TimeIndex index, long from, long to) throws IOException {
+        this.reader = new MappedLogReader(log, charset);
+        if (reader.size() < index.getFileSize()) {
+            reader.close();
+            throw new IllegalArgumentException("Индекс построен для другой версии файла " + log);
+        }
+        this.from = from;
+        this.to = to;
+        reader.seek(index.offsetOf(from));
+    }
+
+    /**
+     * @return следующая запись интервала или null
+     */
+    public MappedLogEntry next() {
+        while ( ! finished) {
+            MappedLogEntry entry = reader.next();
+            if (entry == null) {
+                finished = true;
+                break;
+            }
+            try {
+                time = decoder.decode(entry.getDate());
+            } catch (ParseException e) {
+                continue;
+            }
+            if (time > to) {
+                finished = true;
+            } else if (time >= from) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return время записи, которую последней вернул {@link #next()}
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,319 @@
+package org.vladok.logmx.parser.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Инвертированный индекс записей: для каждого слова сообщения и каждой пары KEY=значение из UData -
+ * номера записей, в которых они встречаются. Поиск номера документа по логу за день - один просмотр
+ * таблицы вместо поиска подстроки во всех сообщениях.
+ * <p>
+ * Слова - последовательности букв, цифр и '_' длиной от {@value #MIN_TOKEN_LENGTH}
+ * до {@value #MAX_TOKEN_LENGTH} символов, регистр не учитывается. Номера записей хранятся
+ * сжатыми списками: разности соседних номеров в varint, обычно 1-2 байта на вхождение.
+ * <p>
+ * Индекс строится {@link TokenIndexBuilder} и может храниться рядом с логом в файле .tokidx;
+ * он действителен, пока у всех проиндексированных файлов (для объединенных логов - у описания
+ * и каждого лога из него) те же пути, размеры и время изменения. Номера записей зависят от фильтра записей
+ * при разборе, поэтому индекс хранит и его признак. Неизменяем и потокобезопасен.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 21:00
+ */
+public final class TokenIndex {
+
+    /** Более короткие слова не индексируются: их списки огромны, а искать по ним бессмысленно */
+    public static final int MIN_TOKEN_LENGTH = 2;
+
+    /** Более длинные слова (base64, хеши) не индексируются */
+    public static final int MAX_TOKEN_LENGTH = 64;
+
+    /** Разделитель ключа и значения UData в индексе, в словах он не встречается */
+    static final char KEY_VALUE_SEPARATOR = '=';
+
+    /** "RLTI" */
+    private static final int MAGIC = 0x524C5449;
+
+    private static final int VERSION = 3;
+
+    private static final String SIDECAR_SUFFIX = ".tokidx";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int[] NONE = new int[0];
+
+    private final Map<String, Postings> postings;
+
+    private final int entryCount;
+
+    TokenIndex(Map<String, Postings> postings, int entryCount) {
+        this.postings = postings;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * @param token слово, регистр не учитывается
+     * @return номера записей по возрастанию
+     */
+    public int[] find(String token) {
+        Postings list = postings.get(normalize(token));
+        return list == null ? NONE : list.decode();
+    }
+
+    /**
+     * @param key   ключ UData, например DOC_ID, или TYPE для типа бизнес-объекта
+     * @param value значение целиком, регистр не учитывается
+     * @return номера записей по возрастанию
+     */
+    public int[] find(String key, String value) {
+        return find(key + KEY_VALUE_SEPARATOR + value);
+    }
+
+    /**
+     * @return номера, которые есть в обоих списках
+     */
+    public static int[] intersect(int[] first, int[] second) {
+        int[] result = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+            if (first[i] < second[j]) {
+                ++i;
+            } else if (first[i] > second[j]) {
+                ++j;
+            } else {
+                result[size++] = first[i];
+                ++i;
+                ++j;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * @return количество проиндексированных записей
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return количество различных слов и пар
+     */
+    public int size() {
+        return postings.size();
+    }
+
+    /**
+     * @return размер сжатых списков в байтах
+     */
+    public long getPostingBytes() {
+        long bytes = 0;
+        for (Postings list : postings.values()) {
+            bytes += list.length;
+        }
+        return bytes;
+    }
+
+    public static File sidecarFor(File log) {
+        return new File(log.getPath() + SIDECAR_SUFFIX);
+    }
+
+    /** Признак разбора без фильтра записей */
+    public static final String NO_FILTER = "";
+
+    /**
+     * Сохраняет индекс вместе с путями, размерами и временем изменения файлов, по которым он построен
+     *
+     * @param inputs проиндексированные файлы
+     * @param filter признак фильтра записей при разборе или {@link #NO_FILTER}
+     */
+    public void store(File sidecar, List<File> inputs, String filter) throws IOException {
+        File temp = new File(sidecar.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(inputs.size());
+            for (File input : inputs) {
+                out.writeUTF(input.getAbsolutePath());
+                out.writeLong(input.length());
+                out.writeLong(input.lastModified());
+            }
+            out.writeUTF(filter);
+            out.writeInt(entryCount);
+            out.writeInt(postings.size());
+            for (Map.Entry<String, Postings> token : postings.entrySet()) {
+                byte[] name = token.getKey().getBytes(UTF_8);
+                Postings list = token.getValue();
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeInt(list.count);
+                out.writeInt(list.last);
+                out.writeInt(list.length);
+                out.write(list.bytes, 0, list.length);
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return индекс разбора лога без фильтра или null, если файла нет, он поврежден или лог с тех пор изменился
+     */
+    public static TokenIndex load(File sidecar, File log) throws IOException {
+        return load(sidecar, Collections.singletonList(log), NO_FILTER);
+    }
+
+    /**
+     * @param inputs файлы, по которым должен быть построен индекс, в том же порядке, что при сохранении
+     * @param filter признак фильтра записей, с которым должен быть построен индекс, или {@link #NO_FILTER}
+     * @return индекс или null, если файла нет, он поврежден, построен по другим файлам или с другим фильтром
+     * или какой-то из файлов с тех пор изменился
+     */
+    public static TokenIndex load(File sidecar, List<File> inputs, String filter) throws IOException {
+        if ( ! sidecar.isFile()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar), 1 << 16));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != inputs.size()) {
+                return null;
+            }
+            for (File input : inputs) {
+                if ( ! in.readUTF().equals(input.getAbsolutePath())
+                        || in.readLong() != input.length() || in.readLong() != input.lastModified()) {
+                    return null;
+                }
+            }
+            if ( ! in.readUTF().equals(filter)) {
+                return null;
+            }
+            int entryCount = in.readInt();
+            int size = in.readInt();
+            if (entryCount < 0 || size < 0 || size > sidecar.length()) {
+                return null;
+            }
+            Map<String, Postings> postings = new HashMap<String, Postings>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                byte[] name = new byte[in.readUnsignedShort()];
+                in.readFully(name);
+                int count = in.readInt();
+                int last = in.readInt();
+                int length = in.readInt();
+                if (length < 0 || length > sidecar.length()) {
+                    return null;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                postings.put(new String(name, UTF_8), new Postings(bytes, length, count, last));
+            }
+            return new TokenIndex(postings, entryCount);
+        } catch (IOException e) {
+            // индекс, который не удалось прочитать, проще построить заново
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Слово или пара для поиска в том же виде, в каком они попадают в индекс
+     */
+    static String normalize(String token) {
+        StringBuilder result = new StringBuilder(token.length());
+        for (int i = 0; i < token.length(); i++) {
+            result.append(Character.toLowerCase(token.charAt(i)));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Номера записей по возрастанию: разности в varint
+     */
+    static final class Postings {
+
+        private byte[] bytes;
+
+        private int length;
+
+        private int count;
+
+        /** Последний добавленный номер */
+        private int last = -1;
+
+        Postings() {
+            this.bytes = new byte[4];
+        }
+
+        private Postings(byte[] bytes, int length, int count, int last) {
+            this.bytes = bytes;
+            this.length = length;
+            this.count = count;
+            this.last = last;
+        }
+
+        /**
+         * @param ordinal номер записи, не меньше последнего добавленного; повтор не добавляется
+         */
+        void add(int ordinal) {
+            if (ordinal == last) {
+                return;
+            }
+            int delta = ordinal - last;
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+            }
+            while ((delta & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+            last = ordinal;
+            ++count;
+        }
+
+        int[] decode() {
+            int[] result = new int[count];
+            int ordinal = -1;
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                int delta = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = bytes[position++];
+                    delta |= (b & 0x7F) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                ordinal += delta;
+                result[i] = ordinal;
+            }
+            return result;
+        }
+
+        /**
+         * Обрезает запас в конце массива после построения
+         */
+        void trim() {
+            if (bytes.length > length) {
+                bytes = Arrays.copyOf(bytes, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.vladok.logmx.parser.index;
+
+import org.vladok.logmx.parser.udata.UDataFieldExtractor;
+import org.vladok.logmx.parser.udata.UDataFormatter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Построение {@link TokenIndex} при разборе: записи добавляются по порядку, номер записи - порядковый номер вызова
+ * {@link #add(CharSequence, int)} или {@link #addWords(CharSequence)}.
+ * <p>
+ * Слова ищутся прямо в сообщении: приведенное к нижнему регистру слово собирается в общий буфер и ищется
+ * в таблице с открытой адресацией, строка создается только для нового слова. В сообщениях с UData
+ * дополнительно индексируются пары KEY=значение с простыми значениями и типы бизнес-объектов (TYPE=тип).
+ * Пары берутся из прохода {@link UDataFieldExtractor}: парсер получает их вместе с полями записи
+ * ({@link #addWords(CharSequence)} и {@link #pairs()}), и сообщение не разбирается ради индекса еще раз.
+ * <p>
+ * Не потокобезопасен, создается на каждый разбираемый файл.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 21:20
+ */
+public final class TokenIndexBuilder {
+
+    /** Более длинные значения UData (тексты, XML) не индексируются как пары */
+    static final int MAX_VALUE_LENGTH = UDataFieldExtractor.MAX_PAIR_VALUE_LENGTH;
+
+    /** Слова, степень двойки */
+    private String[] keys = new String[1024];
+
+    private int[] hashes = new int[1024];
+
+    private TokenIndex.Postings[] postings = new TokenIndex.Postings[1024];
+
+    private int size;
+
+    /** Текущее слово в нижнем регистре */
+    private final char[] token = new char[TokenIndex.MAX_TOKEN_LENGTH];
+
+    private int entryCount;
+
+    /** Пара в нижнем регистре */
+    private char[] pair = new char[64];
+
+    /** Пары UData добавляются к последней добавленной записи */
+    private final UDataFieldExtractor.Pairs pairs = new UDataFieldExtractor.Pairs() {
+        @Override
+        public void pair(String key, int keyStart, int keyEnd, String message, int valueStart, int valueEnd) {
+            addPair(key, keyStart, keyEnd, message, valueStart, valueEnd);
+        }
+    };
+
+    /** Извлечение без ключей - только пары для индекса */
+    private static final UDataFieldExtractor PAIRS = new UDataFieldExtractor(Collections.<String>emptyList());
+
+    /**
+     * Добавляет запись, начало UData ищется в сообщении
+     *
+     * @return номер записи
+     */
+    public int add(CharSequence message) {
+        return add(message, message.toString().indexOf(UDataFormatter.BUSINESS_OBJ_BEGINNING));
+    }
+
+    /**
+     * Добавляет запись
+     *
+     * @param message    сообщение
+     * @param udataStart смещение первого бизнес-объекта или -1, если UData нет
+     * @return номер записи
+     */
+    public int add(CharSequence message, int udataStart) {
+        int ordinal = addWords(message);
+        if (udataStart >= 0) {
+            PAIRS.extract(message.toString(), udataStart, null, pairs);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Добавляет запись, индексируются только слова; пары UData передаются потом в {@link #pairs()}
+     *
+     * @return номер записи
+     */
+    public int addWords(CharSequence message) {
+        int ordinal = entryCount++;
+        int length = 0;
+        boolean tooLong = false;
+        for (int i = 0, end = message.length(); i <= end; i++) {
+            char ch = i < end ? message.charAt(i) : ' ';
+            if (isTokenChar(ch)) {
+                if (length < token.length) {
+                    token[length++] = ch < 0x80 ? (ch >= 'A' && ch <= 'Z' ? (char) (ch + ('a' - 'A')) : ch)
+                            : Character.toLowerCase(ch);
+                } else {
+                    tooLong = true;
+                }
+            } else if (length > 0) {
+                if ( ! tooLong && length >= TokenIndex.MIN_TOKEN_LENGTH) {
+                    postings(token, length).add(ordinal);
+                }
+                length = 0;
+                tooLong = false;
+            }
+        }
+        return ordinal;
+    }
+
+    /**
+     * @return получатель пар UData последней добавленной записи, для
+     * {@link UDataFieldExtractor#extract(String, int, Map, UDataFieldExtractor.Pairs)}
+     */
+    public UDataFieldExtractor.Pairs pairs() {
+        return pairs;
+    }
+
+    /**
+     * @return количество добавленных записей
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return индекс добавленных записей; построитель после этого не используется
+     */
+    public TokenIndex build() {
+        Map<String, TokenIndex.Postings> result = new HashMap<String, TokenIndex.Postings>(size * 4 / 3 + 1);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                postings[i].trim();
+                result.put(keys[i], postings[i]);
+            }
+        }
+        return new TokenIndex(result, entryCount);
+    }
+
+    /**
+     * Пара KEY=значение в нижнем регистре; пустые и длинные значения не индексируются
+     */
+    private void addPair(String key, int keyStart, int keyEnd, String message, int valueStart, int valueEnd) {
+        if (entryCount == 0 || valueEnd <= valueStart || valueEnd - valueStart > MAX_VALUE_LENGTH) {
+            return;
+        }
+        int length = keyEnd - keyStart + 1 + valueEnd - valueStart;
+        if (length > pair.length) {
+            pair = Arrays.copyOf(pair, Math.max(length, pair.length * 2));
+        }
+        int position = 0;
+        for (int i = keyStart; i < keyEnd; i++) {
+            pair[position++] = Character.toLowerCase(key.charAt(i));
+        }
+        pair[position++] = TokenIndex.KEY_VALUE_SEPARATOR;
+        for (int i = valueStart; i < valueEnd; i++) {
+            pair[position++] = Character.toLowerCase(message.charAt(i));
+        }
+        postings(pair, length).add(entryCount - 1);
+    }
+
+    /**
+     * @return список записей слова, новый для нового слова
+     */
+    private TokenIndex.Postings postings(char[] chars, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int mask = keys.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && equals(keys[slot], chars, length)) {
+                return postings[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        TokenIndex.Postings list = new TokenIndex.Postings();
+        keys[slot] = new String(chars, 0, length);
+        hashes[slot] = hash;
+        postings[slot] = list;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return list;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        TokenIndex.Postings[] oldPostings = postings;
+        keys = new String[oldKeys.length * 2];
+        hashes = new int[keys.length];
+        postings = new TokenIndex.Postings[keys.length];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = (oldHashes[i] ^ (oldHashes[i] >>> 16)) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+                postings[slot] = oldPostings[i];
+            }
+        }
+    }
+
+    /**
+     * Буква, цифра или '_'; латиница и цифры проверяются без таблиц Unicode
+     */
+    private static boolean isTokenChar(char ch) {
+        if (ch < 0x80) {
+            return ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z' || ch >= '0' && ch <= '9' || ch == '_';
+        }
+        return Character.isLetterOrDigit(ch);
+    }
+
+    private static boolean equals(String key, char[] chars, int length) {
+        if (key.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,149 @@
+package org.vladok.logmx.parser.io;
+
+import org.vladok.logmx.parser.EntryHeaderScanner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Распознает строку заголовка прямо по байтам, без декодирования, и принимает ровно те строки,
+ * которые принял бы {@link EntryHeaderScanner} после декодирования в той же кодировке.
+ * <p>
+ * Метка времени, скобки и уровень состоят из ASCII, а в UTF-8 и однобайтовых ASCII-совместимых
+ * кодировках (windows-1251) байты ASCII не встречаются внутри многобайтовых символов,
+ * поэтому разделители ищутся по байтам. Остается проверить, что сообщение не содержит символов
+ * конца строки: в UTF-8 это \r, C2 85 (U+0085), E2 80 A8 и E2 80 A9 (U+2028, U+2029),
+ * в однобайтовых кодировках - байты, которые декодируются в такие символы.
+ * <p>
+ * Границы полей упакованы так же, как у {@link EntryHeaderScanner}, но это смещения в байтах
+ * от начала строки: имя потока может содержать кириллицу.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 20:55
+ */
+public final class ByteHeaderScanner {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Для однобайтовой кодировки: какие байты декодируются в символ конца строки, null для UTF-8 */
+    private final boolean[] terminators;
+
+    private ByteHeaderScanner(boolean[] terminators) {
+        this.terminators = terminators;
+    }
+
+    /**
+     * @param charset UTF-8 или однобайтовая кодировка, совместимая с ASCII
+     * @throws IllegalArgumentException для прочих кодировок
+     */
+    public static ByteHeaderScanner forCharset(Charset charset) {
+        if (UTF_8.equals(charset)) {
+            return new ByteHeaderScanner(null);
+        }
+        if (charset.newEncoder().maxBytesPerChar() != 1.0f) {
+            throw new IllegalArgumentException("Кодировка не поддерживается: " + charset);
+        }
+        byte[] all = new byte[256];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = (byte) i;
+        }
+        String decoded = new String(all, charset);
+        if (decoded.length() != all.length) {
+            throw new IllegalArgumentException("Кодировка не поддерживается: " + charset);
+        }
+        boolean[] terminators = new boolean[256];
+        for (int i = 0; i < all.length; i++) {
+            char ch = decoded.charAt(i);
+            if (i < 0x80 && ch != i) {
+                throw new IllegalArgumentException("Кодировка не совместима с ASCII: " + charset);
+            }
+            terminators[i] = ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
+        }
+        return new ByteHeaderScanner(terminators);
+    }
+
+    /**
+     * @param in   байты, доступ только по абсолютным индексам
+     * @param from начало строки
+     * @param to   конец строки без перевода строки
+     * @return упакованные границы полей в байтах от from или {@link EntryHeaderScanner#NO_MATCH}
+     */
+    public long scan(ByteBuffer in, int from, int to) {
+        int length = to - from;
+        if (length <= EntryHeaderScanner.THREAD_START) {
+            return EntryHeaderScanner.NO_MATCH;
+        }
+        if (in.get(from + 2) != '-' || in.get(from + 5) != '-' || in.get(from + 8) != ' '
+                || in.get(from + 11) != ':' || in.get(from + 14) != ':' || in.get(from + 17) != '.'
+                || in.get(from + EntryHeaderScanner.TIMESTAMP_LENGTH) != ' '
+                || in.get(from + EntryHeaderScanner.TIMESTAMP_LENGTH + 1) != '[') {
+            return EntryHeaderScanner.NO_MATCH;
+        }
+        if ( ! isDigits(in, from, 0, 2) || ! isDigits(in, from, 3, 5) || ! isDigits(in, from, 6, 8)
+                || ! isDigits(in, from, 9, 11) || ! isDigits(in, from, 12, 14) || ! isDigits(in, from, 15, 17)
+                || ! isDigits(in, from, 18, EntryHeaderScanner.TIMESTAMP_LENGTH)) {
+            return EntryHeaderScanner.NO_MATCH;
+        }
+        // [^]]+ - имя потока до первой ], не пустое
+        int i = from + EntryHeaderScanner.THREAD_START;
+        while (i < to && in.get(i) != ']') {
+            ++i;
+        }
+        if (i == from + EntryHeaderScanner.THREAD_START || i + 1 >= to || in.get(i + 1) != ' ') {
+            return EntryHeaderScanner.NO_MATCH;
+        }
+        int threadEnd = i;
+        // [A-Z]+ - уровень, за которым идет " - "
+        i += 2;
+        int levelStart = i;
+        while (i < to && in.get(i) >= 'A' && in.get(i) <= 'Z') {
+            ++i;
+        }
+        if (i == levelStart || i + 3 > to || in.get(i) != ' ' || in.get(i + 1) != '-' || in.get(i + 2) != ' ') {
+            return EntryHeaderScanner.NO_MATCH;
+        }
+        int levelEnd = i;
+        if (containsLineTerminator(in, levelEnd + 3, to)) {
+            return EntryHeaderScanner.NO_MATCH;
+        }
+        return ((long) (threadEnd - from) << 32) | (levelEnd - from);
+    }
+
+    private boolean containsLineTerminator(ByteBuffer in, int from, int to) {
+        if (terminators != null) {
+            for (int i = from; i < to; i++) {
+                if (terminators[in.get(i) & 0xFF]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            byte b = in.get(i);
+            // Кириллица в UTF-8 начинается с D0/D1, поэтому основная часть байтов отсекается первым сравнением
+            if (b >= 0 ? b == '\n' || b == '\r' : isUtf8Terminator(in, b, i, to)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isUtf8Terminator(ByteBuffer in, byte b, int i, int to) {
+        if (b == (byte) 0xC2) {
+            return i + 1 < to && in.get(i + 1) == (byte) 0x85;
+        }
+        return b == (byte) 0xE2 && i + 2 < to && in.get(i + 1) == (byte) 0x80
+                && (in.get(i + 2) == (byte) 0xA8 || in.get(i + 2) == (byte) 0xA9);
+    }
+
+    private static boolean isDigits(ByteBuffer in, int base, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = in.get(base + i);
+            if (b < '0' || b > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,228 @@
+package org.vladok.logmx.parser.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Последовательное чтение записей лога по его кешу {@link EntryCache}: границы записей, время,
+ * поток и уровень берутся из кеша, байты лога не просматриваются. Из отображенного в память лога
+ * декодируются только сообщение и дата, и только при обращении к ним.
+ * <p>
+ * Записи остаются читаемыми и после {@link #close()}. Не потокобезопасен.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 19:50
+ */
+public class CachedLogReader implements Closeable {
+
+    /** Записи кеша после заголовка; читаются через свой буфер, без синхронизации на каждый байт */
+    private final InputStream in;
+
+    private final byte[] buffer = new byte[64 * 1024];
+
+    private int position;
+
+    private int limit;
+
+    private final RandomAccessFile file;
+
+    private final MappedFile bytes;
+
+    private final Charset charset;
+
+    private final List<String> threads = new ArrayList<String>();
+
+    private final List<String> levels = new ArrayList<String>();
+
+    /** Конец предыдущей записи */
+    private long previousEnd;
+
+    /** Время последней записи с корректной датой */
+    private long time;
+
+    private int flags;
+
+    private boolean finished;
+
+    private CachedLogReader(InputStream in, File log, Charset charset) throws IOException {
+        this.in = in;
+        this.charset = charset;
+        this.file = new RandomAccessFile(log, "r");
+        try {
+            this.bytes = new MappedFile(file.getChannel(), MappedFile.DEFAULT_SEGMENT_SHIFT);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return читатель или null, если кеша нет, он поврежден или построен для другой версии лога
+     * или другого часового пояса
+     */
+    static CachedLogReader open(File sidecar, File log, Charset charset) throws IOException {
+        if ( ! sidecar.isFile()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar), 1 << 16));
+        boolean valid = false;
+        try {
+            valid = in.readInt() == EntryCache.MAGIC && in.readInt() == EntryCache.VERSION
+                    && in.readInt() == EntryCache.PARSER_VERSION
+                    && in.readUTF().equals(log.getAbsolutePath())
+                    && in.readLong() == log.length() && in.readLong() == log.lastModified()
+                    && in.readUTF().equals(charset.name())
+                    && in.readUTF().equals(TimeZone.getDefault().getID());
+        } catch (IOException e) {
+            // кеш, который не удалось прочитать, проще построить заново
+        }
+        if ( ! valid) {
+            in.close();
+            return null;
+        }
+        try {
+            return new CachedLogReader(in, log, charset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return следующая запись или null, если записей больше нет
+     * @throws IOException если кеш поврежден
+     */
+    public MappedLogEntry next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        try {
+            long offsetDelta = readVarLong();
+            if (offsetDelta == 0) {
+                finished = true;
+                return null;
+            }
+            long offset = previousEnd + offsetDelta - 1;
+            flags = readByte();
+            if ((flags & EntryCache.FLAG_BAD_DATE) == 0) {
+                long delta = readVarLong();
+                time += (delta >>> 1) ^ -(delta & 1);
+            }
+            String thread = read(threads);
+            String level = read(levels);
+            long threadEnd = readVarLong();
+            long levelEnd = threadEnd + readVarLong();
+            long messageEnd = offset + readVarLong();
+            long end = messageEnd + readVarLong();
+            if (end > bytes.size() || levelEnd > Integer.MAX_VALUE) {
+                throw new IOException("Поврежденный кеш записей: запись за пределами лога");
+            }
+            previousEnd = end;
+            return new MappedLogEntry(bytes, charset, offset, (threadEnd << 32) | levelEnd, messageEnd, end,
+                    thread, level);
+        } catch (EOFException e) {
+            throw new IOException("Поврежденный кеш записей: файл обрывается", e);
+        }
+    }
+
+    /**
+     * @return время записи, которую последней вернул {@link #next()}, в миллисекундах;
+     * для записи с некорректной датой - время предыдущей записи
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return true, если дата последней записи корректна
+     */
+    public boolean isDateValid() {
+        return (flags & EntryCache.FLAG_BAD_DATE) == 0;
+    }
+
+    /**
+     * @return true, если сообщение последней записи содержит UData
+     */
+    public boolean hasUData() {
+        return (flags & EntryCache.FLAG_UDATA) != 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            file.close();
+        }
+    }
+
+    private String read(List<String> dictionary) throws IOException {
+        long code = readVarLong();
+        if (code == dictionary.size()) {
+            dictionary.add(readString());
+        } else if (code > dictionary.size()) {
+            throw new IOException("Поврежденный кеш записей: неизвестный код " + code);
+        }
+        return dictionary.get((int) code);
+    }
+
+    private int readByte() throws IOException {
+        if (position == limit && ! fill()) {
+            throw new EOFException();
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private String readString() throws IOException {
+        long length = readVarLong();
+        if (length > buffer.length) {
+            throw new IOException("Поврежденный кеш записей: слишком длинная строка");
+        }
+        if (limit - position < length) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+            while (limit < length) {
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                limit += read;
+            }
+        }
+        String result = new String(buffer, position, (int) length, EntryCache.UTF_8);
+        position += (int) length;
+        return result;
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+
+    private long readVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Поврежденный кеш записей: слишком длинное число");
+    }
+}
@@ -0,0 +1,216 @@
+package org.vladok.logmx.parser.io;
+
+import org.vladok.logmx.parser.EntryDateDecoder;
+import org.vladok.logmx.parser.EntryHeaderScanner;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Кеш разобранных записей: после первого разбора лога границы записей, время в миллисекундах,
+ * коды потока и уровня и признак UData сохраняются в двоичный файл, и при следующем открытии
+ * того же лога записи берутся из него ({@link CachedLogReader}) без поиска заголовков,
+ * просмотра строк-продолжений и разбора дат.
+ * <p>
+ * Файл кеша лежит рядом с логом (.ecache), а если каталог лога только для чтения - во временном каталоге.
+ * Кеш действителен, пока у лога тот же путь, размер и время изменения, та же кодировка,
+ * тот же часовой пояс по умолчанию (время записей в миллисекундах зависит от него)
+ * и та же версия разбора {@link #PARSER_VERSION}; иначе строится заново. Имеет смысл для логов,
+ * которые больше не дописываются: ротированных и вчерашних.
+ * <p>
+ * Формат: заголовок с ключом, затем записи - разности смещений и времени в varint, коды словарей
+ * (новое значение записывается строкой UTF-8 при первой встрече), длины полей и сообщения. Около 10 байт на запись.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 19:30
+ */
+public final class EntryCache {
+
+    /**
+     * Версия разбора: увеличивается, когда меняется распознавание заголовков, границы сообщения или признак UData
+     */
+    public static final int PARSER_VERSION = 1;
+
+    /** "RLEC" */
+    static final int MAGIC = 0x524C4543;
+
+    static final int VERSION = 2;
+
+    /** Сообщение содержит UData */
+    static final int FLAG_UDATA = 1;
+
+    /** Дата не разбирается, время не записано */
+    static final int FLAG_BAD_DATE = 2;
+
+    private static final String SIDECAR_SUFFIX = ".ecache";
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private EntryCache() {
+    }
+
+    /**
+     * Открывает записи лога из кеша, при необходимости строит его
+     *
+     * @param log     файл лога
+     * @param charset кодировка лога
+     * @throws IOException если лог не читается или изменился во время построения кеша
+     */
+    public static CachedLogReader open(File log, Charset charset) throws IOException {
+        File[] sidecars = sidecarsFor(log);
+        for (File sidecar : sidecars) {
+            CachedLogReader reader = CachedLogReader.open(sidecar, log, charset);
+            if (reader != null) {
+                return reader;
+            }
+        }
+        IOException error = null;
+        for (File sidecar : sidecars) {
+            try {
+                build(log, charset, sidecar);
+            } catch (IOException e) {
+                // Каталог лога может быть только для чтения - тогда кеш во временном каталоге
+                error = e;
+                continue;
+            }
+            CachedLogReader reader = CachedLogReader.open(sidecar, log, charset);
+            if (reader == null) {
+                throw new IOException("Лог " + log + " изменился во время построения кеша");
+            }
+            return reader;
+        }
+        throw error;
+    }
+
+    /**
+     * @return true, если для лога есть действительный кеш
+     */
+    public static boolean isValid(File log, Charset charset) throws IOException {
+        for (File sidecar : sidecarsFor(log)) {
+            CachedLogReader reader = CachedLogReader.open(sidecar, log, charset);
+            if (reader != null) {
+                reader.close();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return файл кеша рядом с логом и файл во временном каталоге
+     */
+    static File[] sidecarsFor(File log) {
+        File absolute = log.getAbsoluteFile();
+        String name = absolute.getName() + "-" + Integer.toHexString(absolute.getPath().hashCode()) + SIDECAR_SUFFIX;
+        return new File[]{new File(absolute.getPath() + SIDECAR_SUFFIX),
+                new File(System.getProperty("java.io.tmpdir"), name)};
+    }
+
+    /**
+     * Проходит по всем записям лога и сохраняет кеш
+     *
+     * @return количество записей
+     */
+    static long build(File log, Charset charset, File sidecar) throws IOException {
+        long lastModified = log.lastModified();
+        TimeZone timeZone = TimeZone.getDefault();
+        EntryDateDecoder decoder = new EntryDateDecoder(timeZone, Locale.getDefault());
+        Map<String, Integer> threads = new HashMap<String, Integer>();
+        Map<String, Integer> levels = new HashMap<String, Integer>();
+        File temp = new File(sidecar.getPath() + ".tmp");
+        MappedLogReader reader = new MappedLogReader(log, charset);
+        long count = 0;
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(PARSER_VERSION);
+                out.writeUTF(log.getAbsolutePath());
+                out.writeLong(reader.size());
+                out.writeLong(lastModified);
+                out.writeUTF(charset.name());
+                out.writeUTF(timeZone.getID());
+                long previousEnd = 0;
+                long previousTime = 0;
+                for (MappedLogEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                    // 0 - конец записей
+                    writeVarLong(out, entry.getOffset() - previousEnd + 1);
+                    int flags = entry.containsUData() ? FLAG_UDATA : 0;
+                    long time;
+                    try {
+                        time = decoder.decode(entry.getDate());
+                    } catch (ParseException e) {
+                        time = previousTime;
+                        flags |= FLAG_BAD_DATE;
+                    }
+                    out.writeByte(flags);
+                    if ((flags & FLAG_BAD_DATE) == 0) {
+                        long delta = time - previousTime;
+                        writeVarLong(out, (delta << 1) ^ (delta >> 63));
+                        previousTime = time;
+                    }
+                    writeCode(out, threads, entry.getThread());
+                    writeCode(out, levels, entry.getLevel());
+                    long bounds = entry.getBounds();
+                    writeVarLong(out, EntryHeaderScanner.threadEnd(bounds));
+                    writeVarLong(out, EntryHeaderScanner.levelEnd(bounds) - EntryHeaderScanner.threadEnd(bounds));
+                    writeVarLong(out, entry.getMessageEnd() - entry.getOffset());
+                    writeVarLong(out, entry.getEnd() - entry.getMessageEnd());
+                    previousEnd = entry.getEnd();
+                    ++count;
+                }
+                writeVarLong(out, 0);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        } finally {
+            reader.close();
+        }
+        Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Код значения в словаре; новое значение записывается после кода, равного размеру словаря
+     */
+    private static void writeCode(DataOutput out, Map<String, Integer> dictionary, String value) throws IOException {
+        Integer code = dictionary.get(value);
+        if (code != null) {
+            writeVarLong(out, code);
+            return;
+        }
+        writeVarLong(out, dictionary.size());
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+        dictionary.put(value, dictionary.size());
+    }
+
+    /**
+     * Беззнаковое число по 7 бит в байте
+     */
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,139 @@
+package org.vladok.logmx.parser.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Файл, отображенный в память сегментами по 2^segmentShift байт: один MappedByteBuffer
+ * не может быть больше 2 Гб. Доступ только по абсолютным смещениям, поэтому объект можно
+ * читать из нескольких потоков.
+ * <p>
+ * В Java 7 нет способа явно освободить отображение, оно освобождается сборщиком мусора.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 20:40
+ */
+final class MappedFile {
+
+    /** Сегменты по 1 Гб */
+    static final int DEFAULT_SEGMENT_SHIFT = 30;
+
+    private final ByteBuffer[] segments;
+
+    private final int shift;
+
+    private final long mask;
+
+    private final long size;
+
+    /**
+     * Отображает файл целиком, размер фиксируется на момент вызова
+     */
+    MappedFile(FileChannel channel, int segmentShift) throws IOException {
+        this.size = channel.size();
+        this.shift = segmentShift;
+        this.mask = (1L << segmentShift) - 1;
+        long segmentSize = 1L << segmentShift;
+        segments = new ByteBuffer[(int) ((size + segmentSize - 1) >>> segmentShift)];
+        for (int i = 0; i < segments.length; i++) {
+            long position = (long) i << segmentShift;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, size - position));
+        }
+    }
+
+    /**
+     * Байты в памяти, одним сегментом
+     */
+    MappedFile(ByteBuffer buffer) {
+        this.segments = new ByteBuffer[]{buffer};
+        this.shift = 31;
+        this.mask = (1L << shift) - 1;
+        this.size = buffer.limit();
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte get(long position) {
+        return segments[(int) (position >>> shift)].get((int) (position & mask));
+    }
+
+    /**
+     * @return сегмент, целиком содержащий байты [from, to), или null, если они попадают в разные сегменты
+     */
+    ByteBuffer segment(long from, long to) {
+        int index = (int) (from >>> shift);
+        return to <= ((long) index << shift) + segments[index].limit() ? segments[index] : null;
+    }
+
+    /**
+     * @return индекс байта внутри его сегмента
+     */
+    int offsetInSegment(long position) {
+        return (int) (position & mask);
+    }
+
+    /**
+     * @return смещение первого байта value в диапазоне [from, to) или -1
+     */
+    long indexOf(byte value, long from, long to) {
+        while (from < to) {
+            ByteBuffer segment = segments[(int) (from >>> shift)];
+            long base = from & ~mask;
+            int limit = (int) Math.min(segment.limit(), to - base);
+            for (int i = (int) (from & mask); i < limit; i++) {
+                if (segment.get(i) == value) {
+                    return base + i;
+                }
+            }
+            from = base + limit;
+        }
+        return -1;
+    }
+
+    /**
+     * @return смещение первого вхождения pattern, целиком лежащего в диапазоне [from, to), или -1
+     */
+    long indexOf(byte[] pattern, long from, long to) {
+        long last = to - pattern.length;
+        for (long i = indexOf(pattern[0], from, to); i >= 0 && i <= last; i = indexOf(pattern[0], i + 1, to)) {
+            int matched = 1;
+            while (matched < pattern.length && get(i + matched) == pattern[matched]) {
+                ++matched;
+            }
+            if (matched == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Копирует байты [from, from + length) в массив
+     */
+    void copy(long from, byte[] target, int offset, int length) {
+        while (length > 0) {
+            ByteBuffer segment = segments[(int) (from >>> shift)].duplicate();
+            int position = (int) (from & mask);
+            int count = Math.min(length, segment.limit() - position);
+            segment.position(position);
+            segment.get(target, offset, count);
+            from += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * @return символы, закодированные байтами [from, to)
+     */
+    String decode(long from, long to, Charset charset) {
+        byte[] bytes = new byte[(int) (to - from)];
+        copy(from, bytes, 0, bytes.length);
+        return new String(bytes, charset);
+    }
+}
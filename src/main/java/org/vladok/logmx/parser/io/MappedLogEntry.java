@@ -0,0 +1,160 @@
+package org.vladok.logmx.parser.io;
+
+import org.vladok.logmx.parser.EntryHeaderScanner;
+import org.vladok.logmx.parser.udata.UDataFormatter;
+
+import java.nio.charset.Charset;
+
+/**
+ * Запись, прочитанная {@link MappedLogReader}: только границы в отображенном файле.
+ * Поля декодируются в символы при первом обращении, сообщение кешируется.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 21:15
+ */
+public final class MappedLogEntry {
+
+    /** Начало бизнес-объекта в байтах: символы ASCII одинаковы в UTF-8 и однобайтовых кодировках */
+    private static final byte[] UDATA_START = ascii(UDataFormatter.BUSINESS_OBJ_BEGINNING);
+
+    private final MappedFile bytes;
+
+    private final Charset charset;
+
+    /** Начало строки заголовка */
+    private final long offset;
+
+    /** Границы полей в байтах от offset, как у {@link EntryHeaderScanner} */
+    private final long bounds;
+
+    /** Конец сообщения: без перевода строки последней строки записи */
+    private final long messageEnd;
+
+    /** Начало следующей строки после записи */
+    private final long end;
+
+    /** Декодированное сообщение */
+    private String message;
+
+    /** Поток и уровень из словаря или декодированные */
+    private String thread;
+
+    private String level;
+
+    MappedLogEntry(MappedFile bytes, Charset charset, long offset, long bounds, long messageEnd, long end) {
+        this(bytes, charset, offset, bounds, messageEnd, end, null, null);
+    }
+
+    /**
+     * @param thread поток, если он уже известен, или null
+     * @param level  уровень, если он уже известен, или null
+     */
+    MappedLogEntry(MappedFile bytes, Charset charset, long offset, long bounds, long messageEnd, long end,
+                   String thread, String level) {
+        this.bytes = bytes;
+        this.charset = charset;
+        this.offset = offset;
+        this.bounds = bounds;
+        this.messageEnd = messageEnd;
+        this.end = end;
+        this.thread = thread;
+        this.level = level;
+    }
+
+    /**
+     * @return смещение строки заголовка в файле, в байтах
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return смещение следующей за записью строки, в байтах
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    public String getDate() {
+        return bytes.decode(offset, offset + EntryHeaderScanner.TIMESTAMP_LENGTH, charset);
+    }
+
+    public String getThread() {
+        String result = thread;
+        if (result == null) {
+            result = bytes.decode(offset + EntryHeaderScanner.THREAD_START, offset + EntryHeaderScanner.threadEnd(bounds), charset);
+            thread = result;
+        }
+        return result;
+    }
+
+    public String getLevel() {
+        String result = level;
+        if (result == null) {
+            result = bytes.decode(offset + EntryHeaderScanner.levelStart(bounds), offset + EntryHeaderScanner.levelEnd(bounds), charset);
+            level = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return границы полей в строке заголовка, как у {@link EntryHeaderScanner}
+     */
+    long getBounds() {
+        return bounds;
+    }
+
+    /**
+     * @return конец сообщения в файле, в байтах
+     */
+    long getMessageEnd() {
+        return messageEnd;
+    }
+
+    /**
+     * @return true, если сообщение содержит начало бизнес-объекта; ищется по байтам, без декодирования
+     */
+    public boolean containsUData() {
+        return bytes.indexOf(UDATA_START, messageStart(), messageEnd) >= 0;
+    }
+
+    /**
+     * @return длина сообщения в байтах, без декодирования
+     */
+    public long getMessageLength() {
+        return messageEnd - messageStart();
+    }
+
+    /**
+     * @return сообщение; строки многострочной записи разделены '\n', как в парсере для LogMX
+     */
+    public String getMessage() {
+        String result = message;
+        if (result == null) {
+            result = bytes.decode(messageStart(), messageEnd, charset);
+            if (result.indexOf('\r') >= 0) {
+                result = result.replace("\r\n", "\n");
+            }
+            message = result;
+        }
+        return result;
+    }
+
+    private long messageStart() {
+        return offset + EntryHeaderScanner.messageStart(bounds);
+    }
+
+    private static byte[] ascii(String text) {
+        byte[] result = new byte[text.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) text.charAt(i);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return getDate() + " [" + getThread() + "] " + getLevel() + " - " + getMessage();
+    }
+}
@@ -0,0 +1,160 @@
+package org.vladok.logmx.parser.io;
+
+import org.vladok.logmx.parser.EntryHeaderScanner;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Последовательное чтение записей application.log из файла, отображенного в память.
+ * <p>
+ * Строки не декодируются: заголовки и границы полей ищутся по байтам {@link ByteHeaderScanner},
+ * строки-продолжения не копируются, а только сдвигают конец сообщения. Символы получаются
+ * только при обращении к полям {@link MappedLogEntry}. Разделитель строк - '\n', завершающий '\r'
+ * отбрасывается; строки до первого заголовка пропускаются - все как в парсере для LogMX.
+ * <p>
+ * Размер файла фиксируется при открытии. Записи остаются читаемыми и после {@link #close()},
+ * отображение освобождается сборщиком мусора. Сам читатель не потокобезопасен.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 21:30
+ */
+public class MappedLogReader implements Closeable {
+
+    private final RandomAccessFile file;
+
+    private final MappedFile bytes;
+
+    private final Charset charset;
+
+    private final ByteHeaderScanner scanner;
+
+    /** Начало следующей непрочитанной строки */
+    private long position;
+
+    /**
+     * @param file    файл лога
+     * @param charset UTF-8 или однобайтовая ASCII-совместимая кодировка, например windows-1251
+     */
+    public MappedLogReader(File file, Charset charset) throws IOException {
+        this(file, charset, MappedFile.DEFAULT_SEGMENT_SHIFT);
+    }
+
+    MappedLogReader(File file, Charset charset, int segmentShift) throws IOException {
+        this.charset = charset;
+        this.scanner = ByteHeaderScanner.forCharset(charset);
+        this.file = new RandomAccessFile(file, "r");
+        try {
+            this.bytes = new MappedFile(this.file.getChannel(), segmentShift);
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return размер файла на момент открытия
+     */
+    public long size() {
+        return bytes.size();
+    }
+
+    /**
+     * @return смещение, с которого продолжится чтение
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * @param position начало строки, с которой продолжить чтение
+     */
+    public void seek(long position) {
+        if (position < 0 || position > bytes.size()) {
+            throw new IllegalArgumentException("Смещение за пределами файла: " + position);
+        }
+        this.position = position;
+    }
+
+    /**
+     * @return следующая запись или null, если записей больше нет
+     */
+    public MappedLogEntry next() {
+        long size = bytes.size();
+        // Пропускаем строки до заголовка
+        long headerStart = position;
+        long header = EntryHeaderScanner.NO_MATCH;
+        long lineEnd = 0;
+        while (headerStart < size) {
+            lineEnd = lineEnd(headerStart);
+            header = scan(headerStart, contentEnd(headerStart, lineEnd));
+            if (header != EntryHeaderScanner.NO_MATCH) {
+                break;
+            }
+            headerStart = lineEnd + 1;
+        }
+        if (header == EntryHeaderScanner.NO_MATCH) {
+            position = size;
+            return null;
+        }
+        // Дописываем строки-продолжения до следующего заголовка
+        long messageEnd = contentEnd(headerStart, lineEnd);
+        long lineStart = lineEnd + 1;
+        while (lineStart < size) {
+            lineEnd = lineEnd(lineStart);
+            long contentEnd = contentEnd(lineStart, lineEnd);
+            if (scan(lineStart, contentEnd) != EntryHeaderScanner.NO_MATCH) {
+                break;
+            }
+            messageEnd = contentEnd;
+            lineStart = lineEnd + 1;
+        }
+        position = Math.min(lineStart, size);
+        return new MappedLogEntry(bytes, charset, headerStart, header, messageEnd, position);
+    }
+
+    /**
+     * Строка почти всегда лежит в одном сегменте, иначе ее байты копируются
+     */
+    private long scan(long lineStart, long lineEnd) {
+        if (lineStart >= bytes.size()) {
+            return EntryHeaderScanner.NO_MATCH;
+        }
+        ByteBuffer segment = bytes.segment(lineStart, lineEnd);
+        if (segment != null) {
+            int from = bytes.offsetInSegment(lineStart);
+            return scanner.scan(segment, from, from + (int) (lineEnd - lineStart));
+        }
+        if (lineEnd - lineStart > Integer.MAX_VALUE) {
+            return EntryHeaderScanner.NO_MATCH;
+        }
+        byte[] line = new byte[(int) (lineEnd - lineStart)];
+        bytes.copy(lineStart, line, 0, line.length);
+        return scanner.scan(ByteBuffer.wrap(line), 0, line.length);
+    }
+
+    /**
+     * @return смещение '\n' в конце строки или размер файла для последней строки
+     */
+    private long lineEnd(long lineStart) {
+        long end = bytes.indexOf((byte) '\n', lineStart, bytes.size());
+        return end < 0 ? bytes.size() : end;
+    }
+
+    /**
+     * @return конец строки без завершающего '\r'
+     */
+    private long contentEnd(long lineStart, long lineEnd) {
+        return lineEnd > lineStart && bytes.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,164 @@
+package org.vladok.logmx.parser.spill;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Символы файла, записанного {@link SpillWriter}, отображенного в память сегментами:
+ * одно отображение не может быть больше 2 Гб. Символы читаются из страниц файла,
+ * в куче только массив сегментов. Отображение освобождается в {@link #close()}: пока файл отображен,
+ * Windows не дает его удалить. Если не закрыть, отображение освободит сборщик мусора.
+ * Не потокобезопасен.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 15:25
+ */
+public final class MappedChars implements CharSequence, Closeable {
+
+    /** Порядок байт при записи и чтении символов */
+    static final ByteOrder BYTE_ORDER = ByteOrder.nativeOrder();
+
+    /** Сегменты по 2^29 символов (1 Гб) */
+    private static final int SEGMENT_SHIFT = 29;
+
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    /** Общий для последовательности и ее частей, после {@link #close()} пустой */
+    private final CharBuffer[] segments;
+
+    /** Отображения сегментов, у частей последовательности null */
+    private final MappedByteBuffer[] mappings;
+
+    private final int offset;
+
+    private final int length;
+
+    /**
+     * @param file   файл
+     * @param length сколько символов читать, не больше Integer.MAX_VALUE
+     */
+    MappedChars(File file, int length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long segmentChars = 1L << SEGMENT_SHIFT;
+            segments = new CharBuffer[(int) ((length + segmentChars - 1) >>> SEGMENT_SHIFT)];
+            mappings = new MappedByteBuffer[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                long first = (long) i << SEGMENT_SHIFT;
+                long chars = Math.min(segmentChars, length - first);
+                mappings[i] = channel.map(FileChannel.MapMode.READ_ONLY, first * 2, chars * 2);
+                segments[i] = mappings[i].order(BYTE_ORDER).asCharBuffer();
+            }
+        } finally {
+            // Отображение остается действительным после закрытия файла
+            raf.close();
+        }
+        this.offset = 0;
+        this.length = length;
+    }
+
+    private MappedChars(CharBuffer[] segments, int offset, int length) {
+        this.segments = segments;
+        this.mappings = null;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Освобождает отображение файла. Чтение этой последовательности и ее частей после этого
+     * бросает исключение; у части последовательности ничего не делает
+     */
+    @Override
+    public void close() {
+        if (mappings == null) {
+            return;
+        }
+        for (int i = 0; i < mappings.length; i++) {
+            if (mappings[i] != null) {
+                segments[i] = null;
+                unmap(mappings[i]);
+                mappings[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Освобождает отображение сразу, не дожидаясь сборщика мусора: пока файл отображен, Windows не дает его удалить.
+     * Стандартного способа нет, поэтому через Unsafe.invokeCleaner (Java 9+) или cleaner() буфера (Java 7-8).
+     * Читать буфер и его представления после этого нельзя - обращение к освобожденной памяти роняет JVM
+     *
+     * @return true, если отображение освобождено; иначе оно освободится при сборке мусора
+     */
+    static boolean unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner == null) {
+                    return false;
+                }
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+                return true;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        long position = (long) offset + index;
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    /**
+     * Без копирования символов
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+        }
+        return new MappedChars(segments, offset + start, end - start);
+    }
+
+    /**
+     * Копирует символы в кучу, для огромного файла не вызывать
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            result.append(charAt(i));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,256 @@
+package org.vladok.logmx.parser.spill;
+
+import org.vladok.logmx.parser.udata.UDataFormatter;
+
+import java.io.IOException;
+
+/**
+ * Буфер текста записи с ограничением размера. Пока текст не больше maxChars символов,
+ * он собирается в памяти. Дальше весь текст переносится во временный файл ({@link SpillWriter}),
+ * в памяти остаются только начало и конец, поэтому одна огромная запись (пакет документов на 200 Мб,
+ * результат SQL-запроса) занимает в куче не больше maxChars символов, какой бы длины она ни была.
+ * <p>
+ * При добавлении текста ищется начало первого бизнес-объекта UData: просматривается только добавленный
+ * кусок и несколько символов перед ним, на случай начала, разорванного между кусками. Поэтому для записей
+ * без UData поиск по всему сообщению не нужен, а форматер начинает сразу с известного смещения.
+ * В файле начало ищется только внутри добавляемых кусков.
+ * <p>
+ * Для текста в памяти по мере добавления считается 64-битный отпечаток и число строк: по ним повторяющиеся
+ * сообщения (один и тот же стектрейс тысячи раз подряд) находятся без повторного просмотра текста.
+ * <p>
+ * Не потокобезопасен, создается на каждую запись.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 15:45
+ */
+public final class MessageBuffer implements Appendable {
+
+    /** Символов начала записи, которые остаются в сообщении после переноса в файл */
+    public static final int HEAD_CHARS = 64 * 1024;
+
+    /** Символов конца записи, которые остаются в сообщении после переноса в файл */
+    public static final int TAIL_CHARS = 16 * 1024;
+
+    private static final String UDATA_START = UDataFormatter.BUSINESS_OBJ_BEGINNING;
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /** Префикс временных файлов */
+    static final String FILE_PREFIX = "rainbow-entry-";
+
+    private final long maxChars;
+
+    private final int headChars;
+
+    private final int tailChars;
+
+    /** Текст в памяти, null после переноса в файл */
+    private StringBuilder buffer;
+
+    /** Запись в файл после переноса */
+    private SpillWriter spill;
+
+    /** Текст в файле, после {@link #toMessage()} */
+    private SpilledText spilled;
+
+    /** Смещение первого бизнес-объекта или -1 */
+    private long udataStart = -1;
+
+    /** Отпечаток текста в памяти (FNV-1a по символам) */
+    private long fingerprint = FNV_OFFSET_BASIS;
+
+    private int lineCount = 1;
+
+    /**
+     * @param maxChars сколько символов держать в памяти, 0 - без ограничения
+     */
+    public MessageBuffer(long maxChars) {
+        this(maxChars, HEAD_CHARS, TAIL_CHARS);
+    }
+
+    /**
+     * @param maxChars  сколько символов держать в памяти, 0 - без ограничения
+     * @param headChars символов начала в предпросмотре
+     * @param tailChars символов конца в предпросмотре
+     */
+    public MessageBuffer(long maxChars, int headChars, int tailChars) {
+        if (maxChars < 0) {
+            throw new IllegalArgumentException("Размер записи не может быть отрицательным: " + maxChars);
+        }
+        this.maxChars = maxChars == 0 ? Long.MAX_VALUE : maxChars;
+        this.headChars = headChars;
+        this.tailChars = tailChars;
+        this.buffer = new StringBuilder(80);
+    }
+
+    @Override
+    public MessageBuffer append(CharSequence text) throws IOException {
+        return append(text, 0, text.length());
+    }
+
+    @Override
+    public MessageBuffer append(CharSequence text, int start, int end) throws IOException {
+        if (spill == null) {
+            if (buffer.length() + (long) (end - start) <= maxChars) {
+                int from = buffer.length();
+                buffer.append(text, start, end);
+                long hash = fingerprint;
+                for (int i = start; i < end; i++) {
+                    char ch = text.charAt(i);
+                    hash = (hash ^ ch) * FNV_PRIME;
+                    if (ch == '\n') {
+                        ++lineCount;
+                    }
+                }
+                fingerprint = hash;
+                if (udataStart < 0) {
+                    // Начало бизнес-объекта могло начаться в конце прежнего текста
+                    udataStart = buffer.indexOf(UDATA_START, Math.max(0, from - UDATA_START.length() + 1));
+                }
+                return this;
+            }
+            startSpill();
+        }
+        if (udataStart < 0 && text instanceof String) {
+            int found = ((String) text).indexOf(UDATA_START, start);
+            if (found >= 0 && found + UDATA_START.length() <= end) {
+                udataStart = spill.length() + found - start;
+            }
+        }
+        spill.append(text, start, end);
+        return this;
+    }
+
+    @Override
+    public MessageBuffer append(char ch) throws IOException {
+        if (spill == null) {
+            if (buffer.length() < maxChars) {
+                buffer.append(ch);
+                fingerprint = (fingerprint ^ ch) * FNV_PRIME;
+                if (ch == '\n') {
+                    ++lineCount;
+                }
+                if (udataStart < 0 && ch == '\'' && endsWithUDataStart()) {
+                    udataStart = buffer.length() - UDATA_START.length();
+                }
+                return this;
+            }
+            startSpill();
+        }
+        spill.append(ch);
+        return this;
+    }
+
+    /**
+     * @return длина текста в символах
+     */
+    public long length() {
+        return spill != null ? spill.length() : buffer.length();
+    }
+
+    /**
+     * @return смещение начала первого бизнес-объекта UData в тексте или -1, если его нет
+     */
+    public long getUDataStart() {
+        return udataStart;
+    }
+
+    /**
+     * @return true, если текст перенесен во временный файл
+     */
+    public boolean isSpilled() {
+        return spill != null;
+    }
+
+    /**
+     * @return отпечаток текста; для текста во временном файле не определен
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return количество строк текста в памяти; для текста во временном файле не определено
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return true, если текст в памяти совпадает с сообщением
+     */
+    public boolean contentEquals(CharSequence message) {
+        if (spill != null || message.length() != buffer.length()) {
+            return false;
+        }
+        if (message instanceof String) {
+            return ((String) message).contentEquals(buffer);
+        }
+        for (int i = 0; i < buffer.length(); i++) {
+            if (buffer.charAt(i) != message.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return первая строка текста в памяти
+     */
+    public String firstLine() {
+        int end = buffer.indexOf("\n");
+        return buffer.substring(0, end < 0 ? buffer.length() : end);
+    }
+
+    /**
+     * @return текст в памяти без копирования, null после переноса в файл
+     */
+    StringBuilder chars() {
+        return buffer;
+    }
+
+    /**
+     * Завершает запись. Для текста во временном файле сообщение - начало и конец текста
+     * с отметкой о пропуске, сам текст доступен через {@link #getSpilled()}
+     *
+     * @return сообщение записи
+     */
+    public String toMessage() throws IOException {
+        if (spill == null) {
+            return buffer.toString();
+        }
+        if (spilled == null) {
+            spilled = spill.finish();
+        }
+        return spilled.preview();
+    }
+
+    /**
+     * @return текст во временном файле после {@link #toMessage()} или null, если он поместился в памяти
+     */
+    public SpilledText getSpilled() {
+        return spilled;
+    }
+
+    private boolean endsWithUDataStart() {
+        int from = buffer.length() - UDATA_START.length();
+        if (from < 0) {
+            return false;
+        }
+        for (int i = 0; i < UDATA_START.length(); i++) {
+            if (buffer.charAt(from + i) != UDATA_START.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void startSpill() throws IOException {
+        spill = new SpillWriter(FILE_PREFIX, headChars, tailChars);
+        spill.append(buffer);
+        buffer = null;
+    }
+}
@@ -0,0 +1,237 @@
+package org.vladok.logmx.parser.spill;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хранилище текстов записей вне кучи: тексты пишутся подряд во временный файл, отображенный в память
+ * сегментами по {@value #SEGMENT_CHARS} символов, символы хранятся как есть (UTF-16), как у {@link SpillWriter}.
+ * Запись получает только ссылку {@link StoredMessage} - сегмент, смещение и длину. Страницы сегментов
+ * принадлежат операционной системе и не просматриваются сборщиком мусора, поэтому куча и паузы сборки
+ * не растут вместе с логом.
+ * <p>
+ * Строка создается только при обращении к тексту (показ, поиск по колонке Body в LogMX); последние
+ * {@value #CACHE_ENTRIES} прочитанных текстов хранятся в куче.
+ * <p>
+ * Файл живет, пока нужны записи разбора: {@link #delete()} освобождает отображение и удаляет файл
+ * (см. {@link SpillFiles}), после этого вместо текстов читается {@link #DELETED_TEXT}.
+ * <p>
+ * Добавляет тексты только поток чтения, читать их можно из любого потока.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 23:40
+ */
+public final class MessageStore implements Closeable {
+
+    /** Символов в сегменте: 2^24, 32 Мб */
+    static final int SEGMENT_CHARS = 1 << 24;
+
+    /** Сколько прочитанных текстов держать в куче */
+    static final int CACHE_ENTRIES = 256;
+
+    /** Префикс временных файлов */
+    static final String FILE_PREFIX = "rainbow-messages-";
+
+    /** Текст записи после удаления хранилища: лог разобран заново, запись уже не показывается */
+    public static final String DELETED_TEXT = "<текст удален: лог разобран заново>";
+
+    /** Символов копируется за раз */
+    private static final int COPY_CHARS = 8 * 1024;
+
+    private final int segmentChars;
+
+    /** Последние прочитанные тексты, первым идет давно не использованный */
+    private final Map<StoredMessage, String> cache =
+            new LinkedHashMap<StoredMessage, String>(CACHE_ENTRIES * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<StoredMessage, String> eldest) {
+                    return size() > CACHE_ENTRIES;
+                }
+            };
+
+    private final char[] copy = new char[COPY_CHARS];
+
+    /** Файл создается при добавлении первого текста */
+    private File file;
+
+    private FileChannel channel;
+
+    private int segmentCount;
+
+    /** Отображения сегментов, освобождаются при удалении */
+    private final List<MappedByteBuffer> mappings = new ArrayList<MappedByteBuffer>();
+
+    /** Текущий сегмент, в него дописываются тексты */
+    private CharBuffer segment;
+
+    private long chars;
+
+    private boolean closed;
+
+    /** Изменяется под блокировкой cache, вместе с освобождением отображений */
+    private volatile boolean deleted;
+
+    public MessageStore() {
+        this(SEGMENT_CHARS);
+    }
+
+    /**
+     * @param segmentChars символов в сегменте
+     */
+    MessageStore(int segmentChars) {
+        if (segmentChars <= 0) {
+            throw new IllegalArgumentException("Размер сегмента должен быть положительным: " + segmentChars);
+        }
+        this.segmentChars = segmentChars;
+    }
+
+    /**
+     * Хранить стоит многострочный текст в памяти без UData: одна строка и так занимает мало,
+     * а сообщение с UData нужно форматеру целиком
+     *
+     * @return true, если текст записи можно перенести в хранилище
+     */
+    public boolean accepts(MessageBuffer buffer) {
+        return ! buffer.isSpilled() && buffer.getLineCount() > 1 && buffer.getUDataStart() < 0
+                && buffer.length() <= segmentChars;
+    }
+
+    /**
+     * Переносит текст записи в хранилище
+     *
+     * @param buffer текст, для которого {@link #accepts(MessageBuffer)}
+     * @return ссылка на текст
+     */
+    public StoredMessage add(MessageBuffer buffer) throws IOException {
+        if (closed) {
+            throw new IOException("Хранилище текстов " + file + " уже закрыто");
+        }
+        StringBuilder text = buffer.chars();
+        int length = text.length();
+        if (segment == null || segment.remaining() < length) {
+            nextSegment();
+        }
+        int offset = segment.position();
+        for (int from = 0; from < length; from += COPY_CHARS) {
+            int count = Math.min(COPY_CHARS, length - from);
+            text.getChars(from, from + count, copy, 0);
+            segment.put(copy, 0, count);
+        }
+        chars += length;
+        return new StoredMessage(this, segment, offset, length);
+    }
+
+    /**
+     * @return символов в хранилище
+     */
+    public long getChars() {
+        return chars;
+    }
+
+    /**
+     * @return временный файл или null, если текстов еще не было
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Больше текстов не будет; записанные остаются читаемыми, пока на них есть ссылки
+     */
+    @Override
+    public void close() throws IOException {
+        if ( ! closed) {
+            closed = true;
+            if (channel != null) {
+                // Отображение остается действительным после закрытия файла
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Освобождает отображения и удаляет файл. Если удалить не удалось, файл удаляется при выходе из программы
+     */
+    public void delete() {
+        synchronized (cache) {
+            if (deleted) {
+                return;
+            }
+            deleted = true;
+            cache.clear();
+            try {
+                close();
+            } catch (IOException ignored) {
+                // файл все равно удаляется
+            }
+            segment = null;
+            for (MappedByteBuffer mapping : mappings) {
+                MappedChars.unmap(mapping);
+            }
+            mappings.clear();
+            if (file != null && ! file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * @return true, если хранилище удалено и тексты больше не читаются
+     */
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * @return текст строкой, последние прочитанные берутся из кеша
+     */
+    String read(StoredMessage message) {
+        synchronized (cache) {
+            if (deleted) {
+                return DELETED_TEXT;
+            }
+            String result = cache.get(message);
+            if (result == null) {
+                result = message.read();
+                cache.put(message, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Символ текста; под той же блокировкой, что и {@link #delete()}, чтобы не читать освобожденное отображение
+     */
+    char charAt(CharBuffer segment, int position) {
+        synchronized (cache) {
+            if (deleted) {
+                // Отображение уже освобождено, чтение из него уронило бы JVM
+                throw new IllegalStateException("Хранилище текстов удалено");
+            }
+            return segment.get(position);
+        }
+    }
+
+    private void nextSegment() throws IOException {
+        if (channel == null) {
+            file = File.createTempFile(FILE_PREFIX, ".bin");
+            file.deleteOnExit();
+            channel = new RandomAccessFile(file, "rw").getChannel();
+        }
+        long position = (long) segmentCount * segmentChars * 2;
+        MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) segmentChars * 2);
+        mappings.add(mapping);
+        segment = mapping.order(MappedChars.BYTE_ORDER).asCharBuffer();
+        ++segmentCount;
+    }
+}
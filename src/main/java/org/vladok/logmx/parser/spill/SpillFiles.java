@@ -0,0 +1,79 @@
+package org.vladok.logmx.parser.spill;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Временные файлы одного разбора: тексты огромных записей, их отформатированная UData
+ * и хранилище многострочных текстов {@link MessageStore}.
+ * Файлы нужны, пока записи разбора показываются в LogMX; при следующем разборе тем же парсером (обновление лога)
+ * прежние записи отброшены, и файлы удаляются сразу, а не при выходе из программы.
+ * <p>
+ * Файл, добавленный после удаления (UData отформатирована уже после нового разбора), удаляется сразу.
+ * Потокобезопасен: форматирование добавляет файлы из потока отображения.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 15:50
+ */
+public final class SpillFiles {
+
+    private final List<SpilledText> texts = new ArrayList<SpilledText>();
+
+    private final List<MessageStore> stores = new ArrayList<MessageStore>();
+
+    private boolean deleted;
+
+    /**
+     * @param text текст во временном файле, принадлежащий записи этого разбора
+     */
+    public synchronized void add(SpilledText text) {
+        if (deleted) {
+            delete(text);
+        } else {
+            texts.add(text);
+        }
+    }
+
+    /**
+     * @param store хранилище текстов записей этого разбора
+     */
+    public synchronized void add(MessageStore store) {
+        if (deleted) {
+            store.delete();
+        } else {
+            stores.add(store);
+        }
+    }
+
+    /**
+     * @return сколько файлов и хранилищ ждут удаления
+     */
+    public synchronized int size() {
+        return texts.size() + stores.size();
+    }
+
+    /**
+     * Удаляет все файлы разбора; тексты записей после этого не читаются
+     */
+    public synchronized void delete() {
+        deleted = true;
+        for (SpilledText text : texts) {
+            delete(text);
+        }
+        texts.clear();
+        for (MessageStore store : stores) {
+            store.delete();
+        }
+        stores.clear();
+    }
+
+    /**
+     * Файл, который не удалось удалить (в Windows - открыт или отображен другим потоком), удаляется при выходе
+     */
+    private static void delete(SpilledText text) {
+        if ( ! text.delete()) {
+            text.getFile().deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.vladok.logmx.parser.spill;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Запись текста во временный файл: символы пишутся как есть (UTF-16), чтобы файл можно было
+ * отобразить в память и читать как {@link CharSequence} без декодирования ({@link MappedChars}).
+ * В памяти остаются только буфер записи, начало текста и кольцевой буфер его конца
+ * для предпросмотра, их размер не зависит от длины текста.
+ * <p>
+ * Не потокобезопасен.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 15:10
+ */
+public final class SpillWriter implements Appendable, Closeable {
+
+    /** Символов в буфере записи */
+    private static final int CHUNK_CHARS = 32 * 1024;
+
+    /** Символов в начале и в конце текста, которые остаются в памяти */
+    private final int headChars;
+
+    private final int tailChars;
+
+    private final File file;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer bytes;
+
+    private final CharBuffer chunk;
+
+    private final StringBuilder head;
+
+    /** Последние tailChars символов, позиция символа - length % tailChars */
+    private final char[] tail;
+
+    /** Всего записано символов */
+    private long length;
+
+    private boolean closed;
+
+    /**
+     * Создает временный файл, он удаляется при выходе из программы или {@link SpilledText#delete()}
+     *
+     * @param prefix    префикс имени файла
+     * @param headChars сколько символов начала оставить в памяти
+     * @param tailChars сколько символов конца оставить в памяти
+     */
+    public SpillWriter(String prefix, int headChars, int tailChars) throws IOException {
+        if (headChars < 0 || tailChars <= 0) {
+            throw new IllegalArgumentException("Некорректный размер предпросмотра: " + headChars + ", " + tailChars);
+        }
+        this.headChars = headChars;
+        this.tailChars = tailChars;
+        this.file = File.createTempFile(prefix, ".txt");
+        file.deleteOnExit();
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+        this.bytes = ByteBuffer.allocateDirect(CHUNK_CHARS * 2).order(MappedChars.BYTE_ORDER);
+        this.chunk = bytes.asCharBuffer();
+        this.head = new StringBuilder(Math.min(headChars, 1024));
+        this.tail = new char[tailChars];
+    }
+
+    @Override
+    public SpillWriter append(CharSequence text) throws IOException {
+        return append(text, 0, text.length());
+    }
+
+    /**
+     * Символы копируются по одному, без промежуточных строк
+     */
+    @Override
+    public SpillWriter append(CharSequence text, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            append(text.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public SpillWriter append(char ch) throws IOException {
+        if (closed) {
+            throw new IOException("Файл " + file + " уже закрыт");
+        }
+        if ( ! chunk.hasRemaining()) {
+            flush();
+        }
+        chunk.put(ch);
+        if (length < headChars) {
+            head.append(ch);
+        }
+        tail[(int) (length % tailChars)] = ch;
+        ++length;
+        return this;
+    }
+
+    /**
+     * @return сколько символов записано
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Дописывает буфер в файл и закрывает его
+     *
+     * @return записанный текст
+     */
+    public SpilledText finish() throws IOException {
+        close();
+        return new SpilledText(file, length, head.toString(), tail());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if ( ! closed) {
+            closed = true;
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Удаляет файл, если текст оказался не нужен
+     */
+    public void discard() {
+        try {
+            close();
+        } catch (IOException ignored) {
+            // файл все равно удаляется
+        }
+        file.delete();
+    }
+
+    private void flush() throws IOException {
+        bytes.position(0).limit(chunk.position() * 2);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+        chunk.clear();
+    }
+
+    /**
+     * @return последние символы в порядке записи
+     */
+    private String tail() {
+        int count = (int) Math.min(length, tailChars);
+        int from = (int) ((length - count) % tailChars);
+        StringBuilder result = new StringBuilder(count);
+        if (from + count <= tailChars) {
+            result.append(tail, from, count);
+        } else {
+            result.append(tail, from, tailChars - from).append(tail, 0, count - (tailChars - from));
+        }
+        return result.toString();
+    }
+}
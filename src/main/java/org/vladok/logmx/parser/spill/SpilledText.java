@@ -0,0 +1,86 @@
+package org.vladok.logmx.parser.spill;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Текст, записанный во временный файл: в памяти только начало и конец для предпросмотра.
+ * Сам текст читается из отображенного в память файла через {@link #chars()}.
+ * Неизменяемый, потокобезопасен.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 15:35
+ */
+public final class SpilledText {
+
+    private final File file;
+
+    private final long length;
+
+    private final String head;
+
+    private final String tail;
+
+    SpilledText(File file, long length, String head, String tail) {
+        this.file = file;
+        this.length = length;
+        this.head = head;
+        this.tail = tail;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return длина текста в символах
+     */
+    public long length() {
+        return length;
+    }
+
+    public String getHead() {
+        return head;
+    }
+
+    public String getTail() {
+        return tail;
+    }
+
+    /**
+     * Символы текста из отображенного в память файла, без копирования в кучу.
+     * Не длиннее Integer.MAX_VALUE, дальше текст не читается. После чтения закрыть, иначе файл
+     * остается отображенным до сборки мусора и в Windows не удаляется
+     */
+    public MappedChars chars() throws IOException {
+        return new MappedChars(file, (int) Math.min(length, Integer.MAX_VALUE));
+    }
+
+    /**
+     * @return начало и конец текста с отметкой о пропуске и именем файла с полным текстом
+     */
+    public String preview() {
+        long skipped = length - head.length() - tail.length();
+        if (skipped <= 0) {
+            // Начало и конец перекрываются, текст короче предпросмотра
+            return head + tail.substring((int) Math.min(tail.length(), head.length() + tail.length() - length));
+        }
+        return head + "\n... пропущено символов: " + skipped + ", полный текст в файле " + file.getPath() + " ...\n"
+                + tail;
+    }
+
+    /**
+     * Удаляет файл. Открытые через {@link #chars()} последовательности должны быть закрыты
+     *
+     * @return false, если файл не удален (например, в Windows он еще отображен в память)
+     */
+    public boolean delete() {
+        return file.delete();
+    }
+
+    @Override
+    public String toString() {
+        return "SpilledText{file=" + file + ", length=" + length + "}";
+    }
+}
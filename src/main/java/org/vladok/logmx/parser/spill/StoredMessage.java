@@ -0,0 +1,75 @@
+package org.vladok.logmx.parser.spill;
+
+import java.nio.CharBuffer;
+
+/**
+ * Ссылка на текст записи в {@link MessageStore}: символы читаются из отображенного в память сегмента,
+ * строка создается только в {@link #toString()}. LogMX показывает пользовательские поля через toString(),
+ * поэтому текст декодируется только при показе записи или поиске по полю.
+ * <p>
+ * Неизменяемый, потокобезопасен: символы читаются через хранилище под его блокировкой, поэтому удаление
+ * хранилища из другого потока не освободит отображение посреди чтения. После удаления хранилища toString()
+ * возвращает {@link MessageStore#DELETED_TEXT}, а charAt() бросает IllegalStateException.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 23:35
+ */
+public final class StoredMessage implements CharSequence {
+
+    private final MessageStore store;
+
+    /** Сегмент хранилища; читается только по абсолютному индексу, позицию двигает запись */
+    private final CharBuffer segment;
+
+    private final int offset;
+
+    private final int length;
+
+    StoredMessage(MessageStore store, CharBuffer segment, int offset, int length) {
+        this.store = store;
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        return store.charAt(segment, offset + index);
+    }
+
+    /**
+     * Без копирования символов
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+        }
+        return new StoredMessage(store, segment, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return store.read(this);
+    }
+
+    /**
+     * @return символы строкой, без кеша
+     */
+    String read() {
+        char[] chars = new char[length];
+        CharBuffer view = segment.duplicate();
+        view.position(offset);
+        view.get(chars);
+        return new String(chars);
+    }
+}
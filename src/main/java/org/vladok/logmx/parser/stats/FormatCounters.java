@@ -0,0 +1,52 @@
+package org.vladok.logmx.parser.stats;
+
+/**
+ * Счетчики форматирования UData одного потока разбора. Время и ошибки копятся здесь и добавляются
+ * в общую {@link ParserStats} каждые {@value #FLUSH_FORMATS} сообщений и в {@link #flush()},
+ * чтобы потоки пакетного разбора не писали в общую гистограмму на каждом сообщении.
+ * Не потокобезопасен.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 17:25
+ */
+public final class FormatCounters {
+
+    /** Через сколько сообщений добавлять счетчики в общую статистику */
+    static final int FLUSH_FORMATS = 1024;
+
+    private final ParserStats stats;
+
+    final LatencyHistogram formatTime = new LatencyHistogram();
+
+    long formatErrors;
+
+    private int formats;
+
+    public FormatCounters(ParserStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * @param nanos время форматирования одного сообщения
+     */
+    public void formatted(long nanos) {
+        formatTime.record(nanos);
+        if (++formats == FLUSH_FORMATS) {
+            flush();
+        }
+    }
+
+    public void formatError() {
+        ++formatErrors;
+    }
+
+    /**
+     * Добавляет счетчики в общую статистику
+     */
+    public void flush() {
+        stats.add(this);
+        formatErrors = 0;
+        formats = 0;
+    }
+}
@@ -0,0 +1,141 @@
+package org.vladok.logmx.parser.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма длительностей в наносекундах с логарифмическими интервалами:
+ * каждая степень двойки делится на {@value #SUB_BUCKETS} интервала, поэтому процентиль
+ * вычисляется с точностью до четверти значения. Память постоянная, запись без блокировок.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 16:40
+ */
+public final class LatencyHistogram {
+
+    /** Интервалов на каждую степень двойки, степень двойки */
+    static final int SUB_BUCKETS = 4;
+
+    private static final int SUB_BITS = 2;
+
+    /** Значения меньше этого хранятся каждое в своем интервале */
+    private static final int LINEAR = SUB_BUCKETS * 2;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(index(Long.MAX_VALUE) + 1);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos длительность, отрицательная считается нулевой
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(index(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long current = max.get();
+        while (value > current && ! max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Добавляет значения другой гистограммы и обнуляет ее
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < buckets.length(); i++) {
+            long values = other.buckets.getAndSet(i, 0);
+            if (values != 0) {
+                buckets.addAndGet(i, values);
+            }
+        }
+        count.addAndGet(other.count.getAndSet(0));
+        total.addAndGet(other.total.getAndSet(0));
+        long value = other.max.getAndSet(0);
+        long current = max.get();
+        while (value > current && ! max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return сумма длительностей в наносекундах
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile от 0 до 100
+     * @return верхняя граница интервала, в который попадает процентиль, не больше максимума; 0 если значений нет
+     */
+    public long getPercentile(double percentile) {
+        long values = count.get();
+        if (values == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(values * Math.min(Math.max(percentile, 0), 100) / 100);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(rank, 1)) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Интервал значения: старшие биты задают степень двойки, следующие {@link #SUB_BITS} бита - часть внутри нее
+     */
+    static int index(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - SUB_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return наибольшее значение, попадающее в интервал
+     */
+    static long upperBound(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exponent = (index - LINEAR) / SUB_BUCKETS + SUB_BITS + 1;
+        int sub = (index - LINEAR) % SUB_BUCKETS;
+        long lower = (1L << exponent) + ((long) sub << (exponent - SUB_BITS));
+        long width = 1L << (exponent - SUB_BITS);
+        return lower + width - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + getCount() + ", p50=" + getPercentile(50) + ", p99=" + getPercentile(99)
+                + ", max=" + getMax() + "}";
+    }
+}
@@ -0,0 +1,105 @@
+package org.vladok.logmx.parser.stats;
+
+/**
+ * Счетчики одного разбора файла: обычные поля, которые увеличивает только поток чтения.
+ * Каждые {@value #FLUSH_LINES} строк и в конце файла они добавляются в общую {@link ParserStats},
+ * чтобы в JMX был виден ход долгого открытия лога.
+ * Не потокобезопасен.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 17:20
+ */
+public final class ParseCounters {
+
+    /** Через сколько строк добавлять счетчики в общую статистику */
+    static final int FLUSH_LINES = 64 * 1024;
+
+    private final ParserStats stats;
+
+    /** Начало еще не учтенного времени разбора */
+    private long startNanos = System.nanoTime();
+
+    long lines;
+
+    long headerLines;
+
+    long entries;
+
+    long spilledEntries;
+
+    long filteredEntries;
+
+    long foldedEntries;
+
+    long maxEntryChars;
+
+    public ParseCounters(ParserStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Очередная строка файла
+     *
+     * @param header true, если строка - заголовок записи
+     */
+    public void line(boolean header) {
+        if (header) {
+            ++headerLines;
+        }
+        if (++lines == FLUSH_LINES) {
+            flush();
+        }
+    }
+
+    /**
+     * Запись передана в LogMX
+     *
+     * @param chars   длина текста записи
+     * @param spilled true, если текст перенесен во временный файл
+     */
+    public void entry(long chars, boolean spilled) {
+        ++entries;
+        if (spilled) {
+            ++spilledEntries;
+        }
+        if (chars > maxEntryChars) {
+            maxEntryChars = chars;
+        }
+    }
+
+    /**
+     * Запись отброшена фильтром, ее строки не копируются
+     */
+    public void filtered() {
+        ++filteredEntries;
+    }
+
+    /**
+     * Сообщение записи уже встречалось и не копируется
+     */
+    public void folded() {
+        ++foldedEntries;
+    }
+
+    /**
+     * Конец файла: счетчики добавляются в общую статистику
+     */
+    public void finish() {
+        flush();
+        stats.fileParsed();
+    }
+
+    private void flush() {
+        long now = System.nanoTime();
+        stats.add(this, now - startNanos);
+        startNanos = now;
+        lines = 0;
+        headerLines = 0;
+        entries = 0;
+        spilledEntries = 0;
+        filteredEntries = 0;
+        foldedEntries = 0;
+        maxEntryChars = 0;
+    }
+}
@@ -0,0 +1,347 @@
+package org.vladok.logmx.parser.stats;
+
+import org.vladok.logmx.parser.FieldDictionary;
+import org.vladok.logmx.parser.udata.UDataCache;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Статистика разбора и форматирования, общая для всех парсеров. Строки и записи считаются
+ * в {@link ParseCounters} потока чтения и добавляются сюда пачками, поэтому на каждую строку
+ * приходится только увеличение обычного поля. Форматирование и найденная UData считаются сразу:
+ * они редки по сравнению со строками и происходят в разных потоках. Пакетный разбор форматирует
+ * в каждом потоке пула и копит время в {@link FormatCounters} своего куска.
+ * Потокобезопасен, без блокировок.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 17:05
+ */
+public final class ParserStats implements ParserStatsMXBean {
+
+    /** Имя в JMX */
+    public static final String OBJECT_NAME = "org.vladok.logmx.parser:type=ParserStats";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private final FieldDictionary threads;
+
+    private final FieldDictionary levels;
+
+    private final UDataCache cache;
+
+    private final AtomicLong files = new AtomicLong();
+
+    private final AtomicLong lines = new AtomicLong();
+
+    private final AtomicLong headerLines = new AtomicLong();
+
+    private final AtomicLong entries = new AtomicLong();
+
+    private final AtomicLong udataEntries = new AtomicLong();
+
+    private final AtomicLong spilledEntries = new AtomicLong();
+
+    private final AtomicLong filteredEntries = new AtomicLong();
+
+    private final AtomicLong foldedEntries = new AtomicLong();
+
+    private final AtomicLong maxEntryChars = new AtomicLong();
+
+    /** Время разбора, суммарно по потокам чтения */
+    private final AtomicLong parseNanos = new AtomicLong();
+
+    private final AtomicLong formatErrors = new AtomicLong();
+
+    private final LatencyHistogram formatTime = new LatencyHistogram();
+
+    /**
+     * @param threads словарь имен потоков
+     * @param levels  словарь уровней
+     * @param cache   кеш отформатированной UData
+     */
+    public ParserStats(FieldDictionary threads, FieldDictionary levels, UDataCache cache) {
+        this.threads = threads;
+        this.levels = levels;
+        this.cache = cache;
+    }
+
+    /**
+     * Регистрирует статистику в JMX. Ошибка регистрации (например, класс парсера загружен повторно
+     * другим загрузчиком) не мешает разбору: статистика просто не видна в JMX
+     *
+     * @return true, если зарегистрирована
+     */
+    public boolean register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+            return true;
+        } catch (JMException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Добавляет счетчики потока чтения и обнуляет их
+     */
+    void add(ParseCounters counters, long nanos) {
+        lines.addAndGet(counters.lines);
+        headerLines.addAndGet(counters.headerLines);
+        entries.addAndGet(counters.entries);
+        spilledEntries.addAndGet(counters.spilledEntries);
+        filteredEntries.addAndGet(counters.filteredEntries);
+        foldedEntries.addAndGet(counters.foldedEntries);
+        // Каждый заголовок, не отброшенный фильтром, ищется в обоих словарях
+        long lookups = counters.headerLines - counters.filteredEntries;
+        threads.addLookups(lookups);
+        levels.addLookups(lookups);
+        parseNanos.addAndGet(nanos);
+        long current = maxEntryChars.get();
+        while (counters.maxEntryChars > current && ! maxEntryChars.compareAndSet(current, counters.maxEntryChars)) {
+            current = maxEntryChars.get();
+        }
+    }
+
+    void fileParsed() {
+        files.incrementAndGet();
+    }
+
+    /**
+     * Найдена запись с UData
+     */
+    public void udataEntry() {
+        udataEntries.incrementAndGet();
+    }
+
+    /**
+     * @param nanos время форматирования одного сообщения
+     */
+    public void formatted(long nanos) {
+        formatTime.record(nanos);
+    }
+
+    public void formatError() {
+        formatErrors.incrementAndGet();
+    }
+
+    /**
+     * Добавляет счетчики форматирования одного потока и обнуляет их
+     */
+    void add(FormatCounters counters) {
+        formatTime.add(counters.formatTime);
+        formatErrors.addAndGet(counters.formatErrors);
+    }
+
+    @Override
+    public long getFiles() {
+        return files.get();
+    }
+
+    @Override
+    public long getLines() {
+        return lines.get();
+    }
+
+    @Override
+    public long getHeaderLines() {
+        return headerLines.get();
+    }
+
+    @Override
+    public long getContinuationLines() {
+        return lines.get() - headerLines.get();
+    }
+
+    @Override
+    public double getHeaderRatio() {
+        long all = lines.get();
+        return all == 0 ? 0 : (double) headerLines.get() / all;
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        long nanos = parseNanos.get();
+        return nanos == 0 ? 0 : lines.get() * 1e9 / nanos;
+    }
+
+    @Override
+    public long getEntries() {
+        return entries.get();
+    }
+
+    @Override
+    public long getUDataEntries() {
+        return udataEntries.get();
+    }
+
+    @Override
+    public long getSpilledEntries() {
+        return spilledEntries.get();
+    }
+
+    @Override
+    public long getFilteredEntries() {
+        return filteredEntries.get();
+    }
+
+    @Override
+    public long getFoldedEntries() {
+        return foldedEntries.get();
+    }
+
+    @Override
+    public long getMaxEntryChars() {
+        return maxEntryChars.get();
+    }
+
+    @Override
+    public long getFormatCount() {
+        return formatTime.getCount();
+    }
+
+    @Override
+    public long getFormatErrors() {
+        return formatErrors.get();
+    }
+
+    @Override
+    public double getFormatTimeMeanMicros() {
+        long count = formatTime.getCount();
+        return count == 0 ? 0 : formatTime.getTotal() / NANOS_PER_MICRO / count;
+    }
+
+    @Override
+    public double getFormatTimeP50Micros() {
+        return formatTime.getPercentile(50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getFormatTimeP90Micros() {
+        return formatTime.getPercentile(90) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getFormatTimeP99Micros() {
+        return formatTime.getPercentile(99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getFormatTimeMaxMicros() {
+        return formatTime.getMax() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getThreadDictionaryHitRate() {
+        return threads.getHitRate();
+    }
+
+    @Override
+    public double getLevelDictionaryHitRate() {
+        return levels.getHitRate();
+    }
+
+    @Override
+    public long getUDataCacheHits() {
+        return cache.getHits();
+    }
+
+    @Override
+    public long getUDataCacheMisses() {
+        return cache.getMisses();
+    }
+
+    @Override
+    public long getUDataCacheEvictions() {
+        return cache.getEvictions();
+    }
+
+    @Override
+    public long getUDataCacheChars() {
+        return cache.getChars();
+    }
+
+    @Override
+    public void reset() {
+        files.set(0);
+        lines.set(0);
+        headerLines.set(0);
+        entries.set(0);
+        udataEntries.set(0);
+        spilledEntries.set(0);
+        filteredEntries.set(0);
+        foldedEntries.set(0);
+        maxEntryChars.set(0);
+        parseNanos.set(0);
+        formatErrors.set(0);
+        formatTime.reset();
+    }
+
+    /**
+     * @return все показатели по именам атрибутов JMX, в постоянном порядке
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        values.put("Files", getFiles());
+        values.put("Lines", getLines());
+        values.put("HeaderLines", getHeaderLines());
+        values.put("ContinuationLines", getContinuationLines());
+        values.put("HeaderRatio", getHeaderRatio());
+        values.put("LinesPerSecond", getLinesPerSecond());
+        values.put("Entries", getEntries());
+        values.put("UDataEntries", getUDataEntries());
+        values.put("SpilledEntries", getSpilledEntries());
+        values.put("FilteredEntries", getFilteredEntries());
+        values.put("FoldedEntries", getFoldedEntries());
+        values.put("MaxEntryChars", getMaxEntryChars());
+        values.put("FormatCount", getFormatCount());
+        values.put("FormatErrors", getFormatErrors());
+        values.put("FormatTimeMeanMicros", getFormatTimeMeanMicros());
+        values.put("FormatTimeP50Micros", getFormatTimeP50Micros());
+        values.put("FormatTimeP90Micros", getFormatTimeP90Micros());
+        values.put("FormatTimeP99Micros", getFormatTimeP99Micros());
+        values.put("FormatTimeMaxMicros", getFormatTimeMaxMicros());
+        values.put("ThreadDictionaryHitRate", getThreadDictionaryHitRate());
+        values.put("LevelDictionaryHitRate", getLevelDictionaryHitRate());
+        values.put("UDataCacheHits", getUDataCacheHits());
+        values.put("UDataCacheMisses", getUDataCacheMisses());
+        values.put("UDataCacheEvictions", getUDataCacheEvictions());
+        values.put("UDataCacheChars", getUDataCacheChars());
+        return values;
+    }
+
+    /**
+     * Записывает показатели в файл строками "имя=значение", файл перезаписывается
+     *
+     * @param file файл статистики
+     */
+    public void dump(File file) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), UTF_8);
+        try {
+            out.write("# " + new Date() + "\n");
+            for (Map.Entry<String, Object> value : snapshot().entrySet()) {
+                out.write(value.getKey() + "=" + value.getValue() + "\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ParserStats" + snapshot();
+    }
+}
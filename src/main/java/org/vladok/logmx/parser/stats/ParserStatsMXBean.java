@@ -0,0 +1,83 @@
+package org.vladok.logmx.parser.stats;
+
+/**
+ * Статистика парсера в JMX (jconsole, VisualVM): что замедляет открытие лога -
+ * чтение строк, разбор заголовков или форматирование UData.
+ * Время в микросекундах, счетчики накапливаются с запуска LogMX или вызова {@link #reset()}
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 16:55
+ */
+public interface ParserStatsMXBean {
+
+    long getFiles();
+
+    long getLines();
+
+    long getHeaderLines();
+
+    long getContinuationLines();
+
+    /**
+     * @return доля строк-заголовков от 0 до 1
+     */
+    double getHeaderRatio();
+
+    /**
+     * @return строк в секунду времени разбора (суммарно по потокам чтения)
+     */
+    double getLinesPerSecond();
+
+    long getEntries();
+
+    long getUDataEntries();
+
+    long getSpilledEntries();
+
+    /**
+     * @return записи, отброшенные фильтром по заголовку и не переданные в LogMX
+     */
+    long getFilteredEntries();
+
+    /**
+     * @return записи, сообщение которых уже встречалось и хранится одним экземпляром
+     */
+    long getFoldedEntries();
+
+    /**
+     * @return длина самой большой записи в символах
+     */
+    long getMaxEntryChars();
+
+    long getFormatCount();
+
+    long getFormatErrors();
+
+    double getFormatTimeMeanMicros();
+
+    double getFormatTimeP50Micros();
+
+    double getFormatTimeP90Micros();
+
+    double getFormatTimeP99Micros();
+
+    double getFormatTimeMaxMicros();
+
+    double getThreadDictionaryHitRate();
+
+    double getLevelDictionaryHitRate();
+
+    long getUDataCacheHits();
+
+    long getUDataCacheMisses();
+
+    long getUDataCacheEvictions();
+
+    long getUDataCacheChars();
+
+    /**
+     * Обнуляет счетчики и гистограмму, словари и кеш не меняются
+     */
+    void reset();
+}
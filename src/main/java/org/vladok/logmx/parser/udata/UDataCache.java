@@ -0,0 +1,226 @@
+package org.vladok.logmx.parser.udata;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Кеш отформатированной UData: одни и те же справочники, настройки и пустые объекты логируются
+ * снова и снова, и каждая копия форматировалась заново.
+ * <p>
+ * Ключ - отпечаток UData-части сообщения, от первого бизнес-объекта до конца. Текст перед ним
+ * форматированием не меняется, поэтому сообщения с разным началом ("Данные клиента 105: ...")
+ * и одинаковыми данными делят одну отформатированную строку. При совпадении отпечатка исходная строка
+ * сравнивается целиком, коллизия считается промахом.
+ * <p>
+ * Размер ограничен суммарным числом символов исходных и отформатированных строк, вытесняются давно
+ * не использованные. В кеш попадает только UData, встреченная повторно: отпечатки недавно встреченной
+ * хранятся в небольшой таблице, поэтому уникальные документы не копируются и не вытесняют справочники.
+ * Слишком большие сообщения не кешируются, чтобы одно из них не вытеснило весь кеш.
+ * Потокобезопасен: форматирование идет без блокировки, под блокировкой только поиск и вставка.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 12:40
+ */
+public final class UDataCache {
+
+    /** Сообщение больше этой доли кеша не кешируется */
+    private static final int MAX_ENTRY_FRACTION = 8;
+
+    /** Размер таблицы отпечатков недавно встреченной UData, степень двойки */
+    private static final int SEEN_SIZE = 4096;
+
+    private final long maxChars;
+
+    /** Порядок доступа: первым идет давно не использованный */
+    private final LinkedHashMap<Long, Cached> entries = new LinkedHashMap<Long, Cached>(256, 0.75f, true);
+
+    /** Отпечатки UData, встреченной один раз, по слоту от отпечатка */
+    private final long[] seen = new long[SEEN_SIZE];
+
+    private long chars;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /**
+     * @param maxChars сколько символов исходных и отформатированных строк хранить; 0 - не кешировать
+     */
+    public UDataCache(long maxChars) {
+        if (maxChars < 0) {
+            throw new IllegalArgumentException("Размер кеша не может быть отрицательным: " + maxChars);
+        }
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Форматирует сообщение, повторяющаяся UData берется из кеша
+     *
+     * @param message сообщение
+     * @return то же, что {@link UDataFormatter#format(String)}
+     */
+    public String format(String message) throws UDataFormatterException {
+        return format(message, message.indexOf(UDataTreeBuilder.BUSINESS_OBJ_BEGINNING));
+    }
+
+    /**
+     * Форматирует сообщение с известным началом первого бизнес-объекта
+     *
+     * @param message сообщение
+     * @param start   смещение первого бизнес-объекта или -1, если его нет
+     * @return то же, что {@link UDataFormatter#format(String)}
+     */
+    public String format(String message, int start) throws UDataFormatterException {
+        if (start < 0) {
+            return message;
+        }
+        if (maxChars == 0) {
+            return UDataFormatter.format(message, start);
+        }
+        int length = message.length() - start;
+        long fingerprint = fingerprint(message, start);
+        Long key = fingerprint;
+        String hit = null;
+        boolean seenBefore = false;
+        synchronized (this) {
+            Cached cached = entries.get(key);
+            if (cached != null && cached.source.length() == length
+                    && cached.source.regionMatches(0, message, start, length)) {
+                ++hits;
+                hit = cached.formatted;
+            } else {
+                ++misses;
+                int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & (SEEN_SIZE - 1);
+                seenBefore = seen[slot] == fingerprint;
+                seen[slot] = fingerprint;
+            }
+        }
+        if (hit != null) {
+            return withText(message, start, hit);
+        }
+        if ( ! seenBefore) {
+            // Первая встреча - запомнен только отпечаток
+            return UDataFormatter.format(message, start);
+        }
+        String source = message.substring(start);
+        String formatted = UDataFormatter.format(source);
+        long weight = (long) source.length() + formatted.length();
+        if (weight <= maxChars / MAX_ENTRY_FRACTION) {
+            put(key, new Cached(source, formatted), weight);
+        }
+        return withText(message, start, formatted);
+    }
+
+    /**
+     * Текст до первого бизнес-объекта форматированием не меняется, перед объектом перенос строки
+     *
+     * @return результат форматирования всего сообщения
+     */
+    private static String withText(String message, int start, String formatted) {
+        if (start == 0) {
+            return formatted;
+        }
+        return new StringBuilder(start + 1 + formatted.length())
+                .append(message, 0, start).append('\n').append(formatted).toString();
+    }
+
+    private synchronized void put(Long key, Cached value, long weight) {
+        Cached previous = entries.put(key, value);
+        if (previous != null) {
+            chars -= previous.weight();
+        }
+        chars += weight;
+        Iterator<Cached> iterator = entries.values().iterator();
+        while (chars > maxChars && iterator.hasNext()) {
+            chars -= iterator.next().weight();
+            iterator.remove();
+            ++evictions;
+        }
+    }
+
+    /**
+     * Отпечаток части сообщения с позиции start: хеш как у String.hashCode() и длина.
+     * Хеш считается по четыре символа, чтобы умножения не ждали друг друга
+     */
+    private static long fingerprint(String message, int start) {
+        int end = message.length();
+        int hash = 0;
+        int i = start;
+        for (; i + 3 < end; i += 4) {
+            hash = hash * (31 * 31 * 31 * 31) + message.charAt(i) * (31 * 31 * 31)
+                    + message.charAt(i + 1) * (31 * 31) + message.charAt(i + 2) * 31 + message.charAt(i + 3);
+        }
+        for (; i < end; i++) {
+            hash = 31 * hash + message.charAt(i);
+        }
+        return ((long) hash << 32) | (end - start);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return количество вытесненных значений
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return количество значений в кеше
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return символов исходных и отформатированных строк в кеше
+     */
+    public synchronized long getChars() {
+        return chars;
+    }
+
+    public long getMaxChars() {
+        return maxChars;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        Arrays.fill(seen, 0);
+        chars = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "UDataCache{size=" + entries.size() + ", chars=" + chars + "/" + maxChars + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + "}";
+    }
+
+    /**
+     * Исходная UData-часть и результат ее форматирования
+     */
+    private static final class Cached {
+
+        final String source;
+
+        final String formatted;
+
+        Cached(String source, String formatted) {
+            this.source = source;
+            this.formatted = formatted;
+        }
+
+        long weight() {
+            return (long) source.length() + formatted.length();
+        }
+    }
+}
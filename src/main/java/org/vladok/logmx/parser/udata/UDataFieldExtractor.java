@@ -0,0 +1,265 @@
+package org.vladok.logmx.parser.udata;
+
+import org.vladok.logmx.parser.FieldDictionary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Извлечение отдельных значений из UData без форматирования и без построения дерева:
+ * тип первого бизнес-объекта и значения заданных ключей (первое вхождение на любой глубине).
+ * <p>
+ * Сообщение просматривается один раз, поиск начала UData и ключей совмещен. Ключ распознается
+ * по "=", перед которым заглавные буквы, цифры или подчеркивание, а перед ними "{", ", " или "'",
+ * поэтому каждый символ читается ограниченное число раз. Значение ограничивается так же, как
+ * при форматировании: до следующей пары ", KEY=", непарной "}" или конца бизнес-объекта "' ]";
+ * значение-массив или вложенный бизнес-объект берется целиком до парной "]".
+ * Создаются только строки извлеченных значений, типы берутся из словаря.
+ * <p>
+ * За тот же проход можно получить все пары с простыми значениями и типы всех бизнес-объектов
+ * ({@link Pairs}), например для индекса слов, не разбирая сообщение еще раз. Значение пары просматривается
+ * не дальше {@value #MAX_PAIR_VALUE_LENGTH} символов, а после переданной пары просмотр продолжается с конца
+ * значения, поэтому проход остается линейным.
+ * <p>
+ * Экземпляр неизменяем и может использоваться из нескольких потоков.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 11:40
+ */
+public final class UDataFieldExtractor {
+
+    /** Имя поля с типом бизнес-объекта */
+    public static final String TYPE_FIELD = "TYPE";
+
+    /** Больше ключей не помещается в битовую маску найденных */
+    public static final int MAX_KEYS = 64;
+
+    /** Пары с более длинными значениями (тексты, XML) не передаются, значение дальше не просматривается */
+    public static final int MAX_PAIR_VALUE_LENGTH = 256;
+
+    private static final String BUSINESS_OBJ_END = UDataTreeBuilder.BUSINESS_OBJ_END;
+
+    /** Типов бизнес-объектов в логе немного, строки типа общие для всех записей */
+    private static final FieldDictionary TYPES = new FieldDictionary(256);
+
+    private final String[] keys;
+
+    /**
+     * @param keys ключи UData, значения которых нужно извлекать
+     */
+    public UDataFieldExtractor(List<String> keys) {
+        if (keys.size() > MAX_KEYS) {
+            throw new IllegalArgumentException("Не больше " + MAX_KEYS + " ключей: " + keys);
+        }
+        this.keys = keys.toArray(new String[keys.size()]);
+    }
+
+    /**
+     * @return ключи UData, значения которых извлекаются
+     */
+    public List<String> getKeys() {
+        List<String> result = new ArrayList<String>(keys.length);
+        Collections.addAll(result, keys);
+        return result;
+    }
+
+    /**
+     * Ищет UData и записывает в fields тип ({@link #TYPE_FIELD}) и найденные ключи
+     *
+     * @param message сообщение
+     * @param fields  куда записывать значения, отсутствующие ключи не записываются
+     * @return true, если сообщение содержит UData
+     */
+    public boolean extract(String message, Map<String, Object> fields) {
+        return extract(message, message.indexOf(UDataTreeBuilder.BUSINESS_OBJ_BEGINNING), fields);
+    }
+
+    /**
+     * Записывает в fields тип и найденные ключи, начало первого бизнес-объекта уже известно
+     *
+     * @param message сообщение
+     * @param first   смещение первого бизнес-объекта или -1, если UData нет
+     * @param fields  куда записывать значения, отсутствующие ключи не записываются
+     * @return true, если сообщение содержит UData
+     */
+    public boolean extract(String message, int first, Map<String, Object> fields) {
+        return extract(message, first, fields, null);
+    }
+
+    /**
+     * Записывает в fields тип и найденные ключи и за тот же проход передает pairs все пары KEY=значение
+     * с простыми значениями (не массив и не UObject) и типы всех бизнес-объектов
+     *
+     * @param message сообщение
+     * @param first   смещение первого бизнес-объекта или -1, если UData нет
+     * @param fields  куда записывать значения, отсутствующие ключи не записываются; null - только пары
+     * @param pairs   получатель пар или null
+     * @return true, если сообщение содержит UData
+     */
+    public boolean extract(String message, int first, Map<String, Object> fields, Pairs pairs) {
+        if (first < 0) {
+            return false;
+        }
+        int typeStart = first + UDataTreeBuilder.BUSINESS_OBJ_BEGINNING.length();
+        int typeEnd = message.indexOf('\'', typeStart);
+        if (typeEnd > typeStart) {
+            if (fields != null) {
+                fields.put(TYPE_FIELD, TYPES.intern(message, typeStart, typeEnd));
+            }
+            if (pairs != null) {
+                pairs.pair(TYPE_FIELD, 0, TYPE_FIELD.length(), message, typeStart, typeEnd);
+            }
+        }
+        int wanted = fields != null ? keys.length : 0;
+        if (wanted == 0 && pairs == null) {
+            return true;
+        }
+        long found = 0;
+        long all = wanted == MAX_KEYS ? -1L : (1L << wanted) - 1;
+        int length = message.length();
+        // Начало текущей последовательности символов ключа
+        int keyStart = -1;
+        for (int i = Math.max(typeEnd, typeStart); i < length && (found != all || pairs != null); i++) {
+            char ch = message.charAt(i);
+            if (isKeyChar(ch)) {
+                if (keyStart < 0) {
+                    keyStart = i;
+                }
+                continue;
+            }
+            if (ch == '=' && keyStart >= 0 && isKeyStart(message, keyStart)) {
+                int key = wanted > 0 ? indexOfKey(message, keyStart, i) : -1;
+                boolean field = key >= 0 && (found & (1L << key)) == 0;
+                boolean pair = pairs != null && i + 1 < length && message.charAt(i + 1) != '['
+                        && message.charAt(i + 1) != '{';
+                int valueEnd = -1;
+                if (field) {
+                    valueEnd = valueEnd(message, i + 1, length);
+                    found |= 1L << key;
+                    fields.put(keys[key], message.substring(i + 1, valueEnd));
+                }
+                if (pair) {
+                    if (valueEnd < 0) {
+                        valueEnd = valueEnd(message, i + 1, Math.min(length, i + 2 + MAX_PAIR_VALUE_LENGTH));
+                    }
+                    if (valueEnd - (i + 1) <= MAX_PAIR_VALUE_LENGTH) {
+                        pairs.pair(message, keyStart, i, message, i + 1, valueEnd);
+                        // Значение просмотрено, следующий ключ не раньше его конца
+                        i = valueEnd - 1;
+                    }
+                }
+            } else if (ch == '[' && pairs != null && message.startsWith(UDataTreeBuilder.BUSINESS_OBJ_BEGINNING, i)) {
+                // Вложенный бизнес-объект
+                int nestedStart = i + UDataTreeBuilder.BUSINESS_OBJ_BEGINNING.length();
+                int nestedEnd = message.indexOf('\'', nestedStart);
+                if (nestedEnd > nestedStart) {
+                    pairs.pair(TYPE_FIELD, 0, TYPE_FIELD.length(), message, nestedStart, nestedEnd);
+                }
+            }
+            keyStart = -1;
+        }
+        return true;
+    }
+
+    /**
+     * Перед ключом начало UObject "{", разделитель пар ", " или начало данных бизнес-объекта "'"
+     */
+    private static boolean isKeyStart(String message, int keyStart) {
+        if (keyStart == 0) {
+            return false;
+        }
+        char before = message.charAt(keyStart - 1);
+        return before == '{' || before == '\'' || (before == ' ' && keyStart > 1 && message.charAt(keyStart - 2) == ',');
+    }
+
+    private int indexOfKey(String message, int from, int to) {
+        for (int i = 0; i < keys.length; i++) {
+            String key = keys[i];
+            if (key.length() == to - from && message.regionMatches(from, key, 0, key.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param start начало значения
+     * @param limit где прекратить просмотр
+     * @return конец значения (не включая), не больше limit
+     */
+    private static int valueEnd(String message, int start, int limit) {
+        if (start < limit && message.charAt(start) == '[') {
+            // Массив или бизнес-объект - до парной скобки
+            int open = 0;
+            for (int i = start; i < limit; i++) {
+                char ch = message.charAt(i);
+                if (ch == '[') {
+                    ++open;
+                } else if (ch == ']' && --open == 0) {
+                    return i + 1;
+                }
+            }
+            return limit;
+        }
+        int open = 0;
+        for (int i = start; i < limit; i++) {
+            char ch = message.charAt(i);
+            if (ch == '{') {
+                ++open;
+            } else if (ch == '}') {
+                if (--open < 0) {
+                    return i;
+                }
+            } else if (ch == ',' && isNextPair(message, i)) {
+                return i;
+            } else if (ch == '\'' && message.startsWith(BUSINESS_OBJ_END, i)) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * @return true, если с позиции i начинается следующая пара ", KEY="
+     */
+    private static boolean isNextPair(String message, int i) {
+        int length = message.length();
+        if (i + 1 >= length || message.charAt(i + 1) != ' ') {
+            return false;
+        }
+        for (int j = i + 2; j < length; j++) {
+            char ch = message.charAt(j);
+            if (ch == '=') {
+                return j > i + 2;
+            }
+            if ( ! isKeyChar(ch)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isKeyChar(char ch) {
+        return (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_';
+    }
+
+    /**
+     * Получатель пар KEY=значение и типов бизнес-объектов (ключ {@link #TYPE_FIELD}),
+     * границы передаются без создания строк
+     */
+    public interface Pairs {
+
+        /**
+         * @param key        строка с ключом
+         * @param keyStart   начало ключа
+         * @param keyEnd     конец ключа (не включая)
+         * @param message    сообщение
+         * @param valueStart начало значения
+         * @param valueEnd   конец значения (не включая)
+         */
+        void pair(String key, int keyStart, int keyEnd, String message, int valueStart, int valueEnd);
+    }
+}
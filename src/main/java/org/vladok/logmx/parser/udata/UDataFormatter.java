@@ -1,11 +1,17 @@
 package org.vladok.logmx.parser.udata;
 
-import java.util.Stack;
-
-import static org.vladok.logmx.parser.udata.UDataFormatter.Token.*;
+import java.io.IOException;
 
 /**
  * Класс предназначен для форматирования строки содержащей один или несколько элементов в формате UData
+ * <p>
+ * Строка разбирается один раз в {@link UDataTree}, результат печатается обходом дерева.
+ * Экземпляр переиспользуется между вызовами: дерево, отступы и буфер результата сохраняются.
+ * Статические методы берут экземпляр текущего потока, поэтому в установившемся режиме аллоцируется только итоговая строка.
+ * <p>
+ * Время работы линейно от длины строки: каждый символ читается ограниченное число раз, вложенность ограничена.
+ * Некорректная строка (обрыв посреди объекта) не приводит к исключению: результат содержит то,
+ * что удалось разобрать до конца строки.
  *
  * @author Vladislav Okulich-Kazarin
  *         Date: 24.09.2016
@@ -13,28 +19,62 @@ import static org.vladok.logmx.parser.udata.UDataFormatter.Token.*;
  */
 public class UDataFormatter {
 
-    /** Стэк для хранения текущей вложенности */
-    private Stack<Token> stack = new Stack<Token>();
+    /** Начало бизнес-объекта, по нему определяется, что в сообщении есть UData */
+    public static final String BUSINESS_OBJ_BEGINNING = UDataTreeBuilder.BUSINESS_OBJ_BEGINNING;
 
     private static final char NEW_LINE = '\n';
     private static final String INDENT = "    ";
-    private static final String EMPTY_DATA = "[ TYPE: 'EMPTY_DATA'; DATA: '{}' ]";
-    private static final String BUSINESS_OBJ_BEGINNING = "[ TYPE: '";
-    private static final String BUSINESS_OBJ_END = "' ]";
-    /** Исходная строка в виде массива для удобства обращения к элементам */
-    private final char[] source;
-    /** Исходная строка */
-    private final String sourceStr;
-    /** Текущая позиция в исходной строке */
-    private int pos = 0;
-    /** Результирующая строка */
-    private StringBuilder result;
+
+    /** Заранее вычисленные отступы для первых уровней вложенности */
+    private static final String[] INDENTS = new String[32];
+    static {
+        INDENTS[0] = "";
+        for (int i = 1; i < INDENTS.length; i++) {
+            INDENTS[i] = INDENTS[i - 1] + INDENT;
+        }
+    }
+
+    /**
+     * Максимальная вложенность. Глубже остаток строки копируется как есть:
+     * это ограничивает и глубину рекурсии, и размер отступов в результате
+     */
+    static final int MAX_DEPTH = 64;
+
+    /** Начальный размер буфера результата */
+    private static final int INITIAL_BUFFER_CAPACITY = 16 * 1024;
+    /** Буфер больше этого размера не удерживается после форматирования огромного сообщения */
+    private static final int MAX_RETAINED_BUFFER_CAPACITY = 1024 * 1024;
+    /** Дерево с большим числом узлов не удерживается после разбора огромного сообщения */
+    private static final int MAX_RETAINED_NODES = 16 * 1024;
+
+    /** Экземпляр форматера для каждого потока */
+    private static final ThreadLocal<UDataFormatter> THREAD_FORMATTER = new ThreadLocal<UDataFormatter>() {
+        @Override
+        protected UDataFormatter initialValue() {
+            return new UDataFormatter();
+        }
+    };
+
+    /** Дерево разбора текущей строки, сохраняется между вызовами */
+    private final UDataTree tree = new UDataTree();
+    private final UDataTreeBuilder builder = new UDataTreeBuilder();
+    /** Текущий уровень вложенности при печати */
+    private int depth;
+    /** Исходная строка, читается без копирования */
+    private CharSequence source;
+    /** Длина исходной строки */
+    private int length;
+    /** Результат, пишется по мере обхода дерева */
+    private Appendable result;
+    /** Буфер для результата в виде строки, сохраняется между вызовами */
+    private StringBuilder buffer = new StringBuilder(INITIAL_BUFFER_CAPACITY);
+    /** Экземпляр сейчас форматирует (защита от повторного входа через Appendable) */
+    private boolean busy;
+    /** Объем работы текущего форматирования */
+    private long work;
 
 
-    private UDataFormatter(String source) {
-        this.sourceStr = source;
-        this.source = source.toCharArray();
-        result = new StringBuilder(this.source.length * 2);
+    public UDataFormatter() {
     }
 
     /**
@@ -44,319 +84,295 @@ public class UDataFormatter {
      * @return строка с отформатированными бизнес-объектами
      */
     public static String format(String source) throws UDataFormatterException {
-        try {
-            return new UDataFormatter(source).format();
-        } catch (Exception e) {
-            throw new UDataFormatterException("Ошибка при форматировании строки", e);
-        }
+        return threadFormatter().formatToString(source);
+    }
 
+    /**
+     * Форматирует строку, начало первого бизнес-объекта в которой уже известно:
+     * текст перед ним копируется целиком, без поиска бизнес-объекта в каждой позиции
+     *
+     * @param source      исходная строка
+     * @param firstObject смещение первого бизнес-объекта; до него в строке не должно быть начала бизнес-объекта
+     * @return то же, что {@link #format(String)}
+     */
+    public static String format(String source, int firstObject) throws UDataFormatterException {
+        return threadFormatter().formatToString(source, firstObject);
     }
 
     /**
-     * Форматирует произвольную строку содержащую бизнес объекты
+     * Форматирует произвольную последовательность символов содержащую бизнес объекты.
+     * Исходные данные не копируются, результат пишется в out по мере чтения {@link UDataStreamFormatter}
+     * без дерева разбора, поэтому память зависит от вложенности, а не от длины строки.
+     * При ошибке в out остается уже сформатированная часть.
      *
-     * @return строка с отформатированными бизнес-объектами
+     * @param source исходная строка
+     * @param out    куда писать строку с отформатированными бизнес-объектами
      */
-    private String format() {
-        while ((pos + 2) < source.length) {
-            if (isBusinessObjStart()) {
-                if (pos > 0) // Перенос не нужен если мы в самом начале
-                    result.append(NEW_LINE);
-                processBusinessObject();
-                if (pos < source.length) // Перенос не нужен если мы в самом конце
-                    result.append(NEW_LINE);
-            } else {
-                result.append(source[pos]);
-            }
-            ++pos;
-        }
-        while (pos < source.length) {
-            result.append(source[pos++]);
-        }
-        return result.toString();
+    public static void format(CharSequence source, Appendable out) throws UDataFormatterException {
+        UDataStreamFormatter.format(source, out);
     }
 
     /**
-     * @return находмися ли мы в начале бизнес-объекта
+     * @param message сообщение
+     * @return true, если сообщение содержит начало бизнес-объекта и его есть смысл форматировать
      */
-    private boolean isBusinessObjStart() {
-        // Если после скобки идет пробел и "Т", то это бизнес объект
-        // например [ TYPE: 'IBANK_DOCUMENT'; DATA: '
-        return matchesNext(BUSINESS_OBJ_BEGINNING);
+    public static boolean containsUData(String message) {
+        return message.contains(BUSINESS_OBJ_BEGINNING);
     }
 
     /**
-     * Обработка бизнес-объекта
+     * @return экземпляр текущего потока или новый, если он уже занят
      */
-    private void processBusinessObject() {
-        if (matchesNext(EMPTY_DATA)) {
-            result.append(EMPTY_DATA);
-            pos += EMPTY_DATA.length();
-            return;
-        }
-        stack.push(COMMON_BUSINESS_OBJECT);
-        int singleQuoteCount = 0;
-        while (singleQuoteCount < 3) {
-            result.append(source[pos]);
-            // Считаем одинарные ковычки, их должно быть 3
-            // [ TYPE: 'IBANK_DOCUMENT'; DATA: '
-            if (source[pos++] == '\'')
-                singleQuoteCount++;
-        }
-        while ( ! isBusinessObjEnd()) {
-            result.append(NEW_LINE);
-            processBusinessObjectEntry();
-        }
-        stack.pop();
-        // '
-        result.append(source[pos++]);
-        // пропускаем пробел
-        ++pos;
-        result.append(NEW_LINE);
-        indent();
-        // ]
-        result.append(source[pos++]);
+    private static UDataFormatter threadFormatter() {
+        UDataFormatter formatter = THREAD_FORMATTER.get();
+        return formatter.busy ? new UDataFormatter() : formatter;
     }
 
-    private boolean isBusinessObjEnd() {
-        return matchesNext(BUSINESS_OBJ_END);
+    /**
+     * Форматирует строку, используя внутренний буфер
+     *
+     * @param source исходная строка
+     * @return строка с отформатированными бизнес-объектами
+     */
+    public String formatToString(CharSequence source) throws UDataFormatterException {
+        return formatToString(source, 0);
     }
 
     /**
-     * Обработка элемента данных бизнес-объекта.
-     * Может являться UDataObject или списком бизнес-объектов и пар ключ-значение
+     * Форматирует строку с известным началом первого бизнес-объекта, используя внутренний буфер
+     *
+     * @param source      исходная строка
+     * @param firstObject смещение первого бизнес-объекта или 0
+     * @return строка с отформатированными бизнес-объектами
      */
-    private void processBusinessObjectEntry() {
-        indent();
-        if (source[pos] == '{') {
-            processUObject();
-        } else if (source[pos] == '[') {
-            processBracketOpen();
-        } else {
-            processKeyValue(BUSINESS_OBJ_END);
-        }
-        if (source[pos] == ',') {
-            result.append(source[pos++]);
-            // Пропускаем пробел после запятой
-            ++pos;
+    public String formatToString(CharSequence source, int firstObject) throws UDataFormatterException {
+        StringBuilder buffer = this.buffer;
+        buffer.setLength(0);
+        try {
+            formatTo(source, firstObject, buffer);
+            return buffer.toString();
+        } finally {
+            if (buffer.capacity() > MAX_RETAINED_BUFFER_CAPACITY) {
+                this.buffer = new StringBuilder(INITIAL_BUFFER_CAPACITY);
+            } else {
+                buffer.setLength(0);
+            }
         }
     }
 
     /**
-     * Обработка простого UDataObject имеющего вид: {KEY=VALUE, KEY2=VALUE2, ...}
+     * Форматирует последовательность символов через дерево разбора, записывая результат в out обходом дерева.
+     * Дерево растет с длиной строки; строку, которая не помещается в памяти, форматировать
+     * {@link #format(CharSequence, Appendable)}
+     *
+     * @param source исходная строка
+     * @param out    куда писать строку с отформатированными бизнес-объектами
      */
-    private void processUObject() {
-        // Пустой объект {}
-        if (source[pos + 1] == '}') {
-            result.append(source[pos++]).append(source[pos++]);
-            return;
-        }
-        stack.push(UOBJECT);
-        // {
-        result.append(source[pos++]).append(NEW_LINE);
-        while (source[pos] != '}') {
-            indent();
-            processKeyValue("}");
-            result.append(NEW_LINE);
-        }
-        stack.pop();
-        indent();
-        result.append(source[pos++]);
+    public void formatTo(CharSequence source, Appendable out) throws UDataFormatterException {
+        formatTo(source, 0, out);
     }
 
     /**
-     * Обработка пары ключ-занчение
-     * KEY=VALUE
-     * @param expectedEnd ожидаемое окончание последовательности ключ-значение
+     * Форматирует последовательность символов с известным началом первого бизнес-объекта
+     *
+     * @param source      исходная строка
+     * @param firstObject смещение первого бизнес-объекта или 0
+     * @param out         куда писать строку с отформатированными бизнес-объектами
      */
-    private void processKeyValue(String expectedEnd) {
-        processUObjectFieldName();
-        if (source[pos] == '[') {
-            processBracketOpen();
-        } else {
-            // иначе просто константа
-            processConst(expectedEnd);
+    public void formatTo(CharSequence source, int firstObject, Appendable out) throws UDataFormatterException {
+        if (busy) {
+            throw new IllegalStateException("UDataFormatter is already in use");
         }
-        while (source[pos] != ',' && ! matchesNext(expectedEnd)) {
-            result.append(source[pos]);
-            ++pos;
-        }
-        if (source[pos] == ',') {
-            result.append(source[pos++]);
-            // Пропускаем пробел после запятой
-            ++pos;
+        busy = true;
+        reset(source, out);
+        work = 0;
+        try {
+            builder.build(tree, source, firstObject);
+            work += builder.work();
+            print();
+        } catch (Exception e) {
+            throw new UDataFormatterException("Ошибка при форматировании строки", e);
+        } finally {
+            reset(null, null);
+            tree.release(MAX_RETAINED_NODES);
+            busy = false;
         }
     }
 
     /**
-     * Имя поля из пары ключ-значение
-     * SOME_FIELD=
+     * Подготовка к форматированию новой строки
      */
-    private void processUObjectFieldName() {
-        while (source[pos] != '=') {
-            result.append(source[pos]);
-            ++pos;
-        }
-        // =
-        result.append(source[pos++]);
+    private void reset(CharSequence source, Appendable out) {
+        this.source = source;
+        this.length = source != null ? source.length() : 0;
+        this.result = out;
+        this.depth = 0;
     }
 
     /**
-     * Обрабтка константного значения из пары ключ-значение
-     *
-     * @param expectedEnd ожидаемое окончание последовательности ключ-значение
+     * Печать текста и бизнес-объектов верхнего уровня
      */
-    private void processConst(String expectedEnd) {
-        // Счетчик символов противоположных ожидаемому концу
-        // т.е. если ожидаемый конец это },
-        // то мы увеличиваем счетчик при встрече { и уменьшаем при }
-        int openStack = 0;
-        while ( ! lookAheadUObjectEntry()) {
-            if (isOpposite(source[pos], expectedEnd)) {
-                ++openStack;
+    private void print() throws IOException {
+        for (int node = tree.firstChild(UDataTree.ROOT); node >= 0; node = tree.nextSibling(node)) {
+            if (tree.kind(node) == UDataTree.TEXT) {
+                copy(tree.start(node), tree.rawEnd(node));
+                continue;
             }
-            // Конец выходим
-            if (matchesNext(expectedEnd)) {
-                --openStack;
-                if (openStack < 0)
-                    return;
-            }
-            result.append(source[pos]);
-            ++pos;
+            if (tree.start(node) > 0) // Перенос не нужен если мы в самом начале
+                result.append(NEW_LINE);
+            print(node);
+            if (tree.rawEnd(node) < length) // Перенос не нужен если мы в самом конце
+                result.append(NEW_LINE);
+        }
+    }
+
+    private void print(int node) throws IOException {
+        switch (tree.kind(node)) {
+            case UDataTree.BUSINESS_OBJECT:
+                printBusinessObject(node);
+                break;
+            case UDataTree.UOBJECT:
+                printUObject(node);
+                break;
+            case UDataTree.ARRAY:
+                printArray(node);
+                break;
+            case UDataTree.KEY_VALUE:
+                printKeyValue(node);
+                break;
+            default:
+                // Константа или остаток строки при слишком глубокой вложенности
+                copy(tree.start(node), tree.rawEnd(node));
         }
     }
 
     /**
-     * Проверяет является ли символ началом для указаного конца.
-     * Т.е. возвращает true если ch является открывающей скобкой, а end соответсвующей закрывающей
-     *
-     * @param ch проверяемый символ
-     * @param end закрывающая последовательность
-     * @return true если ch является открывающей скобкой, а end соответсвующей закрывающей
+     * Бизнес-объект: заголовок, элементы данных с новой строки, закрывающая скобка на уровне заголовка
      */
-    private boolean isOpposite(char ch, String end) {
-        if ("}".equals(end)) {
-           return ch == '{';
+    private void printBusinessObject(int node) throws IOException {
+        if (tree.is(node, UDataTree.EMPTY)) {
+            copy(tree.start(node), tree.rawEnd(node));
+            return;
         }
-        if ("]".equals(end)) {
-            return ch == '[';
+        ++depth;
+        // [ TYPE: 'IBANK_DOCUMENT'; DATA: '
+        copy(tree.start(node), tree.mark(node));
+        if ( ! tree.is(node, UDataTree.HEADER))
+            return;
+        for (int entry = tree.firstChild(node); entry >= 0; entry = tree.nextSibling(entry)) {
+            result.append(NEW_LINE);
+            indent();
+            print(entry);
+            if (tree.is(entry, UDataTree.ENTRY_COMMA))
+                result.append(',');
         }
-        return false;
+        if ( ! tree.is(node, UDataTree.CLOSED))
+            return;
+        --depth;
+        result.append('\'').append(NEW_LINE);
+        indent();
+        result.append(']');
     }
 
     /**
-     * Смотрим вперед в ожидании корректного начала элемента UObject т.е. ожидаем ", SOME_KEY="
-     *
-     * @return true, если дльше корретный элемент
+     * UObject: каждая пара ключ-значение на своей строке
      */
-    private boolean lookAheadUObjectEntry() {
-        int i = pos;
-        if (source[i] != ',' || source[i + 1] != ' ')
-            return false;
-        ++i;
-        while (source[++i] != '=') {
-            // Ключ длжен состоять из заглавных букв цифр или подчеркивания
-            if ( ! ((source[i] >= 'A' && source[i] <= 'Z') || (source[i] >= '0' && source[i] <= '9') || source[i] == '_')) {
-                return false;
-            }
+    private void printUObject(int node) throws IOException {
+        if (tree.is(node, UDataTree.EMPTY)) {
+            copy(tree.start(node), tree.rawEnd(node));
+            return;
+        }
+        ++depth;
+        result.append('{').append(NEW_LINE);
+        for (int pair = tree.firstChild(node); pair >= 0; pair = tree.nextSibling(pair)) {
+            indent();
+            printKeyValue(pair);
+            result.append(NEW_LINE);
         }
-        return true;
+        if ( ! tree.is(node, UDataTree.CLOSED))
+            return;
+        --depth;
+        indent();
+        result.append('}');
     }
 
     /**
-     * Обрабатываем возможные варианты начинающиеся с [
-     * либо бизнес-объект либо массив
+     * Пара KEY=VALUE, текст после значения и запятая
      */
-    private void processBracketOpen() {
-        if (matchesNext(BUSINESS_OBJ_BEGINNING)) {
-            processBusinessObject();
-        } else {
-            processArray();
-        }
+    private void printKeyValue(int node) throws IOException {
+        copy(tree.start(node), tree.mark(node));
+        if ( ! tree.is(node, UDataTree.EQUALS))
+            return;
+        result.append('=');
+        int value = tree.firstChild(node);
+        if (value < 0)
+            return;
+        print(value);
+        copy(tree.rawEnd(value), tree.mark2(node));
+        if (tree.is(node, UDataTree.COMMA))
+            result.append(',');
     }
 
     /**
-     * Обраоботка массива, например: [add, gg[], 123 foo]
+     * Массив: каждый элемент на своей строке
      */
-    private void processArray() {
-        // Пустой массив []
-        if (source[pos + 1] == ']') {
-            result.append(source[pos++]).append(source[pos++]);
+    private void printArray(int node) throws IOException {
+        if (tree.is(node, UDataTree.EMPTY)) {
+            copy(tree.start(node), tree.rawEnd(node));
             return;
         }
-        stack.push(ARRAY);
-        // [
-        result.append(source[pos++]).append(NEW_LINE);
-        while (source[pos] != ']') {
-            processArrayElement();
+        ++depth;
+        result.append('[').append(NEW_LINE);
+        for (int element = tree.firstChild(node); element >= 0; element = tree.nextSibling(element)) {
+            indent();
+            int object = tree.firstChild(element);
+            if (object >= 0)
+                print(object);
+            copy(tree.mark(element), tree.mark2(element));
+            if (tree.is(element, UDataTree.NEXT_ELEMENT)) {
+                result.append(',').append(NEW_LINE);
+            } else if (tree.is(element, UDataTree.LAST_ELEMENT)) {
+                result.append(NEW_LINE);
+            }
         }
-        stack.pop();
+        if ( ! tree.is(node, UDataTree.CLOSED))
+            return;
+        --depth;
         indent();
-        // ]
-        result.append(source[pos++]);
+        result.append(']');
     }
 
     /**
-     * Обработка элемента массива (списка)
+     * Добавить отступ на основе уровня вложенности
      */
-    private void processArrayElement() {
-        indent();
-        if (source[pos] == '[') {
-            processBracketOpen();
+    private void indent() throws IOException {
+        work += depth;
+        if (depth < INDENTS.length) {
+            result.append(INDENTS[depth]);
+            return;
         }
-        // Счетчик символов противоположных ожидаемому концу
-        // т.е. если ожидаемый конец это ],
-        // то мы увеличиваем счетчик при встрече [ и уменьшаем при ]
-        int openStack = 0;
-        // элементы разделяются запятой и пробелом
-        while (!matchesNext(", ")) {
-            if (source[pos] == '[') {
-                ++openStack;
-                // Конец массива - выходим
-            } else if (source[pos] == ']') {
-                --openStack;
-                if (openStack < 0) {
-                    result.append(NEW_LINE);
-                    return;
-                }
-            }
-            result.append(source[pos]);
-            ++pos;
+        result.append(INDENTS[INDENTS.length - 1]);
+        for (int i = INDENTS.length - 1; i < depth; i++) {
+            result.append(INDENT);
         }
-        // ,
-        result.append(source[pos++]).append(NEW_LINE);
-        // Пропускаем пробел
-        ++pos;
     }
 
-
     /**
-     * Добавить отступ на основе колличества элементов в стеке (уровень вложенности)
+     * Копирует участок исходной строки; границы оборванного узла могут выходить за конец строки
      */
-    private void indent() {
-        for (int i = 0; i < stack.size(); i++) {
-            result.append(INDENT);
+    private void copy(int from, int to) throws IOException {
+        to = Math.min(to, length);
+        if (from < to) {
+            result.append(source, from, to);
         }
     }
 
     /**
-     * Сравнивает иходную строку с указанной начиная с текущей позиции.
-     * Те мы проверяем что подстрока начиная с pos и длиной str.length() равна str
-     *
-     * @param str строка для сравнения
-     * @return true если строка строка str содержится после текущей позиции
+     * @return объем работы последнего форматирования: прочитанные при разборе символы и уровни отступов.
+     * Используется для проверки линейности
      */
-    private boolean matchesNext(String str) {
-        return sourceStr.regionMatches(pos, str, 0, str.length());
-    }
-
-    enum Token {
-        /** Массив элементов: [a, b, c] */
-        ARRAY,
-        /** {KEY=value, ...} */
-        UOBJECT,
-        /** [ TYPE: 'IBANK_DOCUMENT'; DATA: '...'] */
-        COMMON_BUSINESS_OBJECT
+    long work() {
+        return work;
     }
 
 }
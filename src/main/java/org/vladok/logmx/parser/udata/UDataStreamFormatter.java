@@ -0,0 +1,420 @@
+package org.vladok.logmx.parser.udata;
+
+import java.io.IOException;
+
+/**
+ * Форматер, который разбирает строку и сразу пишет результат, без дерева разбора.
+ * Результат тот же, что у {@link UDataFormatter}, но память не зависит от длины строки:
+ * заглядывание вперед ограничено ключом пары, вложенность - {@link UDataFormatter#MAX_DEPTH}.
+ * Поэтому им форматируются сообщения, которые не помещаются в памяти и читаются из файла,
+ * и им же пишет в Appendable {@link UDataFormatter#format(CharSequence, Appendable)}.
+ * Печать из {@link UDataTree} быстрее, и для обычных сообщений используется она.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 10:40
+ */
+public final class UDataStreamFormatter {
+
+    private static final char NEW_LINE = '\n';
+    private static final String INDENT = "    ";
+    private static final String EMPTY_DATA = "[ TYPE: 'EMPTY_DATA'; DATA: '{}' ]";
+    private static final String BUSINESS_OBJ_BEGINNING = "[ TYPE: '";
+    private static final String BUSINESS_OBJ_END = "' ]";
+
+    private static final int MAX_DEPTH = UDataFormatter.MAX_DEPTH;
+
+    private int depth;
+    private CharSequence source;
+    private int length;
+    private int pos;
+    private Appendable result;
+
+    private UDataStreamFormatter(CharSequence source, Appendable result) {
+        this.source = source;
+        this.length = source.length();
+        this.result = result;
+    }
+
+    /**
+     * @param source исходная строка
+     * @return строка с отформатированными бизнес-объектами
+     */
+    public static String format(CharSequence source) throws UDataFormatterException {
+        StringBuilder result = new StringBuilder(source.length() + source.length() / 4);
+        format(source, result);
+        return result.toString();
+    }
+
+    /**
+     * Форматирует последовательность символов, результат пишется в out по мере чтения.
+     * Символы читаются по порядку, кроме коротких заглядываний вперед, поэтому source может быть
+     * отображенным в память файлом
+     *
+     * @param source исходная строка
+     * @param out    куда писать строку с отформатированными бизнес-объектами
+     */
+    public static void format(CharSequence source, Appendable out) throws UDataFormatterException {
+        try {
+            new UDataStreamFormatter(source, out).format();
+        } catch (IOException e) {
+            throw new UDataFormatterException("Ошибка при записи отформатированной строки", e);
+        }
+    }
+
+    /**
+     * Форматирует произвольную строку содержащую бизнес объекты
+     */
+    private void format() throws IOException {
+        while ((pos + 2) < length) {
+            if (isBusinessObjStart()) {
+                if (pos > 0) // Перенос не нужен если мы в самом начале
+                    result.append(NEW_LINE);
+                processBusinessObject();
+                if (pos < length) // Перенос не нужен если мы в самом конце
+                    result.append(NEW_LINE);
+            } else {
+                result.append(at(pos));
+            }
+            ++pos;
+        }
+        while (pos < length) {
+            result.append(at(pos++));
+        }
+    }
+
+    /**
+     * @return находмися ли мы в начале бизнес-объекта
+     */
+    private boolean isBusinessObjStart() {
+        // Если после скобки идет пробел и "Т", то это бизнес объект
+        // например [ TYPE: 'IBANK_DOCUMENT'; DATA: '
+        return matchesNext(BUSINESS_OBJ_BEGINNING);
+    }
+
+    /**
+     * Обработка бизнес-объекта
+     */
+    private void processBusinessObject() throws IOException {
+        if (matchesNext(EMPTY_DATA)) {
+            result.append(EMPTY_DATA);
+            pos += EMPTY_DATA.length();
+            return;
+        }
+        if (depth >= MAX_DEPTH) {
+            appendRest();
+            return;
+        }
+        ++depth;
+        int singleQuoteCount = 0;
+        while (singleQuoteCount < 3) {
+            if (pos >= length)
+                return;
+            char ch = at(pos++);
+            result.append(ch);
+            // Считаем одинарные ковычки, их должно быть 3
+            // [ TYPE: 'IBANK_DOCUMENT'; DATA: '
+            if (ch == '\'')
+                singleQuoteCount++;
+        }
+        while ( ! isBusinessObjEnd()) {
+            if (pos >= length)
+                return;
+            result.append(NEW_LINE);
+            processBusinessObjectEntry();
+        }
+        --depth;
+        // '
+        result.append(at(pos++));
+        // пропускаем пробел
+        ++pos;
+        result.append(NEW_LINE);
+        indent();
+        // ]
+        result.append(at(pos++));
+    }
+
+    private boolean isBusinessObjEnd() {
+        return matchesNext(BUSINESS_OBJ_END);
+    }
+
+    /**
+     * Обработка элемента данных бизнес-объекта.
+     * Может являться UDataObject или списком бизнес-объектов и пар ключ-значение
+     */
+    private void processBusinessObjectEntry() throws IOException {
+        indent();
+        char ch = at(pos);
+        if (ch == '{') {
+            processUObject();
+        } else if (ch == '[') {
+            processBracketOpen();
+        } else {
+            processKeyValue(BUSINESS_OBJ_END);
+        }
+        if (pos < length && at(pos) == ',') {
+            result.append(at(pos++));
+            // Пропускаем пробел после запятой
+            ++pos;
+        }
+    }
+
+    /**
+     * Обработка простого UDataObject имеющего вид: {KEY=VALUE, KEY2=VALUE2, ...}
+     */
+    private void processUObject() throws IOException {
+        // Пустой объект {}
+        if (pos + 1 < length && at(pos + 1) == '}') {
+            result.append(at(pos++)).append(at(pos++));
+            return;
+        }
+        if (depth >= MAX_DEPTH) {
+            appendRest();
+            return;
+        }
+        ++depth;
+        // {
+        result.append(at(pos++)).append(NEW_LINE);
+        while (pos < length && at(pos) != '}') {
+            indent();
+            processKeyValue("}");
+            result.append(NEW_LINE);
+        }
+        if (pos >= length)
+            return;
+        --depth;
+        indent();
+        result.append(at(pos++));
+    }
+
+    /**
+     * Обработка пары ключ-занчение
+     * KEY=VALUE
+     * @param expectedEnd ожидаемое окончание последовательности ключ-значение
+     */
+    private void processKeyValue(String expectedEnd) throws IOException {
+        processUObjectFieldName();
+        if (pos >= length)
+            return;
+        if (at(pos) == '[') {
+            processBracketOpen();
+        } else {
+            // иначе просто константа
+            processConst(expectedEnd);
+        }
+        while (pos < length && at(pos) != ',' && ! matchesNext(expectedEnd)) {
+            result.append(at(pos));
+            ++pos;
+        }
+        if (pos < length && at(pos) == ',') {
+            result.append(at(pos++));
+            // Пропускаем пробел после запятой
+            ++pos;
+        }
+    }
+
+    /**
+     * Имя поля из пары ключ-значение
+     * SOME_FIELD=
+     */
+    private void processUObjectFieldName() throws IOException {
+        while (pos < length && at(pos) != '=') {
+            result.append(at(pos));
+            ++pos;
+        }
+        if (pos >= length)
+            return;
+        // =
+        result.append(at(pos++));
+    }
+
+    /**
+     * Обрабтка константного значения из пары ключ-значение
+     *
+     * @param expectedEnd ожидаемое окончание последовательности ключ-значение
+     */
+    private void processConst(String expectedEnd) throws IOException {
+        // Счетчик символов противоположных ожидаемому концу
+        // т.е. если ожидаемый конец это },
+        // то мы увеличиваем счетчик при встрече { и уменьшаем при }
+        int opposite = opposite(expectedEnd);
+        int openStack = 0;
+        while (pos < length && ! lookAheadUObjectEntry()) {
+            char ch = at(pos);
+            if (ch == opposite) {
+                ++openStack;
+            }
+            // Конец выходим
+            if (matchesNext(expectedEnd)) {
+                --openStack;
+                if (openStack < 0)
+                    return;
+            }
+            result.append(ch);
+            ++pos;
+        }
+    }
+
+    /**
+     * Открывающая скобка для указаного конца.
+     * Т.е. возвращает {, если end это }, и [, если end это ]
+     *
+     * @param end закрывающая последовательность
+     * @return открывающая скобка или -1, если у конца нет пары
+     */
+    private static int opposite(String end) {
+        if ("}".equals(end)) {
+           return '{';
+        }
+        if ("]".equals(end)) {
+            return '[';
+        }
+        return -1;
+    }
+
+    /**
+     * Смотрим вперед в ожидании корректного начала элемента UObject т.е. ожидаем ", SOME_KEY="
+     * <p>
+     * Просматриваются только символы ключа, а они не могут содержать запятую,
+     * поэтому участки, просмотренные разными вызовами, не пересекаются и суммарная работа линейна.
+     *
+     * @return true, если дльше корретный элемент
+     */
+    private boolean lookAheadUObjectEntry() {
+        int i = pos;
+        if (i + 1 >= length || at(i) != ',' || at(i + 1) != ' ')
+            return false;
+        for (i += 2; i < length; i++) {
+            char ch = at(i);
+            if (ch == '=')
+                return true;
+            // Ключ длжен состоять из заглавных букв цифр или подчеркивания
+            if ( ! ((ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_')) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Обрабатываем возможные варианты начинающиеся с [
+     * либо бизнес-объект либо массив
+     */
+    private void processBracketOpen() throws IOException {
+        if (matchesNext(BUSINESS_OBJ_BEGINNING)) {
+            processBusinessObject();
+        } else {
+            processArray();
+        }
+    }
+
+    /**
+     * Обраоботка массива, например: [add, gg[], 123 foo]
+     */
+    private void processArray() throws IOException {
+        // Пустой массив []
+        if (pos + 1 < length && at(pos + 1) == ']') {
+            result.append(at(pos++)).append(at(pos++));
+            return;
+        }
+        if (depth >= MAX_DEPTH) {
+            appendRest();
+            return;
+        }
+        ++depth;
+        // [
+        result.append(at(pos++)).append(NEW_LINE);
+        while (pos < length && at(pos) != ']') {
+            processArrayElement();
+        }
+        if (pos >= length)
+            return;
+        --depth;
+        indent();
+        // ]
+        result.append(at(pos++));
+    }
+
+    /**
+     * Обработка элемента массива (списка)
+     */
+    private void processArrayElement() throws IOException {
+        indent();
+        if (at(pos) == '[') {
+            processBracketOpen();
+        }
+        // Счетчик символов противоположных ожидаемому концу
+        // т.е. если ожидаемый конец это ],
+        // то мы увеличиваем счетчик при встрече [ и уменьшаем при ]
+        int openStack = 0;
+        // элементы разделяются запятой и пробелом
+        while (!matchesNext(", ")) {
+            if (pos >= length)
+                return;
+            char ch = at(pos);
+            if (ch == '[') {
+                ++openStack;
+                // Конец массива - выходим
+            } else if (ch == ']') {
+                --openStack;
+                if (openStack < 0) {
+                    result.append(NEW_LINE);
+                    return;
+                }
+            }
+            result.append(ch);
+            ++pos;
+        }
+        // ,
+        result.append(at(pos++)).append(NEW_LINE);
+        // Пропускаем пробел
+        ++pos;
+    }
+
+
+    /**
+     * Добавить отступ на основе уровня вложенности
+     */
+    private void indent() throws IOException {
+        for (int i = 0; i < depth; i++) {
+            result.append(INDENT);
+        }
+    }
+
+    /**
+     * Копирует остаток строки без форматирования (слишком глубокая вложенность)
+     */
+    private void appendRest() throws IOException {
+        if (pos < length) {
+            result.append(source, pos, length);
+            pos = length;
+        }
+    }
+
+    /**
+     * Символ исходной строки, вызывающий код сам проверяет границы
+     */
+    private char at(int i) {
+        return source.charAt(i);
+    }
+
+    /**
+     * Сравнивает иходную строку с указанной начиная с текущей позиции.
+     * Те мы проверяем что подстрока начиная с pos и длиной str.length() равна str
+     *
+     * @param str строка для сравнения
+     * @return true если строка строка str содержится после текущей позиции
+     */
+    private boolean matchesNext(String str) {
+        int strLength = str.length();
+        if (pos + strLength > length) {
+            return false;
+        }
+        for (int i = 0; i < strLength; i++) {
+            if (at(pos + i) != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
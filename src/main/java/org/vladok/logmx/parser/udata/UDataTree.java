@@ -0,0 +1,456 @@
+package org.vladok.logmx.parser.udata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Разобранная строка с UData: дерево бизнес-объектов, UObject, массивов и пар ключ-значение.
+ * <p>
+ * Узлы хранятся в одном массиве int по {@link #STRIDE} значений на узел: вид и признаки, границы в исходной строке,
+ * первый потомок и следующий сосед. Строки не копируются - узел ссылается на участок исходного сообщения,
+ * подстрока создается только при запросе значения. Узлы пронумерованы в порядке обхода сверху вниз,
+ * корень всегда 0.
+ * <p>
+ * Дерево строится по той же грамматике, что и форматирование, включая разбор некорректных строк:
+ * {@link UDataFormatter} печатает результат из дерева, поэтому строка разбирается один раз.
+ * Для выборки значений по пути вида IBANK_DOCUMENT/DATA/DOC_ID см. {@link #select(String)}.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 10:20
+ */
+public final class UDataTree {
+
+    /** Корень, потомки - текст и бизнес-объекты верхнего уровня */
+    public static final int ROOT = 0;
+    /** Текст между бизнес-объектами верхнего уровня */
+    public static final int TEXT = 1;
+    /** Бизнес-объект [ TYPE: '...'; DATA: '...' ], потомки - элементы данных */
+    public static final int BUSINESS_OBJECT = 2;
+    /** UObject {KEY=VALUE, ...}, потомки - пары ключ-значение */
+    public static final int UOBJECT = 3;
+    /** Массив [a, b, ...], потомки - элементы */
+    public static final int ARRAY = 4;
+    /** Элемент массива: необязательный вложенный бизнес-объект или массив и текст после него */
+    public static final int ELEMENT = 5;
+    /** Пара ключ-значение, потомок - значение */
+    public static final int KEY_VALUE = 6;
+    /** Константное значение пары */
+    public static final int CONST = 7;
+    /** Остаток строки, скопированный как есть из-за слишком глубокой вложенности */
+    public static final int RAW = 8;
+
+    /** Пустой объект: EMPTY_DATA, {} или [] */
+    static final int EMPTY = 1 << 8;
+    /** Объект закрыт, а не оборван концом строки */
+    static final int CLOSED = 1 << 9;
+    /** Заголовок бизнес-объекта прочитан полностью */
+    static final int HEADER = 1 << 10;
+    /** У пары есть = после ключа */
+    static final int EQUALS = 1 << 11;
+    /** После пары запятая */
+    static final int COMMA = 1 << 12;
+    /** После элемента данных бизнес-объекта запятая */
+    static final int ENTRY_COMMA = 1 << 13;
+    /** Элемент массива закончился ", " */
+    static final int NEXT_ELEMENT = 1 << 14;
+    /** Элемент массива закончился закрывающей скобкой массива */
+    static final int LAST_ELEMENT = 1 << 15;
+
+    private static final int KIND_MASK = 0xFF;
+
+    /** Значений на узел */
+    private static final int STRIDE = 8;
+    private static final int KIND = 0;
+    private static final int START = 1;
+    private static final int END = 2;
+    /** Конец заголовка бизнес-объекта, конец ключа пары, начало текста элемента массива */
+    private static final int MARK = 3;
+    /** Конец имени типа бизнес-объекта, конец хвоста после значения пары, конец текста элемента массива */
+    private static final int MARK2 = 4;
+    private static final int FIRST_CHILD = 5;
+    private static final int NEXT_SIBLING = 6;
+    /** Последний потомок, нужен только при построении */
+    private static final int LAST_CHILD = 7;
+
+    private static final int NONE = -1;
+
+    private static final int INITIAL_NODES = 256;
+
+    private static final String DATA = "DATA";
+
+    private int[] nodes = new int[INITIAL_NODES * STRIDE];
+
+    private int size;
+
+    private CharSequence source;
+
+    UDataTree() {
+    }
+
+    /**
+     * @param source строка, содержащая бизнес-объекты; не копируется и не должна меняться, пока дерево используется
+     * @return дерево разбора строки
+     */
+    public static UDataTree parse(CharSequence source) {
+        UDataTree tree = new UDataTree();
+        new UDataTreeBuilder().build(tree, source);
+        return tree;
+    }
+
+    /**
+     * @return исходная строка
+     */
+    public CharSequence getSource() {
+        return source;
+    }
+
+    /**
+     * @return количество узлов
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return вид узла: {@link #ROOT}, {@link #TEXT}, {@link #BUSINESS_OBJECT} и т.д.
+     */
+    public int kind(int node) {
+        return get(node, KIND) & KIND_MASK;
+    }
+
+    /**
+     * @return начало узла в исходной строке
+     */
+    public int start(int node) {
+        return get(node, START);
+    }
+
+    /**
+     * @return конец узла в исходной строке (не включая); у оборванного узла - длина строки
+     */
+    public int end(int node) {
+        return Math.min(get(node, END), source.length());
+    }
+
+    /**
+     * @return первый потомок или -1
+     */
+    public int firstChild(int node) {
+        return get(node, FIRST_CHILD);
+    }
+
+    /**
+     * @return следующий узел того же родителя или -1
+     */
+    public int nextSibling(int node) {
+        return get(node, NEXT_SIBLING);
+    }
+
+    /**
+     * @return false, если объект оборван концом строки
+     */
+    public boolean isClosed(int node) {
+        return is(node, CLOSED) || is(node, EMPTY);
+    }
+
+    /**
+     * @return тип бизнес-объекта, например IBANK_DOCUMENT, или null для других узлов
+     */
+    public String type(int node) {
+        if (kind(node) != BUSINESS_OBJECT || get(node, MARK2) == NONE) {
+            return null;
+        }
+        return substring(typeStart(node), get(node, MARK2));
+    }
+
+    /**
+     * @return ключ пары или null для других узлов
+     */
+    public String key(int node) {
+        return kind(node) == KEY_VALUE ? substring(start(node), get(node, MARK)) : null;
+    }
+
+    /**
+     * @return значение пары (константа, массив или бизнес-объект) или -1
+     */
+    public int value(int node) {
+        return kind(node) == KEY_VALUE ? firstChild(node) : NONE;
+    }
+
+    /**
+     * @return текст узла в исходной строке; для пары - текст значения
+     */
+    public String text(int node) {
+        if (kind(node) == KEY_VALUE) {
+            int value = value(node);
+            return value == NONE ? "" : text(value);
+        }
+        return substring(start(node), end(node));
+    }
+
+    /**
+     * Выборка узлов по пути из имен через /. Первое имя - тип бизнес-объекта на любом уровне вложенности,
+     * следующие - ключи пар в данных объекта (в том числе внутри его UObject) или типы вложенных бизнес-объектов
+     * среди элементов данных и массивов. Шаг DATA после бизнес-объекта можно не указывать.
+     * <p>
+     * Например, IBANK_DOCUMENT/DATA/DOC_ID - значения DOC_ID всех документов,
+     * IBANK_DOCUMENT/DATA/SIGNER_LIST/IBANK_DOCUMENT_SIGN/DATA/KEY_ID - ключи всех подписей.
+     *
+     * @param path путь
+     * @return найденные узлы в порядке следования в строке
+     */
+    public int[] select(String path) {
+        String[] steps = path.split("/");
+        IntList current = new IntList();
+        for (int node = 0; node < size; node++) {
+            if (kind(node) == BUSINESS_OBJECT && typeEquals(node, steps[0])) {
+                current.add(node);
+            }
+        }
+        for (int i = 1; i < steps.length && current.size > 0; i++) {
+            IntList next = new IntList();
+            for (int j = 0; j < current.size; j++) {
+                step(current.values[j], steps[i], next);
+            }
+            current = next;
+        }
+        int[] result = Arrays.copyOf(current.values, current.size);
+        for (int i = 0; i < result.length; i++) {
+            // Позиция "внутри данных" после шага DATA
+            if (result[i] < 0) {
+                result[i] = ~result[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param path путь, см. {@link #select(String)}
+     * @return тексты найденных узлов
+     */
+    public List<String> values(String path) {
+        int[] found = select(path);
+        List<String> result = new ArrayList<String>(found.length);
+        for (int node : found) {
+            result.add(text(node));
+        }
+        return result;
+    }
+
+    /**
+     * @param path путь, см. {@link #select(String)}
+     * @return текст первого найденного узла или null
+     */
+    public String value(String path) {
+        int[] found = select(path);
+        return found.length == 0 ? null : text(found[0]);
+    }
+
+    /**
+     * Один шаг пути. Отрицательная позиция ~node - данные бизнес-объекта node после шага DATA
+     */
+    private void step(int context, String name, IntList result) {
+        if (context < 0) {
+            findInData(~context, name, result);
+            return;
+        }
+        switch (kind(context)) {
+            case BUSINESS_OBJECT:
+                if (DATA.equals(name)) {
+                    result.add(~context);
+                } else {
+                    findInData(context, name, result);
+                }
+                break;
+            case UOBJECT:
+                findKey(context, name, result);
+                break;
+            case ARRAY:
+                for (int element = firstChild(context); element != NONE; element = nextSibling(element)) {
+                    int object = firstChild(element);
+                    if (object != NONE && typeEquals(object, name)) {
+                        result.add(object);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void findInData(int object, String name, IntList result) {
+        for (int entry = firstChild(object); entry != NONE; entry = nextSibling(entry)) {
+            switch (kind(entry)) {
+                case KEY_VALUE:
+                    addValue(entry, name, result);
+                    break;
+                case UOBJECT:
+                    findKey(entry, name, result);
+                    break;
+                case BUSINESS_OBJECT:
+                    if (typeEquals(entry, name)) {
+                        result.add(entry);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void findKey(int object, String name, IntList result) {
+        for (int pair = firstChild(object); pair != NONE; pair = nextSibling(pair)) {
+            addValue(pair, name, result);
+        }
+    }
+
+    private void addValue(int pair, String name, IntList result) {
+        if (is(pair, EQUALS) && regionEquals(start(pair), get(pair, MARK), name) && firstChild(pair) != NONE) {
+            result.add(firstChild(pair));
+        }
+    }
+
+    private boolean typeEquals(int node, String type) {
+        return kind(node) == BUSINESS_OBJECT && get(node, MARK2) != NONE
+                && regionEquals(typeStart(node), get(node, MARK2), type);
+    }
+
+    private int typeStart(int node) {
+        return start(node) + UDataTreeBuilder.BUSINESS_OBJ_BEGINNING.length();
+    }
+
+    private boolean regionEquals(int from, int to, String value) {
+        if (to - from != value.length()) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (source.charAt(i) != value.charAt(i - from)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String substring(int from, int to) {
+        return from < to ? source.subSequence(from, to).toString() : "";
+    }
+
+    // Построение и печать
+
+    /**
+     * Очищает дерево перед разбором новой строки
+     */
+    void reset(CharSequence source) {
+        this.source = source;
+        this.size = 0;
+    }
+
+    /**
+     * Освобождает строку и слишком большой массив узлов после разбора огромного сообщения
+     */
+    void release(int maxRetainedNodes) {
+        source = null;
+        size = 0;
+        if (nodes.length > maxRetainedNodes * STRIDE) {
+            nodes = new int[INITIAL_NODES * STRIDE];
+        }
+    }
+
+    /**
+     * @return новый узел без потомков
+     */
+    int add(int kind, int start) {
+        if ((size + 1) * STRIDE > nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        }
+        int node = size++;
+        int base = node * STRIDE;
+        nodes[base + KIND] = kind;
+        nodes[base + START] = start;
+        nodes[base + END] = start;
+        nodes[base + MARK] = start;
+        nodes[base + MARK2] = NONE;
+        nodes[base + FIRST_CHILD] = NONE;
+        nodes[base + NEXT_SIBLING] = NONE;
+        nodes[base + LAST_CHILD] = NONE;
+        return node;
+    }
+
+    /**
+     * Добавляет child последним потомком parent
+     */
+    void append(int parent, int child) {
+        int last = get(parent, LAST_CHILD);
+        if (last == NONE) {
+            set(parent, FIRST_CHILD, child);
+        } else {
+            set(last, NEXT_SIBLING, child);
+        }
+        set(parent, LAST_CHILD, child);
+    }
+
+    void flag(int node, int flag) {
+        nodes[node * STRIDE + KIND] |= flag;
+    }
+
+    boolean is(int node, int flag) {
+        return (get(node, KIND) & flag) != 0;
+    }
+
+    void setEnd(int node, int end) {
+        set(node, END, end);
+    }
+
+    /**
+     * Позиция после узла при разборе; может быть больше длины строки на единицу
+     */
+    int rawEnd(int node) {
+        return get(node, END);
+    }
+
+    void setMark(int node, int mark) {
+        set(node, MARK, mark);
+    }
+
+    int mark(int node) {
+        return get(node, MARK);
+    }
+
+    void setMark2(int node, int mark) {
+        set(node, MARK2, mark);
+    }
+
+    int mark2(int node) {
+        return get(node, MARK2);
+    }
+
+    private int get(int node, int field) {
+        if (node < 0 || node >= size) {
+            throw new IndexOutOfBoundsException("Нет узла " + node + ", всего " + size);
+        }
+        return nodes[node * STRIDE + field];
+    }
+
+    private void set(int node, int field, int value) {
+        nodes[node * STRIDE + field] = value;
+    }
+
+    /**
+     * Растущий массив номеров узлов для выборки
+     */
+    private static final class IntList {
+
+        private int[] values = new int[8];
+
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package org.vladok.logmx.parser.udata;
+
+import static org.vladok.logmx.parser.udata.UDataTree.ARRAY;
+import static org.vladok.logmx.parser.udata.UDataTree.BUSINESS_OBJECT;
+import static org.vladok.logmx.parser.udata.UDataTree.CLOSED;
+import static org.vladok.logmx.parser.udata.UDataTree.COMMA;
+import static org.vladok.logmx.parser.udata.UDataTree.CONST;
+import static org.vladok.logmx.parser.udata.UDataTree.ELEMENT;
+import static org.vladok.logmx.parser.udata.UDataTree.EMPTY;
+import static org.vladok.logmx.parser.udata.UDataTree.ENTRY_COMMA;
+import static org.vladok.logmx.parser.udata.UDataTree.EQUALS;
+import static org.vladok.logmx.parser.udata.UDataTree.HEADER;
+import static org.vladok.logmx.parser.udata.UDataTree.KEY_VALUE;
+import static org.vladok.logmx.parser.udata.UDataTree.LAST_ELEMENT;
+import static org.vladok.logmx.parser.udata.UDataTree.NEXT_ELEMENT;
+import static org.vladok.logmx.parser.udata.UDataTree.RAW;
+import static org.vladok.logmx.parser.udata.UDataTree.ROOT;
+import static org.vladok.logmx.parser.udata.UDataTree.TEXT;
+import static org.vladok.logmx.parser.udata.UDataTree.UOBJECT;
+
+/**
+ * Разбор строки с UData в {@link UDataTree}.
+ * <p>
+ * Грамматика та же, по которой раньше форматер сразу писал результат: каждая ветка разбора
+ * записывает в узел границы и признаки, по которым печать повторит тот же вывод,
+ * в том числе для оборванных и некорректных объектов. Каждый символ читается ограниченное число раз,
+ * вложенность ограничена {@link UDataFormatter#MAX_DEPTH}.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 10:30
+ */
+final class UDataTreeBuilder {
+
+    static final String EMPTY_DATA = "[ TYPE: 'EMPTY_DATA'; DATA: '{}' ]";
+    static final String BUSINESS_OBJ_BEGINNING = "[ TYPE: '";
+    static final String BUSINESS_OBJ_END = "' ]";
+
+    /** Длина "[ TYPE: 'EMPTY_DATA" - конец имени типа пустого объекта */
+    private static final int EMPTY_DATA_TYPE_END = BUSINESS_OBJ_BEGINNING.length() + "EMPTY_DATA".length();
+
+    private UDataTree tree;
+    /** Исходная строка, читается без копирования */
+    private CharSequence source;
+    private int length;
+    /** Текущая позиция в исходной строке */
+    private int pos;
+    /** Текущий уровень вложенности */
+    private int depth;
+    /** Объем работы текущего разбора */
+    private long work;
+
+    /**
+     * Разбирает строку в дерево, прежнее содержимое дерева теряется
+     */
+    void build(UDataTree tree, CharSequence source) {
+        build(tree, source, 0);
+    }
+
+    /**
+     * Разбирает строку, в которой до from нет начала бизнес-объекта: текст перед from
+     * становится одним текстовым узлом без посимвольного просмотра
+     *
+     * @param from смещение первого бизнес-объекта, если оно уже известно, иначе 0
+     */
+    void build(UDataTree tree, CharSequence source, int from) {
+        if (from < 0 || from > source.length()) {
+            throw new IllegalArgumentException("from: " + from + ", length: " + source.length());
+        }
+        this.tree = tree;
+        this.source = source;
+        this.length = source.length();
+        this.pos = from;
+        this.depth = 0;
+        this.work = 0;
+        tree.reset(source);
+        try {
+            root();
+        } finally {
+            this.tree = null;
+            this.source = null;
+        }
+    }
+
+    /**
+     * Текст и бизнес-объекты верхнего уровня. После бизнес-объекта один символ пропускается
+     * (обычно пробел): при печати на его месте перенос строки
+     */
+    private void root() {
+        int root = tree.add(ROOT, 0);
+        int textStart = pos > 0 ? 0 : -1;
+        while ((pos + 2) < length) {
+            if (matchesNext(BUSINESS_OBJ_BEGINNING)) {
+                addText(root, textStart);
+                textStart = -1;
+                tree.append(root, businessObject());
+            } else {
+                if (textStart < 0) {
+                    textStart = pos;
+                }
+                ++work;
+            }
+            ++pos;
+        }
+        if (pos < length) {
+            if (textStart < 0) {
+                textStart = pos;
+            }
+            work += length - pos;
+            pos = length;
+        }
+        addText(root, textStart);
+        tree.setEnd(root, length);
+    }
+
+    private void addText(int root, int textStart) {
+        if (textStart >= 0) {
+            int text = tree.add(TEXT, textStart);
+            tree.setEnd(text, pos);
+            tree.append(root, text);
+        }
+    }
+
+    /**
+     * Бизнес-объект [ TYPE: 'IBANK_DOCUMENT'; DATA: '...' ]
+     */
+    private int businessObject() {
+        int start = pos;
+        if (matchesNext(EMPTY_DATA)) {
+            pos += EMPTY_DATA.length();
+            int node = tree.add(BUSINESS_OBJECT, start);
+            tree.flag(node, EMPTY);
+            tree.setMark2(node, start + EMPTY_DATA_TYPE_END);
+            tree.setEnd(node, pos);
+            return node;
+        }
+        if (depth >= UDataFormatter.MAX_DEPTH) {
+            return rest();
+        }
+        ++depth;
+        int node = tree.add(BUSINESS_OBJECT, start);
+        // Заголовок до третьей одинарной кавычки: [ TYPE: 'IBANK_DOCUMENT'; DATA: '
+        int singleQuoteCount = 0;
+        while (singleQuoteCount < 3) {
+            if (pos >= length) {
+                tree.setMark(node, pos);
+                tree.setEnd(node, pos);
+                return node;
+            }
+            if (at(pos++) == '\'' && ++singleQuoteCount == 2) {
+                tree.setMark2(node, pos - 1);
+            }
+        }
+        tree.setMark(node, pos);
+        tree.flag(node, HEADER);
+        while ( ! matchesNext(BUSINESS_OBJ_END)) {
+            if (pos >= length) {
+                tree.setEnd(node, pos);
+                return node;
+            }
+            tree.append(node, businessObjectEntry());
+        }
+        --depth;
+        // ' пробел ]
+        pos += BUSINESS_OBJ_END.length();
+        tree.flag(node, CLOSED);
+        tree.setEnd(node, pos);
+        return node;
+    }
+
+    /**
+     * Элемент данных бизнес-объекта: UObject, бизнес-объект, массив или пара ключ-значение
+     */
+    private int businessObjectEntry() {
+        char ch = at(pos);
+        int node;
+        if (ch == '{') {
+            node = uObject();
+        } else if (ch == '[') {
+            node = bracketOpen();
+        } else {
+            node = keyValue(BUSINESS_OBJ_END);
+        }
+        if (pos < length && at(pos) == ',') {
+            // Запятая и пробел после нее
+            pos += 2;
+            tree.flag(node, ENTRY_COMMA);
+        }
+        return node;
+    }
+
+    /**
+     * UObject вида {KEY=VALUE, KEY2=VALUE2, ...}
+     */
+    private int uObject() {
+        int start = pos;
+        if (pos + 1 < length && at(pos + 1) == '}') {
+            return empty(UOBJECT, start);
+        }
+        if (depth >= UDataFormatter.MAX_DEPTH) {
+            return rest();
+        }
+        ++depth;
+        int node = tree.add(UOBJECT, start);
+        ++pos;
+        while (pos < length && at(pos) != '}') {
+            tree.append(node, keyValue("}"));
+        }
+        if (pos >= length) {
+            tree.setEnd(node, pos);
+            return node;
+        }
+        --depth;
+        ++pos;
+        tree.flag(node, CLOSED);
+        tree.setEnd(node, pos);
+        return node;
+    }
+
+    /**
+     * Пара KEY=VALUE и текст после значения до запятой или ожидаемого конца
+     *
+     * @param expectedEnd ожидаемое окончание последовательности ключ-значение
+     */
+    private int keyValue(String expectedEnd) {
+        int node = tree.add(KEY_VALUE, pos);
+        while (pos < length && at(pos) != '=') {
+            ++pos;
+        }
+        tree.setMark(node, pos);
+        if (pos >= length) {
+            tree.setEnd(node, pos);
+            return node;
+        }
+        ++pos;
+        tree.flag(node, EQUALS);
+        if (pos >= length) {
+            tree.setEnd(node, pos);
+            return node;
+        }
+        tree.append(node, at(pos) == '[' ? bracketOpen() : constant(expectedEnd));
+        while (pos < length && at(pos) != ',' && ! matchesNext(expectedEnd)) {
+            ++pos;
+        }
+        tree.setMark2(node, pos);
+        if (pos < length && at(pos) == ',') {
+            pos += 2;
+            tree.flag(node, COMMA);
+        }
+        tree.setEnd(node, pos);
+        return node;
+    }
+
+    /**
+     * Константное значение пары: до начала следующей пары ", KEY=" или непарного ожидаемого конца
+     *
+     * @param expectedEnd ожидаемое окончание последовательности ключ-значение
+     */
+    private int constant(String expectedEnd) {
+        int node = tree.add(CONST, pos);
+        // Счетчик символов противоположных ожидаемому концу
+        int opposite = opposite(expectedEnd);
+        int openStack = 0;
+        while (pos < length && ! lookAheadUObjectEntry()) {
+            if (at(pos) == opposite) {
+                ++openStack;
+            }
+            if (matchesNext(expectedEnd) && --openStack < 0) {
+                break;
+            }
+            ++pos;
+        }
+        tree.setEnd(node, pos);
+        return node;
+    }
+
+    /**
+     * Открывающая скобка для указаного конца.
+     * Т.е. возвращает {, если end это }, и [, если end это ]
+     *
+     * @param end закрывающая последовательность
+     * @return открывающая скобка или -1, если у конца нет пары
+     */
+    private static int opposite(String end) {
+        if ("}".equals(end)) {
+            return '{';
+        }
+        if ("]".equals(end)) {
+            return '[';
+        }
+        return -1;
+    }
+
+    /**
+     * Смотрим вперед в ожидании корректного начала элемента UObject т.е. ожидаем ", SOME_KEY="
+     * <p>
+     * Просматриваются только символы ключа, а они не могут содержать запятую,
+     * поэтому участки, просмотренные разными вызовами, не пересекаются и суммарная работа линейна.
+     *
+     * @return true, если дальше корректный элемент
+     */
+    private boolean lookAheadUObjectEntry() {
+        int i = pos;
+        if (i + 1 >= length || at(i) != ',' || at(i + 1) != ' ')
+            return false;
+        for (i += 2; i < length; i++) {
+            char ch = at(i);
+            if (ch == '=')
+                return true;
+            // Ключ должен состоять из заглавных букв цифр или подчеркивания
+            if ( ! ((ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_')) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Варианты, начинающиеся с [: либо бизнес-объект, либо массив
+     */
+    private int bracketOpen() {
+        return matchesNext(BUSINESS_OBJ_BEGINNING) ? businessObject() : array();
+    }
+
+    /**
+     * Массив, например: [add, gg[], 123 foo]
+     */
+    private int array() {
+        int start = pos;
+        if (pos + 1 < length && at(pos + 1) == ']') {
+            return empty(ARRAY, start);
+        }
+        if (depth >= UDataFormatter.MAX_DEPTH) {
+            return rest();
+        }
+        ++depth;
+        int node = tree.add(ARRAY, start);
+        ++pos;
+        while (pos < length && at(pos) != ']') {
+            tree.append(node, arrayElement());
+        }
+        if (pos >= length) {
+            tree.setEnd(node, pos);
+            return node;
+        }
+        --depth;
+        ++pos;
+        tree.flag(node, CLOSED);
+        tree.setEnd(node, pos);
+        return node;
+    }
+
+    /**
+     * Элемент массива: необязательный вложенный объект и текст до ", " или закрывающей скобки массива
+     */
+    private int arrayElement() {
+        int node = tree.add(ELEMENT, pos);
+        if (at(pos) == '[') {
+            tree.append(node, bracketOpen());
+        }
+        tree.setMark(node, pos);
+        // Счетчик вложенных [ ... ] внутри текста элемента
+        int openStack = 0;
+        while ( ! matchesNext(", ")) {
+            if (pos >= length) {
+                tree.setMark2(node, pos);
+                tree.setEnd(node, pos);
+                return node;
+            }
+            char ch = at(pos);
+            if (ch == '[') {
+                ++openStack;
+            } else if (ch == ']' && --openStack < 0) {
+                // Конец массива, скобку закроет массив
+                tree.setMark2(node, pos);
+                tree.flag(node, LAST_ELEMENT);
+                tree.setEnd(node, pos);
+                return node;
+            }
+            ++pos;
+        }
+        tree.setMark2(node, pos);
+        // Запятая и пробел
+        pos += 2;
+        tree.flag(node, NEXT_ELEMENT);
+        tree.setEnd(node, pos);
+        return node;
+    }
+
+    /**
+     * Пустой объект или массив из двух скобок
+     */
+    private int empty(int kind, int start) {
+        pos += 2;
+        int node = tree.add(kind, start);
+        tree.flag(node, EMPTY);
+        tree.setEnd(node, pos);
+        return node;
+    }
+
+    /**
+     * Остаток строки без разбора (слишком глубокая вложенность)
+     */
+    private int rest() {
+        int node = tree.add(RAW, pos);
+        if (pos < length) {
+            work += length - pos;
+            pos = length;
+        }
+        tree.setEnd(node, pos);
+        return node;
+    }
+
+    /**
+     * Символ исходной строки, вызывающий код сам проверяет границы
+     */
+    private char at(int i) {
+        ++work;
+        return source.charAt(i);
+    }
+
+    /**
+     * @param str строка для сравнения
+     * @return true если строка str содержится после текущей позиции
+     */
+    private boolean matchesNext(String str) {
+        int strLength = str.length();
+        if (pos + strLength > length) {
+            return false;
+        }
+        for (int i = 0; i < strLength; i++) {
+            if (at(pos + i) != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return объем работы последнего разбора: прочитанные символы
+     */
+    long work() {
+        return work;
+    }
+}
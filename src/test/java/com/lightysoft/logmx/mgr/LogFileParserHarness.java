@@ -0,0 +1,73 @@
+package com.lightysoft.logmx.mgr;
+
+import com.lightysoft.logmx.business.ParsedEntry;
+import com.lightysoft.logmx.business.j;
+import com.lightysoft.logmx.i;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Запуск парсера LogMX без GUI: класс лежит в пакете LogMX, чтобы подставить парсеру
+ * список принятых записей и отключить регистрацию новых уровней (она открывает окна).
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 13:40
+ */
+public final class LogFileParserHarness {
+
+    /** Записи, переданные парсером в addEntry */
+    private final List<j> entries = new ArrayList<j>();
+
+    private final LogFileParser parser;
+
+    public LogFileParserHarness(LogFileParser parser) {
+        synchronized (LogFileParserHarness.class) {
+            if (i.ah == null) {
+                i.ah = new ArrayList<com.lightysoft.logmx.business.Z>();
+            }
+        }
+        this.parser = parser;
+        parser.a(entries);
+        parser.a(false);
+    }
+
+    /**
+     * Передает парсеру строку, null означает конец файла
+     */
+    public void parseLine(String line) throws Exception {
+        parser.parseLine(line);
+    }
+
+    /**
+     * Передает парсеру все строки и конец файла
+     *
+     * @return записи, переданные парсером в addEntry
+     */
+    public List<ParsedEntry> parse(Iterable<String> lines) throws Exception {
+        for (String line : lines) {
+            parser.parseLine(line);
+        }
+        parser.parseLine(null);
+        return getEntries();
+    }
+
+    /**
+     * @return новая запись LogMX, например для вызова getAbsoluteEntryDate
+     */
+    public ParsedEntry createEntry() {
+        return parser.createNewEntry();
+    }
+
+    public List<ParsedEntry> getEntries() {
+        return new ArrayList<ParsedEntry>(entries);
+    }
+
+    /**
+     * Забыть уже принятые записи, чтобы длинный прогон не копил их в памяти
+     */
+    public void clearEntries() {
+        entries.clear();
+    }
+}
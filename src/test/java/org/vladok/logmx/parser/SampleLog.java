@@ -0,0 +1,96 @@
+package org.vladok.logmx.parser;
+
+import com.lightysoft.logmx.business.ParsedEntry;
+import com.lightysoft.logmx.mgr.LogFileParserHarness;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Тестовый лог и эталонный разбор его парсером для LogMX
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 21:45
+ */
+public final class SampleLog {
+
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static final Charset CP1251 = Charset.forName("windows-1251");
+
+    private SampleLog() {
+    }
+
+    /**
+     * Мусор до первой записи, однострочные записи, стектрейсы, многострочная UData и строки,
+     * похожие на заголовок, но им не являющиеся
+     */
+    public static List<String> lines(int entries) {
+        List<String> lines = new ArrayList<String>();
+        lines.add("мусор до первой записи");
+        for (int i = 0; i < entries; i++) {
+            lines.add(String.format("22-09-16 12:%02d:%02d.%03d [поток-%d] %s - ",
+                    i / 60 % 60, i % 60, i % 1000, i % 7, i % 3 == 0 ? "ERROR" : "INFO"));
+            int header = lines.size() - 1;
+            switch (i % 5) {
+                case 0:
+                    lines.set(header, lines.get(header) + "Ошибка обработки документа " + i);
+                    lines.add("java.lang.IllegalStateException: документ " + i);
+                    lines.add("\tat org.vladok.Some.method(Some.java:" + i + ")");
+                    break;
+                case 1:
+                    lines.set(header, lines.get(header) + "Данные: [ TYPE: 'DOC'; DATA: '{ID=" + i + ", NAME=Документ, LIST=[1, 2]}' ]");
+                    break;
+                case 2:
+                    lines.set(header, lines.get(header) + "Многострочная: [ TYPE: 'DOC'; DATA: '{ID=" + i + ",");
+                    lines.add(" COMMENT=строка 1…");
+                    lines.add("строка 2, STATUS=5}' ]");
+                    break;
+                case 3:
+                    lines.set(header, lines.get(header) + "Сообщение " + i);
+                    lines.add("22-09-16 12:00:00.000 [без закрывающей скобки INFO - не заголовок");
+                    lines.add("22-09-16 12:00:00.000 [main] INFO - с переводом\rкаретки");
+                    lines.add("");
+                    break;
+                default:
+                    lines.set(header, lines.get(header) + "Сообщение " + i);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * @return записи, которые получает LogMX от {@link ApplicationLogParser}
+     */
+    public static List<ParsedEntry> parse(List<String> lines) throws Exception {
+        return new LogFileParserHarness(new ApplicationLogParser()).parse(lines);
+    }
+
+    /**
+     * @return временный файл со строками, разделенными separator
+     */
+    public static File write(List<String> lines, Charset charset, String separator) throws IOException {
+        File file = File.createTempFile("application", ".log");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            for (String line : lines) {
+                out.write((line + separator).getBytes(charset));
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    public static void delete(File file) {
+        if ( ! file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package org.vladok.logmx.parser;
+
+import com.lightysoft.logmx.business.ParsedEntry;
+import com.lightysoft.logmx.mgr.LogFileParserHarness;
+import org.junit.Test;
+import org.vladok.logmx.parser.index.TokenIndex;
+import org.vladok.logmx.parser.spill.MappedChars;
+import org.vladok.logmx.parser.spill.MessageStore;
+import org.vladok.logmx.parser.stats.ParserStats;
+import org.vladok.logmx.parser.udata.UDataFormatter;
+
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тесты для парсера application.log
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 13:55
+ */
+public class TestApplicationLogParser {
+
+    private static final String UDATA = "[ TYPE: 'OBJECT'; DATA: '{KEY=some value, KEY_2=val2}' ]";
+
+    @Test
+    public void multiLineEntries() throws Exception {
+        List<ParsedEntry> entries = parse(
+                "garbage before first entry",
+                "22-09-16 12:46:13.412 [main] INFO - Инициализация модулей...",
+                "22-09-16 12:46:14.001 [pool-1-thread-3] ERROR - Ошибка",
+                "java.lang.NullPointerException",
+                "\tat org.vladok.Some.method(Some.java:1)");
+        assertEquals(2, entries.size());
+        ParsedEntry first = entries.get(0);
+        assertEquals("22-09-16 12:46:13.412", first.getDate());
+        assertEquals("main", first.getThread());
+        assertEquals("INFO", first.getLevel());
+        assertEquals("Инициализация модулей...", first.getMessage());
+        ParsedEntry second = entries.get(1);
+        assertEquals("pool-1-thread-3", second.getThread());
+        assertEquals("ERROR", second.getLevel());
+        assertEquals("Ошибка\njava.lang.NullPointerException\n\tat org.vladok.Some.method(Some.java:1)", second.getMessage());
+        assertNull(second.getUserDefinedFields().get("Formatted"));
+    }
+
+    @Test
+    public void formattedFieldIsLazy() throws Exception {
+        List<ParsedEntry> entries = parse("22-09-16 12:46:13.412 [main] INFO - Данные: " + UDATA);
+        FormattedUData formatted = (FormattedUData) entries.get(0).getUserDefinedFields().get("Formatted");
+        assertFalse("UData не должна форматироваться при чтении файла", formatted.isFormatted());
+        assertEquals(UDataFormatter.format("Данные: " + UDATA), formatted.toString());
+        assertTrue(formatted.isFormatted());
+    }
+
+    @Test
+    public void threadAndLevelAreShared() throws Exception {
+        List<ParsedEntry> entries = parse(
+                "22-09-16 12:46:13.412 [pool-1-thread-3] INFO - Первая",
+                "22-09-16 12:46:13.413 [main] INFO - Вторая",
+                "22-09-16 12:46:13.414 [pool-1-thread-3] ERROR - Третья");
+        assertSame(entries.get(0).getThread(), entries.get(2).getThread());
+        assertSame(entries.get(0).getLevel(), entries.get(1).getLevel());
+        assertTrue(ApplicationLogParser.THREADS.getHits() > 0);
+    }
+
+    @Test
+    public void udataFieldsAreColumns() throws Exception {
+        List<String> fields = new ApplicationLogParser().getUserDefinedFields();
+        assertEquals(Arrays.asList("Formatted", "TYPE", "DOC_ID"), fields);
+        List<ParsedEntry> entries = parse(
+                "22-09-16 12:46:13.412 [main] INFO - Документ: [ TYPE: 'IBANK_DOCUMENT'; DATA: '{DOC_ID=28672, STATUS=2}' ]",
+                "22-09-16 12:46:13.413 [main] INFO - DOC_ID=1 без UData");
+        assertEquals("IBANK_DOCUMENT", entries.get(0).getUserDefinedFields().get("TYPE"));
+        assertEquals("28672", entries.get(0).getUserDefinedFields().get("DOC_ID"));
+        assertTrue(entries.get(1).getUserDefinedFields().isEmpty());
+    }
+
+    /**
+     * В конвейерном режиме записи приходят в LogMX в порядке чтения, с теми же полями
+     * и уже отформатированной UData
+     */
+    @Test
+    public void pipelinedUData() throws Exception {
+        List<String> lines = SampleLog.lines(5000);
+        List<ParsedEntry> expected = SampleLog.parse(lines);
+        List<ParsedEntry> actual = new LogFileParserHarness(
+                new ApplicationLogParser(settings(ParserSettings.UDATA_THREADS, "3"))).parse(lines);
+        assertEquals(expected.size(), actual.size());
+        int formatted = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getDate(), actual.get(i).getDate());
+            assertEquals(expected.get(i).getMessage(), actual.get(i).getMessage());
+            Map<String, Object> fields = actual.get(i).getUserDefinedFields();
+            assertEquals(expected.get(i).getUserDefinedFields().keySet(), fields.keySet());
+            FormattedUData udata = (FormattedUData) fields.get("Formatted");
+            if (udata != null) {
+                assertTrue(udata.isFormatted());
+                assertEquals(expected.get(i).getUserDefinedFields().get("Formatted").toString(), udata.toString());
+                formatted++;
+            }
+        }
+        assertTrue(formatted > 0);
+    }
+
+    /**
+     * Запись длиннее ограничения переносится во временный файл, UData форматируется потоком из файла.
+     * Временные файлы удаляются при следующем разборе тем же парсером, но не разбором другого парсера
+     */
+    @Test
+    public void giantEntrySpillsToDisk() throws Exception {
+        StringBuilder udata = new StringBuilder("Пакет: [ TYPE: 'BATCH'; DATA: '{DOCUMENTS=[");
+        for (int i = 0; udata.length() < 300 * 1024; i++) {
+            udata.append(i > 0 ? ", " : "").append("[ TYPE: 'DOC'; DATA: '{DOC_ID=").append(i).append(", STATUS=2}' ]");
+        }
+        udata.append("], COUNT=1}' ]");
+        ApplicationLogParser parser = new ApplicationLogParser(settings(ParserSettings.ENTRY_MAX_CHARS, "100000"));
+        List<ParsedEntry> entries = new LogFileParserHarness(parser).parse(Arrays.asList(
+                "22-09-16 12:46:13.412 [main] INFO - " + udata,
+                "22-09-16 12:46:13.413 [main] INFO - Следующая"));
+        ParsedEntry giant = entries.get(0);
+        assertTrue(giant.getMessage().length() < 100000);
+        assertTrue(giant.getMessage().startsWith("Пакет: [ TYPE: 'BATCH'"));
+        assertTrue(giant.getMessage().endsWith("COUNT=1}' ]"));
+        assertEquals("BATCH", giant.getUserDefinedFields().get("TYPE"));
+        assertEquals("Следующая", entries.get(1).getMessage());
+        SpilledUData formatted = (SpilledUData) giant.getUserDefinedFields().get("Formatted");
+        assertFalse(formatted.isFormatted());
+        String preview = formatted.toString();
+        String expected = UDataFormatter.format(udata.toString());
+        assertTrue(preview.startsWith(expected.substring(0, 1000)));
+        assertTrue(preview.endsWith(expected.substring(expected.length() - 1000)));
+        MappedChars formattedChars = formatted.getFormatted().chars();
+        assertEquals(expected, formattedChars.toString());
+        formattedChars.close();
+        File formattedFile = formatted.getFormatted().getFile();
+        Matcher path = Pattern.compile("полный текст в файле (.+) \\.\\.\\.").matcher(giant.getMessage());
+        assertTrue(path.find());
+        File entryFile = new File(path.group(1));
+        assertTrue(entryFile.isFile());
+        assertTrue(formattedFile.isFile());
+        new LogFileParserHarness(new ApplicationLogParser(settings(ParserSettings.ENTRY_MAX_CHARS, "100000")))
+                .parse(Arrays.asList("22-09-16 12:46:14.000 [main] INFO - Другое окно"));
+        assertTrue(entryFile.isFile());
+        assertTrue(formattedFile.isFile());
+        new LogFileParserHarness(parser).parse(Arrays.asList("22-09-16 12:46:14.000 [main] INFO - Повторное открытие"));
+        assertFalse(entryFile.exists());
+        assertFalse(formattedFile.exists());
+    }
+
+    /**
+     * Счетчики разбора попадают в общую статистику, она видна в JMX и записывается в файл
+     */
+    @Test
+    public void statistics() throws Exception {
+        ParserStats stats = ApplicationLogParser.STATS;
+        long lines = stats.getLines();
+        long headers = stats.getHeaderLines();
+        long entries = stats.getEntries();
+        long udata = stats.getUDataEntries();
+        long formats = stats.getFormatCount();
+        File file = File.createTempFile("rainbow-stats-", ".properties");
+        try {
+            List<ParsedEntry> parsed = new LogFileParserHarness(new ApplicationLogParser(
+                    settings(ParserSettings.STATS_FILE, file.getPath()))).parse(Arrays.asList(
+                    "22-09-16 12:46:13.412 [main] INFO - Данные: " + UDATA,
+                    "продолжение",
+                    "22-09-16 12:46:13.413 [main] ERROR - Ошибка"));
+            assertEquals(lines + 3, stats.getLines());
+            assertEquals(headers + 2, stats.getHeaderLines());
+            assertEquals(entries + 2, stats.getEntries());
+            assertEquals(udata + 1, stats.getUDataEntries());
+            assertTrue(stats.getMaxEntryChars() >= ("Данные: " + UDATA + "\nпродолжение").length());
+            parsed.get(0).getUserDefinedFields().get("Formatted").toString();
+            assertEquals(formats + 1, stats.getFormatCount());
+            assertTrue(stats.getFormatTimeMaxMicros() > 0);
+
+            Object jmxLines = ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(new ObjectName(ParserStats.OBJECT_NAME), "Lines");
+            assertEquals(stats.getLines(), jmxLines);
+
+            Properties dumped = new Properties();
+            InputStream in = new FileInputStream(file);
+            try {
+                dumped.load(in);
+            } finally {
+                in.close();
+            }
+            assertEquals(Long.toString(lines + 3), dumped.getProperty("Lines"));
+            assertEquals(stats.snapshot().keySet(), dumped.stringPropertyNames());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Логи из файла-описания объединяются по времени, записи разбираются как обычно
+     */
+    @Test
+    public void mergedLogs() throws Exception {
+        File directory = Files.createTempDirectory("rainbow-merge").toFile();
+        File node1 = new File(directory, "node1");
+        assertTrue(node1.mkdir());
+        List<File> files = Arrays.asList(new File(node1, "application.log.1"), new File(node1, "application.log"),
+                new File(node1, "application.log.tidx"), new File(directory, "node2.log"));
+        try {
+            write(files.get(0), "22-09-16 12:00:01.000 [main] INFO - старая",
+                    "22-09-16 12:00:03.000 [main] INFO - Документ: " + UDATA, "продолжение");
+            write(files.get(1), "22-09-16 12:00:05.000 [main] ERROR - новая");
+            write(files.get(2), "22-09-16 12:00:00.000 [index] INFO - не лог");
+            write(files.get(3), "22-09-16 12:00:02.000 [node2] WARN - узел 2",
+                    "22-09-16 12:00:05.000 [node2] WARN - одновременно");
+            List<String> patterns = Arrays.asList("# узел 1 с ротацией", node1.getPath() + "/application.log{,.[0-9]*}",
+                    "", files.get(3).getPath());
+            assertEquals(Arrays.asList(files.get(0), files.get(1), files.get(3)),
+                    MergedApplicationLogParser.resolve(patterns, null));
+            List<ParsedEntry> entries = new LogFileParserHarness(new MergedApplicationLogParser(
+                    settings(ParserSettings.MERGE_CHARSET, "windows-1251"))).parse(patterns);
+            assertEquals(5, entries.size());
+            assertEquals("старая", entries.get(0).getMessage());
+            assertEquals("узел 2", entries.get(1).getMessage());
+            assertEquals("node2", entries.get(1).getThread());
+            assertEquals("WARN", entries.get(1).getLevel());
+            assertEquals("Документ: " + UDATA + "\nпродолжение", entries.get(2).getMessage());
+            assertEquals("OBJECT", entries.get(2).getUserDefinedFields().get("TYPE"));
+            assertEquals("22-09-16 12:00:03.000", entries.get(2).getDate());
+            assertEquals("новая", entries.get(3).getMessage());
+            assertEquals("одновременно", entries.get(4).getMessage());
+        } finally {
+            for (File file : files) {
+                SampleLog.delete(file);
+            }
+            SampleLog.delete(node1);
+            SampleLog.delete(directory);
+        }
+    }
+
+    @Test
+    public void tokenIndex() throws Exception {
+        List<String> lines = Arrays.asList(
+                "22-09-16 12:46:13.412 [main] INFO - Документ: [ TYPE: 'DOC'; DATA: '{DOC_ID=105}' ]",
+                "22-09-16 12:46:13.413 [main] ERROR - Документ 105 не найден",
+                "java.lang.IllegalStateException: 105",
+                "22-09-16 12:46:13.414 [main] INFO - Готово");
+        // Поля UData извлекаются вместе с парами индекса, в том числе при обработке UData в потоках
+        for (String threads : Arrays.asList("0", "2")) {
+            Properties properties = new Properties();
+            properties.setProperty(ParserSettings.TOKEN_INDEX, "true");
+            properties.setProperty(ParserSettings.UDATA_THREADS, threads);
+            ApplicationLogParser parser = new ApplicationLogParser(new ParserSettings(properties));
+            List<ParsedEntry> entries = new LogFileParserHarness(parser).parse(lines);
+            TokenIndex index = parser.getTokenIndex();
+            assertEquals(entries.size(), index.getEntryCount());
+            assertArrayEquals(new int[]{0, 1}, index.find("105"));
+            assertArrayEquals(new int[]{0}, index.find("DOC_ID", "105"));
+            assertArrayEquals(new int[]{0}, index.find("TYPE", "DOC"));
+            assertArrayEquals(new int[]{1}, index.find("IllegalStateException"));
+            assertEquals("DOC", entries.get(0).getUserDefinedFields().get("TYPE"));
+            assertNotNull(entries.get(0).getUserDefinedFields().get("Formatted"));
+        }
+        assertNull(new ApplicationLogParser().getTokenIndex());
+    }
+
+    /**
+     * Записи, не подходящие под фильтр, отбрасываются вместе со строками-продолжениями и UData
+     */
+    @Test
+    public void filteredEntries() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(ParserSettings.FILTER_LEVELS, "error, warn");
+        properties.setProperty(ParserSettings.FILTER_THREADS, "main,pool-1");
+        properties.setProperty(ParserSettings.FILTER_FROM, "22-09-16 12:40");
+        properties.setProperty(ParserSettings.FILTER_TO, "22-09-16 12:49");
+        long filtered = ApplicationLogParser.STATS.getFilteredEntries();
+        long udata = ApplicationLogParser.STATS.getUDataEntries();
+        List<ParsedEntry> entries = new LogFileParserHarness(new ApplicationLogParser(new ParserSettings(properties)))
+                .parse(Arrays.asList(
+                        "продолжение без записи",
+                        "22-09-16 12:39:59.999 [main] ERROR - Раньше интервала",
+                        "22-09-16 12:40:00.000 [main] ERROR - Ошибка 1",
+                        "java.lang.IllegalStateException: 1",
+                        "22-09-16 12:41:00.000 [main] INFO - Данные: " + UDATA,
+                        "продолжение отброшенной записи",
+                        "22-09-16 12:42:00.000 [pool-2] WARN - Другой поток",
+                        "22-09-16 12:49:59.999 [pool-1] WARN - Предупреждение 2",
+                        "продолжение",
+                        "22-09-16 12:50:00.000 [main] ERROR - Позже интервала",
+                        "продолжение отброшенной записи"));
+        assertEquals(2, entries.size());
+        assertEquals("Ошибка 1\njava.lang.IllegalStateException: 1", entries.get(0).getMessage());
+        assertEquals("Предупреждение 2\nпродолжение", entries.get(1).getMessage());
+        assertEquals("pool-1", entries.get(1).getThread());
+        assertEquals(filtered + 4, ApplicationLogParser.STATS.getFilteredEntries());
+        assertEquals(udata, ApplicationLogParser.STATS.getUDataEntries());
+    }
+
+    /**
+     * Записи с одинаковым многострочным текстом делят один экземпляр сообщения и остаются отдельными записями
+     */
+    @Test
+    public void foldedStackTraces() throws Exception {
+        long folded = ApplicationLogParser.STATS.getFoldedEntries();
+        ApplicationLogParser parser = new ApplicationLogParser(settings(ParserSettings.FOLD_FIELD, "true"));
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            lines.add("22-09-16 12:46:1" + i + ".000 [main] ERROR - Нет соединения");
+            lines.add("java.net.ConnectException: Connection refused");
+            lines.add("\tat java.net.PlainSocketImpl.socketConnect(Native Method)");
+            lines.add("22-09-16 12:46:1" + i + ".500 [main] INFO - Повтор через 1 с");
+        }
+        lines.add("22-09-16 12:46:20.000 [main] ERROR - Нет соединения");
+        lines.add("java.net.ConnectException: Connection timed out");
+        List<ParsedEntry> entries = new LogFileParserHarness(parser).parse(lines);
+        assertEquals(7, entries.size());
+        assertEquals("Нет соединения\njava.net.ConnectException: Connection refused"
+                + "\n\tat java.net.PlainSocketImpl.socketConnect(Native Method)", entries.get(0).getMessage());
+        assertSame(entries.get(0).getMessage(), entries.get(2).getMessage());
+        assertSame(entries.get(0).getMessage(), entries.get(4).getMessage());
+        assertEquals("3 с 22-09-16 12:46:10.000", entries.get(2).getUserDefinedFields().get("Repeats").toString());
+        assertEquals("1 с 22-09-16 12:46:20.000", entries.get(6).getUserDefinedFields().get("Repeats").toString());
+        // Однострочные записи не сворачиваются
+        assertNull(entries.get(1).getUserDefinedFields().get("Repeats"));
+        assertEquals(folded + 2, ApplicationLogParser.STATS.getFoldedEntries());
+        assertTrue(parser.getUserDefinedFields().contains("Repeats"));
+        assertFalse(new ApplicationLogParser().getUserDefinedFields().contains("Repeats"));
+    }
+
+    /**
+     * Многострочный текст без UData хранится вне кучи: в сообщении первая строка, весь текст - в поле Body.
+     * Повторы делят одну ссылку на текст
+     */
+    @Test
+    public void storedMessages() throws Exception {
+        ApplicationLogParser parser = new ApplicationLogParser(settings(ParserSettings.STORE_MESSAGES, "true"));
+        String trace = "java.net.ConnectException: Connection refused\n\tat java.net.PlainSocketImpl.socketConnect";
+        List<ParsedEntry> entries = new LogFileParserHarness(parser).parse(Arrays.asList(
+                "22-09-16 12:46:10.000 [main] ERROR - Нет соединения",
+                "java.net.ConnectException: Connection refused",
+                "\tat java.net.PlainSocketImpl.socketConnect",
+                "22-09-16 12:46:11.000 [main] INFO - Данные: " + UDATA,
+                "продолжение UData",
+                "22-09-16 12:46:12.000 [main] ERROR - Нет соединения",
+                "java.net.ConnectException: Connection refused",
+                "\tat java.net.PlainSocketImpl.socketConnect",
+                "22-09-16 12:46:13.000 [main] INFO - Готово"));
+        assertEquals(4, entries.size());
+        assertEquals("Нет соединения", entries.get(0).getMessage());
+        Object body = entries.get(0).getUserDefinedFields().get("Body");
+        assertEquals("Нет соединения\n" + trace, body.toString());
+        assertSame(body, entries.get(2).getUserDefinedFields().get("Body"));
+        // Сообщение с UData нужно форматеру целиком и остается в куче
+        assertEquals("Данные: " + UDATA + "\nпродолжение UData", entries.get(1).getMessage());
+        assertNull(entries.get(1).getUserDefinedFields().get("Body"));
+        assertEquals("Готово", entries.get(3).getMessage());
+        assertTrue(parser.getUserDefinedFields().contains("Body"));
+        // Повторный разбор удаляет хранилище прежнего
+        new LogFileParserHarness(parser).parse(Arrays.asList("22-09-16 12:46:14.000 [main] INFO - Повторное открытие"));
+        assertEquals(MessageStore.DELETED_TEXT, body.toString());
+
+        Properties properties = new Properties();
+        properties.setProperty(ParserSettings.STORE_MESSAGES, "true");
+        properties.setProperty(ParserSettings.FOLD_MESSAGES, "0");
+        properties.setProperty(ParserSettings.TOKEN_INDEX, "true");
+        parser = new ApplicationLogParser(new ParserSettings(properties));
+        entries = new LogFileParserHarness(parser).parse(Arrays.asList(
+                "22-09-16 12:46:10.000 [main] ERROR - Нет соединения",
+                "java.net.ConnectException: Connection refused",
+                "\tat java.net.PlainSocketImpl.socketConnect"));
+        assertEquals("Нет соединения", entries.get(0).getMessage());
+        assertEquals("Нет соединения\n" + trace, entries.get(0).getUserDefinedFields().get("Body").toString());
+        // Строки стектрейса не в сообщении, но индекс слов построен по всему тексту
+        assertArrayEquals(new int[]{0}, parser.getTokenIndex().find("PlainSocketImpl"));
+    }
+
+    @Test
+    public void settingsFromProperties() throws Exception {
+        Properties properties = new Properties();
+        assertEquals(Arrays.asList("DOC_ID"), new ParserSettings(properties).getUDataKeys());
+        properties.setProperty(ParserSettings.UDATA_KEYS, " CLIENT_ID, DOC_ID,,TYPE, bad key, CLIENT_ID");
+        assertEquals(Arrays.asList("CLIENT_ID", "DOC_ID"), new ParserSettings(properties).getUDataKeys());
+        properties.setProperty(ParserSettings.UDATA_KEYS, "");
+        assertTrue(new ParserSettings(properties).getUDataKeys().isEmpty());
+        assertEquals(ParserSettings.DEFAULT_UDATA_CACHE_CHARS, new ParserSettings(properties).getUDataCacheChars());
+        properties.setProperty(ParserSettings.UDATA_CACHE_CHARS, "0");
+        assertEquals(0, new ParserSettings(properties).getUDataCacheChars());
+        properties.setProperty(ParserSettings.UDATA_CACHE_CHARS, "много");
+        assertEquals(ParserSettings.DEFAULT_UDATA_CACHE_CHARS, new ParserSettings(properties).getUDataCacheChars());
+        assertEquals(0, new ParserSettings(properties).getUDataThreads());
+        properties.setProperty(ParserSettings.UDATA_THREADS, "4");
+        assertEquals(4, new ParserSettings(properties).getUDataThreads());
+        properties.setProperty(ParserSettings.UDATA_THREADS, "100000");
+        assertEquals(ParserSettings.MAX_UDATA_THREADS, new ParserSettings(properties).getUDataThreads());
+        assertEquals(ParserSettings.DEFAULT_ENTRY_MAX_CHARS, new ParserSettings(properties).getEntryMaxChars());
+        properties.setProperty(ParserSettings.ENTRY_MAX_CHARS, "0");
+        assertEquals(0, new ParserSettings(properties).getEntryMaxChars());
+        assertEquals(Charset.defaultCharset(), new ParserSettings(properties).getMergeCharset());
+        properties.setProperty(ParserSettings.MERGE_CHARSET, "windows-1251");
+        assertEquals(SampleLog.CP1251, new ParserSettings(properties).getMergeCharset());
+        assertFalse(new ParserSettings(properties).isTokenIndex());
+        properties.setProperty(ParserSettings.TOKEN_INDEX, "true");
+        assertTrue(new ParserSettings(properties).isTokenIndex());
+        assertNull(new ParserSettings(properties).getEntryFilter());
+        properties.setProperty(ParserSettings.FILTER_FROM, "вчера");
+        properties.setProperty(ParserSettings.FILTER_LEVELS, " , ");
+        assertNull(new ParserSettings(properties).getEntryFilter());
+        // Граница обрывается только на конце поля, часть часа не дополняется цифрами шаблона
+        properties.setProperty(ParserSettings.FILTER_TO, "22-09-16 1");
+        assertNull(new ParserSettings(properties).getEntryFilter());
+        properties.setProperty(ParserSettings.FILTER_TO, "22-09-16 12:4");
+        assertNull(new ParserSettings(properties).getEntryFilter());
+        properties.setProperty(ParserSettings.FILTER_TO, "22-09-16 19");
+        List<String> any = Collections.emptyList();
+        long to = EntryFilter.parseBound("22-09-16 19:59:59.999", true);
+        assertEquals(new EntryFilter(any, any, Long.MIN_VALUE, to).signature(),
+                new ParserSettings(properties).getEntryFilter().signature());
+        assertEquals(EntryFilter.parseBound("22-09-16 19:00:00.000", false), EntryFilter.parseBound("22-09-16 19", false));
+        properties.setProperty(ParserSettings.FILTER_TO, "22-09-16");
+        assertNotNull(new ParserSettings(properties).getEntryFilter());
+        assertEquals(ParserSettings.DEFAULT_FOLD_MESSAGES, new ParserSettings(properties).getFoldMessages());
+        properties.setProperty(ParserSettings.FOLD_MESSAGES, "0");
+        assertEquals(0, new ParserSettings(properties).getFoldMessages());
+        assertFalse(new ParserSettings(properties).isFoldField());
+        assertFalse(new ParserSettings(properties).isStoreMessages());
+        properties.setProperty(ParserSettings.STORE_MESSAGES, "true");
+        assertTrue(new ParserSettings(properties).isStoreMessages());
+        properties.setProperty(ParserSettings.MERGE_CHARSET, "нет такой");
+        assertEquals(Charset.defaultCharset(), new ParserSettings(properties).getMergeCharset());
+    }
+
+    private static ParserSettings settings(String key, String value) {
+        Properties properties = new Properties();
+        properties.setProperty(key, value);
+        return new ParserSettings(properties);
+    }
+
+    private static void write(File file, String... lines) throws Exception {
+        File written = SampleLog.write(Arrays.asList(lines), SampleLog.CP1251, "\r\n");
+        assertTrue(written.renameTo(file));
+    }
+
+    private static List<ParsedEntry> parse(String... lines) throws Exception {
+        return new LogFileParserHarness(new ApplicationLogParser()).parse(Arrays.asList(lines));
+    }
+}
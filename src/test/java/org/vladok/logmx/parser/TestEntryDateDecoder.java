@@ -0,0 +1,148 @@
+package org.vladok.logmx.parser;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Тесты для декодера метки времени. Эталон - SimpleDateFormat, который использовался парсером ранее
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 12:05
+ */
+public class TestEntryDateDecoder {
+
+    private static final String[] ZONES = {"Europe/Moscow", "America/New_York", "Australia/Lord_Howe", "UTC"};
+
+    @Test
+    public void consecutiveEntries() throws Exception {
+        for (String zone : ZONES) {
+            EntryDateDecoder decoder = newDecoder(zone);
+            SimpleDateFormat format = newFormat(zone);
+            assertSame(decoder, format, "22-09-16 12:46:13.412");
+            assertSame(decoder, format, "22-09-16 12:46:13.413");
+            assertSame(decoder, format, "22-09-16 23:59:59.999");
+            assertSame(decoder, format, "23-09-16 00:00:00.000");
+        }
+    }
+
+    @Test
+    public void daylightSavingTransitions() throws Exception {
+        // Переходы: Москва до 2011 года, Нью-Йорк, Лорд-Хау (смещение на 30 минут)
+        String[] days = {"28-03-10", "31-10-10", "27-03-11", "13-03-16", "06-11-16", "02-10-16", "03-04-16"};
+        for (String zone : ZONES) {
+            EntryDateDecoder decoder = newDecoder(zone);
+            SimpleDateFormat format = newFormat(zone);
+            for (String day : days) {
+                for (int hour = 0; hour < 24; hour++) {
+                    for (int minute = 0; minute < 60; minute += 15) {
+                        assertSame(decoder, format, String.format("%s %02d:%02d:30.500", day, hour, minute));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void lenientFields() throws Exception {
+        String[] samples = {"32-13-16 25:61:61.999", "00-00-00 00:00:00.000", "29-02-15 24:00:00.000", "31-04-99 12:00:00.000"};
+        for (String zone : ZONES) {
+            EntryDateDecoder decoder = newDecoder(zone);
+            SimpleDateFormat format = newFormat(zone);
+            for (String sample : samples) {
+                assertSame(decoder, format, sample);
+            }
+        }
+    }
+
+    @Test
+    public void randomTimestamps() throws Exception {
+        Random random = new Random(24092016L);
+        EntryDateDecoder decoder = newDecoder("Europe/Moscow");
+        SimpleDateFormat format = newFormat("Europe/Moscow");
+        for (int i = 0; i < 100000; i++) {
+            String timestamp = String.format("%02d-%02d-%02d %02d:%02d:%02d.%03d", 1 + random.nextInt(28),
+                    1 + random.nextInt(12), random.nextInt(100), random.nextInt(24), random.nextInt(60),
+                    random.nextInt(60), random.nextInt(1000));
+            assertSame(decoder, format, timestamp);
+        }
+    }
+
+    @Test
+    public void malformed() {
+        EntryDateDecoder decoder = newDecoder("UTC");
+        String[] samples = {"22-09-16 12:46:13", "22-09-16 12:46:13,412", "2a-09-16 12:46:13.412", "22-09-16 12:46:13.4x2"};
+        for (String sample : samples) {
+            try {
+                decoder.decode(sample);
+                fail("Ожидалось ParseException для " + sample);
+            } catch (ParseException expected) {
+                // ok
+            }
+        }
+    }
+
+    @Test
+    public void concurrentDecoding() throws Exception {
+        final EntryDateDecoder decoder = newDecoder("Europe/Moscow");
+        final SimpleDateFormat format = newFormat("Europe/Moscow");
+        final String[] timestamps = new String[2000];
+        final long[] expected = new long[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = String.format("%02d-10-16 %02d:%02d:13.412", 1 + i % 28, i % 24, i % 60);
+            expected[i] = format.parse(timestamps[i]).getTime();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < 4; t++) {
+                final int offset = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int n = 0; n < 50; n++) {
+                            for (int i = 0; i < timestamps.length; i++) {
+                                int index = (i + offset * 7) % timestamps.length;
+                                assertEquals(timestamps[index], expected[index], decoder.decode(timestamps[index]));
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertSame(EntryDateDecoder decoder, SimpleDateFormat format, String timestamp) throws Exception {
+        assertEquals(timestamp, format.parse(timestamp).getTime(), decoder.decode(timestamp));
+    }
+
+    private static EntryDateDecoder newDecoder(String zone) {
+        return new EntryDateDecoder(TimeZone.getTimeZone(zone), Locale.getDefault());
+    }
+
+    private static SimpleDateFormat newFormat(String zone) {
+        SimpleDateFormat format = new SimpleDateFormat("dd-MM-yy HH:mm:ss.SSS");
+        format.setTimeZone(TimeZone.getTimeZone(zone));
+        return format;
+    }
+}
@@ -0,0 +1,118 @@
+package org.vladok.logmx.parser;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тесты для сканера заголовков. Эталон - регулярное выражение, которое использовалось парсером ранее
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 10:40
+ */
+public class TestEntryHeaderScanner {
+
+    private static final Pattern ENTRY_BEGIN_PATTERN = Pattern
+            .compile("^(?<timestamp>\\d{2}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}\\.\\d{3}) " +
+                    "\\[(?<thred>[^]]+)\\] " +
+                    "(?<level>[A-Z]+) - (?<message>.*)$");
+
+    private static final String[] SAMPLES = {
+            "22-09-16 12:46:13.412 [main] INFO - Инициализация модулей...",
+            "22-09-16 12:46:13.412 [main] INFO - ",
+            "22-09-16 12:46:13.412 [pool-1-thread-3] ERROR - Ошибка [ TYPE: 'EMPTY_DATA'; DATA: '{}' ]",
+            "22-09-16 12:46:13.412 [x] A - - - ",
+            "22-09-16 12:46:13.412 [[nested] INFO - text",
+            "22-09-16 12:46:13.412 [a b] WARN - text ] [ - ",
+            "22-09-16 12:46:13.412 [] INFO - empty thread",
+            "22-09-16 12:46:13.412 [main]  INFO - two spaces",
+            "22-09-16 12:46:13.412 [main] info - lower case level",
+            "22-09-16 12:46:13.412 [main] INFO- no space",
+            "22-09-16 12:46:13.412 [main] INFO -",
+            "22-09-16 12:46:13.412 [main] INFO",
+            "22-09-16 12:46:13.41 [main] INFO - short millis",
+            "22-09-2016 12:46:13.412 [main] INFO - long year",
+            "2-09-16 12:46:13.412 [main] INFO - short day",
+            "22-09-16 12:46:13,412 [main] INFO - comma",
+            "22-09-16T12:46:13.412 [main] INFO - T",
+            "22-09-16 12:46:13.412 [main] INFO - line\rwith cr",
+            "22-09-16 12:46:13.412 [main] INFO - line\u2028separator",
+            "22-09-16 12:46:13.412 [main] INFO - next\u0085line",
+            "22-09-16 12:46:13.412 [ma\nin] INFO - new line in thread",
+            "22-09-16 12:46:13.412 [main] INFO - trailing cr\r",
+            "22-09-16 12:46:13.412 [main] INFO1 - digit in level",
+            "22-09-16 12:46:13.412 [main] IN FO - space in level",
+            "\tat org.vladok.logmx.parser.ApplicationLogParser.parseLine(ApplicationLogParser.java:57)",
+            "    SIGN_TYPE=SIGN,",
+            "java.lang.NullPointerException",
+            "",
+            "22-09-16 12:46:13.412 [main] INFO - \u00d7",
+            "٢٢-09-16 12:46:13.412 [main] INFO - arabic digits",
+    };
+
+    @Test
+    public void samples() {
+        for (String line : SAMPLES) {
+            assertSameAsPattern(line);
+        }
+    }
+
+    @Test
+    public void fields() {
+        String line = "22-09-16 12:46:13.412 [pool-1-thread-3] ERROR - Сообщение - с дефисом";
+        long header = EntryHeaderScanner.scan(line);
+        assertTrue(header != EntryHeaderScanner.NO_MATCH);
+        assertEquals("22-09-16 12:46:13.412", line.substring(0, EntryHeaderScanner.TIMESTAMP_LENGTH));
+        assertEquals("pool-1-thread-3", line.substring(EntryHeaderScanner.THREAD_START, EntryHeaderScanner.threadEnd(header)));
+        assertEquals("ERROR", line.substring(EntryHeaderScanner.levelStart(header), EntryHeaderScanner.levelEnd(header)));
+        assertEquals("Сообщение - с дефисом", line.substring(EntryHeaderScanner.messageStart(header)));
+    }
+
+    /**
+     * Случайные искажения корректного заголовка: замена, вставка и удаление символов
+     */
+    @Test
+    public void randomMutations() {
+        String base = "22-09-16 12:46:13.412 [main-1] INFO - Вызов сервиса";
+        char[] alphabet = "0123456789-:. []AZaz_\n\r\u2028Я".toCharArray();
+        Random random = new Random(20161001L);
+        for (int n = 0; n < 200000; n++) {
+            StringBuilder line = new StringBuilder(base);
+            int mutations = 1 + random.nextInt(3);
+            for (int m = 0; m < mutations; m++) {
+                int pos = random.nextInt(line.length());
+                char ch = alphabet[random.nextInt(alphabet.length)];
+                switch (random.nextInt(3)) {
+                    case 0:
+                        line.setCharAt(pos, ch);
+                        break;
+                    case 1:
+                        line.insert(pos, ch);
+                        break;
+                    default:
+                        line.deleteCharAt(pos);
+                }
+            }
+            assertSameAsPattern(line.toString());
+        }
+    }
+
+    private static void assertSameAsPattern(String line) {
+        Matcher matcher = ENTRY_BEGIN_PATTERN.matcher(line);
+        long header = EntryHeaderScanner.scan(line);
+        boolean matches = matcher.matches();
+        assertEquals("Строка: " + line, matches, header != EntryHeaderScanner.NO_MATCH);
+        if (matches) {
+            assertEquals(matcher.group("timestamp"), line.substring(0, EntryHeaderScanner.TIMESTAMP_LENGTH));
+            assertEquals(matcher.group("thred"), line.substring(EntryHeaderScanner.THREAD_START, EntryHeaderScanner.threadEnd(header)));
+            assertEquals(matcher.group("level"), line.substring(EntryHeaderScanner.levelStart(header), EntryHeaderScanner.levelEnd(header)));
+            assertEquals(matcher.group("message"), line.substring(EntryHeaderScanner.messageStart(header)));
+        }
+    }
+}
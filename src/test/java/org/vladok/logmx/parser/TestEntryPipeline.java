@@ -0,0 +1,104 @@
+package org.vladok.logmx.parser;
+
+import com.lightysoft.logmx.business.ParsedEntry;
+import com.lightysoft.logmx.mgr.LogFileParserHarness;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Тесты порядка и ограничения очереди конвейера обработки записей
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 14:35
+ */
+public class TestEntryPipeline {
+
+    private final LogFileParserHarness harness = new LogFileParserHarness(new ApplicationLogParser());
+
+    @Test
+    public void keepsOrder() throws Exception {
+        EntryPipeline pipeline = new EntryPipeline(2);
+        CountDownLatch slow = new CountDownLatch(1);
+        ParsedEntry first = harness.createEntry();
+        ParsedEntry second = harness.createEntry();
+        pipeline.submit(task(first, slow));
+        pipeline.submit(task(second, null));
+        // Вторая запись готова раньше, но первая еще в работе
+        Thread.sleep(50);
+        assertNull(pipeline.next(2));
+        slow.countDown();
+        assertSame(first, pipeline.next(0));
+        assertSame(second, pipeline.next(0));
+        assertNull(pipeline.next(0));
+    }
+
+    /**
+     * При заполненной очереди next ждет самую старую запись
+     */
+    @Test
+    public void waitsWhenFull() throws Exception {
+        EntryPipeline pipeline = new EntryPipeline(1);
+        assertEquals(EntryPipeline.IN_FLIGHT_PER_THREAD, pipeline.getMaxInFlight());
+        final CountDownLatch slow = new CountDownLatch(1);
+        ParsedEntry first = harness.createEntry();
+        pipeline.submit(task(first, slow));
+        for (int i = 1; i < pipeline.getMaxInFlight(); i++) {
+            pipeline.submit(task(harness.createEntry(), null));
+        }
+        assertNull(pipeline.next(pipeline.getMaxInFlight()));
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ignored) {
+                }
+                slow.countDown();
+            }
+        }).start();
+        assertSame(first, pipeline.next(pipeline.getMaxInFlight() - 1));
+        assertEquals(pipeline.getMaxInFlight() - 1, pipeline.size());
+        while (pipeline.next(0) != null) {
+        }
+        assertEquals(0, pipeline.size());
+    }
+
+    @Test
+    public void rethrowsTaskException() throws Exception {
+        EntryPipeline pipeline = new EntryPipeline(1);
+        pipeline.submit(new Callable<ParsedEntry>() {
+            @Override
+            public ParsedEntry call() {
+                throw new IllegalStateException("ошибка обработки");
+            }
+        });
+        pipeline.submit(task(harness.createEntry(), null));
+        try {
+            pipeline.next(0);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("ошибка обработки", e.getMessage());
+        }
+        assertEquals(0, pipeline.size());
+    }
+
+    private static Callable<ParsedEntry> task(final ParsedEntry entry, final CountDownLatch latch) {
+        return new Callable<ParsedEntry>() {
+            @Override
+            public ParsedEntry call() throws Exception {
+                if (latch != null) {
+                    latch.await();
+                }
+                return entry;
+            }
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package org.vladok.logmx.parser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тесты словаря значений полей
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 09:40
+ */
+public class TestFieldDictionary {
+
+    @Test
+    public void sameInstanceForEqualRegions() {
+        FieldDictionary dictionary = new FieldDictionary(16);
+        String first = dictionary.intern("[pool-1-thread-3] INFO", 1, 16);
+        String second = dictionary.intern(new StringBuilder("xx pool-1-thread-3"), 3, 18);
+        assertEquals("pool-1-thread-3", first);
+        assertSame(first, second);
+        assertNotSame(first, dictionary.intern("pool-1-thread-4", 0, 15));
+        assertEquals(0, dictionary.getHits());
+        dictionary.addLookups(3);
+        assertEquals(1, dictionary.getHits());
+        assertEquals(2, dictionary.getMisses());
+        assertEquals(1.0 / 3, dictionary.getHitRate(), 1e-9);
+        assertEquals("", dictionary.intern("abc", 1, 1));
+    }
+
+    @Test
+    public void sizeIsBounded() {
+        FieldDictionary dictionary = new FieldDictionary(8);
+        for (int i = 0; i < 10000; i++) {
+            String value = "thread-" + i;
+            assertEquals(value, dictionary.intern(value, 0, value.length()));
+        }
+        assertTrue(dictionary.size() <= 8);
+        // Часто повторяющиеся значения возвращаются в словарь и дальше находятся
+        String main = dictionary.intern("main", 0, 4);
+        assertSame(main, dictionary.intern("main", 0, 4));
+    }
+
+    @Test
+    public void concurrentLookups() throws Exception {
+        final FieldDictionary dictionary = new FieldDictionary(64);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = 0; i < 100000; i++) {
+                            String value = "thread-" + (i % 100);
+                            assertEquals(value, dictionary.intern(value, 0, value.length()));
+                        }
+                        // Поиски потока учитываются одним добавлением
+                        dictionary.addLookups(100000);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(400000, dictionary.getHits() + dictionary.getMisses());
+        assertTrue(dictionary.getMisses() >= 100);
+    }
+}
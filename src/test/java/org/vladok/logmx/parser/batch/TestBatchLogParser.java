@@ -0,0 +1,149 @@
+package org.vladok.logmx.parser.batch;
+
+import com.lightysoft.logmx.business.ParsedEntry;
+import org.junit.Test;
+import org.vladok.logmx.parser.SampleLog;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Тесты пакетного разбора: результат при любом размере кусков совпадает с парсером для LogMX
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 19:50
+ */
+public class TestBatchLogParser {
+
+    @Test
+    public void sameEntriesAsLogMxParserForAnyChunkSize() throws Exception {
+        List<String> lines = SampleLog.lines(300);
+        List<ParsedEntry> expected = SampleLog.parse(lines);
+        for (Charset charset : Arrays.asList(SampleLog.UTF_8, SampleLog.CP1251)) {
+            File file = SampleLog.write(lines, charset, "\n");
+            try {
+                for (int chunkSize : new int[]{1, 7, 100, 1000, 1 << 20}) {
+                    assertEntries(charset + ", " + chunkSize, expected, parse(file, charset, chunkSize, 4));
+                }
+            } finally {
+                SampleLog.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void windowsLineSeparators() throws Exception {
+        List<String> lines = SampleLog.lines(50);
+        List<ParsedEntry> expected = SampleLog.parse(lines);
+        File file = SampleLog.write(lines, SampleLog.UTF_8, "\r\n");
+        try {
+            assertEntries("crlf", expected, parse(file, SampleLog.UTF_8, 64, 3));
+        } finally {
+            SampleLog.delete(file);
+        }
+    }
+
+    @Test
+    public void offsetPointsToHeaderLine() throws Exception {
+        List<String> lines = SampleLog.lines(40);
+        File file = SampleLog.write(lines, SampleLog.CP1251, "\n");
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                for (LogEntry entry : parse(file, SampleLog.CP1251, 50, 2)) {
+                    byte[] date = new byte[entry.getDate().length()];
+                    raf.seek(entry.getOffset());
+                    raf.readFully(date);
+                    assertEquals(entry.getDate(), new String(date, SampleLog.CP1251));
+                }
+            } finally {
+                raf.close();
+            }
+        } finally {
+            SampleLog.delete(file);
+        }
+    }
+
+    @Test
+    public void handlerExceptionStopsParsing() throws Exception {
+        final IllegalStateException error = new IllegalStateException("stop");
+        File file = SampleLog.write(SampleLog.lines(100), SampleLog.UTF_8, "\n");
+        BatchLogParser parser = new BatchLogParser(SampleLog.UTF_8, 2);
+        try {
+            parser.setChunkSize(10);
+            final List<LogEntry> received = new ArrayList<LogEntry>();
+            parser.parse(file, new EntryHandler() {
+                @Override
+                public void entry(LogEntry entry) throws Exception {
+                    received.add(entry);
+                    if (received.size() == 5) {
+                        throw error;
+                    }
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(error, e);
+        } finally {
+            parser.close();
+            SampleLog.delete(file);
+        }
+    }
+
+    @Test
+    public void emptyFileAndNoHeaders() throws Exception {
+        File file = SampleLog.write(Arrays.asList("просто текст", "без заголовков"), SampleLog.UTF_8, "\n");
+        try {
+            assertTrue(parse(file, SampleLog.UTF_8, 3, 2).isEmpty());
+        } finally {
+            SampleLog.delete(file);
+        }
+        file = SampleLog.write(new ArrayList<String>(), SampleLog.UTF_8, "\n");
+        try {
+            assertTrue(parse(file, SampleLog.UTF_8, 3, 2).isEmpty());
+        } finally {
+            SampleLog.delete(file);
+        }
+    }
+
+    private static void assertEntries(String message, List<ParsedEntry> expected, List<LogEntry> actual) {
+        assertEquals(message, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ParsedEntry e = expected.get(i);
+            LogEntry a = actual.get(i);
+            assertEquals(message, e.getDate(), a.getDate());
+            assertEquals(message, e.getThread(), a.getThread());
+            assertEquals(message, e.getLevel(), a.getLevel());
+            assertEquals(message, e.getMessage(), a.getMessage());
+            Object formatted = e.getUserDefinedFields().get("Formatted");
+            assertEquals(message, formatted == null ? null : formatted.toString(), a.getFormatted());
+        }
+    }
+
+    private static List<LogEntry> parse(File file, Charset charset, int chunkSize, int parallelism) throws Exception {
+        final List<LogEntry> entries = new ArrayList<LogEntry>();
+        BatchLogParser parser = new BatchLogParser(charset, parallelism);
+        try {
+            parser.setChunkSize(chunkSize);
+            parser.parse(file, new EntryHandler() {
+                @Override
+                public void entry(LogEntry entry) {
+                    entries.add(entry);
+                }
+            });
+        } finally {
+            parser.close();
+        }
+        return entries;
+    }
+}
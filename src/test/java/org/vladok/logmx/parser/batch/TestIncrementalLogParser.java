@@ -0,0 +1,189 @@
+package org.vladok.logmx.parser.batch;
+
+import com.lightysoft.logmx.business.ParsedEntry;
+import org.junit.Test;
+import org.vladok.logmx.parser.SampleLog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тесты инкрементального разбора: дописывание по кускам, сохранение контрольной точки, ротация и усечение
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 23:30
+ */
+public class TestIncrementalLogParser {
+
+    @Test
+    public void appendedPiecesGiveSameEntriesAsFullParse() throws Exception {
+        List<String> lines = SampleLog.lines(60);
+        List<ParsedEntry> expected = SampleLog.parse(lines);
+        byte[] content = join(lines, "\r\n").getBytes(SampleLog.CP1251);
+        File log = File.createTempFile("application", ".log");
+        File checkpointFile = new File(log.getPath() + ".checkpoint");
+        try {
+            IncrementalLogParser parser = new IncrementalLogParser(SampleLog.CP1251);
+            List<LogEntry> received = new ArrayList<LogEntry>();
+            // Куски разной длины: разрывы посреди строк, записей и символов
+            int written = 0;
+            for (int step = 1; written < content.length; step = step * 3 + 7) {
+                int length = Math.min(step, content.length - written);
+                append(log, content, written, length);
+                written += length;
+                Checkpoint checkpoint = parser.parse(log, checkpointFile, collect(received));
+                assertFalse(checkpoint.isReset());
+                assertTrue(checkpoint.getOffset() <= written);
+            }
+            Checkpoint last = Checkpoint.load(checkpointFile);
+            received.add(parser.pendingEntry(last));
+            assertEntries(expected, received);
+        } finally {
+            SampleLog.delete(log);
+            SampleLog.delete(checkpointFile);
+        }
+    }
+
+    @Test
+    public void onlyAppendedBytesAreRead() throws Exception {
+        List<String> lines = SampleLog.lines(20);
+        File log = SampleLog.write(lines, SampleLog.UTF_8, "\n");
+        try {
+            IncrementalLogParser parser = new IncrementalLogParser(SampleLog.UTF_8);
+            List<LogEntry> received = new ArrayList<LogEntry>();
+            Checkpoint first = parser.parse(log, (Checkpoint) null, collect(received));
+            assertEquals(log.length(), first.getOffset());
+            int count = received.size();
+            // Без новых данных ничего не передается
+            Checkpoint second = parser.parse(log, first, collect(received));
+            assertEquals(count, received.size());
+            assertEquals(first.getOffset(), second.getOffset());
+            // Новая запись завершает предыдущую
+            byte[] more = "22-09-16 13:00:00.000 [main] INFO - новая запись\n".getBytes(SampleLog.UTF_8);
+            append(log, more, 0, more.length);
+            Checkpoint third = parser.parse(log, second, collect(received));
+            assertEquals(count + 1, received.size());
+            assertEquals("новая запись", parser.pendingEntry(third).getMessage());
+            assertEquals(first.getOffset(), parser.pendingEntry(third).getOffset());
+        } finally {
+            SampleLog.delete(log);
+        }
+    }
+
+    @Test
+    public void truncatedFileIsParsedFromStart() throws Exception {
+        File log = SampleLog.write(SampleLog.lines(30), SampleLog.UTF_8, "\n");
+        try {
+            IncrementalLogParser parser = new IncrementalLogParser(SampleLog.UTF_8);
+            Checkpoint checkpoint = parser.parse(log, (Checkpoint) null, collect(new ArrayList<LogEntry>()));
+            List<String> smaller = SampleLog.lines(5);
+            writeOver(log, join(smaller, "\n").getBytes(SampleLog.UTF_8));
+            List<LogEntry> received = new ArrayList<LogEntry>();
+            checkpoint = parser.parse(log, checkpoint, collect(received));
+            assertTrue(checkpoint.isReset());
+            received.add(parser.pendingEntry(checkpoint));
+            assertEntries(SampleLog.parse(smaller), received);
+        } finally {
+            SampleLog.delete(log);
+        }
+    }
+
+    @Test
+    public void rotatedFileIsParsedFromStart() throws Exception {
+        File log = SampleLog.write(SampleLog.lines(10), SampleLog.UTF_8, "\n");
+        try {
+            IncrementalLogParser parser = new IncrementalLogParser(SampleLog.UTF_8);
+            Checkpoint checkpoint = parser.parse(log, (Checkpoint) null, collect(new ArrayList<LogEntry>()));
+            // Новый файл длиннее старого, но начинается с других записей
+            List<String> rotated = new ArrayList<String>();
+            for (int i = 0; i < 40; i++) {
+                rotated.add("22-09-17 00:00:" + String.format("%02d", i) + ".000 [main] INFO - после ротации " + i);
+            }
+            writeOver(log, join(rotated, "\n").getBytes(SampleLog.UTF_8));
+            List<LogEntry> received = new ArrayList<LogEntry>();
+            checkpoint = parser.parse(log, checkpoint, collect(received));
+            assertTrue(checkpoint.isReset());
+            received.add(parser.pendingEntry(checkpoint));
+            assertEntries(SampleLog.parse(rotated), received);
+        } finally {
+            SampleLog.delete(log);
+        }
+    }
+
+    @Test
+    public void checkpointSurvivesStoreAndLoad() throws Exception {
+        File log = SampleLog.write(Arrays.asList("22-09-16 12:46:13.412 [поток] ERROR - Ошибка", "\tстрока = 1",
+                "строка: 2"), SampleLog.UTF_8, "\n");
+        File checkpointFile = new File(log.getPath() + ".checkpoint");
+        try {
+            IncrementalLogParser parser = new IncrementalLogParser(SampleLog.UTF_8);
+            Checkpoint stored = parser.parse(log, checkpointFile, collect(new ArrayList<LogEntry>()));
+            Checkpoint loaded = Checkpoint.load(checkpointFile);
+            assertEquals(stored.getOffset(), loaded.getOffset());
+            LogEntry entry = parser.pendingEntry(loaded);
+            assertEquals("поток", entry.getThread());
+            assertEquals("ERROR", entry.getLevel());
+            assertEquals("Ошибка\n\tстрока = 1\nстрока: 2", entry.getMessage());
+            assertNull(Checkpoint.load(new File(log.getPath() + ".missing")));
+        } finally {
+            SampleLog.delete(log);
+            SampleLog.delete(checkpointFile);
+        }
+    }
+
+    private static void assertEntries(List<ParsedEntry> expected, List<LogEntry> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getDate(), actual.get(i).getDate());
+            assertEquals(expected.get(i).getThread(), actual.get(i).getThread());
+            assertEquals(expected.get(i).getLevel(), actual.get(i).getLevel());
+            assertEquals(expected.get(i).getMessage(), actual.get(i).getMessage());
+        }
+    }
+
+    private static EntryHandler collect(final List<LogEntry> entries) {
+        return new EntryHandler() {
+            @Override
+            public void entry(LogEntry entry) {
+                entries.add(entry);
+            }
+        };
+    }
+
+    private static String join(List<String> lines, String separator) {
+        StringBuilder result = new StringBuilder();
+        for (String line : lines) {
+            result.append(line).append(separator);
+        }
+        return result.toString();
+    }
+
+    private static void append(File file, byte[] content, int from, int length) throws IOException {
+        OutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(content, from, length);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeOver(File file, byte[] content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.vladok.logmx.parser.batch;
+
+import org.junit.Test;
+import org.vladok.logmx.parser.SampleLog;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тесты объединения нескольких логов по времени
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 18:20
+ */
+public class TestMergedLogReader {
+
+    @Test
+    public void mergesByTimeWithStableTies() throws Exception {
+        List<File> files = Arrays.asList(
+                SampleLog.write(Arrays.asList(
+                        "мусор до первой записи",
+                        "22-09-16 12:00:01.000 [main] INFO - a1",
+                        "22-09-16 12:00:03.000 [main] INFO - a2",
+                        "\tпродолжение a2",
+                        "22-09-16 12:00:05.000 [main] ERROR - a3"), SampleLog.CP1251, "\r\n"),
+                SampleLog.write(Arrays.asList(
+                        "22-09-16 12:00:02.000 [node2] INFO - b1",
+                        "22-09-16 12:00:03.000 [node2] INFO - b2",
+                        "22-09-16 12:00:06.000 [node2] INFO - b3"), SampleLog.CP1251, "\n"),
+                SampleLog.write(Collections.<String>emptyList(), SampleLog.CP1251, "\n"),
+                SampleLog.write(Arrays.asList(
+                        "22-09-16 12:00:00.000 [node3] DEBUG - c1",
+                        "22-09-16 12:00:03.000 [node3] DEBUG - c2",
+                        // время идет назад: запись остается после c2
+                        "22-09-16 11:59:59.000 [node3] DEBUG - c3",
+                        "22-09-16 12:00:04.000 [node3] DEBUG - c4"), SampleLog.CP1251, "\n"));
+        try {
+            MergedLogReader reader = new MergedLogReader(files, SampleLog.CP1251, false);
+            List<String> messages = new ArrayList<String>();
+            List<File> sources = new ArrayList<File>();
+            try {
+                assertEquals(4, reader.getSourceCount());
+                for (LogEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                    messages.add(entry.getMessage());
+                    sources.add(reader.getFile());
+                    assertEquals(-1, entry.getOffset());
+                }
+                assertNull(reader.getFile());
+            } finally {
+                reader.close();
+            }
+            assertEquals(Arrays.asList("c1", "a1", "b1", "a2\n\tпродолжение a2", "b2", "c2", "c3", "c4", "a3", "b3"),
+                    messages);
+            assertEquals(files.get(3), sources.get(0));
+            assertEquals(files.get(0), sources.get(3));
+        } finally {
+            for (File file : files) {
+                SampleLog.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Лог, разложенный по нескольким файлам, собирается обратно в исходном порядке
+     */
+    @Test
+    public void sameEntriesAsSingleLog() throws Exception {
+        Random random = new Random(20L);
+        List<List<String>> parts = new ArrayList<List<String>>();
+        for (int i = 0; i < 5; i++) {
+            parts.add(new ArrayList<String>());
+        }
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 3000; i++) {
+            // Строки длиннее буфера чтения в части записей
+            String message = "Сообщение " + i + (i % 500 == 7 ? repeat('x', MergedLogReader.BUFFER_CHARS + 100) : "");
+            List<String> part = parts.get(random.nextInt(parts.size()));
+            part.add(String.format("22-09-16 %02d:%02d:%02d.%03d [поток-%d] INFO - %s",
+                    i / 3600, i / 60 % 60, i % 60, i % 1000, i % 7, message));
+            if (i % 4 == 0) {
+                message += "\nвторая строка " + i;
+                part.add("вторая строка " + i);
+            }
+            expected.add(message);
+        }
+        List<File> files = new ArrayList<File>();
+        try {
+            for (List<String> part : parts) {
+                files.add(SampleLog.write(part, SampleLog.UTF_8, "\n"));
+            }
+            MergedLogReader reader = new MergedLogReader(files, SampleLog.UTF_8, false);
+            List<String> messages = new ArrayList<String>();
+            try {
+                for (LogEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                    messages.add(entry.getMessage());
+                }
+            } finally {
+                reader.close();
+            }
+            assertEquals(expected, messages);
+        } finally {
+            for (File file : files) {
+                SampleLog.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void rotatedFilesOldestFirst() throws Exception {
+        File directory = Files.createTempDirectory("rainbow-merge").toFile();
+        List<String> names = Arrays.asList("application.log", "application.log.1", "application.log.2",
+                "application.log.10", "application.log.tidx", "application.log.checkpoint", "other.log.1");
+        try {
+            for (String name : names) {
+                assertTrue(new File(directory, name).createNewFile());
+            }
+            List<String> rotated = new ArrayList<String>();
+            for (File file : MergedLogReader.rotated(new File(directory, "application.log"))) {
+                rotated.add(file.getName());
+            }
+            assertEquals(Arrays.asList("application.log.10", "application.log.2", "application.log.1", "application.log"),
+                    rotated);
+        } finally {
+            for (String name : names) {
+                SampleLog.delete(new File(directory, name));
+            }
+            SampleLog.delete(directory);
+        }
+    }
+
+    private static String repeat(char ch, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, ch);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,176 @@
+package org.vladok.logmx.parser.index;
+
+import org.junit.Test;
+import org.vladok.logmx.parser.EntryDateDecoder;
+import org.vladok.logmx.parser.SampleLog;
+import org.vladok.logmx.parser.io.MappedLogEntry;
+import org.vladok.logmx.parser.io.MappedLogReader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тесты индекса времени: чтение интервала через индекс совпадает с полным проходом по логу
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 23:58
+ */
+public class TestTimeIndex {
+
+    private static final Charset CHARSET = SampleLog.CP1251;
+
+    @Test
+    public void rangeThroughIndexMatchesFullScan() throws Exception {
+        File log = writeLog(3000);
+        try {
+            TimeIndex index = TimeIndex.open(log, CHARSET);
+            assertTrue(index.size() > 100);
+            EntryDateDecoder decoder = new EntryDateDecoder();
+            long start = decoder.decode("22-09-16 12:00:00.000");
+            Random random = new Random(1016L);
+            for (int n = 0; n < 200; n++) {
+                long from = start + random.nextInt(4 * 3600 * 1000) - 600 * 1000;
+                long to = from + random.nextInt(20 * 60 * 1000);
+                assertEquals(scan(log, from, to), readRange(log, index, from, to));
+            }
+        } finally {
+            delete(log);
+        }
+    }
+
+    @Test
+    public void seekSkipsEarlierEntries() throws Exception {
+        File log = writeLog(3000);
+        try {
+            TimeIndex index = TimeIndex.open(log, CHARSET);
+            long time = new EntryDateDecoder().decode("22-09-16 14:00:00.000");
+            long offset = index.offsetOf(time);
+            assertTrue(offset > log.length() / 3);
+            // Все записи до смещения раньше искомого времени
+            MappedLogReader reader = new MappedLogReader(log, CHARSET);
+            try {
+                EntryDateDecoder decoder = new EntryDateDecoder();
+                for (MappedLogEntry entry = reader.next(); entry != null && entry.getOffset() < offset; entry = reader.next()) {
+                    assertTrue(decoder.decode(entry.getDate()) < time);
+                }
+            } finally {
+                reader.close();
+            }
+            assertEquals(0, index.offsetOf(0));
+        } finally {
+            delete(log);
+        }
+    }
+
+    @Test
+    public void sidecarIsReusedUntilLogChanges() throws Exception {
+        File log = writeLog(500);
+        File sidecar = TimeIndex.sidecarFor(log);
+        try {
+            TimeIndex built = TimeIndex.open(log, CHARSET);
+            TimeIndex loaded = TimeIndex.load(sidecar, log);
+            assertNotNull(loaded);
+            assertEquals(built.size(), loaded.size());
+            long time = new EntryDateDecoder().decode("22-09-16 12:30:00.000");
+            assertEquals(built.offsetOf(time), loaded.offsetOf(time));
+
+            OutputStream out = new FileOutputStream(log, true);
+            try {
+                out.write("22-09-16 23:00:00.000 [main] INFO - дописано\n".getBytes(CHARSET));
+            } finally {
+                out.close();
+            }
+            assertNull(TimeIndex.load(sidecar, log));
+            TimeIndex rebuilt = TimeIndex.open(log, CHARSET);
+            assertEquals(built.size() + 1, rebuilt.size());
+            assertNotNull(TimeIndex.load(sidecar, log));
+
+            // Поврежденный файл индекса строится заново
+            out = new FileOutputStream(sidecar);
+            try {
+                out.write(new byte[]{'R', 'L', 'I', 'X', 0});
+            } finally {
+                out.close();
+            }
+            assertNull(TimeIndex.load(sidecar, log));
+            assertEquals(rebuilt.size(), TimeIndex.open(log, CHARSET).size());
+        } finally {
+            delete(log);
+        }
+    }
+
+    /**
+     * Записи через 1-9 секунд, каждая десятая на пару секунд раньше предыдущей (другой поток),
+     * часть многострочных
+     */
+    private static File writeLog(int entries) throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("dd-MM-yy HH:mm:ss.SSS");
+        long time = format.parse("22-09-16 12:00:00.000").getTime();
+        Random random = new Random(16L);
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < entries; i++) {
+            time += 1000 + random.nextInt(8000);
+            long entryTime = i % 10 == 9 ? time - 2000 : time;
+            lines.add(format.format(new Date(entryTime)) + " [поток-" + (i % 4) + "] INFO - запись " + i);
+            if (i % 7 == 0) {
+                lines.add("\tпродолжение записи " + i);
+            }
+        }
+        return SampleLog.write(lines, CHARSET, "\n");
+    }
+
+    private static List<String> readRange(File log, TimeIndex index, long from, long to) throws IOException {
+        List<String> result = new ArrayList<String>();
+        TimeRangeReader reader = new TimeRangeReader(log, CHARSET, index, from, to);
+        try {
+            for (MappedLogEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                result.add(entry.toString());
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    /**
+     * Эталон: все записи с начала файла, до первой позже to
+     */
+    private static List<String> scan(File log, long from, long to) throws Exception {
+        List<String> result = new ArrayList<String>();
+        EntryDateDecoder decoder = new EntryDateDecoder();
+        MappedLogReader reader = new MappedLogReader(log, CHARSET);
+        try {
+            for (MappedLogEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                long time = decoder.decode(entry.getDate());
+                if (time > to) {
+                    break;
+                }
+                if (time >= from) {
+                    result.add(entry.toString());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    private static void delete(File log) {
+        SampleLog.delete(TimeIndex.sidecarFor(log));
+        SampleLog.delete(log);
+    }
+}
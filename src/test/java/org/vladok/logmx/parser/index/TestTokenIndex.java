@@ -0,0 +1,180 @@
+package org.vladok.logmx.parser.index;
+
+import org.junit.Test;
+import org.vladok.logmx.parser.EntryFilter;
+import org.vladok.logmx.parser.SampleLog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тесты индекса слов: результаты поиска совпадают с просмотром всех сообщений
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 21:40
+ */
+public class TestTokenIndex {
+
+    @Test
+    public void findsTokensAndUDataPairs() {
+        TokenIndexBuilder builder = new TokenIndexBuilder();
+        builder.add("Документ 28672 сохранен: [ TYPE: 'IBANK_DOC'; DATA: '{DOC_ID=28672, NAME=ООО \"Пример\", "
+                + "SIGNS=[[ TYPE: 'SIGN'; DATA: '{KEY_ID=77}' ]]}' ]");
+        builder.add("Ошибка: документ 28673 не найден, a b c");
+        builder.add("Хеш " + repeat('f', TokenIndex.MAX_TOKEN_LENGTH + 1) + " и DOC_ID=28672 без UData");
+        TokenIndex index = builder.build();
+        assertEquals(3, index.getEntryCount());
+        assertArrayEquals(new int[]{0, 1}, index.find("ДОКУМЕНТ"));
+        assertArrayEquals(new int[]{0, 2}, index.find("28672"));
+        assertArrayEquals(new int[]{0, 2}, index.find("doc_id"));
+        assertArrayEquals(new int[]{0}, index.find("DOC_ID", "28672"));
+        assertArrayEquals(new int[]{0}, index.find("name", "ооо \"пример\""));
+        assertArrayEquals(new int[]{0}, index.find("TYPE", "IBANK_DOC"));
+        assertArrayEquals(new int[]{0}, index.find("TYPE", "SIGN"));
+        assertArrayEquals(new int[]{0}, index.find("KEY_ID", "77"));
+        // Короткие и слишком длинные слова не индексируются
+        assertEquals(0, index.find("a").length);
+        assertEquals(0, index.find(repeat('f', TokenIndex.MAX_TOKEN_LENGTH + 1)).length);
+        assertEquals(0, index.find(repeat('f', TokenIndex.MAX_TOKEN_LENGTH)).length);
+        assertEquals(0, index.find("нет").length);
+        assertArrayEquals(new int[]{0}, TokenIndex.intersect(index.find("документ"), index.find("28672")));
+    }
+
+    /**
+     * Случайные сообщения: для каждого слова номера записей те же, что при поиске перебором
+     */
+    @Test
+    public void sameResultsAsScan() {
+        String[] words = {"Документ", "документ", "DOC_ID", "28672", "ошибка", "x1", "Z_9", "клиент", "ёж"};
+        String[] separators = {" ", ", ", "=", "\n\tat ", ": [", "'", "…", "-"};
+        Random random = new Random(22L);
+        List<String> messages = new ArrayList<String>();
+        TokenIndexBuilder builder = new TokenIndexBuilder();
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder message = new StringBuilder();
+            for (int n = random.nextInt(8); n >= 0; n--) {
+                message.append(words[random.nextInt(words.length)]).append(separators[random.nextInt(separators.length)]);
+            }
+            messages.add(message.toString());
+            assertEquals(i, builder.add(message));
+        }
+        TokenIndex index = builder.build();
+        for (String word : words) {
+            assertEquals(word, Arrays.toString(scan(messages, word)), Arrays.toString(index.find(word)));
+        }
+        assertTrue(index.getPostingBytes() < 5000 * words.length);
+    }
+
+    @Test
+    public void storedIndexIsKeyedByLog() throws Exception {
+        File log = SampleLog.write(SampleLog.lines(10), SampleLog.UTF_8, "\n");
+        File sidecar = TokenIndex.sidecarFor(log);
+        try {
+            TokenIndexBuilder builder = new TokenIndexBuilder();
+            for (int i = 0; i < 3000; i++) {
+                builder.add("Сообщение " + i + " [ TYPE: 'DOC'; DATA: '{DOC_ID=" + i % 100 + "}' ]");
+            }
+            TokenIndex index = builder.build();
+            index.store(sidecar, Collections.singletonList(log), TokenIndex.NO_FILTER);
+            TokenIndex loaded = TokenIndex.load(sidecar, log);
+            assertNotNull(loaded);
+            assertEquals(index.size(), loaded.size());
+            assertEquals(3000, loaded.getEntryCount());
+            assertArrayEquals(index.find("DOC_ID", "42"), loaded.find("DOC_ID", "42"));
+            assertEquals(30, loaded.find("doc_id", "42").length);
+            assertArrayEquals(new int[]{2999}, loaded.find("2999"));
+            assertTrue(log.setLastModified(log.lastModified() - 2000));
+            assertNull(TokenIndex.load(sidecar, log));
+        } finally {
+            SampleLog.delete(sidecar);
+            SampleLog.delete(log);
+        }
+    }
+
+    /**
+     * Индекс объединенных логов устаревает при изменении любого из них, а не только описания
+     */
+    @Test
+    public void storedIndexIsKeyedByEveryInput() throws Exception {
+        File descriptor = SampleLog.write(SampleLog.lines(1), SampleLog.UTF_8, "\n");
+        File first = SampleLog.write(SampleLog.lines(10), SampleLog.UTF_8, "\n");
+        File second = SampleLog.write(SampleLog.lines(20), SampleLog.UTF_8, "\n");
+        File sidecar = TokenIndex.sidecarFor(descriptor);
+        try {
+            TokenIndexBuilder builder = new TokenIndexBuilder();
+            builder.add("Документ 28672 сохранен");
+            List<File> inputs = Arrays.asList(descriptor, first, second);
+            builder.build().store(sidecar, inputs, TokenIndex.NO_FILTER);
+            assertNotNull(TokenIndex.load(sidecar, inputs, TokenIndex.NO_FILTER));
+            assertNull(TokenIndex.load(sidecar, descriptor));
+            assertNull(TokenIndex.load(sidecar, Arrays.asList(descriptor, second, first), TokenIndex.NO_FILTER));
+            assertTrue(second.setLastModified(second.lastModified() - 2000));
+            assertNull(TokenIndex.load(sidecar, inputs, TokenIndex.NO_FILTER));
+        } finally {
+            SampleLog.delete(sidecar);
+            SampleLog.delete(second);
+            SampleLog.delete(first);
+            SampleLog.delete(descriptor);
+        }
+    }
+
+    /**
+     * Номера записей разбора с фильтром не подходят для разбора без него и с другим фильтром
+     */
+    @Test
+    public void storedIndexIsKeyedByFilter() throws Exception {
+        File log = SampleLog.write(SampleLog.lines(10), SampleLog.UTF_8, "\n");
+        File sidecar = TokenIndex.sidecarFor(log);
+        List<File> inputs = Collections.singletonList(log);
+        String errors = new EntryFilter(Arrays.asList("ERROR", "warn"), Collections.<String>emptyList(),
+                Long.MIN_VALUE, Long.MAX_VALUE).signature();
+        try {
+            TokenIndexBuilder builder = new TokenIndexBuilder();
+            builder.add("Ошибка: документ 28673 не найден");
+            builder.build().store(sidecar, inputs, errors);
+            assertNull(TokenIndex.load(sidecar, log));
+            assertNull(TokenIndex.load(sidecar, inputs, new EntryFilter(Collections.singletonList("ERROR"),
+                    Collections.<String>emptyList(), Long.MIN_VALUE, Long.MAX_VALUE).signature()));
+            // Порядок и регистр уровней в настройке не важны
+            assertNotNull(TokenIndex.load(sidecar, inputs, new EntryFilter(Arrays.asList("WARN", "error"),
+                    Collections.<String>emptyList(), Long.MIN_VALUE, Long.MAX_VALUE).signature()));
+        } finally {
+            SampleLog.delete(sidecar);
+            SampleLog.delete(log);
+        }
+    }
+
+    private static int[] scan(List<String> messages, String word) {
+        List<Integer> found = new ArrayList<Integer>();
+        for (int i = 0; i < messages.size(); i++) {
+            for (String token : messages.get(i).split("[^\\p{L}\\p{Nd}_]+")) {
+                if (token.equalsIgnoreCase(word)) {
+                    found.add(i);
+                    break;
+                }
+            }
+        }
+        int[] result = new int[found.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = found.get(i);
+        }
+        return result;
+    }
+
+    private static String repeat(char ch, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, ch);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,163 @@
+package org.vladok.logmx.parser.io;
+
+import org.junit.Test;
+import org.vladok.logmx.parser.EntryDateDecoder;
+import org.vladok.logmx.parser.SampleLog;
+import org.vladok.logmx.parser.udata.UDataFormatter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тесты кеша разобранных записей: записи из кеша совпадают с разбором лога, устаревший кеш строится заново
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 20:10
+ */
+public class TestEntryCache {
+
+    @Test
+    public void sameEntriesAsMappedReader() throws Exception {
+        List<String> lines = SampleLog.lines(200);
+        EntryDateDecoder decoder = new EntryDateDecoder();
+        for (Charset charset : Arrays.asList(SampleLog.UTF_8, SampleLog.CP1251)) {
+            for (String separator : Arrays.asList("\n", "\r\n")) {
+                File log = SampleLog.write(lines, charset, separator);
+                try {
+                    assertFalse(EntryCache.isValid(log, charset));
+                    // Первое открытие строит кеш, второе читает из него
+                    assertSameEntries(log, charset, decoder);
+                    assertTrue(EntryCache.sidecarsFor(log)[0].isFile());
+                    assertTrue(EntryCache.isValid(log, charset));
+                    assertSameEntries(log, charset, decoder);
+                } finally {
+                    deleteCache(log);
+                    SampleLog.delete(log);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void staleCacheIsRebuilt() throws Exception {
+        File log = SampleLog.write(SampleLog.lines(20), SampleLog.UTF_8, "\n");
+        try {
+            assertEquals(20, count(log, SampleLog.UTF_8));
+            assertTrue(EntryCache.isValid(log, SampleLog.UTF_8));
+            // Другая кодировка - другие границы в байтах
+            assertFalse(EntryCache.isValid(log, SampleLog.CP1251));
+            // Лог дописан
+            long lastModified = log.lastModified();
+            OutputStream out = new FileOutputStream(log, true);
+            try {
+                out.write("22-09-16 13:00:00.000 [main] INFO - новая запись\n".getBytes(SampleLog.UTF_8));
+            } finally {
+                out.close();
+            }
+            assertTrue(log.setLastModified(lastModified));
+            assertFalse(EntryCache.isValid(log, SampleLog.UTF_8));
+            assertEquals(21, count(log, SampleLog.UTF_8));
+            // Поврежденный кеш
+            File sidecar = EntryCache.sidecarsFor(log)[0];
+            out = new FileOutputStream(sidecar);
+            try {
+                out.write(new byte[]{1, 2, 3});
+            } finally {
+                out.close();
+            }
+            assertFalse(EntryCache.isValid(log, SampleLog.UTF_8));
+            assertEquals(21, count(log, SampleLog.UTF_8));
+            assertTrue(EntryCache.isValid(log, SampleLog.UTF_8));
+        } finally {
+            deleteCache(log);
+            SampleLog.delete(log);
+        }
+    }
+
+    /**
+     * Время записей в кеше посчитано в часовом поясе по умолчанию, в другом поясе кеш строится заново
+     */
+    @Test
+    public void cacheIsKeyedByTimeZone() throws Exception {
+        File log = SampleLog.write(SampleLog.lines(20), SampleLog.UTF_8, "\n");
+        TimeZone original = TimeZone.getDefault();
+        TimeZone other = TimeZone.getTimeZone(
+                original.getID().equals("Asia/Vladivostok") ? "Europe/Moscow" : "Asia/Vladivostok");
+        try {
+            assertEquals(20, count(log, SampleLog.UTF_8));
+            assertTrue(EntryCache.isValid(log, SampleLog.UTF_8));
+            TimeZone.setDefault(other);
+            assertFalse(EntryCache.isValid(log, SampleLog.UTF_8));
+            assertSameEntries(log, SampleLog.UTF_8, new EntryDateDecoder());
+            assertTrue(EntryCache.isValid(log, SampleLog.UTF_8));
+        } finally {
+            TimeZone.setDefault(original);
+            deleteCache(log);
+            SampleLog.delete(log);
+        }
+    }
+
+    private static void assertSameEntries(File log, Charset charset, EntryDateDecoder decoder) throws Exception {
+        List<MappedLogEntry> expected = new ArrayList<MappedLogEntry>();
+        MappedLogReader mapped = new MappedLogReader(log, charset);
+        try {
+            for (MappedLogEntry entry = mapped.next(); entry != null; entry = mapped.next()) {
+                expected.add(entry);
+            }
+        } finally {
+            mapped.close();
+        }
+        CachedLogReader reader = EntryCache.open(log, charset);
+        try {
+            for (MappedLogEntry e : expected) {
+                MappedLogEntry a = reader.next();
+                assertEquals(e.getOffset(), a.getOffset());
+                assertEquals(e.getEnd(), a.getEnd());
+                assertEquals(e.getDate(), a.getDate());
+                assertEquals(e.getThread(), a.getThread());
+                assertEquals(e.getLevel(), a.getLevel());
+                assertEquals(e.getMessage(), a.getMessage());
+                assertEquals(UDataFormatter.containsUData(e.getMessage()), reader.hasUData());
+                assertTrue(reader.isDateValid());
+                assertEquals(decoder.decode(e.getDate()), reader.getTime());
+            }
+            assertNull(reader.next());
+            assertNull(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static int count(File log, Charset charset) throws Exception {
+        CachedLogReader reader = EntryCache.open(log, charset);
+        try {
+            int count = 0;
+            while (reader.next() != null) {
+                ++count;
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void deleteCache(File log) {
+        for (File sidecar : EntryCache.sidecarsFor(log)) {
+            if (sidecar.exists()) {
+                SampleLog.delete(sidecar);
+            }
+        }
+    }
+}
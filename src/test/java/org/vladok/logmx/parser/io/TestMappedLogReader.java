@@ -0,0 +1,156 @@
+package org.vladok.logmx.parser.io;
+
+import com.lightysoft.logmx.business.ParsedEntry;
+import org.junit.Test;
+import org.vladok.logmx.parser.EntryHeaderScanner;
+import org.vladok.logmx.parser.SampleLog;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Тесты чтения по байтам: результат совпадает с парсером для LogMX, заголовки - с {@link EntryHeaderScanner}
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 22:00
+ */
+public class TestMappedLogReader {
+
+    @Test
+    public void sameEntriesAsLogMxParser() throws Exception {
+        List<String> lines = SampleLog.lines(200);
+        List<ParsedEntry> expected = SampleLog.parse(lines);
+        for (Charset charset : Arrays.asList(SampleLog.UTF_8, SampleLog.CP1251)) {
+            for (String separator : Arrays.asList("\n", "\r\n")) {
+                File file = SampleLog.write(lines, charset, separator);
+                try {
+                    // Маленькие сегменты, чтобы записи и строки пересекали их границы
+                    for (int shift : new int[]{6, 10, MappedFile.DEFAULT_SEGMENT_SHIFT}) {
+                        assertEntries(charset + ", " + shift, expected, read(file, charset, shift));
+                    }
+                } finally {
+                    SampleLog.delete(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void seekToEntryOffset() throws Exception {
+        File file = SampleLog.write(SampleLog.lines(30), SampleLog.UTF_8, "\n");
+        try {
+            MappedLogReader reader = new MappedLogReader(file, SampleLog.UTF_8);
+            try {
+                List<MappedLogEntry> entries = new ArrayList<MappedLogEntry>();
+                for (MappedLogEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                    entries.add(entry);
+                }
+                assertNull(reader.next());
+                MappedLogEntry middle = entries.get(17);
+                reader.seek(middle.getOffset());
+                MappedLogEntry entry = reader.next();
+                assertEquals(middle.getOffset(), entry.getOffset());
+                assertEquals(middle.getEnd(), entry.getEnd());
+                assertEquals(middle.getMessage(), entry.getMessage());
+                assertEquals(entries.get(18).getOffset(), reader.position());
+            } finally {
+                reader.close();
+            }
+        } finally {
+            SampleLog.delete(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void multiByteCharsetIsNotSupported() {
+        ByteHeaderScanner.forCharset(Charset.forName("UTF-16"));
+    }
+
+    /**
+     * Случайные искажения заголовка, в том числе кириллицей, символами конца строки
+     * и (для UTF-8) некорректными последовательностями байтов
+     */
+    @Test
+    public void headerScanMatchesDecodedScan() {
+        String base = "22-09-16 12:46:13.412 [поток-1] INFO - Вызов сервиса…";
+        char[] alphabet = "0123456789-:. []AZaz_\r\u0085\u2028\u2029Яё…".toCharArray();
+        byte[] rawBytes = {(byte) 0xC2, (byte) 0xE2, (byte) 0x80, (byte) 0x85, (byte) 0xA8, (byte) 0xFF, ']'};
+        Random random = new Random(20161018L);
+        for (Charset charset : Arrays.asList(SampleLog.UTF_8, SampleLog.CP1251)) {
+            ByteHeaderScanner scanner = ByteHeaderScanner.forCharset(charset);
+            for (int n = 0; n < 100000; n++) {
+                StringBuilder line = new StringBuilder(base);
+                int mutations = 1 + random.nextInt(3);
+                for (int m = 0; m < mutations; m++) {
+                    int pos = random.nextInt(line.length());
+                    char ch = alphabet[random.nextInt(alphabet.length)];
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            line.setCharAt(pos, ch);
+                            break;
+                        case 1:
+                            line.insert(pos, ch);
+                            break;
+                        default:
+                            line.deleteCharAt(pos);
+                    }
+                }
+                byte[] bytes = line.toString().getBytes(charset);
+                if (random.nextInt(4) == 0) {
+                    bytes[random.nextInt(bytes.length)] = rawBytes[random.nextInt(rawBytes.length)];
+                }
+                assertSameAsDecoded(scanner, bytes, charset);
+            }
+        }
+    }
+
+    private static void assertSameAsDecoded(ByteHeaderScanner scanner, byte[] bytes, Charset charset) {
+        String line = new String(bytes, charset);
+        MappedFile in = new MappedFile(ByteBuffer.wrap(bytes));
+        long expected = EntryHeaderScanner.scan(line);
+        long actual = scanner.scan(ByteBuffer.wrap(bytes), 0, bytes.length);
+        assertEquals("Строка: " + line, expected != EntryHeaderScanner.NO_MATCH, actual != EntryHeaderScanner.NO_MATCH);
+        if (actual != EntryHeaderScanner.NO_MATCH) {
+            assertEquals(line.substring(EntryHeaderScanner.THREAD_START, EntryHeaderScanner.threadEnd(expected)),
+                    in.decode(EntryHeaderScanner.THREAD_START, EntryHeaderScanner.threadEnd(actual), charset));
+            assertEquals(line.substring(EntryHeaderScanner.levelStart(expected), EntryHeaderScanner.levelEnd(expected)),
+                    in.decode(EntryHeaderScanner.levelStart(actual), EntryHeaderScanner.levelEnd(actual), charset));
+            assertEquals(line.substring(EntryHeaderScanner.messageStart(expected)),
+                    in.decode(EntryHeaderScanner.messageStart(actual), bytes.length, charset));
+        }
+    }
+
+    private static void assertEntries(String message, List<ParsedEntry> expected, List<MappedLogEntry> actual) {
+        assertEquals(message, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ParsedEntry e = expected.get(i);
+            MappedLogEntry a = actual.get(i);
+            assertEquals(message, e.getDate(), a.getDate());
+            assertEquals(message, e.getThread(), a.getThread());
+            assertEquals(message, e.getLevel(), a.getLevel());
+            assertEquals(message, e.getMessage(), a.getMessage());
+        }
+    }
+
+    private static List<MappedLogEntry> read(File file, Charset charset, int segmentShift) throws Exception {
+        List<MappedLogEntry> entries = new ArrayList<MappedLogEntry>();
+        MappedLogReader reader = new MappedLogReader(file, charset, segmentShift);
+        try {
+            for (MappedLogEntry entry = reader.next(); entry != null; entry = reader.next()) {
+                entries.add(entry);
+            }
+        } finally {
+            reader.close();
+        }
+        return entries;
+    }
+}
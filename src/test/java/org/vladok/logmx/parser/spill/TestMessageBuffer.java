@@ -0,0 +1,149 @@
+package org.vladok.logmx.parser.spill;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Тесты буфера записи с переносом огромного текста во временный файл
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 16:20
+ */
+public class TestMessageBuffer {
+
+    private static final String LINE = "\tat org.vladok.rainbow.service.DocumentService.process(DocumentService.java:42)";
+
+    @Test
+    public void smallTextStaysInMemory() throws Exception {
+        MessageBuffer buffer = new MessageBuffer(1000, 100, 50);
+        buffer.append("Ошибка").append('\n').append(LINE, 1, LINE.length());
+        assertFalse(buffer.isSpilled());
+        assertEquals("Ошибка\n" + LINE.substring(1), buffer.toMessage());
+        assertNull(buffer.getSpilled());
+    }
+
+    /**
+     * Отпечаток зависит только от текста, а не от того, какими кусками он добавлен
+     */
+    @Test
+    public void fingerprintFollowsText() throws Exception {
+        MessageBuffer first = new MessageBuffer(1000);
+        first.append("Ошибка").append('\n').append(LINE);
+        MessageBuffer second = new MessageBuffer(1000);
+        second.append("Ош").append("ибка\n" + LINE.substring(0, 10)).append(LINE, 10, LINE.length());
+        MessageBuffer other = new MessageBuffer(1000);
+        other.append("Ошибка").append('\n').append(LINE, 1, LINE.length());
+        assertEquals(first.getFingerprint(), second.getFingerprint());
+        assertTrue(first.getFingerprint() != other.getFingerprint());
+        assertEquals(2, first.getLineCount());
+        assertEquals(2, second.getLineCount());
+        assertTrue(first.contentEquals("Ошибка\n" + LINE));
+        assertFalse(other.contentEquals("Ошибка\n" + LINE));
+    }
+
+    @Test
+    public void spillsBeyondLimit() throws Exception {
+        MessageBuffer buffer = new MessageBuffer(1000, 100, 50);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; expected.length() < 200 * 1024; i++) {
+            String line = i + LINE;
+            buffer.append('\n').append(line);
+            expected.append('\n').append(line);
+        }
+        assertTrue(buffer.isSpilled());
+        assertEquals(expected.length(), buffer.length());
+        String message = buffer.toMessage();
+        SpilledText spilled = buffer.getSpilled();
+        try {
+            assertTrue(message.startsWith(expected.substring(0, 100)));
+            assertTrue(message.endsWith(expected.substring(expected.length() - 50)));
+            assertTrue(message.contains(spilled.getFile().getPath()));
+            assertEquals(expected.length(), spilled.length());
+            MappedChars chars = spilled.chars();
+            CharSequence part = chars.subSequence(5000, 7000);
+            assertEquals(expected.toString(), chars.toString());
+            assertEquals(expected.substring(5000, 7000), part.toString());
+            assertEquals(message, buffer.toMessage());
+            chars.close();
+            try {
+                part.charAt(0);
+                fail();
+            } catch (RuntimeException expectedClosed) {
+                // отображение освобождено, чтение не обращается к памяти
+            }
+        } finally {
+            assertTrue(spilled.delete());
+        }
+    }
+
+    /**
+     * Текст чуть длиннее ограничения: начало и конец перекрываются, предпросмотр равен тексту
+     */
+    @Test
+    public void previewOfShortSpill() throws Exception {
+        MessageBuffer buffer = new MessageBuffer(10, 8, 8);
+        buffer.append("0123456789ABC");
+        assertEquals("0123456789ABC", buffer.toMessage());
+        assertTrue(buffer.getSpilled().delete());
+    }
+
+    /**
+     * После переноса в файл память не растет с длиной записи
+     */
+    @Test
+    public void heapDoesNotGrowWithEntry() throws Exception {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if ( ! threadBean.isThreadAllocatedMemorySupported() || ! threadBean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        MessageBuffer buffer = new MessageBuffer(64 * 1024);
+        for (int i = 0; buffer.length() < 32L * 1024 * 1024; i++) {
+            buffer.append('\n').append(LINE);
+        }
+        buffer.toMessage();
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(buffer.getSpilled().delete());
+        // 32 млн символов - 64 Мб в памяти без переноса
+        assertTrue("Аллоцировано " + allocated + " байт", allocated < 4 * 1024 * 1024);
+    }
+
+    /**
+     * Начало UData находится при добавлении, в том числе разорванное между кусками
+     */
+    @Test
+    public void tracksUDataStart() throws Exception {
+        MessageBuffer buffer = new MessageBuffer(1000, 100, 50);
+        buffer.append("Ошибка").append('\n').append(LINE);
+        assertEquals(-1, buffer.getUDataStart());
+        buffer.append("Данные [ TY");
+        assertEquals(-1, buffer.getUDataStart());
+        long start = buffer.length() - "[ TY".length();
+        buffer.append("PE: 'X'; DATA: '{}' ] и [ TYPE: 'Y'; DATA: '{}' ]");
+        assertEquals(start, buffer.getUDataStart());
+        assertEquals(start, buffer.toMessage().indexOf("[ TYPE: '"));
+
+        buffer = new MessageBuffer(1000, 100, 50);
+        for (char ch : "abc [ TYPE: 'X".toCharArray()) {
+            buffer.append(ch);
+        }
+        assertEquals(4, buffer.getUDataStart());
+
+        // После переноса в файл
+        buffer = new MessageBuffer(10, 8, 8);
+        buffer.append(LINE).append('\n').append("x [ TYPE: 'X'; DATA: '{}' ]");
+        assertTrue(buffer.isSpilled());
+        assertEquals(LINE.length() + 3, buffer.getUDataStart());
+        buffer.toMessage();
+        assertTrue(buffer.getSpilled().delete());
+    }
+}
@@ -0,0 +1,140 @@
+package org.vladok.logmx.parser.spill;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Тесты хранилища текстов вне кучи
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 23:50
+ */
+public class TestMessageStore {
+
+    private static final String LINE = "\tat org.vladok.rainbow.service.DocumentService.process(DocumentService.java:";
+
+    /**
+     * Тексты переходят через границы маленьких сегментов и читаются без искажений
+     */
+    @Test
+    public void textsSurviveSegments() throws Exception {
+        MessageStore store = new MessageStore(1000);
+        List<String> expected = new ArrayList<String>();
+        List<StoredMessage> stored = new ArrayList<StoredMessage>();
+        assertNull(store.getFile());
+        try {
+            for (int i = 0; i < 100; i++) {
+                MessageBuffer buffer = new MessageBuffer(0);
+                buffer.append("Ошибка " + i);
+                for (int j = 0; j <= i % 7; j++) {
+                    buffer.append('\n').append(LINE).append(Integer.toString(j)).append(')');
+                }
+                assertTrue(store.accepts(buffer));
+                expected.add(buffer.toMessage());
+                stored.add(store.add(buffer));
+            }
+            store.close();
+            long chars = 0;
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i), stored.get(i).toString());
+                assertEquals(expected.get(i).length(), stored.get(i).length());
+                assertEquals(expected.get(i).charAt(3), stored.get(i).charAt(3));
+                assertEquals(expected.get(i).substring(7, 20), stored.get(i).subSequence(7, 20).toString());
+                chars += expected.get(i).length();
+            }
+            assertEquals(chars, store.getChars());
+            assertTrue(store.getFile().length() >= chars * 2);
+            // Недавно прочитанный текст берется из кеша
+            assertSame(stored.get(99).toString(), stored.get(99).toString());
+        } finally {
+            store.delete();
+        }
+    }
+
+    /**
+     * Удаление освобождает отображения и файл, прежние ссылки на тексты не читают освобожденную память
+     */
+    @Test
+    public void deleteRemovesFile() throws Exception {
+        MessageStore store = new MessageStore(1000);
+        MessageBuffer buffer = new MessageBuffer(0);
+        buffer.append("Ошибка").append('\n').append(LINE);
+        StoredMessage stored = store.add(buffer);
+        assertEquals(buffer.toMessage(), stored.toString());
+        File file = store.getFile();
+        assertTrue(file.isFile());
+        store.delete();
+        assertTrue(store.isDeleted());
+        assertFalse(file.exists());
+        assertEquals(MessageStore.DELETED_TEXT, stored.toString());
+        try {
+            stored.charAt(0);
+            fail();
+        } catch (IllegalStateException expected) {
+            // отображение уже освобождено
+        }
+        store.delete();
+    }
+
+    /**
+     * Чтение из другого потока во время удаления получает исключение, а не освобожденную память
+     */
+    @Test
+    public void deleteDuringRead() throws Exception {
+        MessageStore store = new MessageStore(1000);
+        MessageBuffer buffer = new MessageBuffer(0);
+        buffer.append("Ошибка").append('\n').append(LINE);
+        final StoredMessage stored = store.add(buffer);
+        final Throwable[] failure = new Throwable[1];
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        for (int i = 0; i < stored.length(); i++) {
+                            stored.charAt(i);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        reader.start();
+        Thread.sleep(50);
+        store.delete();
+        reader.join(10000);
+        assertFalse(reader.isAlive());
+        assertTrue(String.valueOf(failure[0]), failure[0] instanceof IllegalStateException);
+    }
+
+    @Test
+    public void acceptsOnlyMultiLineTextWithoutUData() throws Exception {
+        MessageStore store = new MessageStore(100);
+        MessageBuffer single = new MessageBuffer(0);
+        single.append("Одна строка");
+        assertFalse(store.accepts(single));
+        MessageBuffer udata = new MessageBuffer(0);
+        udata.append("Данные").append('\n').append("[ TYPE: 'DOC'; DATA: '{DOC_ID=1}' ]");
+        assertFalse(store.accepts(udata));
+        MessageBuffer large = new MessageBuffer(0);
+        large.append("Ошибка").append('\n').append(LINE).append('\n').append(LINE);
+        assertFalse(store.accepts(large));
+        MessageBuffer trace = new MessageBuffer(0);
+        trace.append("Ошибка").append('\n').append(LINE);
+        assertTrue(store.accepts(trace));
+        assertEquals("Ошибка", trace.firstLine());
+        store.close();
+    }
+}
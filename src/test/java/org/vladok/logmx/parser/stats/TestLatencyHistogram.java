@@ -0,0 +1,82 @@
+package org.vladok.logmx.parser.stats;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тесты гистограммы длительностей
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 17:35
+ */
+public class TestLatencyHistogram {
+
+    @Test
+    public void bucketBounds() {
+        Random random = new Random(18L);
+        for (int i = 0; i < 100000; i++) {
+            long value = i < 1000 ? i : (random.nextLong() >>> 1) >>> random.nextInt(63);
+            int index = LatencyHistogram.index(value);
+            assertTrue(value + "", value <= LatencyHistogram.upperBound(index));
+            assertTrue(value + "", index == 0 || LatencyHistogram.upperBound(index - 1) < value);
+            // Интервал не шире четверти значения
+            assertTrue(value + "", LatencyHistogram.upperBound(index) - value <= value / LatencyHistogram.SUB_BUCKETS);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.index(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        Random random = new Random(5L);
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1000 + random.nextInt(1000000);
+            histogram.record(values[i]);
+        }
+        histogram.record(-5);
+        Arrays.sort(values);
+        assertEquals(values.length + 1, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(values[values.length - 1], histogram.getPercentile(100));
+        for (double percentile : new double[]{50, 90, 99}) {
+            long exact = values[(int) Math.ceil(values.length * percentile / 100) - 1];
+            long approximate = histogram.getPercentile(percentile);
+            assertTrue(percentile + ": " + approximate + " ~ " + exact,
+                    approximate >= exact * 0.75 && approximate <= exact * 1.25);
+        }
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    /**
+     * Гистограмма потока добавляется в общую целиком и обнуляется
+     */
+    @Test
+    public void addMovesValues() {
+        LatencyHistogram shared = new LatencyHistogram();
+        LatencyHistogram local = new LatencyHistogram();
+        shared.record(100);
+        for (int i = 1; i <= 1000; i++) {
+            local.record(i * 1000L);
+        }
+        shared.add(local);
+        assertEquals(1001, shared.getCount());
+        assertEquals(100 + 500500000L, shared.getTotal());
+        assertEquals(1000000, shared.getMax());
+        assertEquals(1000000, shared.getPercentile(100));
+        assertEquals(0, local.getCount());
+        assertEquals(0, local.getMax());
+        assertEquals(0, local.getPercentile(50));
+        shared.add(local);
+        assertEquals(1001, shared.getCount());
+    }
+}
@@ -0,0 +1,113 @@
+package org.vladok.logmx.parser.udata;
+
+/**
+ * Генераторы строк, неудобных для форматера: длинные значения из ", ", обрывы посреди объекта,
+ * глубокая вложенность, повторяющиеся маркеры. Используются тестами линейности и бенчмарком.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 17:30
+ */
+public enum AdversarialUData {
+
+    /** Значение из последовательностей ", " и похожих на ключ слов без = */
+    COMMA_SEPARATED_VALUE {
+        @Override
+        public String generate(int length) {
+            StringBuilder result = new StringBuilder(length + 64).append("[ TYPE: 'OBJECT'; DATA: '{KEY=");
+            while (result.length() < length) {
+                result.append(", SOME_KEY_LIKE_WORD");
+            }
+            return result.append("}' ]").toString();
+        }
+    },
+    /** Один длинный ключ без =, повторяющийся после каждой запятой */
+    LONG_KEY_RUNS {
+        @Override
+        public String generate(int length) {
+            StringBuilder result = new StringBuilder(length + 64).append("[ TYPE: 'OBJECT'; DATA: '{KEY=");
+            while (result.length() < length) {
+                result.append(", ");
+                for (int i = 0; i < 256 && result.length() < length; i++) {
+                    result.append('A');
+                }
+            }
+            return result.append("}' ]").toString();
+        }
+    },
+    /** Объект обрывается, конца строки нет */
+    UNTERMINATED {
+        @Override
+        public String generate(int length) {
+            StringBuilder result = new StringBuilder(length + 64).append("[ TYPE: 'OBJECT'; DATA: '{KEY=[1, 2, {A=");
+            while (result.length() < length) {
+                result.append("value, ");
+            }
+            return result.toString();
+        }
+    },
+    /** Начала бизнес-объектов без продолжения */
+    REPEATED_MARKERS {
+        @Override
+        public String generate(int length) {
+            StringBuilder result = new StringBuilder(length + 64);
+            while (result.length() < length) {
+                result.append("[ TYPE: '");
+            }
+            return result.toString();
+        }
+    },
+    /** Вложенность глубже допустимой */
+    DEEP_NESTING {
+        @Override
+        public String generate(int length) {
+            StringBuilder result = new StringBuilder(length + 64);
+            while (result.length() < length / 2) {
+                result.append("[ TYPE: 'X'; DATA: '{A=[");
+            }
+            while (result.length() < length) {
+                result.append("]}' ]");
+            }
+            return result.toString();
+        }
+    },
+    /** Открывающие скобки внутри значения */
+    OPEN_BRACKETS {
+        @Override
+        public String generate(int length) {
+            StringBuilder result = new StringBuilder(length + 64).append("[ TYPE: 'OBJECT'; DATA: '{KEY=");
+            while (result.length() < length) {
+                result.append("{[");
+            }
+            return result.append("}' ]").toString();
+        }
+    },
+    /** Много маленьких массивов с элементами-скобками */
+    NESTED_ARRAYS {
+        @Override
+        public String generate(int length) {
+            StringBuilder result = new StringBuilder(length + 64).append("[ TYPE: 'OBJECT'; DATA: '{ARRAY=[");
+            while (result.length() < length) {
+                result.append("[a, [b, []]], ");
+            }
+            return result.append("x]}' ]").toString();
+        }
+    },
+    /** Каждое значение содержит следующую пару, значение первой пары - вся строка */
+    NESTED_PAIRS {
+        @Override
+        public String generate(int length) {
+            StringBuilder result = new StringBuilder(length + 64).append("[ TYPE: 'OBJECT'; DATA: '");
+            while (result.length() < length) {
+                result.append("{A=x");
+            }
+            return result.append("}' ]").toString();
+        }
+    };
+
+    /**
+     * @param length примерная длина строки
+     * @return строка заданной длины
+     */
+    public abstract String generate(int length);
+}
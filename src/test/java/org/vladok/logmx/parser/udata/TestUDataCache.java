@@ -0,0 +1,109 @@
+package org.vladok.logmx.parser.udata;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тесты кеша отформатированной UData
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 13:05
+ */
+public class TestUDataCache {
+
+    private static final String UDATA = "[ TYPE: 'CLIENT'; DATA: '{CLIENT_ID=105, NAME=ООО \"Пример\", " +
+            "ACCOUNTS=[40702978909044002699, 40702810909044002699]}' ]";
+
+    @Test
+    public void sharedFormattedPayload() throws Exception {
+        UDataCache cache = new UDataCache(1024 * 1024);
+        String first = cache.format(UDATA);
+        assertEquals(UDataFormatter.format(UDATA), first);
+        assertEquals(0, cache.size());
+        // Кешируется при второй встрече
+        cache.format(new String(UDATA));
+        assertEquals(1, cache.size());
+        String cached = cache.format(new String(UDATA));
+        assertEquals(first, cached);
+        assertSame(cached, cache.format(new String(UDATA)));
+        // Другой текст перед той же UData
+        assertEquals(UDataFormatter.format("x" + UDATA), cache.format("x" + UDATA));
+        String message = "Данные клиента 105: " + UDATA + " получены";
+        assertEquals(UDataFormatter.format(message), cache.format(message));
+        assertEquals(3, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals("Без UData", cache.format("Без UData"));
+        assertEquals(6, cache.getHits() + cache.getMisses());
+    }
+
+    @Test
+    public void sameResultAsFormatter() throws Exception {
+        String[] alphabet = {"[ TYPE: '", "' ]", "'", "; DATA: '", "{", "}", "[", "]", ", ", "=", "KEY", "x", " ",
+                "[ TYPE: 'EMPTY_DATA'; DATA: '{}' ]"};
+        UDataCache cache = new UDataCache(4096);
+        Random random = new Random(15L);
+        for (int n = 0; n < 20000; n++) {
+            StringBuilder message = new StringBuilder();
+            for (int i = random.nextInt(12); i >= 0; i--) {
+                message.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            String source = message.toString();
+            assertEquals(source, UDataFormatter.format(source), cache.format(source));
+        }
+        assertTrue(cache.getHits() > 0);
+    }
+
+    @Test
+    public void evictsByCharacters() throws Exception {
+        UDataCache cache = new UDataCache(64 * 1024);
+        for (int i = 0; i < 2000; i++) {
+            String message = UDATA.replace("105", Integer.toString(i));
+            cache.format(message);
+            cache.format(message);
+            assertTrue(cache.getChars() <= cache.getMaxChars());
+        }
+        assertTrue(cache.getEvictions() > 0);
+        assertEquals(4000, cache.getMisses());
+        // Недавние значения остаются в кеше
+        cache.format(UDATA.replace("105", "1999"));
+        assertEquals(1, cache.getHits());
+        // Сообщение больше восьмой части кеша не кешируется
+        String large = AdversarialUData.NESTED_ARRAYS.generate(16 * 1024);
+        assertEquals(UDataFormatter.format(large), cache.format(large));
+        cache.format(large);
+        cache.format(large);
+        assertEquals(1, cache.getHits());
+    }
+
+    /**
+     * Уникальные сообщения не попадают в кеш и не вытесняют повторяющиеся
+     */
+    @Test
+    public void uniqueMessagesAreNotCached() throws Exception {
+        UDataCache cache = new UDataCache(64 * 1024);
+        cache.format(UDATA);
+        cache.format(UDATA);
+        for (int i = 0; i < 2000; i++) {
+            cache.format(UDATA.replace("105", Integer.toString(1000 + i)));
+        }
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getEvictions());
+        cache.format(UDATA);
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void disabledCache() throws Exception {
+        UDataCache cache = new UDataCache(0);
+        assertEquals(UDataFormatter.format(UDATA), cache.format(UDATA));
+        cache.format(UDATA);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits() + cache.getMisses());
+    }
+}
@@ -0,0 +1,151 @@
+package org.vladok.logmx.parser.udata;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тесты извлечения типа и ключей UData в отдельные поля
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 11:55
+ */
+public class TestUDataFieldExtractor {
+
+    private static final String MESSAGE = "Вызов сервиса: [ TYPE: 'ABS_REQUEST'; DATA: '[ TYPE: 'IBANK_DOCUMENT'; " +
+            "DATA: '{CLIENT_NAME=ООО \"Пример\", COMMENT=Оплата по счету, договор №1, от 22.09.2016, " +
+            "SIGNER_LIST=[[ TYPE: 'IBANK_DOCUMENT_SIGN'; DATA: '{KEY_ID=14277244422914, SIGN={a=b}}' ]], " +
+            "DOC_ID=28672, STATUS=2}' ], REQUEST_TYPE=SAVE' ] выполнен";
+
+    private static final List<String> KEYS = Arrays.asList("DOC_ID", "COMMENT", "SIGNER_LIST", "KEY_ID", "SIGN",
+            "STATUS", "REQUEST_TYPE", "CLIENT_NAME", "NO_SUCH_KEY");
+
+    @Test
+    public void typeAndKeys() {
+        Map<String, Object> fields = new HashMap<String, Object>();
+        assertTrue(new UDataFieldExtractor(KEYS).extract(MESSAGE, fields));
+        assertEquals("ABS_REQUEST", fields.get(UDataFieldExtractor.TYPE_FIELD));
+        assertEquals("28672", fields.get("DOC_ID"));
+        assertEquals("Оплата по счету, договор №1, от 22.09.2016", fields.get("COMMENT"));
+        assertEquals("[[ TYPE: 'IBANK_DOCUMENT_SIGN'; DATA: '{KEY_ID=14277244422914, SIGN={a=b}}' ]]",
+                fields.get("SIGNER_LIST"));
+        assertEquals("14277244422914", fields.get("KEY_ID"));
+        assertEquals("{a=b}", fields.get("SIGN"));
+        assertEquals("2", fields.get("STATUS"));
+        assertEquals("SAVE", fields.get("REQUEST_TYPE"));
+        assertEquals("ООО \"Пример\"", fields.get("CLIENT_NAME"));
+        assertFalse(fields.containsKey("NO_SUCH_KEY"));
+    }
+
+    @Test
+    public void messageWithoutUData() {
+        Map<String, Object> fields = new HashMap<String, Object>();
+        UDataFieldExtractor extractor = new UDataFieldExtractor(KEYS);
+        assertFalse(extractor.extract("DOC_ID=1, Документ обработан [fake udata]", fields));
+        assertTrue(fields.isEmpty());
+        // Оборванный объект без типа
+        assertTrue(extractor.extract("[ TYPE: 'OBJ", fields));
+        assertNull(fields.get(UDataFieldExtractor.TYPE_FIELD));
+        assertTrue(new UDataFieldExtractor(Collections.<String>emptyList()).extract(MESSAGE, fields));
+        assertEquals("ABS_REQUEST", fields.get(UDataFieldExtractor.TYPE_FIELD));
+    }
+
+    /**
+     * За тот же проход передаются все пары с простыми значениями и типы всех бизнес-объектов
+     */
+    @Test
+    public void pairsInSamePass() {
+        final List<String> pairs = new ArrayList<String>();
+        Map<String, Object> fields = new HashMap<String, Object>();
+        Map<String, Object> expected = new HashMap<String, Object>();
+        UDataFieldExtractor extractor = new UDataFieldExtractor(KEYS);
+        extractor.extract(MESSAGE, expected);
+        assertTrue(extractor.extract(MESSAGE, MESSAGE.indexOf(UDataFormatter.BUSINESS_OBJ_BEGINNING), fields,
+                new UDataFieldExtractor.Pairs() {
+                    @Override
+                    public void pair(String key, int keyStart, int keyEnd,
+                                     String message, int valueStart, int valueEnd) {
+                        pairs.add(key.substring(keyStart, keyEnd) + "=" + message.substring(valueStart, valueEnd));
+                    }
+                }));
+        assertEquals(expected, fields);
+        assertEquals(Arrays.asList("TYPE=ABS_REQUEST", "TYPE=IBANK_DOCUMENT", "CLIENT_NAME=ООО \"Пример\"",
+                "COMMENT=Оплата по счету, договор №1, от 22.09.2016", "TYPE=IBANK_DOCUMENT_SIGN",
+                "KEY_ID=14277244422914", "DOC_ID=28672", "STATUS=2", "REQUEST_TYPE=SAVE"), pairs);
+    }
+
+    @Test
+    public void typesAreShared() {
+        Map<String, Object> first = new HashMap<String, Object>();
+        Map<String, Object> second = new HashMap<String, Object>();
+        UDataFieldExtractor extractor = new UDataFieldExtractor(KEYS);
+        extractor.extract(MESSAGE, first);
+        extractor.extract(new String(MESSAGE), second);
+        assertSame(first.get(UDataFieldExtractor.TYPE_FIELD), second.get(UDataFieldExtractor.TYPE_FIELD));
+    }
+
+    /**
+     * Значение совпадает с первой парой с этим ключом в дереве разбора.
+     * Внутри константы вида {a=b} дерево пар не видит, а извлечение находит, поэтому таких значений здесь нет
+     */
+    @Test
+    public void valuesMatchTree() {
+        String[] messages = {MESSAGE,
+                "[ TYPE: 'X'; DATA: '{A=[1, 2], B=, E=[ TYPE: 'Y'; DATA: '{F=4}' ]}, G=5' ]",
+                "Пакет: [ TYPE: 'BATCH'; DATA: '{DOCUMENTS=[[ TYPE: 'DOC'; DATA: '{DOC_ID=1, STATUS=2}' ], " +
+                        "[ TYPE: 'DOC'; DATA: '{DOC_ID=2, STATUS=3}' ]], COUNT=2}' ]"};
+        List<String> keys = Arrays.asList("A", "B", "E", "F", "G", "DOC_ID", "STATUS", "COUNT", "DOCUMENTS");
+        UDataFieldExtractor extractor = new UDataFieldExtractor(keys);
+        for (String message : messages) {
+            Map<String, Object> fields = new HashMap<String, Object>();
+            extractor.extract(message, fields);
+            UDataTree tree = UDataTree.parse(message);
+            for (String key : keys) {
+                assertEquals(message + " " + key, firstValue(tree, key), fields.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void allocatesOnlyValues() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if ( ! threadBean.isThreadAllocatedMemorySupported() || ! threadBean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        UDataFieldExtractor extractor = new UDataFieldExtractor(Arrays.asList("DOC_ID", "NO_SUCH_KEY"));
+        Map<String, Object> fields = new HashMap<String, Object>();
+        for (int i = 0; i < 20000; i++) {
+            extractor.extract(MESSAGE, fields);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 20000; i++) {
+            extractor.extract(MESSAGE, fields);
+        }
+        long perCall = (threadBean.getThreadAllocatedBytes(threadId) - before) / 20000;
+        // Одна строка "28672": заголовок String и массив символов
+        assertTrue("Аллоцировано " + perCall + " байт на вызов", perCall <= 96);
+    }
+
+    private static String firstValue(UDataTree tree, String key) {
+        for (int node = 0; node < tree.size(); node++) {
+            if (key.equals(tree.key(node)) && tree.value(node) >= 0) {
+                return tree.text(node);
+            }
+        }
+        return null;
+    }
+}
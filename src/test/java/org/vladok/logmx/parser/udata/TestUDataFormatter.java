@@ -2,7 +2,11 @@ package org.vladok.logmx.parser.udata;
 
 import org.junit.Test;
 
+import java.io.StringWriter;
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Тесты для форматера
@@ -286,4 +290,61 @@ public class TestUDataFormatter {
         assertEquals(expected, format);
     }
 
+    @Test
+    public void streamingIntoWriter() throws Exception {
+        StringBuilder source = new StringBuilder("Данные запроса: ")
+                .append("[ TYPE: 'OBJECT'; DATA: '{ARRAY=[1, some text2, 3]}' ]")
+                .append(" ending");
+        StringWriter out = new StringWriter();
+        UDataFormatter.format(source, out);
+        assertEquals(UDataFormatter.format(source.toString()), out.toString());
+    }
+
+    @Test
+    public void unterminatedObjectGivesPartialOutput() throws Exception {
+        String source = "Данные: [ TYPE: 'OBJECT'; DATA: '{KEY=some value, ARRAY=[1, 2";
+        String expected =
+                "Данные: \n" +
+                "[ TYPE: 'OBJECT'; DATA: '\n" +
+                "    {\n" +
+                "        KEY=some value,\n" +
+                "        ARRAY=[\n" +
+                "            1,\n" +
+                "            2\n";
+        String format = UDataFormatter.format(source);
+        assertEquals(expected, format);
+    }
+
+    @Test
+    public void tooDeepNestingIsCopiedAsIs() throws Exception {
+        StringBuilder source = new StringBuilder("[ TYPE: 'OBJECT'; DATA: '{A=");
+        for (int i = 0; i <= UDataFormatter.MAX_DEPTH; i++) {
+            source.append("[x, ");
+        }
+        source.append("1]}' ]");
+        String format = UDataFormatter.format(source.toString());
+        assertTrue("Глубже MAX_DEPTH остаток копируется без форматирования", format.endsWith("[x, [x, 1]}' ]\n"));
+    }
+
+    /**
+     * С известным началом первого бизнес-объекта результат тот же, что с поиском с начала строки
+     */
+    @Test
+    public void knownFirstObject() throws Exception {
+        String[] alphabet = {"[ TYPE: '", "' ]", "'", "; DATA: '", "{", "}", "[", "]", ", ", "=", "KEY", "x", " ", "\n"};
+        Random random = new Random(19L);
+        for (int n = 0; n < 20000; n++) {
+            StringBuilder message = new StringBuilder();
+            for (int i = random.nextInt(14); i >= 0; i--) {
+                message.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            String source = message.toString();
+            int first = source.indexOf(UDataFormatter.BUSINESS_OBJ_BEGINNING);
+            if (first >= 0) {
+                assertEquals(source, UDataFormatter.format(source), UDataFormatter.format(source, first));
+            }
+        }
+        String source = "Данные клиента: [ TYPE: 'OBJECT'; DATA: '{KEY=1}' ] получены";
+        assertEquals(UDataFormatter.format(source), UDataFormatter.format(source, source.indexOf("[ TYPE")));
+    }
 }
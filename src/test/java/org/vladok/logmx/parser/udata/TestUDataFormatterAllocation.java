@@ -0,0 +1,107 @@
+package org.vladok.logmx.parser.udata;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Проверка аллокаций форматера в установившемся режиме: кроме итоговой строки ничего не создается
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 15:10
+ */
+public class TestUDataFormatterAllocation {
+
+    /** Типичное сообщение с UData, ~3 КБ */
+    private static final String MESSAGE = "Вызов сервиса: 'Сервис сохранения данных в системе iBank 2'. Данные запроса: " +
+            "[ TYPE: 'ABS_REQUEST'; DATA: '[ TYPE: 'IBANK_DOCUMENT'; DATA: '{PRINT=0, LOCAL_IP_ADDRESS=" +
+            "0.0.0.0, CLIENT_NAME=ООО \"Пример\", OWNER_COMMENTS=, INN=7714698320, DOC_TYPE_ID=59, STATUS_TIME=" +
+            "Thu Sep 22 12:46:24 MSK 2016, COMMENT=null, CLIENT_TYPE=0, DOC_TYPE=doc/person_info, STATUS=2, " +
+            "SIGNER_LIST=[[ TYPE: 'IBANK_DOCUMENT_SIGN'; DATA: '{SIGN_TYPE=SIGN, SERIAL_TOKEN=, SIGN_DEPARTMENT_" +
+            "CODE=0, OWNER_POSITION=представитель, OWNER_NAME=Иванов Иван Иванович, KEY_PROVIDER=std, TIMESTAMP=" +
+            "22.09.2016 12:46:24, KEY_EXPIRATION_DATE=Sun Mar 29 00:00:00 MSK 2020, KEY_ID=14277244422914, SIGN_" +
+            "LEVEL=0, ACTION_TYPE=1, KEY_CREATION_DATE=null}' ]], CLIENT_ID=105, EXT_CLIENT_ID=9562, CONTENT=[ T" +
+            "YPE: 'IBANK_DOCUMENT_CONTENT'; DATA: '{TRUSTED_RECIPIENT=0, COMPILER_FIO=Вая Пупкин, PATRONYMIC=Раст" +
+            "оргуевич, CLIENT_NAME=ООО \"Пример\", IDCARD_SERIES=6666, PROFIT_GETTER_FIO=Расторгуев Расторгуй Раст" +
+            "оргуевич, INN=656565656565, BIRTHDATE=02.09.1991, AGREEMENT_TYPE=Агентский договор, LAST_NAME=Расторг" +
+            "уев, FIRST_NAME=Расторгуй, IDCARD_ISSUER=УВД Расторгуево, DATE_DOC=22.09.2016, CITIZENSHIP=РОССИЯ, CL" +
+            "IENT_ACCOUNT=40702978909044002699, AGREEMENT_END_DATE=11.09.2022, BIRTH_PLACE=село Расторгуево, PHONE" +
+            "S=666-666-666, IS_BUSINESSMAN=0, CLIENT_BANK_NAME=ИНВЕСТСБЕРБАНК (ОАО), г.МОСКВА, IDCARD_ISSUE_DATE=10" +
+            ".09.2015, PROFIT_GETTER_TYPE=Гражданин РФ, IDCARD_ISSUER_CODE=666-666, AGREEMENT_NUMBER=1, IDCARD_TYP" +
+            "E=Паспорт гражданина РФ, ADDRESS=село Расторгуево, AGREEMENT_DATE=10.09.2015, IDCARD_NUMBER=666666}' ]" +
+            ", BIC=044525311, CLIENT_COMMENT=null, DOC_ID=28672, GROUP_ID=null, GROUP_NAME=null, LAST_SIGN_DATE=Thu" +
+            " Sep 22 12:46:24 MSK 2016, CONTRACT_NUMBER=, VERSION=1, REMOTE_IP_ADDRESS=0.0.0.0, BRANCH_ID=101, HAS" +
+            "_ATTACHMENTS=false}' ], REQUEST_TYPE=SAVE, ATTACHMENTS=[]' ]";
+
+    private static final int ITERATIONS = 2000;
+
+    @Test
+    public void steadyStateAllocatesOnlyResult() throws Exception {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if ( ! threadBean.isThreadAllocatedMemorySupported() || ! threadBean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        int resultLength = UDataFormatter.format(MESSAGE).length();
+        // Прогрев: экземпляр потока, буфер, JIT
+        for (int i = 0; i < ITERATIONS; i++) {
+            UDataFormatter.format(MESSAGE);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            UDataFormatter.format(MESSAGE);
+        }
+        long perCall = (threadBean.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+        // Итоговая строка: до 2 байт на символ плюс заголовки; StringBuilder.toString()
+        // может дополнительно пробовать сжатие в Latin-1 (еще до байта на символ)
+        long resultBytes = 3L * resultLength + 512;
+        assertTrue("Аллоцировано " + perCall + " байт на вызов при результате " + resultLength + " символов",
+                perCall <= resultBytes);
+    }
+
+    /**
+     * Форматирование в Appendable не строит дерево: память не растет с длиной UData
+     */
+    @Test
+    public void streamingMemoryDoesNotGrowWithPayload() throws Exception {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if ( ! threadBean.isThreadAllocatedMemorySupported() || ! threadBean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        StringBuilder source = new StringBuilder(MESSAGE);
+        while (source.length() < 4 * 1024 * 1024) {
+            source.append(", ").append(MESSAGE);
+        }
+        final long[] written = new long[1];
+        Appendable out = new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) {
+                written[0] += csq.length();
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                written[0] += end - start;
+                return this;
+            }
+
+            @Override
+            public Appendable append(char c) {
+                ++written[0];
+                return this;
+            }
+        };
+        UDataFormatter.format(MESSAGE, out);
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        UDataFormatter.format(source, out);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(written[0] > source.length());
+        assertTrue("Аллоцировано " + allocated + " байт на " + source.length() + " символов",
+                allocated < source.length() / 16);
+    }
+}
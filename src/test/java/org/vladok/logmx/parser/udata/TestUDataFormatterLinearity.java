@@ -0,0 +1,72 @@
+package org.vladok.logmx.parser.udata;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Проверка линейности форматера на сгенерированных неудобных строках.
+ * Вместо времени измеряется объем работы (прочитанные символы и отступы), поэтому тест детерминирован.
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 17:50
+ */
+public class TestUDataFormatterLinearity {
+
+    private static final int BASE_LENGTH = 16 * 1024;
+
+    /** Допустимая работа на символ: чтения с просмотром вперед плюс отступы до MAX_DEPTH уровней */
+    private static final int MAX_WORK_PER_CHAR = 8 + UDataFormatter.MAX_DEPTH;
+
+    @Test
+    public void linearWork() throws Exception {
+        for (AdversarialUData kind : AdversarialUData.values()) {
+            long baseWork = work(kind.generate(BASE_LENGTH));
+            for (int scale = 2; scale <= 16; scale *= 2) {
+                String source = kind.generate(BASE_LENGTH * scale);
+                long work = work(source);
+                assertTrue(kind + ": " + work + " операций на " + source.length() + " символов",
+                        work <= (long) MAX_WORK_PER_CHAR * source.length());
+                // Рост в scale раз с запасом на неровную длину сгенерированных строк
+                assertTrue(kind + ": рост работы " + work + "/" + baseWork + " при увеличении длины в " + scale + " раз",
+                        work <= baseWork * scale * 5 / 4);
+            }
+        }
+    }
+
+    /**
+     * Пары для индекса: значение просматривается не дальше предела длины, просмотр продолжается с его конца.
+     * При повторном просмотре каждого значения строка в 4M символов разбиралась бы часами
+     */
+    @Test
+    public void linearPairs() {
+        UDataFieldExtractor extractor = new UDataFieldExtractor(Collections.singletonList("KEY"));
+        final long[] pairs = new long[1];
+        UDataFieldExtractor.Pairs consumer = new UDataFieldExtractor.Pairs() {
+            @Override
+            public void pair(String key, int keyStart, int keyEnd, String message, int valueStart, int valueEnd) {
+                assertTrue(valueEnd - valueStart <= UDataFieldExtractor.MAX_PAIR_VALUE_LENGTH);
+                ++pairs[0];
+            }
+        };
+        for (AdversarialUData kind : AdversarialUData.values()) {
+            String source = kind.generate(BASE_LENGTH * 256);
+            long start = System.nanoTime();
+            extractor.extract(source, source.indexOf(UDataFormatter.BUSINESS_OBJ_BEGINNING),
+                    new HashMap<String, Object>(), consumer);
+            long millis = (System.nanoTime() - start) / 1000000;
+            assertTrue(kind + ": " + millis + " мс на " + source.length() + " символов", millis < 2000);
+        }
+        assertTrue(pairs[0] > 0);
+    }
+
+    private static long work(String source) throws UDataFormatterException {
+        UDataFormatter formatter = new UDataFormatter();
+        formatter.formatToString(source);
+        return formatter.work();
+    }
+}
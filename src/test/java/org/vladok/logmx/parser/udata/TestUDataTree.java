@@ -0,0 +1,138 @@
+package org.vladok.logmx.parser.udata;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тесты дерева разбора UData: выборка по пути и совпадение печати из дерева с прежним форматером
+ *
+ * @author Vladislav Okulich-Kazarin
+ *         Date: 18.10.2026
+ *         Time: 10:50
+ */
+public class TestUDataTree {
+
+    private static final String MESSAGE = "Данные запроса: [ TYPE: 'ABS_REQUEST'; DATA: '[ TYPE: 'IBANK_DOCUMENT'; " +
+            "DATA: '{CLIENT_NAME=ООО \"Пример\", INN=7714698320, SIGNER_LIST=[[ TYPE: 'IBANK_DOCUMENT_SIGN'; " +
+            "DATA: '{SIGN_TYPE=SIGN, KEY_ID=14277244422914}' ], [ TYPE: 'IBANK_DOCUMENT_SIGN'; " +
+            "DATA: '{SIGN_TYPE=VISA, KEY_ID=14277244422915}' ]], CONTENT=[ TYPE: 'IBANK_DOCUMENT_CONTENT'; " +
+            "DATA: '{PHONES=666-666-666, IDCARD_NUMBER=666666}' ], DOC_ID=28672, TAGS=[a, b[1], c], " +
+            "EMPTY=[], VERSION=1}' ], REQUEST_TYPE=SAVE, ATTACHMENTS=[], NOTHING=[ TYPE: 'EMPTY_DATA'; " +
+            "DATA: '{}' ]' ] обработаны";
+
+    @Test
+    public void keyPathLookup() {
+        UDataTree tree = UDataTree.parse(MESSAGE);
+        assertEquals("28672", tree.value("IBANK_DOCUMENT/DATA/DOC_ID"));
+        assertEquals("28672", tree.value("IBANK_DOCUMENT/DOC_ID"));
+        assertEquals("ООО \"Пример\"", tree.value("IBANK_DOCUMENT/DATA/CLIENT_NAME"));
+        assertEquals(Arrays.asList("14277244422914", "14277244422915"),
+                tree.values("IBANK_DOCUMENT/DATA/SIGNER_LIST/IBANK_DOCUMENT_SIGN/DATA/KEY_ID"));
+        assertEquals(Arrays.asList("14277244422914", "14277244422915"), tree.values("IBANK_DOCUMENT_SIGN/KEY_ID"));
+        assertEquals("666666", tree.value("ABS_REQUEST/DATA/IBANK_DOCUMENT/DATA/CONTENT/DATA/IDCARD_NUMBER"));
+        assertEquals("SAVE", tree.value("ABS_REQUEST/REQUEST_TYPE"));
+        assertEquals("[]", tree.value("ABS_REQUEST/ATTACHMENTS"));
+        assertEquals("[a, b[1], c]", tree.value("IBANK_DOCUMENT/TAGS"));
+        assertEquals("EMPTY_DATA", tree.type(tree.select("ABS_REQUEST/NOTHING")[0]));
+        assertNull(tree.value("IBANK_DOCUMENT/DATA/NO_SUCH_KEY"));
+        assertNull(tree.value("NO_SUCH_TYPE/DATA/DOC_ID"));
+        // Ключи не ищутся в данных вложенных объектов без явного пути
+        assertNull(tree.value("ABS_REQUEST/DOC_ID"));
+
+        int document = tree.select("IBANK_DOCUMENT")[0];
+        assertEquals(UDataTree.BUSINESS_OBJECT, tree.kind(document));
+        assertEquals("IBANK_DOCUMENT", tree.type(document));
+        assertTrue(tree.isClosed(document));
+        assertTrue(tree.text(document).startsWith("[ TYPE: 'IBANK_DOCUMENT'; DATA: '{CLIENT_NAME="));
+        assertTrue(tree.text(document).endsWith("VERSION=1}' ]"));
+    }
+
+    @Test
+    public void treeReferencesSourceOffsets() {
+        UDataTree tree = UDataTree.parse(MESSAGE);
+        assertEquals(UDataTree.ROOT, tree.kind(0));
+        int text = tree.firstChild(0);
+        assertEquals(UDataTree.TEXT, tree.kind(text));
+        assertEquals("Данные запроса: ", tree.text(text));
+        int request = tree.nextSibling(text);
+        assertEquals("ABS_REQUEST", tree.type(request));
+        // Пары ключ-значение указывают на участки исходной строки
+        int[] versions = tree.select("IBANK_DOCUMENT/VERSION");
+        assertEquals(1, versions.length);
+        assertEquals(UDataTree.CONST, tree.kind(versions[0]));
+        assertEquals(MESSAGE.indexOf("VERSION=1") + "VERSION=".length(), tree.start(versions[0]));
+        // Пробел после бизнес-объекта при печати заменяется переносом и в текст не входит
+        assertEquals("обработаны", tree.text(tree.nextSibling(request)));
+    }
+
+    @Test
+    public void unterminatedObject() {
+        String source = "[ TYPE: 'OBJECT'; DATA: '{KEY=1, LIST=[a, b";
+        UDataTree tree = UDataTree.parse(source);
+        int object = tree.select("OBJECT")[0];
+        assertFalse(tree.isClosed(object));
+        assertEquals("1", tree.value("OBJECT/KEY"));
+        assertEquals("[a, b", tree.value("OBJECT/LIST"));
+        assertEquals(source.length(), tree.end(object));
+    }
+
+    @Test
+    public void printMatchesReferenceOnSamples() throws Exception {
+        assertSamePrint(MESSAGE);
+        for (AdversarialUData kind : AdversarialUData.values()) {
+            assertSamePrint(kind.generate(4 * 1024));
+        }
+        // Все обрывы сообщения
+        for (int i = 0; i <= MESSAGE.length(); i++) {
+            assertSamePrint(MESSAGE.substring(0, i));
+        }
+    }
+
+    @Test
+    public void printMatchesReferenceOnRandomStrings() throws Exception {
+        String[] alphabet = {"[ TYPE: '", "' ]", "'", "; DATA: '", "{", "}", "[", "]", ", ", ",", " ", "=",
+                "KEY", "A_1", "x", "[ TYPE: 'EMPTY_DATA'; DATA: '{}' ]", "{}", "[]", "\n"};
+        Random random = new Random(13L);
+        for (int n = 0; n < 20000; n++) {
+            StringBuilder source = new StringBuilder();
+            int tokens = 1 + random.nextInt(40);
+            for (int i = 0; i < tokens; i++) {
+                source.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            assertSamePrint(source.toString());
+        }
+        // Случайные правки корректного сообщения
+        for (int n = 0; n < 5000; n++) {
+            StringBuilder source = new StringBuilder(MESSAGE);
+            for (int i = random.nextInt(4); i >= 0; i--) {
+                int at = random.nextInt(source.length());
+                if (random.nextBoolean()) {
+                    source.deleteCharAt(at);
+                } else {
+                    source.insert(at, alphabet[random.nextInt(alphabet.length)]);
+                }
+            }
+            assertSamePrint(source.toString());
+        }
+    }
+
+    @Test
+    public void reusedFormatterTree() throws Exception {
+        UDataFormatter formatter = new UDataFormatter();
+        assertEquals(UDataStreamFormatter.format(MESSAGE), formatter.formatToString(MESSAGE));
+        assertEquals(UDataStreamFormatter.format("abc"), formatter.formatToString("abc"));
+        assertArrayEquals(new int[0], UDataTree.parse("abc").select("IBANK_DOCUMENT"));
+    }
+
+    private static void assertSamePrint(String source) throws Exception {
+        assertEquals(source, UDataStreamFormatter.format(source), new UDataFormatter().formatToString(source));
+    }
+}